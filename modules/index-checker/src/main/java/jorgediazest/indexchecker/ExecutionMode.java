@@ -19,7 +19,8 @@ package jorgediazest.indexchecker;
  */
 public enum ExecutionMode {
 
-	CHECK_RELATED_DATA, DUMP_ALL_OBJECTS_TO_LOG, GROUP_BY_SITE, QUERY_BY_SITE,
-	SHOW_BOTH_EXACT, SHOW_BOTH_NOTEXACT, SHOW_INDEX, SHOW_LIFERAY
+	CHECK_RELATED_DATA, DUMP_ALL_OBJECTS_TO_LOG, GROUP_BY_SITE,
+	INCREMENTAL_CHECK, QUERY_BY_SITE, SHOW_BOTH_EXACT, SHOW_BOTH_NOTEXACT,
+	SHOW_INDEX, SHOW_LIFERAY, STREAMING_COMPARISON
 
 }
\ No newline at end of file
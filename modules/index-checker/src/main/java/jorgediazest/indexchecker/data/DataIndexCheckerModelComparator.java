@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import jorgediazest.util.comparator.DataModelComparator;
+import jorgediazest.util.data.AttributeDescriptor;
 import jorgediazest.util.data.Data;
 
 /**
@@ -35,15 +36,19 @@ public class DataIndexCheckerModelComparator extends DataModelComparator {
 		super(attributes);
 	}
 
+	@Override
 	public boolean equalsAttributes(
-		Data data1, Data data2, String attr1, String attr2) {
+		Data data1, Data data2, AttributeDescriptor attributeDescriptor1,
+		AttributeDescriptor attributeDescriptor2) {
+
+		if (super.equalsAttributes(
+				data1, data2, attributeDescriptor1, attributeDescriptor2)) {
 
-		if (super.equalsAttributes(data1, data2, attr1, attr2)) {
 			return true;
 		}
 
-		Object o1 = data1.get(attr1);
-		Object o2 = data2.get(attr2);
+		Object o1 = data1.get(attributeDescriptor1);
+		Object o2 = data2.get(attributeDescriptor2);
 
 		if ((o1 instanceof Set) && (o2 instanceof Set)) {
 			for (Locale key : LanguageUtil.getAvailableLocales()) {
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.index;
+
+import com.liferay.portal.kernel.search.Document;
+import com.liferay.portal.kernel.search.Field;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size of the pages of an index search. After each page, the size is
+ * adjusted so the latency and the payload size of the next page are close to
+ * the configured targets. The size is doubled at most or halved at least
+ * each page and it is always between the min and the max size.
+ *
+ * @author Jorge Díaz
+ */
+public class AdaptivePageSize {
+
+	/**
+	 * Returns the approximate size of the documents, counting the characters
+	 * of the field names and values.
+	 */
+	public static long getDocumentsSize(Document[] docs) {
+		long size = 0;
+
+		for (Document doc : docs) {
+			Map<String, Field> fields = doc.getFields();
+
+			for (Field field : fields.values()) {
+				size += field.getName().length();
+
+				String[] values = field.getValues();
+
+				if (values == null) {
+					continue;
+				}
+
+				for (String value : values) {
+					if (value != null) {
+						size += value.length();
+					}
+				}
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Target time or size are not taken into account if they are not greater
+	 * than 0.
+	 */
+	public AdaptivePageSize(
+		int minSize, int maxSize, long targetTime, long targetSize) {
+
+		this.maxSize = Math.max(maxSize, 1);
+		this.minSize = Math.max(Math.min(minSize, this.maxSize), 1);
+		this.targetTime = targetTime;
+		this.targetSize = targetSize;
+
+		_size = this.minSize;
+	}
+
+	public int getSize() {
+		return _size;
+	}
+
+	/**
+	 * Adjusts the size of the next page using the search time in nanoseconds
+	 * and the approximate size of the last page.
+	 */
+	public void update(long nanos, long size) {
+		double factor = _MAX_GROWTH;
+
+		long time = TimeUnit.NANOSECONDS.toMillis(nanos);
+
+		if ((targetTime > 0) && (time > 0)) {
+			factor = Math.min(factor, (double)targetTime / time);
+		}
+
+		if ((targetSize > 0) && (size > 0)) {
+			factor = Math.min(factor, (double)targetSize / size);
+		}
+
+		factor = Math.max(factor, _MIN_GROWTH);
+
+		long newSize = (long)(_size * factor);
+
+		_size = (int)Math.max(minSize, Math.min(maxSize, newSize));
+	}
+
+	protected final int maxSize;
+	protected final int minSize;
+	protected final long targetSize;
+	protected final long targetTime;
+
+	private static final double _MAX_GROWTH = 2.0;
+
+	private static final double _MIN_GROWTH = 0.5;
+
+	private int _size;
+
+}
\ No newline at end of file
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.index;
+
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+import com.liferay.portal.kernel.security.auth.CompanyThreadLocal;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+
+/**
+ * Reindexes data in batches of entities of the same class name. Batches are
+ * reindexed by IndexSearchHelper.reindexBatch in a bounded thread pool: if
+ * all the threads are busy and the queue is full, the calling thread
+ * reindexes the batch itself, so it stops creating new batches.
+ *
+ * @author Jorge Díaz
+ */
+public class BulkReindexer {
+
+	public BulkReindexer(
+		IndexSearchHelper indexSearchHelper, int batchSize, int threads) {
+
+		this.indexSearchHelper = indexSearchHelper;
+		this.batchSize = Math.max(batchSize, 1);
+		this.threads = Math.max(threads, 1);
+	}
+
+	public int getBatchCount() {
+		return _batchCount.get();
+	}
+
+	public int getFailedBatchCount() {
+		return _failedBatchCount.get();
+	}
+
+	public long getMaxBatchTime() {
+		return _maxBatchTime.get();
+	}
+
+	public long getTotalBatchTime() {
+		return _totalBatchTime.get();
+	}
+
+	/**
+	 * Returns the data that could not be reindexed, with the error message.
+	 */
+	public Map<Data, String> reindex(Collection<Data> dataCollection) {
+		return reindex(dataCollection.iterator());
+	}
+
+	/**
+	 * Reindexes the data while it is read from the iterator. A batch is
+	 * created each time batchSize entities of a class name are read, the rest
+	 * are reindexed at the end. The iterator is closed when it is Closeable.
+	 * Returns the data that could not be reindexed, with the error message.
+	 */
+	public Map<Data, String> reindex(Iterator<Data> iterator) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			threads, threads, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(threads),
+			new ThreadPoolExecutor.CallerRunsPolicy());
+
+		Map<String, List<Data>> batchByClassName = new LinkedHashMap<>();
+		Map<Data, String> errors = new HashMap<>();
+		Map<Future<Map<Data, String>>, List<Data>> futures =
+			new LinkedHashMap<>();
+
+		int count = 0;
+
+		try {
+			while (iterator.hasNext()) {
+				Data data = iterator.next();
+
+				String className = data.getEntryClassName();
+
+				List<Data> batch = batchByClassName.get(className);
+
+				if (batch == null) {
+					batch = new ArrayList<>();
+
+					batchByClassName.put(className, batch);
+				}
+
+				batch.add(data);
+
+				count++;
+
+				if (batch.size() >= batchSize) {
+					batchByClassName.remove(className);
+
+					_submit(executor, futures, className, batch);
+
+					/* Wait for the oldest batches, so only the running and
+					 * queued batches are kept in memory */
+
+					_waitFutures(futures, errors, threads * 2);
+				}
+			}
+
+			for (Map.Entry<String, List<Data>> entry :
+					batchByClassName.entrySet()) {
+
+				_submit(executor, futures, entry.getKey(), entry.getValue());
+			}
+
+			_waitFutures(futures, errors, 0);
+
+			if (_log.isInfoEnabled()) {
+				_log.info(
+					"Reindexed " + count + " entities in " + getBatchCount() +
+						" batches, failed batches: " + getFailedBatchCount() +
+							", errors: " + errors.size() +
+								", total batch time: " + getTotalBatchTime() +
+									" ms, max batch time: " +
+										getMaxBatchTime() + " ms");
+			}
+
+			return errors;
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException(ie);
+		}
+		finally {
+			executor.shutdownNow();
+
+			if (iterator instanceof Closeable) {
+				try {
+					((Closeable)iterator).close();
+				}
+				catch (IOException ioe) {
+					if (_log.isDebugEnabled()) {
+						_log.debug(ioe, ioe);
+					}
+				}
+			}
+		}
+	}
+
+	protected Callable<Map<Data, String>> createCallable(
+		final String className, final List<Data> batch, final int batchNumber) {
+
+		final long companyId = CompanyThreadLocal.getCompanyId();
+		final boolean ignoreCase = DataUtil.getIgnoreCase();
+
+		return new Callable<Map<Data, String>>() {
+
+			@Override
+			public Map<Data, String> call() throws Exception {
+				long oldCompanyId = CompanyThreadLocal.getCompanyId();
+				boolean oldIgnoreCase = DataUtil.getIgnoreCase();
+
+				long startTime = System.currentTimeMillis();
+
+				Map<Data, String> errors = null;
+
+				try {
+					DataUtil.setIgnoreCase(ignoreCase);
+
+					CompanyThreadLocal.setCompanyId(companyId);
+
+					errors = indexSearchHelper.reindexBatch(className, batch);
+
+					return errors;
+				}
+				finally {
+					DataUtil.setIgnoreCase(oldIgnoreCase);
+
+					CompanyThreadLocal.setCompanyId(oldCompanyId);
+
+					_updateStatistics(
+						className, batch, batchNumber, errors,
+						System.currentTimeMillis() - startTime);
+				}
+			}
+
+		};
+	}
+
+	protected final int batchSize;
+	protected final IndexSearchHelper indexSearchHelper;
+	protected final int threads;
+
+	private void _submit(
+		ThreadPoolExecutor executor,
+		Map<Future<Map<Data, String>>, List<Data>> futures, String className,
+		List<Data> batch) {
+
+		Callable<Map<Data, String>> callable = createCallable(
+			className, batch, _batchCount.incrementAndGet());
+
+		futures.put(executor.submit(callable), batch);
+	}
+
+	private void _updateStatistics(
+		String className, List<Data> batch, int batchNumber,
+		Map<Data, String> errors, long time) {
+
+		_totalBatchTime.addAndGet(time);
+
+		long maxBatchTime = _maxBatchTime.get();
+
+		while ((time > maxBatchTime) &&
+			   !_maxBatchTime.compareAndSet(maxBatchTime, time)) {
+
+			maxBatchTime = _maxBatchTime.get();
+		}
+
+		if ((errors == null) || !errors.isEmpty()) {
+			_failedBatchCount.incrementAndGet();
+		}
+
+		if (_log.isDebugEnabled()) {
+			String errorCount = "all";
+
+			if (errors != null) {
+				errorCount = String.valueOf(errors.size());
+			}
+
+			_log.debug(
+				"Batch " + batchNumber + " of " + className + ": " +
+					batch.size() + " entities, " + time + " ms, errors: " +
+						errorCount);
+		}
+	}
+
+	/**
+	 * Waits for the oldest batches until no more than maxFutures are pending,
+	 * adding their errors.
+	 */
+	private void _waitFutures(
+			Map<Future<Map<Data, String>>, List<Data>> futures,
+			Map<Data, String> errors, int maxFutures)
+		throws InterruptedException {
+
+		Iterator<Map.Entry<Future<Map<Data, String>>, List<Data>>> iterator =
+			futures.entrySet().iterator();
+
+		while ((futures.size() > maxFutures) && iterator.hasNext()) {
+			Map.Entry<Future<Map<Data, String>>, List<Data>> entry =
+				iterator.next();
+
+			iterator.remove();
+
+			try {
+				errors.putAll(entry.getKey().get());
+			}
+			catch (ExecutionException ee) {
+				Throwable cause = ee.getCause();
+
+				for (Data data : entry.getValue()) {
+					errors.put(
+						data, cause.getClass() + " - " + cause.getMessage());
+				}
+			}
+		}
+	}
+
+	private static Log _log = LogFactoryUtil.getLog(BulkReindexer.class);
+
+	private final AtomicInteger _batchCount = new AtomicInteger();
+	private final AtomicInteger _failedBatchCount = new AtomicInteger();
+	private final AtomicLong _maxBatchTime = new AtomicLong();
+	private final AtomicLong _totalBatchTime = new AtomicLong();
+
+}
\ No newline at end of file
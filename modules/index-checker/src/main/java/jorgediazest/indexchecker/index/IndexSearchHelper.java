@@ -14,15 +14,19 @@
 
 package jorgediazest.indexchecker.index;
 
+import com.liferay.petra.string.StringPool;
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
 import com.liferay.portal.kernel.language.LanguageUtil;
 import com.liferay.portal.kernel.log.Log;
 import com.liferay.portal.kernel.log.LogFactoryUtil;
+import com.liferay.portal.kernel.model.BaseModel;
 import com.liferay.portal.kernel.search.BooleanClauseOccur;
 import com.liferay.portal.kernel.search.BooleanQuery;
 import com.liferay.portal.kernel.search.Document;
 import com.liferay.portal.kernel.search.Field;
 import com.liferay.portal.kernel.search.Hits;
 import com.liferay.portal.kernel.search.IndexSearcherHelperUtil;
+import com.liferay.portal.kernel.search.IndexWriterHelperUtil;
 import com.liferay.portal.kernel.search.Indexer;
 import com.liferay.portal.kernel.search.IndexerRegistryUtil;
 import com.liferay.portal.kernel.search.ParseException;
@@ -33,27 +37,42 @@ import com.liferay.portal.kernel.search.Sort;
 import com.liferay.portal.kernel.search.TermRangeQuery;
 import com.liferay.portal.kernel.search.generic.BooleanQueryImpl;
 import com.liferay.portal.kernel.search.generic.TermRangeQueryImpl;
-import com.liferay.portal.kernel.util.LocaleUtil;
-import com.liferay.portal.kernel.util.LocalizationUtil;
+import com.liferay.portal.kernel.security.auth.CompanyThreadLocal;
+import com.liferay.portal.kernel.util.ArrayUtil;
 import com.liferay.portal.kernel.util.ReleaseInfo;
 import com.liferay.portal.kernel.util.Validator;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 
 import jorgediazest.indexchecker.model.IndexCheckerQueryHelper;
+import jorgediazest.indexchecker.util.CheckMetrics;
+import jorgediazest.indexchecker.util.CheckMetrics.Phase;
+import jorgediazest.indexchecker.util.CheckMetrics.PhaseTimer;
 import jorgediazest.indexchecker.util.ConfigurationUtil;
 import jorgediazest.indexchecker.util.PortletPropsValues;
 
+import jorgediazest.util.collection.LongHashMap;
+import jorgediazest.util.collection.LongMultiValueMap;
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataPageIterator;
 import jorgediazest.util.data.DataUtil;
 import jorgediazest.util.model.Model;
 
@@ -76,34 +95,89 @@ public class IndexSearchHelper {
 		indexer.delete(value.getCompanyId(), uid.toString());
 	}
 
-	public Map<Data, String> deleteAndCheck(Collection<Data> dataCollection) {
+	/**
+	 * Deletes the index documents of entities not found in the database, in
+	 * batches of documents of the same class name and company. Entities are
+	 * checked again in the database before, with a single query per batch,
+	 * and the ones that exist are reindexed. Index writes are limited to
+	 * index.write.rate.limit per second.
+	 */
+	public Map<Data, String> deleteOrphans(Collection<Data> dataCollection) {
+		return deleteOrphans(dataCollection.iterator());
+	}
+
+	/**
+	 * Deletes the orphan documents while they are read from the iterator. A
+	 * batch is deleted each time the batch size is reached for a class name
+	 * and company, the rest are deleted at the end. The iterator is closed
+	 * when it is Closeable.
+	 */
+	public Map<Data, String> deleteOrphans(Iterator<Data> iterator) {
+		WriteRateLimiter writeRateLimiter = new WriteRateLimiter(
+			PortletPropsValues.INDEX_WRITE_RATE_LIMIT);
+
+		int batchSize = Math.max(PortletPropsValues.REINDEX_BATCH_SIZE, 1);
+
+		Map<String, List<Data>> batchMap = new LinkedHashMap<>();
 		Map<Data, String> errors = new HashMap<>();
 
-		int i = 0;
+		List<Data> batch = null;
 
-		for (Data data : dataCollection) {
-			/* Delete object from index */
-			try {
-				delete(data);
+		try {
+			while (iterator.hasNext()) {
+				Data data = iterator.next();
 
-				if (_log.isDebugEnabled()) {
-					_log.debug(
-						"Deleting " + i++ + " uid: " + data.get(Field.UID));
+				String key = data.getEntryClassName() + StringPool.UNDERLINE +
+					data.getCompanyId();
+
+				batch = batchMap.get(key);
+
+				if (batch == null) {
+					batch = new ArrayList<>();
+
+					batchMap.put(key, batch);
 				}
-			}
-			catch (SearchException e) {
-				errors.put(data, e.getClass() + " - " + e.getMessage());
 
-				if (_log.isDebugEnabled()) {
-					_log.debug(e.getClass() + " - " + e.getMessage(), e);
+				batch.add(data);
+
+				if (batch.size() >= batchSize) {
+					batchMap.remove(key);
+
+					errors.putAll(deleteOrphansBatch(batch, writeRateLimiter));
 				}
+
+				batch = null;
 			}
 
-			/* Reindex object, perhaps we deleted it by mistake */
-			try {
-				reindex(data);
+			Iterator<List<Data>> batchIterator = batchMap.values().iterator();
+
+			while (batchIterator.hasNext()) {
+				batch = batchIterator.next();
+
+				errors.putAll(deleteOrphansBatch(batch, writeRateLimiter));
+
+				batchIterator.remove();
 			}
-			catch (Exception e) {
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+
+			if (batch != null) {
+				for (Data data : batch) {
+					errors.put(data, ie.getClass() + " - " + ie.getMessage());
+				}
+			}
+		}
+		finally {
+			if (iterator instanceof Closeable) {
+				try {
+					((Closeable)iterator).close();
+				}
+				catch (IOException ioe) {
+					if (_log.isDebugEnabled()) {
+						_log.debug(ioe, ioe);
+					}
+				}
 			}
 		}
 
@@ -113,11 +187,7 @@ public class IndexSearchHelper {
 	public void fillDataObject(Data data, String[] attributes, Document doc) {
 		data.set(Field.UID, doc.getUID());
 
-		Set<Locale> localesSet = LanguageUtil.getAvailableLocales();
-
-		Locale[] locales = localesSet.toArray(new Locale[0]);
-
-		Locale siteLocale = LocaleUtil.getSiteDefault();
+		LocalizedFieldNames localizedFieldNames = getLocalizedFieldNames();
 
 		for (String attribute : attributes) {
 			String attrDoc = ConfigurationUtil.getIndexAttributeName(
@@ -130,21 +200,12 @@ public class IndexSearchHelper {
 			if (typeClass.equals(String.class) ||
 				typeClass.equals(Object.class)) {
 
-				listValueMap = getLocalizedMap(locales, doc, attrDoc);
+				listValueMap = getLocalizedMap(
+					localizedFieldNames, doc, attrDoc);
 			}
 
 			if ((listValueMap != null) && !listValueMap.isEmpty()) {
-				String[] xml = new String[listValueMap.size()];
-
-				int pos = 0;
-
-				for (Map<Locale, String> valueMap : listValueMap) {
-					xml[pos++] = LocalizationUtil.updateLocalization(
-						valueMap, "", "data",
-						LocaleUtil.toLanguageId(siteLocale));
-				}
-
-				data.set(attribute, xml);
+				data.setLocalizedValues(attribute, listValueMap);
 			}
 			else if (doc.hasField(attrDoc)) {
 				Field field = doc.getField(attrDoc);
@@ -160,11 +221,43 @@ public class IndexSearchHelper {
 			List<Long> groupIds, Date startModifiedDate, Date endModifiedDate)
 		throws ParseException, SearchException {
 
+		return getIndexData(
+			model, relatedModels, indexAttributesToQuery, companyId, groupIds,
+			startModifiedDate, endModifiedDate, null, null);
+	}
+
+	/**
+	 * Returns the index data with entryClassPK in the range
+	 * [minEntryClassPK, maxEntryClassPK). Null values are not limited. Ranges
+	 * are only supported if isEntryClassPKRangeSupported returns true.
+	 */
+	public Set<Data> getIndexData(
+			Model model, Set<Model> relatedModels,
+			Set<String> indexAttributesToQuery, long companyId,
+			List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+			Long minEntryClassPK, Long maxEntryClassPK)
+		throws ParseException, SearchException {
+
 		SearchContext searchContext = getIndexSearchContext(model, companyId);
 
 		BooleanQuery query = getIndexQuery(
 			model, groupIds, startModifiedDate, endModifiedDate, searchContext);
 
+		boolean entryClassPKRange = false;
+
+		if ((minEntryClassPK != null) || (maxEntryClassPK != null)) {
+			if (!isEntryClassPKRangeSupported()) {
+				throw new IllegalArgumentException(
+					"entryClassPK ranges are not supported by this version");
+			}
+
+			query.add(
+				getEntryClassPKRangeQuery(minEntryClassPK, maxEntryClassPK),
+				BooleanClauseOccur.MUST);
+
+			entryClassPKRange = true;
+		}
+
 		String[] sortAttributes = {"createDate", "modifiedDate"};
 
 		if (ReleaseInfo.getBuildNumber() >= 7401) {
@@ -178,9 +271,24 @@ public class IndexSearchHelper {
 
 		Sort[] sorts = getIndexSorting(model, sortAttributes);
 
+		String[] attributes = indexAttributesToQuery.toArray(new String[0]);
+
+		int partitions = PortletPropsValues.INDEX_SEARCH_PARTITIONS;
+
+		if (!entryClassPKRange && isEntryClassPKRangeSupported() &&
+			(partitions > 1)) {
+
+			long[] bounds = getEntryClassPKPartitionBounds(model, partitions);
+
+			if (bounds != null) {
+				return getIndexDataPartitioned(
+					model, relatedModels, attributes, sorts, companyId,
+					groupIds, startModifiedDate, endModifiedDate, bounds);
+			}
+		}
+
 		return getIndexData(
-			model, relatedModels, indexAttributesToQuery.toArray(new String[0]),
-			sorts, searchContext, query);
+			model, relatedModels, attributes, sorts, searchContext, query);
 	}
 
 	public Set<Data> getIndexData(
@@ -188,31 +296,19 @@ public class IndexSearchHelper {
 			Sort[] sorts, SearchContext searchContext, BooleanQuery query)
 		throws ParseException, SearchException {
 
-		List<String> indexFieldsList = new ArrayList<>();
-
-		indexFieldsList.add(Field.UID);
-		indexFieldsList.add(Field.ENTRY_CLASS_NAME);
-		indexFieldsList.add(Field.ENTRY_CLASS_PK);
-
-		for (String attribute : attributes) {
-			String indexField = ConfigurationUtil.getIndexAttributeName(
-				model, attribute);
+		String[] indexFields = getIndexFields(model, attributes);
 
-			indexFieldsList.add(indexField);
-			indexFieldsList.add(indexField.concat("*"));
-		}
-
-		String[] indexFields = indexFieldsList.toArray(new String[0]);
-
-		int indexSearchLimit = PortletPropsValues.INDEX_SEARCH_LIMIT;
-
-		int size = Math.min((int)model.count() * 2, indexSearchLimit);
+		AdaptivePageSize adaptivePageSize = createAdaptivePageSize(sorts);
 
 		Set<Data> indexData = new HashSet<>();
 
 		TermRangeQuery termRangeQuery = null;
 
 		do {
+			int size = adaptivePageSize.getSize();
+
+			long startTime = System.nanoTime();
+
 			Document[] docs = executeSearch(
 				searchContext, query, sorts, termRangeQuery, indexFields, size);
 
@@ -220,25 +316,23 @@ public class IndexSearchHelper {
 				break;
 			}
 
-			for (Document doc : docs) {
-				String entryClassName = doc.get(Field.ENTRY_CLASS_NAME);
+			adaptivePageSize.update(
+				System.nanoTime() - startTime,
+				AdaptivePageSize.getDocumentsSize(docs));
 
-				if (Validator.isNull(entryClassName)) {
-					_log.warn("entryClassName is null");
+			for (Document doc : docs) {
+				Data data = createDataObject(
+					model, relatedModels, attributes, doc);
 
-					continue;
-				}
-				else if (!entryClassName.equals(model.getClassName())) {
-					_log.warn("Wrong entryClassName: " + entryClassName);
+				if (data != null) {
+					indexData.add(data);
 				}
+			}
 
-				Data data = new Data(model);
-
-				data.addModelTableInfo(relatedModels);
-
-				fillDataObject(data, attributes, doc);
+			/* A short page is the last one */
 
-				indexData.add(data);
+			if (docs.length < size) {
+				break;
 			}
 
 			termRangeQuery = getTermRangeQuery(
@@ -249,6 +343,128 @@ public class IndexSearchHelper {
 		return indexData;
 	}
 
+	/**
+	 * Returns the index data sorted by entryClassPK, reading it page by page.
+	 * Only supported if {@link #isStreamingSupported(Model)} returns true.
+	 */
+	public Iterator<Data> getIndexDataIterator(
+			final Model model, final Set<Model> relatedModels,
+			Set<String> indexAttributesToQuery, long companyId,
+			List<Long> groupIds, Date startModifiedDate, Date endModifiedDate)
+		throws ParseException {
+
+		final SearchContext searchContext = getIndexSearchContext(
+			model, companyId);
+
+		final BooleanQuery query = getIndexQuery(
+			model, groupIds, startModifiedDate, endModifiedDate, searchContext);
+
+		final Sort[] sorts = getIndexSorting(
+			model, new String[] {Field.ENTRY_CLASS_PK});
+
+		final String[] attributes = indexAttributesToQuery.toArray(
+			new String[0]);
+
+		final String[] indexFields = getIndexFields(model, attributes);
+
+		final AdaptivePageSize adaptivePageSize = createAdaptivePageSize(
+			sorts);
+
+		return new DataPageIterator() {
+
+			@Override
+			protected Collection<Data> nextPage() throws Exception {
+				PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+					Phase.INDEX);
+
+				try {
+					int size = adaptivePageSize.getSize();
+
+					long startTime = System.nanoTime();
+
+					Document[] docs = executeSearch(
+						searchContext, query, sorts, termRangeQuery,
+						indexFields, size);
+
+					if ((docs == null) || (docs.length == 0)) {
+						return null;
+					}
+
+					adaptivePageSize.update(
+						System.nanoTime() - startTime,
+						AdaptivePageSize.getDocumentsSize(docs));
+
+					List<Data> page = new ArrayList<>(docs.length);
+
+					for (Document doc : docs) {
+						Data data = createDataObject(
+							model, relatedModels, attributes, doc);
+
+						if (data == null) {
+							continue;
+						}
+
+						postProcessData(data);
+
+						page.add(data);
+					}
+
+					String lastEntryClassPK = docs[docs.length - 1].get(
+						Field.ENTRY_CLASS_PK);
+
+					if ((docs.length < size) ||
+						Validator.isNull(lastEntryClassPK)) {
+
+						finished = true;
+					}
+					else {
+						termRangeQuery = new TermRangeQueryImpl(
+							Field.ENTRY_CLASS_PK, lastEntryClassPK, null, false,
+							true);
+					}
+
+					return page;
+				}
+				finally {
+					CheckMetrics.endPhase(previousPhaseTimer);
+				}
+			}
+
+			protected TermRangeQuery termRangeQuery = null;
+
+		};
+	}
+
+	/**
+	 * Returns true if the index has the numeric sortable field of
+	 * entryClassPK, so ranges of entryClassPK are compared as numbers. It was
+	 * added in 7.4.1 by LPS-132030.
+	 */
+	public boolean isEntryClassPKRangeSupported() {
+		if (ReleaseInfo.getBuildNumber() >= 7401) {
+			return true;
+		}
+
+		return false;
+	}
+
+	public boolean isStreamingSupported(Model model) {
+		if (ReleaseInfo.getBuildNumber() < 7401) {
+			return false;
+		}
+
+		List<String> keyAttributes = model.getKeyAttributes();
+
+		if (keyAttributes.size() != 1) {
+			return false;
+		}
+
+		String indexAttribute = ConfigurationUtil.getIndexAttributeName(
+			model, keyAttributes.get(0));
+
+		return Field.ENTRY_CLASS_PK.equals(indexAttribute);
+	}
+
 	public void postProcessData(Data data) {
 		Object treePath = data.get("treePath");
 
@@ -258,37 +474,218 @@ public class IndexSearchHelper {
 	}
 
 	public Map<Data, String> reindex(Collection<Data> dataCollection) {
-		Map<Data, String> errors = new HashMap<>();
+		return reindex(dataCollection.iterator());
+	}
 
-		int i = 0;
+	public void reindex(Data value) throws SearchException {
+		String className = value.getEntryClassName();
 
-		for (Data data : dataCollection) {
-			try {
-				reindex(data);
+		Indexer indexer = IndexerRegistryUtil.nullSafeGetIndexer(className);
 
-				if (_log.isDebugEnabled()) {
-					_log.debug(
-						"Reindexing " + i++ + " pk: " + data.getPrimaryKey());
-				}
+		indexer.reindex(className, value.getPrimaryKey());
+	}
+
+	/**
+	 * Reindexes the data while it is read from the iterator, see
+	 * BulkReindexer.
+	 */
+	public Map<Data, String> reindex(Iterator<Data> iterator) {
+		BulkReindexer bulkReindexer = new BulkReindexer(
+			this, PortletPropsValues.REINDEX_BATCH_SIZE,
+			PortletPropsValues.REINDEX_THREADS);
+
+		return bulkReindexer.reindex(iterator);
+	}
+
+	/**
+	 * Reindexes data of the same class name with a single indexer call, with
+	 * the entities read in a single query. Entities that are not found and
+	 * batches whose bulk reindex fails are reindexed one by one, to get the
+	 * errors of each entity.
+	 */
+	public Map<Data, String> reindexBatch(String className, List<Data> batch) {
+		Model model = batch.get(0).getModel();
+
+		if ((batch.size() == 1) || !isBulkReindexSupported(model)) {
+			return reindexEach(batch);
+		}
+
+		try {
+			LongHashMap<Data> dataMap = new LongHashMap<>(batch.size());
+
+			for (Data data : batch) {
+				dataMap.put(data.getPrimaryKey(), data);
 			}
-			catch (SearchException e) {
-				errors.put(data, e.getClass() + " - " + e.getMessage());
 
-				if (_log.isDebugEnabled()) {
-					_log.debug(e.getClass() + " - " + e.getMessage(), e);
+			List<?> results = model.executeDynamicQuery(
+				model.getAttributeCriterion(
+					model.getPrimaryKeyAttribute(),
+					new ArrayList<>(dataMap.keySet())));
+
+			List<Object> objects = new ArrayList<>(results.size());
+
+			for (Object result : results) {
+				BaseModel<?> baseModel = (BaseModel<?>)result;
+
+				Long primaryKey = DataUtil.castLong(
+					baseModel.getPrimaryKeyObj());
+
+				if (primaryKey != null) {
+					dataMap.remove(primaryKey.longValue());
 				}
+
+				objects.add(baseModel);
+			}
+
+			if (!objects.isEmpty()) {
+				Indexer<Object> indexer =
+					IndexerRegistryUtil.nullSafeGetIndexer(className);
+
+				indexer.reindex(objects);
 			}
+
+			return reindexEach(dataMap.values());
 		}
+		catch (Exception e) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Bulk reindex of " + batch.size() + " " + className +
+						" failed, reindexing them one by one: " +
+							e.getMessage(),
+					e);
+			}
 
-		return errors;
+			return reindexEach(batch);
+		}
 	}
 
-	public void reindex(Data value) throws SearchException {
-		String className = value.getEntryClassName();
+	/**
+	 * Pages are only adapted if the first sort field is entryClassPK, that is
+	 * unique. Pages sorted by createDate or modifiedDate start after the last
+	 * date of the previous page, so a small page whose documents share the
+	 * same date would skip the rest of documents of that date. In that case
+	 * the page size is fixed to the index search limit.
+	 */
+	protected AdaptivePageSize createAdaptivePageSize(Sort[] sorts) {
+		if ((sorts.length == 0) ||
+			!Field.ENTRY_CLASS_PK.equals(sorts[0].getFieldName())) {
+
+			return new AdaptivePageSize(
+				PortletPropsValues.INDEX_SEARCH_LIMIT,
+				PortletPropsValues.INDEX_SEARCH_LIMIT, 0, 0);
+		}
 
-		Indexer indexer = IndexerRegistryUtil.nullSafeGetIndexer(className);
+		return new AdaptivePageSize(
+			PortletPropsValues.INDEX_SEARCH_PAGE_SIZE_MIN,
+			PortletPropsValues.INDEX_SEARCH_LIMIT,
+			PortletPropsValues.INDEX_SEARCH_PAGE_TARGET_TIME,
+			PortletPropsValues.INDEX_SEARCH_PAGE_TARGET_SIZE);
+	}
 
-		indexer.reindex(className, value.getPrimaryKey());
+	protected Data createDataObject(
+		Model model, Set<Model> relatedModels, String[] attributes,
+		Document doc) {
+
+		String entryClassName = doc.get(Field.ENTRY_CLASS_NAME);
+
+		if (Validator.isNull(entryClassName)) {
+			_log.warn("entryClassName is null");
+
+			return null;
+		}
+		else if (!entryClassName.equals(model.getClassName())) {
+			_log.warn("Wrong entryClassName: " + entryClassName);
+		}
+
+		Data data = new Data(model);
+
+		data.addModelTableInfo(relatedModels);
+
+		fillDataObject(data, attributes, doc);
+
+		return data;
+	}
+
+	/**
+	 * Deletes a batch of index documents of the same class name and company
+	 * with a single index request and reindexes the entities that exist in
+	 * the database.
+	 */
+	protected Map<Data, String> deleteOrphansBatch(
+			List<Data> batch, WriteRateLimiter writeRateLimiter)
+		throws InterruptedException {
+
+		Data firstData = batch.get(0);
+
+		String className = firstData.getEntryClassName();
+		Long companyId = firstData.getCompanyId();
+
+		List<Data> existingData = getExistingData(batch);
+
+		List<String> uids = new ArrayList<>(batch.size());
+
+		Map<Data, String> errors = new HashMap<>();
+
+		for (Data data : batch) {
+			Object uid = data.get(Field.UID);
+
+			if (uid == null) {
+				errors.put(data, "uid is null");
+			}
+			else {
+				uids.add(uid.toString());
+			}
+		}
+
+		writeRateLimiter.acquire(uids.size());
+
+		try {
+			if (companyId == null) {
+				throw new SearchException("companyId is null");
+			}
+
+			Indexer<?> indexer = IndexerRegistryUtil.nullSafeGetIndexer(
+				className);
+
+			IndexWriterHelperUtil.deleteDocuments(
+				indexer.getSearchEngineId(), companyId, uids,
+				indexer.isCommitImmediately());
+		}
+		catch (SearchException se) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Bulk delete of " + uids.size() + " " + className +
+						" documents failed, deleting them one by one: " +
+							se.getMessage(),
+					se);
+			}
+
+			for (Data data : batch) {
+				try {
+					delete(data);
+				}
+				catch (Exception e) {
+					errors.put(data, e.getClass() + " - " + e.getMessage());
+				}
+			}
+		}
+
+		/* Entities that exist were deleted from the index, so they are
+		 * reported as errors if they can't be reindexed */
+
+		if (!existingData.isEmpty()) {
+			writeRateLimiter.acquire(existingData.size());
+
+			errors.putAll(reindexBatch(className, existingData));
+		}
+
+		if (!errors.isEmpty() && _log.isWarnEnabled()) {
+			_log.warn(
+				"Unable to remove or reindex " + errors.size() + " of " +
+					batch.size() + " " + className + " orphan documents");
+		}
+
+		return errors;
 	}
 
 	protected Document[] executeSearch(
@@ -335,6 +732,12 @@ public class IndexSearchHelper {
 			_log.debug(docs.length + " hits returned");
 		}
 
+		CheckMetrics checkMetrics = CheckMetrics.getCurrent();
+
+		if (checkMetrics != null) {
+			checkMetrics.addIndexPage(docs.length);
+		}
+
 		return docs;
 	}
 
@@ -377,6 +780,312 @@ public class IndexSearchHelper {
 		return id;
 	}
 
+	/**
+	 * Returns the data whose entity exists in the database, checked with a
+	 * single primary key query. If the entities can't be checked by primary
+	 * key, all the data is returned.
+	 */
+	protected List<Data> getExistingData(List<Data> dataList) {
+		Model model = dataList.get(0).getModel();
+
+		if (!isBulkReindexSupported(model)) {
+			return dataList;
+		}
+
+		LongMultiValueMap<Data> dataMap = new LongMultiValueMap<>(
+			dataList.size());
+
+		for (Data data : dataList) {
+			dataMap.add(data.getPrimaryKey(), data);
+		}
+
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		List<Data> existingData = new ArrayList<>();
+
+		try {
+			List<?> results = model.executeDynamicQuery(
+				model.getAttributeCriterion(
+					primaryKeyAttribute, new ArrayList<>(dataMap.keySet())),
+				model.getPropertyProjection(
+					new String[] {primaryKeyAttribute}));
+
+			for (Object result : results) {
+				if (result instanceof Object[]) {
+					result = ((Object[])result)[0];
+				}
+
+				Long primaryKey = DataUtil.castLong(result);
+
+				if ((primaryKey != null) && dataMap.containsKey(primaryKey)) {
+					existingData.addAll(dataMap.get(primaryKey.longValue()));
+				}
+			}
+		}
+		catch (Exception e) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Error checking " + dataList.size() + " " +
+						model.getClassName() + " in database: " +
+							e.getMessage(),
+					e);
+			}
+
+			return dataList;
+		}
+
+		return existingData;
+	}
+
+	protected String[] getIndexFields(Model model, String[] attributes) {
+		List<String> indexFieldsList = new ArrayList<>();
+
+		indexFieldsList.add(Field.UID);
+		indexFieldsList.add(Field.ENTRY_CLASS_NAME);
+		indexFieldsList.add(Field.ENTRY_CLASS_PK);
+
+		for (String attribute : attributes) {
+			String indexField = ConfigurationUtil.getIndexAttributeName(
+				model, attribute);
+
+			indexFieldsList.add(indexField);
+			indexFieldsList.add(indexField.concat("*"));
+		}
+
+		return indexFieldsList.toArray(new String[0]);
+	}
+
+	/**
+	 * Returns the lower bounds of the entryClassPK partitions, except the
+	 * first one, calculated from the min and max values stored in database.
+	 * First and last partitions are open ended, so bounds are only used to
+	 * balance the partitions. Returns null if the range is smaller than the
+	 * index search limit, as there can't be more rows than values in the
+	 * range, so no count query is needed.
+	 */
+	protected long[] getEntryClassPKPartitionBounds(
+		Model model, int partitions) {
+
+		String attribute = model.getPrimaryKeyAttribute();
+
+		for (String keyAttribute : model.getKeyAttributes()) {
+			String indexAttribute = ConfigurationUtil.getIndexAttributeName(
+				model, keyAttribute);
+
+			if (Field.ENTRY_CLASS_PK.equals(indexAttribute)) {
+				attribute = keyAttribute;
+
+				break;
+			}
+		}
+
+		if (Validator.isNull(attribute) || attribute.equals("pk")) {
+			attribute = model.getPrimaryKeyAttribute();
+		}
+
+		if (Validator.isNull(attribute)) {
+			return null;
+		}
+
+		Object[] minMax;
+
+		try {
+			ProjectionList projectionList = model.getPropertyProjection(
+				new String[] {
+					"min(" + attribute + ")", "max(" + attribute + ")"
+				});
+
+			List<?> results = model.executeDynamicQuery(null, projectionList);
+
+			if (results.isEmpty()) {
+				return null;
+			}
+
+			minMax = (Object[])results.get(0);
+		}
+		catch (Exception e) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Unable to get min and max values of " + attribute +
+						" of " + model.getName(),
+					e);
+			}
+
+			return null;
+		}
+
+		Long min = DataUtil.castLong(minMax[0]);
+		Long max = DataUtil.castLong(minMax[1]);
+
+		if ((min == null) || (max == null) ||
+			((max - min) < PortletPropsValues.INDEX_SEARCH_LIMIT)) {
+
+			return null;
+		}
+
+		long step = Math.max((max - min) / partitions, 1);
+
+		List<Long> bounds = new ArrayList<>();
+
+		for (int i = 1; i < partitions; i++) {
+			long bound = min + (step * i);
+
+			if (bound > max) {
+				break;
+			}
+
+			bounds.add(bound);
+		}
+
+		return ArrayUtil.toArray(bounds.toArray(new Long[0]));
+	}
+
+	/**
+	 * Returns the query of entryClassPK values in the range [lower, upper).
+	 * Null values are not limited. The range is applied to the numeric
+	 * sortable field, as entryClassPK is a keyword field and its ranges are
+	 * compared as text, so ["5000", "41250") would match nothing.
+	 */
+	protected TermRangeQuery getEntryClassPKRangeQuery(
+		Long lowerEntryClassPK, Long upperEntryClassPK) {
+
+		String lowerTerm = null;
+		String upperTerm = null;
+
+		if (lowerEntryClassPK != null) {
+			lowerTerm = String.valueOf(lowerEntryClassPK);
+		}
+
+		if (upperEntryClassPK != null) {
+			upperTerm = String.valueOf(upperEntryClassPK);
+		}
+
+		return new TermRangeQueryImpl(
+			Field.getSortableFieldName(Field.ENTRY_CLASS_PK), lowerTerm,
+			upperTerm, true, false);
+	}
+
+	protected Set<Data> getIndexDataPartitioned(
+			final Model model, final Set<Model> relatedModels,
+			final String[] attributes, final Sort[] sorts,
+			final long companyId, List<Long> groupIds, Date startModifiedDate,
+			Date endModifiedDate, long[] bounds)
+		throws ParseException, SearchException {
+
+		final boolean ignoreCase = DataUtil.getIgnoreCase();
+		final CheckMetrics checkMetrics = CheckMetrics.getCurrent();
+
+		List<ForkJoinTask<Set<Data>>> tasks = new ArrayList<>();
+
+		for (int i = 0; i <= bounds.length; i++) {
+			Long lowerEntryClassPK = null;
+			Long upperEntryClassPK = null;
+
+			if (i > 0) {
+				lowerEntryClassPK = bounds[i - 1];
+			}
+
+			if (i < bounds.length) {
+				upperEntryClassPK = bounds[i];
+			}
+
+			final SearchContext searchContext = getIndexSearchContext(
+				model, companyId);
+
+			final BooleanQuery query = new BooleanQueryImpl();
+
+			query.add(
+				getIndexQuery(
+					model, groupIds, startModifiedDate, endModifiedDate,
+					searchContext),
+				BooleanClauseOccur.MUST);
+			query.add(
+				getEntryClassPKRangeQuery(lowerEntryClassPK, upperEntryClassPK),
+				BooleanClauseOccur.MUST);
+
+			Callable<Set<Data>> callable = new Callable<Set<Data>>() {
+
+				@Override
+				public Set<Data> call() throws Exception {
+					boolean oldIgnoreCase = DataUtil.getIgnoreCase();
+					long oldCompanyId = CompanyThreadLocal.getCompanyId();
+
+					PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+						checkMetrics, Phase.INDEX);
+
+					try {
+						DataUtil.setIgnoreCase(ignoreCase);
+
+						CompanyThreadLocal.setCompanyId(companyId);
+
+						return getIndexData(
+							model, relatedModels, attributes, sorts,
+							searchContext, query);
+					}
+					finally {
+						DataUtil.setIgnoreCase(oldIgnoreCase);
+
+						CompanyThreadLocal.setCompanyId(oldCompanyId);
+
+						CheckMetrics.endPhase(previousPhaseTimer);
+					}
+				}
+
+			};
+
+			tasks.add(ForkJoinTask.adapt(callable));
+		}
+
+		/* Partitions are forked in the pool of the check, or in the common
+		 * pool if they are not called from a pool, so the number of threads
+		 * is bounded by the pool parallelism */
+
+		for (ForkJoinTask<Set<Data>> task : tasks) {
+			task.fork();
+		}
+
+		try {
+			Set<Data> indexData = new HashSet<>();
+
+			for (ForkJoinTask<Set<Data>> task : tasks) {
+				indexData.addAll(task.get());
+			}
+
+			return indexData;
+		}
+		catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+
+			/* Checked exceptions of the adapted callables are wrapped */
+
+			if ((cause instanceof RuntimeException) &&
+				(cause.getCause() != null)) {
+
+				cause = cause.getCause();
+			}
+
+			if (cause instanceof SearchException) {
+				throw (SearchException)cause;
+			}
+
+			if (cause instanceof ParseException) {
+				throw (ParseException)cause;
+			}
+
+			throw new SearchException(cause);
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+
+			throw new SearchException(ie);
+		}
+		finally {
+			for (ForkJoinTask<Set<Data>> task : tasks) {
+				task.cancel(false);
+			}
+		}
+	}
+
 	protected BooleanQuery getIndexQuery(
 			Model model, List<Long> groupIds, Date startModifiedDate,
 			Date endModifiedDate, SearchContext searchContext)
@@ -447,22 +1156,59 @@ public class IndexSearchHelper {
 		return sorts;
 	}
 
+	/**
+	 * Returns the localized field names of the available locales. They are
+	 * calculated again only if the available locales change.
+	 */
+	protected LocalizedFieldNames getLocalizedFieldNames() {
+		Set<Locale> localesSet = LanguageUtil.getAvailableLocales();
+
+		LocalizedFieldNames localizedFieldNames = _localizedFieldNames;
+
+		if ((localizedFieldNames == null) ||
+			!localizedFieldNames.hasLocales(localesSet)) {
+
+			localizedFieldNames = new LocalizedFieldNames(localesSet);
+
+			_localizedFieldNames = localizedFieldNames;
+		}
+
+		return localizedFieldNames;
+	}
+
+	/**
+	 * Returns one map of localized values for each value position of the
+	 * localized fields of the attribute.
+	 */
 	protected List<Map<Locale, String>> getLocalizedMap(
-		Locale[] locales, Document doc, String attribute) {
+		LocalizedFieldNames localizedFieldNames, Document doc,
+		String attribute) {
 
-		List<Map<Locale, String>> listValueMap = new ArrayList<>();
+		Locale[] locales = localizedFieldNames.getLocales();
+		String[] fieldNames = localizedFieldNames.getFieldNames(attribute);
 
-		int pos = 0;
+		Map<String, Field> fields = doc.getFields();
 
-		while (true) {
-			Map<Locale, String> valueMap = _getLocalizedMap(
-				locales, doc, attribute, pos++);
+		List<Map<Locale, String>> listValueMap = new ArrayList<>();
 
-			if (valueMap.isEmpty()) {
-				break;
+		for (int i = 0; i < locales.length; i++) {
+			Field field = fields.get(fieldNames[i]);
+
+			if (field == null) {
+				continue;
 			}
 
-			listValueMap.add(valueMap);
+			String[] values = field.getValues();
+
+			for (int pos = 0; pos < values.length; pos++) {
+				if (pos == listValueMap.size()) {
+					listValueMap.add(new HashMap<Locale, String>());
+				}
+
+				Map<Locale, String> valueMap = listValueMap.get(pos);
+
+				valueMap.put(locales[i], values[pos]);
+			}
 		}
 
 		return listValueMap;
@@ -502,31 +1248,94 @@ public class IndexSearchHelper {
 		return null;
 	}
 
-	private Map<Locale, String> _getLocalizedMap(
-		Locale[] locales, Document doc, String attribute, int pos) {
+	protected boolean isBulkReindexSupported(Model model) {
+		if ((model == null) ||
+			!Long.class.equals(
+				model.getAttributeClass(model.getPrimaryKeyAttribute()))) {
 
-		Map<Locale, String> valueMap = new HashMap<>();
+			return false;
+		}
 
-		for (Locale locale : locales) {
-			String localizedFieldName = Field.getLocalizedName(
-				locale, attribute);
+		return true;
+	}
 
-			if (!doc.hasField(localizedFieldName)) {
-				continue;
-			}
+	protected Map<Data, String> reindexEach(Collection<Data> dataCollection) {
+		Map<Data, String> errors = new HashMap<>();
+
+		int i = 0;
 
-			Field field = doc.getField(localizedFieldName);
+		for (Data data : dataCollection) {
+			try {
+				reindex(data);
 
-			String[] values = field.getValues();
+				if (_log.isDebugEnabled()) {
+					_log.debug(
+						"Reindexing " + i++ + " pk: " + data.getPrimaryKey());
+				}
+			}
+			catch (SearchException e) {
+				errors.put(data, e.getClass() + " - " + e.getMessage());
 
-			if (values.length >= (pos + 1)) {
-				valueMap.put(locale, values[pos]);
+				if (_log.isDebugEnabled()) {
+					_log.debug(e.getClass() + " - " + e.getMessage(), e);
+				}
 			}
 		}
 
-		return valueMap;
+		return errors;
 	}
 
 	private static Log _log = LogFactoryUtil.getLog(IndexSearchHelper.class);
 
+	private volatile LocalizedFieldNames _localizedFieldNames;
+
+	/**
+	 * Localized field names of each attribute, in the order of the locales
+	 * array.
+	 */
+	protected static class LocalizedFieldNames {
+
+		public String[] getFieldNames(String attribute) {
+			String[] fieldNames = _fieldNames.get(attribute);
+
+			if (fieldNames != null) {
+				return fieldNames;
+			}
+
+			fieldNames = new String[_locales.length];
+
+			for (int i = 0; i < _locales.length; i++) {
+				fieldNames[i] = Field.getLocalizedName(_locales[i], attribute);
+			}
+
+			_fieldNames.put(attribute, fieldNames);
+
+			return fieldNames;
+		}
+
+		public Locale[] getLocales() {
+			return _locales;
+		}
+
+		public boolean hasLocales(Set<Locale> localesSet) {
+			if ((localesSet == _localesSet) || localesSet.equals(_localesSet)) {
+				return true;
+			}
+
+			return false;
+		}
+
+		protected LocalizedFieldNames(Set<Locale> localesSet) {
+			_localesSet = localesSet;
+
+			_locales = localesSet.toArray(new Locale[0]);
+		}
+
+		private final Map<String, String[]> _fieldNames =
+			new ConcurrentHashMap<>();
+		private final Locale[] _locales;
+		private final Set<Locale> _localesSet;
+
+	}
+
 }
\ No newline at end of file
@@ -18,13 +18,18 @@ import com.liferay.portal.kernel.search.Document;
 import com.liferay.portal.kernel.search.Field;
 import com.liferay.portal.kernel.util.ReleaseInfo;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import jorgediazest.indexchecker.util.ConfigurationUtil;
 
+import jorgediazest.util.collection.LongHashSet;
 import jorgediazest.util.data.Data;
+import jorgediazest.util.model.Model;
 
 /**
  * @author Jorge Díaz
@@ -49,16 +54,76 @@ public class JournalArticleIndexSearchHelper extends IndexSearchHelper {
 	}
 
 	@Override
-	public Map<Data, String> reindex(Collection<Data> dataCollection) {
-		Map<Long, Data> articles = new HashMap<>();
+	public boolean isStreamingSupported(Model model) {
+		/* Index entryClassPK is the resourcePrimKey, not the primary key */
+		return false;
+	}
 
-		for (Data data : dataCollection) {
-			articles.put(data.getResourcePrimKey(), data);
-		}
+	/**
+	 * Reindexes each article once, skipping the versions whose
+	 * resourcePrimKey was already read.
+	 */
+	@Override
+	public Map<Data, String> reindex(Iterator<Data> iterator) {
+		return super.reindex(new ArticleIterator(iterator));
+	}
 
-		return super.reindex(articles.values());
+	@Override
+	protected boolean isBulkReindexSupported(Model model) {
+		/* Reindexing by class name and primary key reindexes all the article
+		 * versions, reindexing the objects would only reindex the given ones */
+		return false;
 	}
 
 	protected boolean uidContainsPrimaryKey;
 
+	private static class ArticleIterator implements Closeable, Iterator<Data> {
+
+		@Override
+		public void close() throws IOException {
+			if (_iterator instanceof Closeable) {
+				((Closeable)_iterator).close();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while ((_next == null) && _iterator.hasNext()) {
+				Data data = _iterator.next();
+
+				if (_resourcePrimKeys.add(data.getResourcePrimKey())) {
+					_next = data;
+				}
+			}
+
+			if (_next != null) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Data next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Data data = _next;
+
+			_next = null;
+
+			return data;
+		}
+
+		private ArticleIterator(Iterator<Data> iterator) {
+			_iterator = iterator;
+		}
+
+		private final Iterator<Data> _iterator;
+		private Data _next;
+		private final LongHashSet _resourcePrimKeys = new LongHashSet();
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.index;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of index writes per second. Each call to acquire
+ * reserves the time slot of its writes and waits until the slot starts, so
+ * writes of several threads are also limited.
+ *
+ * @author Jorge Díaz
+ */
+public class WriteRateLimiter {
+
+	/**
+	 * Writes are not limited if writesPerSecond is not greater than 0.
+	 */
+	public WriteRateLimiter(int writesPerSecond) {
+		this.writesPerSecond = writesPerSecond;
+	}
+
+	public void acquire(int writes) throws InterruptedException {
+		if ((writesPerSecond <= 0) || (writes <= 0)) {
+			return;
+		}
+
+		long waitTime;
+
+		synchronized (this) {
+			long now = System.nanoTime();
+
+			if (_nextFreeTime < now) {
+				_nextFreeTime = now;
+			}
+
+			waitTime = _nextFreeTime - now;
+
+			_nextFreeTime += (writes * _NANOS_PER_SECOND) / writesPerSecond;
+		}
+
+		if (waitTime > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitTime);
+		}
+	}
+
+	public int getWritesPerSecond() {
+		return writesPerSecond;
+	}
+
+	protected final int writesPerSecond;
+
+	private static final long _NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private long _nextFreeTime;
+
+}
\ No newline at end of file
@@ -24,6 +24,7 @@ import com.liferay.portal.kernel.service.RepositoryLocalServiceUtil;
 import com.liferay.portal.kernel.util.ArrayUtil;
 import com.liferay.portal.kernel.util.PortalUtil;
 
+import jorgediazest.util.collection.LongHashSet;
 import jorgediazest.util.data.Data;
 
 /**
@@ -37,7 +38,7 @@ public class DLFileEntryPermissionsHelper
 		long groupId = data.getGroupId();
 		long repositoryId = data.get("repositoryId", -1L);
 
-		boolean hiddenFolder = _isHiddenFolder(groupId, repositoryId);
+		boolean hiddenFolder = _isHiddenFolder(data, groupId, repositoryId);
 
 		if (!hiddenFolder) {
 			return false;
@@ -63,12 +64,28 @@ public class DLFileEntryPermissionsHelper
 		"com.liferay.wiki.model.WikiPage"
 	};
 
-	private boolean _isHiddenFolder(long groupId, long repositoryId) {
+	private boolean _isHiddenFolder(
+		Data data, long groupId, long repositoryId) {
+
 		try {
 			if (groupId == repositoryId) {
 				return false;
 			}
 
+			PermissionsContext permissionsContext = getPermissionsContext(
+				data);
+
+			LongHashSet hiddenRepositoryIds = null;
+
+			if (permissionsContext != null) {
+				hiddenRepositoryIds =
+					permissionsContext.getHiddenRepositoryIds();
+			}
+
+			if (hiddenRepositoryIds != null) {
+				return hiddenRepositoryIds.contains(repositoryId);
+			}
+
 			Repository repository = RepositoryLocalServiceUtil.fetchRepository(
 				repositoryId);
 
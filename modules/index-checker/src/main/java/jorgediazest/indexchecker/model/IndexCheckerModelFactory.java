@@ -18,9 +18,13 @@ import com.liferay.portal.kernel.dao.orm.Criterion;
 import com.liferay.portal.kernel.dao.orm.Property;
 import com.liferay.portal.kernel.dao.orm.RestrictionsFactoryUtil;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+import jorgediazest.indexchecker.util.Checkpoint;
+import jorgediazest.indexchecker.util.CheckpointUtil;
 import jorgediazest.indexchecker.util.ConfigurationUtil;
 
 import jorgediazest.util.model.Model;
@@ -45,6 +49,48 @@ public class IndexCheckerModelFactory extends ModelFactory {
 		this.endModifiedDate = endModifiedDate;
 	}
 
+	/**
+	 * Creates a factory for the incremental check: models are filtered by the
+	 * modifiedDate of their checkpoint, if they have one.
+	 */
+	public IndexCheckerModelFactory(
+		long companyId, Date startModifiedDate, Date endModifiedDate,
+		Map<String, Checkpoint> checkpoints) {
+
+		this(companyId, startModifiedDate, endModifiedDate);
+
+		if (checkpoints != null) {
+			this.checkpoints = checkpoints;
+		}
+	}
+
+	/**
+	 * Returns a key that identifies the rows of the model returned by this
+	 * factory: company and modified date range.
+	 */
+	public String getFilterKey(Model model) {
+		Date modelStartModifiedDate = CheckpointUtil.getStartModifiedDate(
+			model, checkpoints.get(model.getClassName()), startModifiedDate);
+
+		String filterKey = String.valueOf(companyId);
+
+		if (modelStartModifiedDate != null) {
+			filterKey += "_" + modelStartModifiedDate.getTime();
+		}
+		else {
+			filterKey += "_";
+		}
+
+		if (endModifiedDate != null) {
+			filterKey += "_" + endModifiedDate.getTime();
+		}
+		else {
+			filterKey += "_";
+		}
+
+		return filterKey;
+	}
+
 	@Override
 	public Model getModelObject(String className) {
 		Model model = super.getModelObject(className);
@@ -68,9 +114,12 @@ public class IndexCheckerModelFactory extends ModelFactory {
 				model.getAttributeCriterion("companyId", companyId), criterion);
 		}
 
-		if (startModifiedDate != null) {
+		Date modelStartModifiedDate = CheckpointUtil.getStartModifiedDate(
+			model, checkpoints.get(className), startModifiedDate);
+
+		if (modelStartModifiedDate != null) {
 			Criterion startDateCriterion = getAttributeRangeCriterion(
-				model, "modifiedDate", startModifiedDate, true);
+				model, "modifiedDate", modelStartModifiedDate, true);
 
 			criterion = ModelUtil.generateConjunctionCriterion(
 				startDateCriterion, criterion);
@@ -127,6 +176,7 @@ public class IndexCheckerModelFactory extends ModelFactory {
 		return property.lt(value);
 	}
 
+	protected Map<String, Checkpoint> checkpoints = Collections.emptyMap();
 	protected long companyId;
 	protected Date endModifiedDate;
 	protected Date startModifiedDate;
@@ -31,11 +31,11 @@ import com.liferay.portal.kernel.service.RoleLocalServiceUtil;
 import com.liferay.portal.kernel.util.PortalUtil;
 import com.liferay.portal.kernel.util.Validator;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jorgediazest.util.data.Data;
 import jorgediazest.util.model.Model;
@@ -67,13 +67,8 @@ public class IndexCheckerPermissionsHelper {
 		if (groupIdObj instanceof Number) {
 			Number groupIdNumber = (Number)groupIdObj;
 
-			groupId = groupIdNumber.longValue();
-
-			Group group = GroupLocalServiceUtil.fetchGroup(groupId);
-
-			if ((group != null) && group.isLayout()) {
-				groupId = group.getParentGroupId();
-			}
+			groupId = getPermissionsGroupId(
+				data, groupIdNumber.longValue());
 		}
 
 		data.set("permissionsClassName", className);
@@ -88,12 +83,8 @@ public class IndexCheckerPermissionsHelper {
 			className, data, ResourcePermission.class.getName());
 	}
 
-	public boolean hasActionId(long actionIds, String name, String actionId)
-		throws PortalException {
-
-		Long bitwiseValue = getActionIdBitwiseValue(name, actionId);
-
-		if (Validator.isNull(bitwiseValue)) {
+	public boolean hasActionId(long actionIds, long bitwiseValue) {
+		if (bitwiseValue == 0) {
 			return false;
 		}
 
@@ -104,18 +95,49 @@ public class IndexCheckerPermissionsHelper {
 		return false;
 	}
 
+	public boolean hasActionId(long actionIds, String name, String actionId)
+		throws PortalException {
+
+		return hasActionId(
+			actionIds, getActionIdBitwiseValue(name, actionId));
+	}
+
+	protected void addRoleId(
+		PermissionsContext permissionsContext, Data data, long roleId,
+		Set<String> roleIds, Set<String> groupRoleIds) {
+
+		int type = getRoleType(permissionsContext, roleId);
+
+		if (type == PermissionsContext.ROLE_TYPE_NOT_FOUND) {
+			return;
+		}
+
+		if ((type == RoleConstants.TYPE_ORGANIZATION) ||
+			(type == RoleConstants.TYPE_SITE)) {
+
+			long groupId = data.get("permissionsGroupId", 0L);
+
+			groupRoleIds.add(groupId + StringPool.DASH + roleId);
+		}
+		else {
+			roleIds.add(String.valueOf(roleId));
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	protected void addRolesFieldsToData(
 			String className, Data data, String permissionsClassName)
 		throws PortalException {
 
-		String actionId = getPermissionsActionId(data);
-
 		Object aux = data.get(permissionsClassName);
 
+		ResourcePermissionIndex resourcePermissionIndex = null;
 		Set<List<Object>> resourcePermissions = null;
 
-		if (aux instanceof List) {
+		if (aux instanceof ResourcePermissionIndex) {
+			resourcePermissionIndex = (ResourcePermissionIndex)aux;
+		}
+		else if (aux instanceof List) {
 			resourcePermissions = new HashSet<>();
 
 			resourcePermissions.add((List<Object>)aux);
@@ -124,43 +146,64 @@ public class IndexCheckerPermissionsHelper {
 			resourcePermissions = (Set<List<Object>>)aux;
 		}
 
-		if (resourcePermissions == null) {
+		if ((resourcePermissionIndex == null) &&
+			(resourcePermissions == null)) {
+
 			return;
 		}
 
+		/* Bitwise value is resolved once for all the entries of the row */
+
+		long bitwiseValue = getActionIdBitwiseValue(
+			className, getPermissionsActionId(data));
+
+		PermissionsContext permissionsContext = getPermissionsContext(data);
+
 		Set<String> roleIds = new HashSet<>();
 		Set<String> groupRoleIds = new HashSet<>();
 
-		for (List<Object> resourcePermission : resourcePermissions) {
-			long roleId = (Long)resourcePermission.get(0);
-			long actionIds = (Long)resourcePermission.get(1);
+		int position = -1;
 
-			if (resourcePermission.size() > 2) {
-				int scope = (Integer)resourcePermission.get(2);
+		if (resourcePermissionIndex != null) {
+			position = resourcePermissionIndex.getPosition(
+				data.get("permissionsClassPK", 0L));
+		}
 
-				if (scope != ResourceConstants.SCOPE_INDIVIDUAL) {
-					continue;
+		if (position >= 0) {
+			int start = resourcePermissionIndex.getStart(position);
+			int end = resourcePermissionIndex.getEnd(position);
+
+			for (int i = start; i < end; i++) {
+				if ((resourcePermissionIndex.getScope(i) ==
+						ResourceConstants.SCOPE_INDIVIDUAL) &&
+					hasActionId(
+						resourcePermissionIndex.getActionIds(i),
+						bitwiseValue)) {
+
+					addRoleId(
+						permissionsContext, data,
+						resourcePermissionIndex.getRoleId(i), roleIds,
+						groupRoleIds);
 				}
 			}
+		}
+		else if (resourcePermissions != null) {
+			for (List<Object> resourcePermission : resourcePermissions) {
+				long roleId = (Long)resourcePermission.get(0);
+				long actionIds = (Long)resourcePermission.get(1);
 
-			if (hasActionId(actionIds, className, actionId)) {
-				Role role = RoleLocalServiceUtil.fetchRole(roleId);
+				if (resourcePermission.size() > 2) {
+					int scope = (Integer)resourcePermission.get(2);
 
-				if (role == null) {
-					continue;
+					if (scope != ResourceConstants.SCOPE_INDIVIDUAL) {
+						continue;
+					}
 				}
 
-				int type = role.getType();
-
-				if ((type == RoleConstants.TYPE_ORGANIZATION) ||
-					(type == RoleConstants.TYPE_SITE)) {
-
-					long groupId = data.get("permissionsGroupId", 0L);
-
-					groupRoleIds.add(groupId + StringPool.DASH + roleId);
-				}
-				else {
-					roleIds.add(String.valueOf(roleId));
+				if (hasActionId(actionIds, bitwiseValue)) {
+					addRoleId(
+						permissionsContext, data, roleId, roleIds,
+						groupRoleIds);
 				}
 			}
 		}
@@ -231,10 +274,57 @@ public class IndexCheckerPermissionsHelper {
 		return data.getPrimaryKey();
 	}
 
+	/**
+	 * Returns the groups and roles of the company of the data, or null if they
+	 * could not be loaded.
+	 */
+	protected PermissionsContext getPermissionsContext(Data data) {
+		Long companyId = data.getCompanyId();
+
+		if (companyId == null) {
+			return null;
+		}
+
+		return PermissionsContext.getPermissionsContext(companyId);
+	}
+
+	protected long getPermissionsGroupId(Data data, long groupId) {
+		PermissionsContext permissionsContext = getPermissionsContext(data);
+
+		if (permissionsContext != null) {
+			return permissionsContext.getPermissionsGroupId(groupId);
+		}
+
+		Group group = GroupLocalServiceUtil.fetchGroup(groupId);
+
+		if ((group != null) && group.isLayout()) {
+			return group.getParentGroupId();
+		}
+
+		return groupId;
+	}
+
+	protected int getRoleType(
+		PermissionsContext permissionsContext, long roleId) {
+
+		if (permissionsContext != null) {
+			return permissionsContext.getRoleType(roleId);
+		}
+
+		Role role = RoleLocalServiceUtil.fetchRole(roleId);
+
+		if (role == null) {
+			return PermissionsContext.ROLE_TYPE_NOT_FOUND;
+		}
+
+		return role.getType();
+	}
+
 	protected boolean isRelatedEntry(Data data) {
 		return false;
 	}
 
-	protected Map<String, Long> cacheActionIdBitwiseValue = new HashMap<>();
+	protected Map<String, Long> cacheActionIdBitwiseValue =
+		new ConcurrentHashMap<>();
 
 }
\ No newline at end of file
@@ -18,6 +18,8 @@ import com.liferay.petra.string.CharPool;
 import com.liferay.petra.string.StringPool;
 import com.liferay.portal.kernel.dao.orm.Criterion;
 import com.liferay.portal.kernel.dao.orm.Property;
+import com.liferay.portal.kernel.model.ResourcePermission;
+import com.liferay.portal.kernel.security.auth.CompanyThreadLocal;
 import com.liferay.portal.kernel.util.GetterUtil;
 import com.liferay.portal.kernel.util.StringUtil;
 import com.liferay.portal.kernel.util.Validator;
@@ -27,15 +29,20 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import jorgediazest.indexchecker.util.ConfigurationUtil;
+import jorgediazest.indexchecker.util.PortletPropsValues;
+import jorgediazest.indexchecker.util.RelatedDataCache;
 
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
 import jorgediazest.util.model.Model;
 import jorgediazest.util.model.ModelFactory;
 import jorgediazest.util.model.ModelUtil;
@@ -176,17 +183,65 @@ public class IndexCheckerQueryHelper {
 		relatedAttributes.addAll(attributesToQuery);
 		relatedAttributes.addAll(mappingsRelated);
 
-		Map<Long, List<Data>> relatedMap;
+		Map<Long, List<Data>> relatedMap = null;
 
 		if (relatedCriterion == null) {
+			String cacheKey = getQueryCacheKey(
+				relatedModel, relatedAttributes, mappingsRelated);
+
+			relatedMap = queryCache.get(cacheKey);
+
+			if (relatedMap == null) {
+				RelatedDataCache relatedDataCache =
+					RelatedDataCache.getInstance();
+
+				relatedMap = relatedDataCache.getIfPresent(
+					getRelatedDataCacheKey(relatedModel, cacheKey),
+					relatedModel);
+			}
+
+			if (relatedMap != null) {
+				queryCache.put(cacheKey, relatedMap);
+			}
+		}
+
+		/* If related table was not already read in this or a previous
+		 * execution, small batches only query the related rows of their
+		 * source keys */
+
+		List<Object> sourceKeys = null;
+
+		if (relatedMap == null) {
+			sourceKeys = getSourceKeys(
+				liferayDataMap, relatedModel, mappingsSource.get(0),
+				mappingsRelated.get(0));
+		}
+
+		if ((sourceKeys != null) && sourceKeys.isEmpty()) {
+			relatedMap = Collections.emptyMap();
+		}
+		else if (sourceKeys != null) {
+			Criterion sourceKeysCriterion = relatedModel.getAttributeCriterion(
+				mappingsRelated.get(0), sourceKeys);
+
+			relatedMap = Query.getDataWithDuplicates(
+				relatedModel, relatedAttributes.toArray(new String[0]),
+				mappingsRelated.get(0),
+				ModelUtil.generateConjunctionCriterion(
+					sourceKeysCriterion, relatedCriterion),
+				PortletPropsValues.QUERY_PAGE_SIZE);
+		}
+
+		if ((relatedMap == null) && (relatedCriterion == null)) {
 			relatedMap = getDataWithDuplicatesWithCache(
 				queryCache, relatedModel, relatedAttributes, mappingsRelated,
 				relatedCriterion);
 		}
-		else {
+		else if (relatedMap == null) {
 			relatedMap = Query.getDataWithDuplicates(
 				relatedModel, relatedAttributes.toArray(new String[0]),
-				mappingsRelated.get(0), relatedCriterion);
+				mappingsRelated.get(0), relatedCriterion,
+				PortletPropsValues.QUERY_PAGE_SIZE);
 		}
 
 		Map<Long, List<Data>> matchedMap = QueryUtil.getMatchingEntriesMap(
@@ -209,7 +264,15 @@ public class IndexCheckerQueryHelper {
 			}
 		}
 
-		if (rawData) {
+		if (rawData &&
+			Objects.equals(
+				relatedModel.getClassName(),
+				ResourcePermission.class.getName())) {
+
+			addResourcePermissionIndex(
+				liferayDataMap, matchedMap, mappingsRelated.get(0));
+		}
+		else if (rawData) {
 			QueryUtil.addRelatedModelDataRaw(
 				liferayDataMap, matchedMap,
 				attributesAlias.toArray(new String[0]));
@@ -253,32 +316,52 @@ public class IndexCheckerQueryHelper {
 	}
 
 	public Map<Long, List<Data>> getDataWithDuplicatesWithCache(
-			Map<String, Map<Long, List<Data>>> queryCache, Model relatedModel,
-			List<String> relatedAttributes, List<String> mappingsRelated,
-			Criterion relatedCriterion)
+			final Map<String, Map<Long, List<Data>>> queryCache,
+			final Model relatedModel, final List<String> relatedAttributes,
+			final List<String> mappingsRelated,
+			final Criterion relatedCriterion)
 		throws Exception {
 
-		String attributes = Arrays.toString(relatedAttributes.toArray());
-
-		String cacheKey =
-			relatedModel.getName() + "_" + attributes + "_key_" +
-				mappingsRelated.get(0);
+		final String cacheKey = getQueryCacheKey(
+			relatedModel, relatedAttributes, mappingsRelated);
 
 		Map<Long, List<Data>> relatedMap = queryCache.get(cacheKey);
 
-		if (relatedMap == null) {
-			synchronized (relatedModel) {
-				relatedMap = queryCache.get(cacheKey);
+		if (relatedMap != null) {
+			return relatedMap;
+		}
+
+		/* Concurrent requests of the same key share one query, different
+		 * attributes of the same related model are loaded in parallel */
+
+		RelatedDataCache relatedDataCache = RelatedDataCache.getInstance();
+
+		relatedMap = relatedDataCache.get(
+			getRelatedDataCacheKey(relatedModel, cacheKey), relatedModel,
+			new Callable<Map<Long, List<Data>>>() {
+
+				@Override
+				public Map<Long, List<Data>> call() throws Exception {
+					Map<Long, List<Data>> relatedMap = queryCache.get(
+						cacheKey);
+
+					if (relatedMap != null) {
+						return relatedMap;
+					}
 
-				if (relatedMap == null) {
 					relatedMap = Query.getDataWithDuplicates(
 						relatedModel, relatedAttributes.toArray(new String[0]),
-						mappingsRelated.get(0), relatedCriterion);
+						mappingsRelated.get(0), relatedCriterion,
+						PortletPropsValues.QUERY_PAGE_SIZE);
 
 					queryCache.put(cacheKey, relatedMap);
+
+					return relatedMap;
 				}
-			}
-		}
+
+			});
+
+		queryCache.put(cacheKey, relatedMap);
 
 		return relatedMap;
 	}
@@ -286,7 +369,32 @@ public class IndexCheckerQueryHelper {
 	public Map<Long, Data> getLiferayData(Model model, List<Long> groupIds)
 		throws Exception {
 
-		Criterion criterion = model.getAttributeCriterion("groupId", groupIds);
+		return getLiferayData(model, groupIds, null);
+	}
+
+	public Map<Long, Data> getLiferayData(
+			Model model, List<Long> groupIds, Criterion filter)
+		throws Exception {
+
+		Criterion criterion = ModelUtil.generateConjunctionCriterion(
+			getLiferayDataCriterion(model, groupIds), filter);
+
+		Collection<String> attributesToQuery =
+			ConfigurationUtil.getModelAttributesToQuery(model);
+
+		String[] attributesToQueryArr = attributesToQuery.toArray(
+			new String[0]);
+
+		return Query.getData(
+			model, attributesToQueryArr, model.getPrimaryKeyAttribute(),
+			criterion, PortletPropsValues.QUERY_PAGE_SIZE);
+	}
+
+	public Iterator<Data> getLiferayDataIterator(
+			Model model, List<Long> groupIds)
+		throws Exception {
+
+		Criterion criterion = getLiferayDataCriterion(model, groupIds);
 
 		Collection<String> attributesToQuery =
 			ConfigurationUtil.getModelAttributesToQuery(model);
@@ -294,7 +402,29 @@ public class IndexCheckerQueryHelper {
 		String[] attributesToQueryArr = attributesToQuery.toArray(
 			new String[0]);
 
-		return Query.getData(model, attributesToQueryArr, criterion);
+		return Query.getDataIterator(
+			model, attributesToQueryArr, criterion,
+			PortletPropsValues.QUERY_PAGE_SIZE);
+	}
+
+	public boolean isStreamingSupported(Model model) {
+		List<String> keyAttributes = model.getKeyAttributes();
+
+		if (keyAttributes.size() != 1) {
+			return false;
+		}
+
+		String keyAttribute = keyAttributes.get(0);
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		if (Validator.isNull(primaryKeyAttribute) ||
+			(!keyAttribute.equals("pk") &&
+			 !keyAttribute.equals(primaryKeyAttribute))) {
+
+			return false;
+		}
+
+		return Long.class.equals(model.getAttributeClass(primaryKeyAttribute));
 	}
 
 	public void postProcessData(Data data) {
@@ -305,6 +435,137 @@ public class IndexCheckerQueryHelper {
 		data.set("treePath", treePath);
 	}
 
+	/**
+	 * Sets the resource permissions of the batch to the matched rows, packed
+	 * in one index instead of a set of lists for each row.
+	 */
+	protected void addResourcePermissionIndex(
+		Map<Long, Data> liferayDataMap, Map<Long, List<Data>> matchedMap,
+		String primKeyAttribute) {
+
+		if (matchedMap.isEmpty()) {
+			return;
+		}
+
+		ResourcePermissionIndex resourcePermissionIndex =
+			ResourcePermissionIndex.create(
+				matchedMap.values(), primKeyAttribute);
+
+		for (Map.Entry<Long, Data> entry : liferayDataMap.entrySet()) {
+			List<Data> matched = matchedMap.get(entry.getKey());
+
+			if ((matched == null) || matched.isEmpty()) {
+				continue;
+			}
+
+			Data data = entry.getValue();
+
+			data.set(
+				ResourcePermission.class.getName(), resourcePermissionIndex);
+		}
+	}
+
+	protected Criterion getLiferayDataCriterion(
+		Model model, List<Long> groupIds) {
+
+		return model.getAttributeCriterion("groupId", groupIds);
+	}
+
+	protected String getQueryCacheKey(
+		Model relatedModel, List<String> relatedAttributes,
+		List<String> mappingsRelated) {
+
+		String attributes = Arrays.toString(relatedAttributes.toArray());
+
+		return relatedModel.getName() + "_" + attributes + "_key_" +
+			mappingsRelated.get(0);
+	}
+
+	/**
+	 * Related data is shared between executions, so the key also includes
+	 * the company and modified date filters of the model.
+	 */
+	protected String getRelatedDataCacheKey(Model relatedModel, String key) {
+		ModelFactory modelFactory = relatedModel.getModelFactory();
+
+		if (modelFactory instanceof IndexCheckerModelFactory) {
+			IndexCheckerModelFactory indexCheckerModelFactory =
+				(IndexCheckerModelFactory)modelFactory;
+
+			return indexCheckerModelFactory.getFilterKey(relatedModel) + "_" +
+				key;
+		}
+
+		return CompanyThreadLocal.getCompanyId() + "_" + key;
+	}
+
+	/**
+	 * Returns the distinct values of the source mapping attribute, converted
+	 * to the class of the related mapping attribute. Returns null if there are
+	 * more values than the configured limit or if they cannot be used in a
+	 * query, in that case the whole related table is read.
+	 */
+	protected List<Object> getSourceKeys(
+		Map<Long, Data> liferayDataMap, Model relatedModel,
+		String mappingSource, String mappingRelated) {
+
+		int maxKeys = PortletPropsValues.RELATED_DATA_PUSHDOWN_MAX_KEYS;
+
+		if ((maxKeys <= 0) || !relatedModel.hasAttribute(mappingRelated)) {
+
+			return null;
+		}
+
+		Class<?> keyClass = relatedModel.getAttributeClass(mappingRelated);
+
+		int pos = mappingRelated.indexOf(".");
+
+		if (Object.class.equals(keyClass) && (pos != -1)) {
+			keyClass = relatedModel.getAttributeClass(
+				mappingRelated.substring(pos + 1));
+		}
+
+		if (!Long.class.equals(keyClass) && !Integer.class.equals(keyClass) &&
+			!String.class.equals(keyClass)) {
+
+			return null;
+		}
+
+		Set<Object> keys = new HashSet<>();
+
+		for (Data data : liferayDataMap.values()) {
+			for (Object value : _castToSet(data.get(mappingSource))) {
+				Object key = _castKey(value, keyClass);
+
+				if (key != null) {
+					keys.add(key);
+				}
+			}
+
+			if (keys.size() > maxKeys) {
+				return null;
+			}
+		}
+
+		return new ArrayList<>(keys);
+	}
+
+	private Object _castKey(Object value, Class<?> keyClass) {
+		if (Long.class.equals(keyClass)) {
+			return DataUtil.castLong(value);
+		}
+
+		if (Integer.class.equals(keyClass)) {
+			return DataUtil.castInt(value);
+		}
+
+		if (value == null) {
+			return null;
+		}
+
+		return value.toString();
+	}
+
 	private Set<Object> _castToSet(Object object) {
 		if (object == null) {
 			return Collections.emptySet();
@@ -106,14 +106,16 @@ public class JournalArticleQueryHelper extends IndexCheckerQueryHelper {
 	}
 
 	@Override
-	public Map<Long, Data> getLiferayData(Model model, List<Long> groupIds)
+	public Map<Long, Data> getLiferayData(
+			Model model, List<Long> groupIds, Criterion filter)
 		throws Exception {
 
 		if (indexAllVersions) {
-			return super.getLiferayData(model, groupIds);
+			return super.getLiferayData(model, groupIds, filter);
 		}
 
-		Criterion criterion = model.getAttributeCriterion("groupId", groupIds);
+		Criterion criterion = ModelUtil.generateConjunctionCriterion(
+			getLiferayDataCriterion(model, groupIds), filter);
 
 		Collection<String> attributesToQuery =
 			ConfigurationUtil.getModelAttributesToQuery(model);
@@ -142,6 +144,15 @@ public class JournalArticleQueryHelper extends IndexCheckerQueryHelper {
 		return dataMap;
 	}
 
+	@Override
+	public boolean isStreamingSupported(Model model) {
+		if (!indexAllVersions) {
+			return false;
+		}
+
+		return super.isStreamingSupported(model);
+	}
+
 	protected boolean indexAllVersions;
 
 }
\ No newline at end of file
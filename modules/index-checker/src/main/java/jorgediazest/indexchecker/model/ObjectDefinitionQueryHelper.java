@@ -16,16 +16,10 @@ package jorgediazest.indexchecker.model;
 
 import com.liferay.portal.kernel.dao.orm.Criterion;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
-import jorgediazest.indexchecker.util.ConfigurationUtil;
-
-import jorgediazest.util.data.Data;
 import jorgediazest.util.model.Model;
 import jorgediazest.util.model.ModelUtil;
-import jorgediazest.util.query.Query;
 
 /**
  * @author Jorge Díaz
@@ -33,10 +27,10 @@ import jorgediazest.util.query.Query;
 public class ObjectDefinitionQueryHelper extends IndexCheckerQueryHelper {
 
 	@Override
-	public Map<Long, Data> getLiferayData(Model model, List<Long> groupIds)
-		throws Exception {
+	protected Criterion getLiferayDataCriterion(
+		Model model, List<Long> groupIds) {
 
-		Criterion criterion = model.getAttributeCriterion("groupId", groupIds);
+		Criterion criterion = super.getLiferayDataCriterion(model, groupIds);
 
 		String className = model.getClassName();
 
@@ -55,13 +49,7 @@ public class ObjectDefinitionQueryHelper extends IndexCheckerQueryHelper {
 			}
 		}
 
-		Collection<String> attributesToQuery =
-			ConfigurationUtil.getModelAttributesToQuery(model);
-
-		String[] attributesToQueryArr = attributesToQuery.toArray(
-			new String[0]);
-
-		return Query.getData(model, attributesToQueryArr, criterion);
+		return criterion;
 	}
 
 	protected boolean indexAllVersions;
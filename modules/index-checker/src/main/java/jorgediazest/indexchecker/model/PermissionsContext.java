@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.model;
+
+import com.liferay.document.library.kernel.model.DLFolder;
+import com.liferay.portal.kernel.dao.orm.Conjunction;
+import com.liferay.portal.kernel.dao.orm.OrderFactoryUtil;
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
+import com.liferay.portal.kernel.dao.orm.Property;
+import com.liferay.portal.kernel.dao.orm.RestrictionsFactoryUtil;
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+import com.liferay.portal.kernel.model.Group;
+import com.liferay.portal.kernel.model.Layout;
+import com.liferay.portal.kernel.model.Repository;
+import com.liferay.portal.kernel.model.Role;
+import com.liferay.portal.kernel.util.PortalUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jorgediazest.util.collection.LongHashMap;
+import jorgediazest.util.collection.LongHashSet;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+import jorgediazest.util.model.ModelFactory;
+
+/**
+ * Group and role information needed to add the permissions fields, loaded
+ * once per company and check execution with two projection queries. Lookups
+ * are binary searches in sorted primitive arrays, so they are thread safe and
+ * don't access the database or the entity cache. Repositories with a hidden
+ * folder are also loaded, the first time they are needed.
+ *
+ * @author Jorge Díaz
+ */
+public class PermissionsContext {
+
+	public static final int ROLE_TYPE_NOT_FOUND = -1;
+
+	/**
+	 * Returns the context of the company, loading it the first time. Returns
+	 * null if it could not be loaded, so callers must fall back to the group
+	 * and role services.
+	 */
+	public static PermissionsContext getPermissionsContext(long companyId) {
+		PermissionsContext permissionsContext = _permissionsContextMap.get(
+			companyId);
+
+		if (permissionsContext == null) {
+			synchronized (_permissionsContextMap) {
+				permissionsContext = _permissionsContextMap.get(companyId);
+
+				if (permissionsContext == null) {
+					permissionsContext = new PermissionsContext(companyId);
+
+					permissionsContext.load();
+
+					_permissionsContextMap.put(companyId, permissionsContext);
+				}
+			}
+		}
+
+		if (!permissionsContext.isLoaded()) {
+			return null;
+		}
+
+		return permissionsContext;
+	}
+
+	/**
+	 * Removes the context of the company, so the next check loads the groups
+	 * and roles again.
+	 */
+	public static void reset(long companyId) {
+		_permissionsContextMap.remove(companyId);
+	}
+
+	public long getCompanyId() {
+		return _companyId;
+	}
+
+	/**
+	 * Returns the repositories with a hidden root folder, like the
+	 * attachments repositories, or null if they could not be loaded. They are
+	 * loaded the first time, as only DLFileEntry permissions need them.
+	 */
+	public LongHashSet getHiddenRepositoryIds() {
+		if (_hiddenRepositoryIdsLoaded) {
+			return _hiddenRepositoryIds;
+		}
+
+		synchronized (this) {
+			if (!_hiddenRepositoryIdsLoaded) {
+				ModelFactory modelFactory = new ModelFactory();
+
+				try {
+					_hiddenRepositoryIds = loadHiddenRepositoryIds(
+						modelFactory.getModelObject(Repository.class),
+						modelFactory.getModelObject(DLFolder.class));
+				}
+				catch (Exception e) {
+					_log.error(
+						"Unable to load repositories of company " +
+							_companyId + ", they will be queried for each " +
+								"row: " + e.getMessage());
+
+					if (_log.isDebugEnabled()) {
+						_log.debug(e, e);
+					}
+				}
+
+				_hiddenRepositoryIdsLoaded = true;
+			}
+
+			return _hiddenRepositoryIds;
+		}
+	}
+
+	/**
+	 * Returns the parent group if groupId is a layout scope group, otherwise
+	 * returns the same groupId.
+	 */
+	public long getPermissionsGroupId(long groupId) {
+		int pos = Arrays.binarySearch(_layoutGroupIds, groupId);
+
+		if (pos < 0) {
+			return groupId;
+		}
+
+		return _layoutParentGroupIds[pos];
+	}
+
+	/**
+	 * Returns the role type or ROLE_TYPE_NOT_FOUND if the role doesn't exist.
+	 */
+	public int getRoleType(long roleId) {
+		int pos = Arrays.binarySearch(_roleIds, roleId);
+
+		if (pos < 0) {
+			return ROLE_TYPE_NOT_FOUND;
+		}
+
+		return _roleTypes[pos];
+	}
+
+	public boolean isLoaded() {
+		return _loaded;
+	}
+
+	protected PermissionsContext(long companyId) {
+		_companyId = companyId;
+	}
+
+	protected void load() {
+		try {
+			ModelFactory modelFactory = new ModelFactory();
+
+			loadLayoutGroups(modelFactory.getModelObject(Group.class));
+			loadRoles(modelFactory.getModelObject(Role.class));
+
+			_loaded = true;
+
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Loaded " + _layoutGroupIds.length +
+						" layout groups and " + _roleIds.length +
+							" roles of company " + _companyId);
+			}
+		}
+		catch (Exception e) {
+			_log.error(
+				"Unable to load groups and roles of company " + _companyId +
+					", they will be queried for each row: " + e.getMessage());
+
+			if (_log.isDebugEnabled()) {
+				_log.debug(e, e);
+			}
+		}
+	}
+
+	protected LongHashSet loadHiddenRepositoryIds(
+			Model repositoryModel, Model dlFolderModel)
+		throws Exception {
+
+		Property companyIdProperty = repositoryModel.getProperty("companyId");
+
+		ProjectionList projectionList = repositoryModel.getPropertyProjection(
+			new String[] {"repositoryId", "dlFolderId"});
+
+		List<?> results = repositoryModel.executeDynamicQuery(
+			companyIdProperty.eq(_companyId), projectionList);
+
+		LongHashMap<Long> dlFolderRepositoryIds = new LongHashMap<>(
+			results.size());
+
+		for (Object result : results) {
+			Object[] repository = (Object[])result;
+
+			dlFolderRepositoryIds.put(
+				DataUtil.castLong(repository[1]),
+				DataUtil.castLong(repository[0]));
+		}
+
+		LongHashSet hiddenRepositoryIds = new LongHashSet();
+
+		if (dlFolderRepositoryIds.isEmpty()) {
+			return hiddenRepositoryIds;
+		}
+
+		Conjunction conjunction = RestrictionsFactoryUtil.conjunction();
+
+		Property hiddenProperty = dlFolderModel.getProperty("hidden");
+
+		conjunction.add(hiddenProperty.eq(true));
+		conjunction.add(
+			dlFolderModel.getAttributeCriterion(
+				"folderId", new ArrayList<>(dlFolderRepositoryIds.keySet())));
+
+		List<?> hiddenDLFolderIds = dlFolderModel.executeDynamicQuery(
+			conjunction, dlFolderModel.getPropertyProjection("folderId"));
+
+		for (Object hiddenDLFolderId : hiddenDLFolderIds) {
+			Long repositoryId = dlFolderRepositoryIds.get(
+				DataUtil.castLong(hiddenDLFolderId));
+
+			if (repositoryId != null) {
+				hiddenRepositoryIds.add(repositoryId.longValue());
+			}
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug(
+				"Loaded " + hiddenRepositoryIds.size() + " of " +
+					dlFolderRepositoryIds.size() +
+						" repositories with hidden folder of company " +
+							_companyId);
+		}
+
+		return hiddenRepositoryIds;
+	}
+
+	protected void loadLayoutGroups(Model groupModel) throws Exception {
+		Conjunction conjunction = RestrictionsFactoryUtil.conjunction();
+
+		Property classNameIdProperty = groupModel.getProperty("classNameId");
+		Property companyIdProperty = groupModel.getProperty("companyId");
+
+		conjunction.add(
+			classNameIdProperty.eq(PortalUtil.getClassNameId(Layout.class)));
+		conjunction.add(companyIdProperty.eq(_companyId));
+
+		ProjectionList projectionList = groupModel.getPropertyProjection(
+			new String[] {"groupId", "parentGroupId"});
+
+		List<?> results = groupModel.executeDynamicQuery(
+			conjunction, projectionList,
+			Collections.singletonList(OrderFactoryUtil.asc("groupId")));
+
+		long[] groupIds = new long[results.size()];
+		long[] parentGroupIds = new long[results.size()];
+
+		for (int i = 0; i < groupIds.length; i++) {
+			Object[] result = (Object[])results.get(i);
+
+			groupIds[i] = DataUtil.castLong(result[0]);
+			parentGroupIds[i] = DataUtil.castLong(result[1]);
+		}
+
+		_layoutGroupIds = groupIds;
+		_layoutParentGroupIds = parentGroupIds;
+	}
+
+	protected void loadRoles(Model roleModel) throws Exception {
+		Property companyIdProperty = roleModel.getProperty("companyId");
+
+		ProjectionList projectionList = roleModel.getPropertyProjection(
+			new String[] {"roleId", "type"});
+
+		List<?> results = roleModel.executeDynamicQuery(
+			companyIdProperty.eq(_companyId), projectionList,
+			Collections.singletonList(OrderFactoryUtil.asc("roleId")));
+
+		long[] roleIds = new long[results.size()];
+		int[] roleTypes = new int[results.size()];
+
+		for (int i = 0; i < roleIds.length; i++) {
+			Object[] result = (Object[])results.get(i);
+
+			roleIds[i] = DataUtil.castLong(result[0]);
+			roleTypes[i] = DataUtil.castInt(result[1]);
+		}
+
+		_roleIds = roleIds;
+		_roleTypes = roleTypes;
+	}
+
+	private static Log _log = LogFactoryUtil.getLog(PermissionsContext.class);
+
+	private static Map<Long, PermissionsContext> _permissionsContextMap =
+		new ConcurrentHashMap<>();
+
+	private final long _companyId;
+	private LongHashSet _hiddenRepositoryIds;
+	private volatile boolean _hiddenRepositoryIdsLoaded;
+	private long[] _layoutGroupIds;
+	private long[] _layoutParentGroupIds;
+	private volatile boolean _loaded;
+	private long[] _roleIds;
+	private int[] _roleTypes;
+
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.model;
+
+import com.liferay.portal.kernel.model.ResourceConstants;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import jorgediazest.util.collection.LongHashMap;
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+
+/**
+ * Resource permissions of a batch of rows, grouped by primKeyId and stored in
+ * packed parallel arrays. It is immutable once created, so it is shared by
+ * all the rows of the batch and can be read from several threads.
+ *
+ * @author Jorge Díaz
+ */
+public class ResourcePermissionIndex {
+
+	/**
+	 * Creates the index from the matched resource permissions of each row.
+	 * Rows with the same primKeyId share their entries.
+	 */
+	public static ResourcePermissionIndex create(
+		Collection<List<Data>> matchedLists, String primKeyAttribute) {
+
+		LongHashMap<List<Data>> primKeyMap = new LongHashMap<>(
+			matchedLists.size());
+
+		int size = 0;
+
+		for (List<Data> matched : matchedLists) {
+			if (matched.isEmpty()) {
+				continue;
+			}
+
+			Long primKeyId = DataUtil.castLong(
+				matched.get(0).get(primKeyAttribute));
+
+			if ((primKeyId == null) ||
+				primKeyMap.containsKey(primKeyId.longValue())) {
+
+				continue;
+			}
+
+			primKeyMap.put(primKeyId.longValue(), matched);
+
+			size += matched.size();
+		}
+
+		long[] primKeyIds = new long[primKeyMap.size()];
+
+		int i = 0;
+
+		for (Long primKeyId : primKeyMap.keySet()) {
+			primKeyIds[i++] = primKeyId;
+		}
+
+		Arrays.sort(primKeyIds);
+
+		ResourcePermissionIndex resourcePermissionIndex =
+			new ResourcePermissionIndex(primKeyIds, size);
+
+		int pos = 0;
+
+		for (i = 0; i < primKeyIds.length; i++) {
+			resourcePermissionIndex._offsets[i] = pos;
+
+			for (Data data : primKeyMap.get(primKeyIds[i])) {
+				resourcePermissionIndex._roleIds[pos] = data.get("roleId", 0L);
+				resourcePermissionIndex._actionIds[pos] = data.get(
+					"actionIds", 0L);
+				resourcePermissionIndex._scopes[pos] = data.get(
+					"scope", ResourceConstants.SCOPE_INDIVIDUAL);
+
+				pos++;
+			}
+		}
+
+		resourcePermissionIndex._offsets[primKeyIds.length] = pos;
+
+		return resourcePermissionIndex;
+	}
+
+	public long getActionIds(int entry) {
+		return _actionIds[entry];
+	}
+
+	/**
+	 * Returns the first entry after the entries of the position.
+	 */
+	public int getEnd(int position) {
+		return _offsets[position + 1];
+	}
+
+	/**
+	 * Returns the position of the primKeyId, or -1 if it doesn't have
+	 * resource permissions.
+	 */
+	public int getPosition(long primKeyId) {
+		int position = Arrays.binarySearch(_primKeyIds, primKeyId);
+
+		if (position < 0) {
+			return -1;
+		}
+
+		return position;
+	}
+
+	public long getRoleId(int entry) {
+		return _roleIds[entry];
+	}
+
+	public int getScope(int entry) {
+		return _scopes[entry];
+	}
+
+	/**
+	 * Returns the first entry of the position.
+	 */
+	public int getStart(int position) {
+		return _offsets[position];
+	}
+
+	public int size() {
+		return _roleIds.length;
+	}
+
+	@Override
+	public String toString() {
+		return "ResourcePermissionIndex[" + _primKeyIds.length +
+			" primKeyIds, " + _roleIds.length + " entries]";
+	}
+
+	protected ResourcePermissionIndex(long[] primKeyIds, int size) {
+		_primKeyIds = primKeyIds;
+
+		_actionIds = new long[size];
+		_offsets = new int[primKeyIds.length + 1];
+		_roleIds = new long[size];
+		_scopes = new int[size];
+	}
+
+	private final long[] _actionIds;
+	private final int[] _offsets;
+	private final long[] _primKeyIds;
+	private final long[] _roleIds;
+	private final int[] _scopes;
+
+}
\ No newline at end of file
@@ -18,6 +18,8 @@ import com.liferay.petra.string.StringPool;
 import com.liferay.portal.kernel.dao.search.ResultRow;
 import com.liferay.portal.kernel.dao.search.SearchContainer;
 import com.liferay.portal.kernel.language.LanguageUtil;
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
 import com.liferay.portal.kernel.model.Company;
 import com.liferay.portal.kernel.model.Group;
 import com.liferay.portal.kernel.search.Field;
@@ -25,6 +27,9 @@ import com.liferay.portal.kernel.service.GroupLocalServiceUtil;
 import com.liferay.portal.kernel.util.ListUtil;
 import com.liferay.portal.kernel.util.Validator;
 
+import java.io.File;
+import java.io.IOException;
+
 import java.lang.reflect.Method;
 
 import java.util.ArrayList;
@@ -40,8 +45,11 @@ import javax.portlet.PortletURL;
 import javax.portlet.RenderRequest;
 
 import jorgediazest.indexchecker.ExecutionMode;
+import jorgediazest.indexchecker.util.CheckMetrics;
+import jorgediazest.indexchecker.util.CheckMetrics.Phase;
 
 import jorgediazest.util.data.Comparison;
+import jorgediazest.util.output.CSVWriter;
 import jorgediazest.util.output.OutputUtils;
 import jorgediazest.util.reflection.ReflectionUtil;
 
@@ -53,175 +61,126 @@ import org.osgi.framework.FrameworkUtil;
  */
 public class IndexCheckerOutput {
 
-	@SuppressWarnings("unchecked")
-	public static List<String> generateCSVOutput(
-		PortletConfig portletConfig, RenderRequest renderRequest) {
-
-		EnumSet<ExecutionMode> executionMode =
-			(EnumSet<ExecutionMode>)renderRequest.getAttribute("executionMode");
-		Map<Company, Long> companyProcessTime =
-			(Map<Company, Long>)renderRequest.getAttribute(
-				"companyProcessTime");
-		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap =
-			(Map<Company, Map<Long, List<Comparison>>>)
-				renderRequest.getAttribute("companyResultDataMap");
-
-		if ((executionMode == null) || (companyProcessTime == null) ||
-			(companyResultDataMap == null)) {
-
-			return null;
-		}
-
-		String title = (String)renderRequest.getAttribute("title");
-		Map<Company, String> companyError =
-			(Map<Company, String>)renderRequest.getAttribute("companyError");
-
-		return generateCSVOutput(
-			portletConfig, title, renderRequest.getLocale(),
-			executionMode.contains(ExecutionMode.GROUP_BY_SITE),
-			companyProcessTime, companyResultDataMap, companyError);
-	}
-
-	public static List<String> generateCSVOutput(
-		PortletConfig portletConfig, String title, Locale locale,
-		boolean groupBySite, Map<Company, Long> companyProcessTime,
-		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap,
-		Map<Company, String> companyError) {
-
-		List<String> out = new ArrayList<>();
-
-		ResourceBundle resourceBundle = portletConfig.getResourceBundle(locale);
+	/**
+	 * Writes the CSV output to a temporary file, row by row, so the results
+	 * are not copied in memory. The file is compressed with gzip if compress
+	 * is true. Returns null if there are no results or the file could not be
+	 * written. The caller must delete the file.
+	 */
+	public static File generateCSVOutputFile(
+		PortletConfig portletConfig, RenderRequest renderRequest,
+		boolean compress, boolean rowPerPrimaryKey) {
 
-		if (companyResultDataMap != null) {
-			String[] headerKeys;
+		File file = null;
 
-			if (groupBySite) {
-				headerKeys = new String[] {
-					"output.company", "output.groupid", "output.groupname",
-					"output.entityclass", "output.entityname",
-					"output.errortype", "output.count", "output.primarykeys"
-				};
+		try {
+			if (compress) {
+				file = File.createTempFile("index-checker-output-", ".csv.gz");
 			}
 			else {
-				headerKeys = new String[] {
-					"output.company", "output.entityclass", "output.entityname",
-					"output.errortype", "output.count", "output.primarykeys"
-				};
+				file = File.createTempFile("index-checker-output-", ".csv");
 			}
 
-			List<String> headers = OutputUtils.getHeaders(
-				portletConfig, locale, headerKeys);
+			file.deleteOnExit();
 
-			out.add(OutputUtils.getCSVRow(headers));
-		}
+			CSVWriter csvWriter = CSVWriter.create(file, compress);
 
-		for (Map.Entry<Company, Long> companyEntry :
-				companyProcessTime.entrySet()) {
+			boolean written;
 
-			Long processTime = companyEntry.getValue();
+			try {
+				written = writeCSVOutput(
+					csvWriter, portletConfig, renderRequest, rowPerPrimaryKey);
+			}
+			finally {
+				csvWriter.close();
+			}
 
-			Company company = companyEntry.getKey();
+			if (written) {
+				return file;
+			}
+		}
+		catch (IOException ioe) {
+			_log.error("Unable to write the CSV output: " + ioe.getMessage());
 
-			String companyOutput =
-				company.getCompanyId() + " - " + company.getWebId();
+			if (_log.isDebugEnabled()) {
+				_log.debug(ioe, ioe);
+			}
+		}
 
-			if (companyResultDataMap != null) {
-				Map<Long, List<Comparison>> resultDataMap =
-					companyResultDataMap.get(company);
+		if (file != null) {
+			file.delete();
+		}
 
-				int numberOfRows = 0;
+		return null;
+	}
 
-				for (Map.Entry<Long, List<Comparison>> entry :
-						resultDataMap.entrySet()) {
+	/**
+	 * Generates a CSV row for each model with its execution metrics: rows,
+	 * index documents and pages, elapsed time, rows per second and time and
+	 * allocated bytes of each phase. Allocated bytes are empty if the JVM
+	 * doesn't measure them.
+	 */
+	public static List<String> generateMetricsCSVOutput(
+		PortletConfig portletConfig, Locale locale, String companyOutput,
+		List<CheckMetrics> checkMetricsList) {
+
+		List<String> headerKeys = ListUtil.fromArray(
+			new String[] {
+				"output.company", "output.entityclass", "output.metrics.rows",
+				"output.metrics.documents", "output.metrics.index-pages",
+				"output.metrics.elapsed-time",
+				"output.metrics.rows-per-second"
+			});
+
+		for (Phase phase : Phase.values()) {
+			headerKeys.add("output.metrics.time-" + phase.getName());
+		}
 
-					String groupIdOutput = null;
-					String groupNameOutput = null;
+		for (Phase phase : Phase.values()) {
+			headerKeys.add("output.metrics.allocated-bytes-" + phase.getName());
+		}
 
-					if (groupBySite) {
-						try {
-							Group group = GroupLocalServiceUtil.fetchGroup(
-								entry.getKey());
+		List<String> out = new ArrayList<>();
 
-							if (group == null) {
-								groupIdOutput = LanguageUtil.get(
-									resourceBundle,
-									"output.not-applicable-groupid");
-								groupNameOutput = LanguageUtil.get(
-									resourceBundle,
-									"output.not-applicable-groupname");
-							}
-							else {
-								groupIdOutput = "" + group.getGroupId();
-								groupNameOutput = group.getName(locale);
-							}
-						}
-						catch (Exception e) {
-							groupIdOutput = "" + entry.getKey();
-						}
-					}
+		List<String> headers = OutputUtils.getHeaders(
+			portletConfig, locale, headerKeys.toArray(new String[0]));
 
-					for (Comparison comp : entry.getValue()) {
-						String lineError = OutputUtils.generateCSVRow(
-							resourceBundle, comp, companyOutput, groupIdOutput,
-							groupNameOutput, "error", locale, comp.getError(),
-							-1);
+		out.add(OutputUtils.getCSVRow(headers));
 
-						if (lineError != null) {
-							numberOfRows++;
-							out.add(lineError);
-						}
+		for (CheckMetrics checkMetrics : checkMetricsList) {
+			List<String> row = ListUtil.fromArray(
+				new String[] {
+					companyOutput, checkMetrics.getClassName(),
+					String.valueOf(checkMetrics.getRows()),
+					String.valueOf(checkMetrics.getDocuments()),
+					String.valueOf(checkMetrics.getIndexPages()),
+					String.valueOf(checkMetrics.getElapsedTime()),
+					String.valueOf(checkMetrics.getRowsPerSecond())
+				});
 
-						for (String type : comp.getOutputTypes()) {
-							String attribute = "pk";
+			Map<String, Long> timeByPhase = checkMetrics.getTimeByPhase();
+			Map<String, Long> allocatedBytesByPhase =
+				checkMetrics.getAllocatedBytesByPhase();
 
-							if (type.contains("right")) {
-								attribute = Field.UID;
-							}
+			for (Phase phase : Phase.values()) {
+				row.add(String.valueOf(timeByPhase.get(phase.getName())));
+			}
 
-							String line = OutputUtils.generateCSVRow(
-								resourceBundle, comp, companyOutput,
-								groupIdOutput, groupNameOutput, type, attribute,
-								locale);
+			for (Phase phase : Phase.values()) {
+				Long allocatedBytes = allocatedBytesByPhase.get(
+					phase.getName());
 
-							if (line != null) {
-								numberOfRows++;
-								out.add(line);
-							}
-						}
-					}
+				if (allocatedBytes == null) {
+					row.add(StringPool.BLANK);
 				}
-
-				if (numberOfRows == 0) {
-					out.add(StringPool.BLANK);
-					out.add(
-						"No results found: your system is ok or perhaps you " +
-							"have to change some filters");
+				else {
+					row.add(String.valueOf(allocatedBytes));
 				}
 			}
 
-			String errorMessage = companyError.get(company);
-
-			if (Validator.isNotNull(errorMessage)) {
-				out.add(
-					"Company: " + company.getCompanyId() + " - " +
-						company.getWebId());
-				out.add(errorMessage);
-			}
-
-			out.add(StringPool.BLANK);
-			out.add(
-				"Executed " + title + " for company " + company.getCompanyId() +
-					" in " + processTime + " ms");
-
-			out.add(StringPool.BLANK);
+			out.add(OutputUtils.getCSVRow(row));
 		}
 
-		Bundle bundle = FrameworkUtil.getBundle(IndexCheckerOutput.class);
-
-		out.add("Version: " + bundle.getVersion());
-
-		out.add(StringPool.BLANK);
-
 		return out;
 	}
 
@@ -357,4 +316,208 @@ public class IndexCheckerOutput {
 		return searchContainer;
 	}
 
+	/**
+	 * Writes the CSV output of the results stored in the render request.
+	 * Returns false if there are no results.
+	 */
+	@SuppressWarnings("unchecked")
+	public static boolean writeCSVOutput(
+			CSVWriter csvWriter, PortletConfig portletConfig,
+			RenderRequest renderRequest, boolean rowPerPrimaryKey)
+		throws IOException {
+
+		EnumSet<ExecutionMode> executionMode =
+			(EnumSet<ExecutionMode>)renderRequest.getAttribute("executionMode");
+		Map<Company, Long> companyProcessTime =
+			(Map<Company, Long>)renderRequest.getAttribute(
+				"companyProcessTime");
+		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap =
+			(Map<Company, Map<Long, List<Comparison>>>)
+				renderRequest.getAttribute("companyResultDataMap");
+
+		if ((executionMode == null) || (companyProcessTime == null) ||
+			(companyResultDataMap == null)) {
+
+			return false;
+		}
+
+		String title = (String)renderRequest.getAttribute("title");
+		Map<Company, String> companyError =
+			(Map<Company, String>)renderRequest.getAttribute("companyError");
+		Map<Company, List<CheckMetrics>> companyMetrics =
+			(Map<Company, List<CheckMetrics>>)renderRequest.getAttribute(
+				"companyMetrics");
+
+		writeCSVOutput(
+			csvWriter, portletConfig, title, renderRequest.getLocale(),
+			executionMode.contains(ExecutionMode.GROUP_BY_SITE),
+			companyProcessTime, companyResultDataMap, companyError,
+			companyMetrics, rowPerPrimaryKey);
+
+		return true;
+	}
+
+	/**
+	 * Writes the CSV output. If companyMetrics is not null, the execution
+	 * metrics of each model are added after the results of each company. If
+	 * rowPerPrimaryKey is true, a row is written for each primary key of a
+	 * result, otherwise all the primary keys are written in a single row.
+	 */
+	public static void writeCSVOutput(
+			CSVWriter csvWriter, PortletConfig portletConfig, String title,
+			Locale locale, boolean groupBySite,
+			Map<Company, Long> companyProcessTime,
+			Map<Company, Map<Long, List<Comparison>>> companyResultDataMap,
+			Map<Company, String> companyError,
+			Map<Company, List<CheckMetrics>> companyMetrics,
+			boolean rowPerPrimaryKey)
+		throws IOException {
+
+		ResourceBundle resourceBundle = portletConfig.getResourceBundle(locale);
+
+		if (companyResultDataMap != null) {
+			String[] headerKeys;
+
+			if (groupBySite) {
+				headerKeys = new String[] {
+					"output.company", "output.groupid", "output.groupname",
+					"output.entityclass", "output.entityname",
+					"output.errortype", "output.count", "output.primarykeys"
+				};
+			}
+			else {
+				headerKeys = new String[] {
+					"output.company", "output.entityclass", "output.entityname",
+					"output.errortype", "output.count", "output.primarykeys"
+				};
+			}
+
+			List<String> headers = OutputUtils.getHeaders(
+				portletConfig, locale, headerKeys);
+
+			csvWriter.writeRow(headers);
+		}
+
+		for (Map.Entry<Company, Long> companyEntry :
+				companyProcessTime.entrySet()) {
+
+			Long processTime = companyEntry.getValue();
+
+			Company company = companyEntry.getKey();
+
+			String companyOutput =
+				company.getCompanyId() + " - " + company.getWebId();
+
+			if (companyResultDataMap != null) {
+				Map<Long, List<Comparison>> resultDataMap =
+					companyResultDataMap.get(company);
+
+				int numberOfRows = 0;
+
+				for (Map.Entry<Long, List<Comparison>> entry :
+						resultDataMap.entrySet()) {
+
+					String groupIdOutput = null;
+					String groupNameOutput = null;
+
+					if (groupBySite) {
+						try {
+							Group group = GroupLocalServiceUtil.fetchGroup(
+								entry.getKey());
+
+							if (group == null) {
+								groupIdOutput = LanguageUtil.get(
+									resourceBundle,
+									"output.not-applicable-groupid");
+								groupNameOutput = LanguageUtil.get(
+									resourceBundle,
+									"output.not-applicable-groupname");
+							}
+							else {
+								groupIdOutput = "" + group.getGroupId();
+								groupNameOutput = group.getName(locale);
+							}
+						}
+						catch (Exception e) {
+							groupIdOutput = "" + entry.getKey();
+						}
+					}
+
+					for (Comparison comp : entry.getValue()) {
+						String lineError = OutputUtils.generateCSVRow(
+							resourceBundle, comp, companyOutput, groupIdOutput,
+							groupNameOutput, "error", locale, comp.getError(),
+							-1);
+
+						if (lineError != null) {
+							numberOfRows++;
+							csvWriter.writeLine(lineError);
+						}
+
+						for (String type : comp.getOutputTypes()) {
+							String attribute = "pk";
+
+							if (type.contains("right")) {
+								attribute = Field.UID;
+							}
+
+							numberOfRows += OutputUtils.writeCSVRows(
+								csvWriter, resourceBundle, comp, companyOutput,
+								groupIdOutput, groupNameOutput, type, attribute,
+								locale, rowPerPrimaryKey);
+						}
+					}
+				}
+
+				if (numberOfRows == 0) {
+					csvWriter.writeLine(StringPool.BLANK);
+					csvWriter.writeLine(
+						"No results found: your system is ok or perhaps you " +
+							"have to change some filters");
+				}
+			}
+
+			String errorMessage = companyError.get(company);
+
+			if (Validator.isNotNull(errorMessage)) {
+				csvWriter.writeLine(
+					"Company: " + company.getCompanyId() + " - " +
+						company.getWebId());
+				csvWriter.writeLine(errorMessage);
+			}
+
+			csvWriter.writeLine(StringPool.BLANK);
+			csvWriter.writeLine(
+				"Executed " + title + " for company " + company.getCompanyId() +
+					" in " + processTime + " ms");
+
+			csvWriter.writeLine(StringPool.BLANK);
+
+			if (companyMetrics == null) {
+				continue;
+			}
+
+			List<CheckMetrics> checkMetricsList = companyMetrics.get(company);
+
+			if ((checkMetricsList != null) && !checkMetricsList.isEmpty()) {
+				List<String> metricsLines = generateMetricsCSVOutput(
+					portletConfig, locale, companyOutput, checkMetricsList);
+
+				for (String metricsLine : metricsLines) {
+					csvWriter.writeLine(metricsLine);
+				}
+
+				csvWriter.writeLine(StringPool.BLANK);
+			}
+		}
+
+		Bundle bundle = FrameworkUtil.getBundle(IndexCheckerOutput.class);
+
+		csvWriter.writeLine("Version: " + bundle.getVersion());
+
+		csvWriter.writeLine(StringPool.BLANK);
+	}
+
+	private static Log _log = LogFactoryUtil.getLog(IndexCheckerOutput.class);
+
 }
\ No newline at end of file
@@ -14,6 +14,8 @@
 
 package jorgediazest.indexchecker.portlet;
 
+import com.liferay.portal.kernel.dao.orm.Criterion;
+import com.liferay.portal.kernel.dao.orm.Property;
 import com.liferay.portal.kernel.log.Log;
 import com.liferay.portal.kernel.log.LogFactoryUtil;
 import com.liferay.portal.kernel.security.auth.CompanyThreadLocal;
@@ -21,26 +23,36 @@ import com.liferay.portal.kernel.security.auth.CompanyThreadLocal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
 import jorgediazest.indexchecker.ExecutionMode;
 import jorgediazest.indexchecker.data.DataIndexCheckerModelComparator;
 import jorgediazest.indexchecker.index.IndexSearchHelper;
 import jorgediazest.indexchecker.model.IndexCheckerPermissionsHelper;
 import jorgediazest.indexchecker.model.IndexCheckerQueryHelper;
+import jorgediazest.indexchecker.util.CheckMetrics;
+import jorgediazest.indexchecker.util.CheckMetrics.Phase;
+import jorgediazest.indexchecker.util.CheckMetrics.PhaseTimer;
 import jorgediazest.indexchecker.util.ConfigurationUtil;
+import jorgediazest.indexchecker.util.PortletPropsValues;
 
 import jorgediazest.util.comparator.DataComparator;
 import jorgediazest.util.data.Comparison;
 import jorgediazest.util.data.ComparisonUtil;
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataPageIterator;
 import jorgediazest.util.data.DataUtil;
 import jorgediazest.util.model.Model;
+import jorgediazest.util.model.ModelUtil;
 
 /**
  * @author Jorge Díaz
@@ -59,6 +71,27 @@ public class CallableCheckGroupAndModel implements Callable<Comparison> {
 		this.endModifiedDate = endModifiedDate;
 		this.model = model;
 		this.executionMode = executionMode;
+
+		checkMetrics = CheckMetrics.getCheckMetrics(
+			companyId, model.getClassName());
+	}
+
+	/**
+	 * Checks only the rows with primary key in the range [minPrimaryKey,
+	 * maxPrimaryKey). Null values are not limited.
+	 */
+	public CallableCheckGroupAndModel(
+		Map<String, Map<Long, List<Data>>> queryCache, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Model model, Set<ExecutionMode> executionMode, Long minPrimaryKey,
+		Long maxPrimaryKey) {
+
+		this(
+			queryCache, companyId, groupIds, startModifiedDate,
+			endModifiedDate, model, executionMode);
+
+		this.minPrimaryKey = minPrimaryKey;
+		this.maxPrimaryKey = maxPrimaryKey;
 	}
 
 	@Override
@@ -75,6 +108,12 @@ public class CallableCheckGroupAndModel implements Callable<Comparison> {
 			ExecutionMode.SHOW_INDEX);
 
 		boolean oldIgnoreCase = DataUtil.getIgnoreCase();
+		long oldCompanyId = CompanyThreadLocal.getCompanyId();
+
+		PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+			checkMetrics, Phase.DATABASE);
+
+		checkMetrics.start();
 
 		try {
 			DataUtil.setIgnoreCase(true);
@@ -113,90 +152,336 @@ public class CallableCheckGroupAndModel implements Callable<Comparison> {
 			IndexCheckerPermissionsHelper permissionsHelper =
 				ConfigurationUtil.getPermissionsHelper(model);
 
+			IndexSearchHelper indexSearchHelper =
+				ConfigurationUtil.getIndexSearchHelper(model);
+
+			Collection<String> exactAttributes =
+				ConfigurationUtil.getExactAttributesToCheck(model);
+
+			List<String> exactAttributesList = new ArrayList<>(
+				model.getKeyAttributes());
+
+			exactAttributesList.addAll(exactAttributes);
+
+			DataComparator exactDataComparator =
+				new DataIndexCheckerModelComparator(exactAttributesList);
+
+			exactDataComparator.setIgnoreNulls(true);
+
+			/* Content fingerprints discard most of the different data before
+			 * comparing each exact attribute */
+
+			exactDataComparator.setUseFingerprints(true);
+
+			if (executionMode.contains(ExecutionMode.STREAMING_COMPARISON) &&
+				(minPrimaryKey == null) && (maxPrimaryKey == null) &&
+				(indexSearchHelper != null) &&
+				queryHelper.isStreamingSupported(model) &&
+				indexSearchHelper.isStreamingSupported(model)) {
+
+				Iterator<Data> liferayDataIterator = getLiferayDataIterator(
+					queryHelper, permissionsHelper, checkRelatedData);
+
+				Iterator<Data> indexDataIterator;
+
+				if (!showOnlyIndex && !liferayDataIterator.hasNext()) {
+					indexDataIterator = Collections.emptyIterator();
+				}
+				else {
+					indexDataIterator = indexSearchHelper.getIndexDataIterator(
+						model,
+						queryHelper.calculateRelatedModels(
+							model, checkRelatedData),
+						getIndexAttributesToQuery(exactAttributes), companyId,
+						groupIds, startModifiedDate, endModifiedDate);
+				}
+
+				/* Database and index pages are read while comparing, their
+				 * phases pause the comparison phase */
+
+				CheckMetrics.switchPhase(Phase.COMPARISON);
+
+				return ComparisonUtil.getComparison(
+					model, exactDataComparator, liferayDataIterator,
+					indexDataIterator, showBothExact, showBothNotExact,
+					showOnlyLiferay, showOnlyIndex);
+			}
+
+			/* Index data is read in a forked task while database data is
+			 * being read and processed. It is skipped only if there is no
+			 * database data and index orphans are not requested. Subtasks
+			 * always read it, so the orphans of their range are reported */
+
+			boolean skipIndexIfEmpty = !showOnlyIndex && !subtask;
+
+			ForkJoinTask<Set<Data>> indexDataTask = null;
+
+			boolean indexDataTaskForked = false;
+
+			if ((indexSearchHelper != null) &&
+				(!skipIndexIfEmpty || (modelCount != 0))) {
+
+				indexDataTask = getIndexDataTask(
+					queryHelper, indexSearchHelper, exactAttributes,
+					checkRelatedData);
+
+				if (ForkJoinTask.inForkJoinPool()) {
+					indexDataTask.fork();
+
+					indexDataTaskForked = true;
+				}
+			}
+
 			Map<Long, Data> liferayDataMap = queryHelper.getLiferayData(
-				model, groupIds);
+				model, groupIds, getPrimaryKeyRangeCriterion());
+
+			fillLiferayData(
+				queryHelper, permissionsHelper, liferayDataMap,
+				checkRelatedData);
+
+			Set<Data> liferayData = new HashSet<>(liferayDataMap.values());
+
+			Set<Data> indexData;
+
+			CheckMetrics.switchPhase(Phase.INDEX);
+
+			if (indexDataTask == null) {
+				indexData = new HashSet<>();
+			}
+			else if (skipIndexIfEmpty && liferayData.isEmpty()) {
+				indexDataTask.cancel(false);
+
+				indexData = new HashSet<>();
+			}
+			else if (indexDataTaskForked) {
+				indexData = indexDataTask.join();
+			}
+			else {
+				indexData = indexDataTask.invoke();
+			}
+
+			CheckMetrics.switchPhase(Phase.COMPARISON);
+
+			return ComparisonUtil.getComparison(
+				model, exactDataComparator, liferayData, indexData,
+				showBothExact, showBothNotExact, showOnlyLiferay,
+				showOnlyIndex);
+		}
+		catch (Throwable t) {
+			return ComparisonUtil.getError(model, t);
+		}
+		finally {
+			DataUtil.setIgnoreCase(oldIgnoreCase);
+
+			CompanyThreadLocal.setCompanyId(oldCompanyId);
+
+			CheckMetrics.endPhase(previousPhaseTimer);
 
+			checkMetrics.finish();
+		}
+	}
+
+	/**
+	 * Sets the number of rows of the model in database, if it was already
+	 * queried, so the index query is skipped without another count query if
+	 * the model is empty.
+	 */
+	public void setModelCount(long modelCount) {
+		this.modelCount = modelCount;
+	}
+
+	/**
+	 * Sets if the check is a part of a split model. Index data of subtasks is
+	 * always read, even if their part of the database data is empty.
+	 */
+	public void setSubtask(boolean subtask) {
+		this.subtask = subtask;
+	}
+
+	protected void fillLiferayData(
+			IndexCheckerQueryHelper queryHelper,
+			IndexCheckerPermissionsHelper permissionsHelper,
+			Map<Long, Data> liferayDataMap, boolean checkRelatedData)
+		throws Exception {
+
+		checkMetrics.addRows(liferayDataMap.size());
+
+		PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+			checkMetrics, Phase.DATABASE);
+
+		try {
 			for (Data data : liferayDataMap.values()) {
 				queryHelper.postProcessData(data);
+			}
 
-				if (checkRelatedData) {
+			if (checkRelatedData) {
+				CheckMetrics.switchPhase(Phase.PERMISSIONS);
+
+				for (Data data : liferayDataMap.values()) {
 					permissionsHelper.addPermissionsClassNameGroupIdFields(
 						data);
 				}
 			}
 
+			CheckMetrics.switchPhase(Phase.RELATED_DATA);
+
 			queryHelper.addRelatedModelData(
 				queryCache, liferayDataMap, model, groupIds, checkRelatedData);
 
 			if (checkRelatedData) {
+				CheckMetrics.switchPhase(Phase.PERMISSIONS);
+
 				for (Data data : liferayDataMap.values()) {
 					permissionsHelper.addRolesFields(data);
 				}
 			}
+		}
+		finally {
+			CheckMetrics.endPhase(previousPhaseTimer);
+		}
+	}
 
-			Collection<String> exactAttributes =
-				ConfigurationUtil.getExactAttributesToCheck(model);
+	protected Set<String> getIndexAttributesToQuery(
+		Collection<String> exactAttributes) {
 
-			Set<Data> liferayData = new HashSet<>(liferayDataMap.values());
+		Set<String> indexAttributesToQuery = new HashSet<>(
+			ConfigurationUtil.getModelAttributesToQuery(model));
 
-			Set<Data> indexData;
+		indexAttributesToQuery.addAll(exactAttributes);
 
-			IndexSearchHelper indexSearchHelper =
-				ConfigurationUtil.getIndexSearchHelper(model);
+		return indexAttributesToQuery;
+	}
 
-			if ((!showOnlyIndex && liferayData.isEmpty()) ||
-				(indexSearchHelper == null)) {
+	protected ForkJoinTask<Set<Data>> getIndexDataTask(
+		final IndexCheckerQueryHelper queryHelper,
+		final IndexSearchHelper indexSearchHelper,
+		final Collection<String> exactAttributes,
+		final boolean checkRelatedData) {
 
-				indexData = new HashSet<>();
-			}
-			else {
-				Set<Model> relatedModels = queryHelper.calculateRelatedModels(
-					model, checkRelatedData);
+		return ForkJoinTask.adapt(
+			new Callable<Set<Data>>() {
+
+				@Override
+				public Set<Data> call() throws Exception {
+					boolean oldIgnoreCase = DataUtil.getIgnoreCase();
+					long oldCompanyId = CompanyThreadLocal.getCompanyId();
+
+					PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+						checkMetrics, Phase.INDEX);
+
+					try {
+						DataUtil.setIgnoreCase(true);
+
+						CompanyThreadLocal.setCompanyId(companyId);
 
-				Set<String> indexAttributesToQuery = new HashSet<>(
-					ConfigurationUtil.getModelAttributesToQuery(model));
+						Set<Model> relatedModels =
+							queryHelper.calculateRelatedModels(
+								model, checkRelatedData);
 
-				indexAttributesToQuery.addAll(exactAttributes);
+						Set<Data> indexData = indexSearchHelper.getIndexData(
+							model, relatedModels,
+							getIndexAttributesToQuery(exactAttributes),
+							companyId, groupIds, startModifiedDate,
+							endModifiedDate, minPrimaryKey, maxPrimaryKey);
 
-				indexData = indexSearchHelper.getIndexData(
-					model, relatedModels, indexAttributesToQuery, companyId,
-					groupIds, startModifiedDate, endModifiedDate);
+						for (Data data : indexData) {
+							indexSearchHelper.postProcessData(data);
+						}
 
-				for (Data data : indexData) {
-					indexSearchHelper.postProcessData(data);
+						return indexData;
+					}
+					finally {
+						DataUtil.setIgnoreCase(oldIgnoreCase);
+
+						CompanyThreadLocal.setCompanyId(oldCompanyId);
+
+						CheckMetrics.endPhase(previousPhaseTimer);
+					}
 				}
-			}
 
-			List<String> exactAttributesList = new ArrayList<>(
-				model.getKeyAttributes());
+			});
+	}
 
-			exactAttributesList.addAll(exactAttributes);
+	protected Iterator<Data> getLiferayDataIterator(
+			final IndexCheckerQueryHelper queryHelper,
+			final IndexCheckerPermissionsHelper permissionsHelper,
+			final boolean checkRelatedData)
+		throws Exception {
 
-			DataComparator exactDataComparator =
-				new DataIndexCheckerModelComparator(exactAttributesList);
+		final Iterator<Data> dataIterator = queryHelper.getLiferayDataIterator(
+			model, groupIds);
 
-			exactDataComparator.setIgnoreNulls(true);
+		return new DataPageIterator() {
 
-			return ComparisonUtil.getComparison(
-				model, exactDataComparator, liferayData, indexData,
-				showBothExact, showBothNotExact, showOnlyLiferay,
-				showOnlyIndex);
+			@Override
+			protected Collection<Data> nextPage() throws Exception {
+				if (!dataIterator.hasNext()) {
+					return null;
+				}
+
+				int pageSize = PortletPropsValues.QUERY_PAGE_SIZE;
+
+				Map<Long, Data> liferayDataMap = new LinkedHashMap<>();
+
+				PhaseTimer previousPhaseTimer = CheckMetrics.startPhase(
+					checkMetrics, Phase.DATABASE);
+
+				try {
+					while (dataIterator.hasNext() &&
+						   (liferayDataMap.size() < pageSize)) {
+
+						Data data = dataIterator.next();
+
+						liferayDataMap.put(data.getPrimaryKey(), data);
+					}
+				}
+				finally {
+					CheckMetrics.endPhase(previousPhaseTimer);
+				}
+
+				fillLiferayData(
+					queryHelper, permissionsHelper, liferayDataMap,
+					checkRelatedData);
+
+				return liferayDataMap.values();
+			}
+
+		};
+	}
+
+	protected Criterion getPrimaryKeyRangeCriterion() {
+		if ((minPrimaryKey == null) && (maxPrimaryKey == null)) {
+			return null;
 		}
-		catch (Throwable t) {
-			return ComparisonUtil.getError(model, t);
+
+		Property property = model.getProperty(model.getPrimaryKeyAttribute());
+
+		Criterion criterion = null;
+
+		if (minPrimaryKey != null) {
+			criterion = property.ge(minPrimaryKey);
 		}
-		finally {
-			DataUtil.setIgnoreCase(oldIgnoreCase);
+
+		if (maxPrimaryKey != null) {
+			criterion = ModelUtil.generateConjunctionCriterion(
+				criterion, property.lt(maxPrimaryKey));
 		}
+
+		return criterion;
 	}
 
+	protected CheckMetrics checkMetrics;
 	protected long companyId = -1;
 	protected Date endModifiedDate = null;
 	protected Set<ExecutionMode> executionMode = null;
 	protected List<Long> groupIds = null;
+	protected Long maxPrimaryKey = null;
+	protected Long minPrimaryKey = null;
 	protected Model model = null;
+	protected long modelCount = -1;
 	protected Map<String, Map<Long, List<Data>>> queryCache = null;
 	protected Date startModifiedDate = null;
+	protected boolean subtask = false;
 
 	private static Log _log = LogFactoryUtil.getLog(
 		CallableCheckGroupAndModel.class);
@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.portlet;
+
+import com.liferay.portal.kernel.dao.orm.Criterion;
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
+import com.liferay.portal.kernel.dao.orm.Property;
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+import jorgediazest.indexchecker.ExecutionMode;
+import jorgediazest.indexchecker.index.IndexSearchHelper;
+import jorgediazest.indexchecker.model.IndexCheckerQueryHelper;
+import jorgediazest.indexchecker.util.ConfigurationUtil;
+import jorgediazest.indexchecker.util.PortletPropsValues;
+
+import jorgediazest.util.data.Comparison;
+import jorgediazest.util.data.ComparisonUtil;
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+import jorgediazest.util.model.ModelUtil;
+
+/**
+ * Checks a model, splitting it in smaller tasks by group chunks or by
+ * primary key ranges if it has more rows than the configured threshold.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckGroupAndModelTask extends RecursiveTask<Comparison> {
+
+	/**
+	 * Primary key ranges can only be used if index entryClassPK is the primary
+	 * key, the same restriction of the streaming comparison, and if the index
+	 * compares entryClassPK ranges as numbers.
+	 */
+	public static boolean isPrimaryKeyRangeSupported(Model model) {
+		IndexCheckerQueryHelper queryHelper = ConfigurationUtil.getQueryHelper(
+			model);
+		IndexSearchHelper indexSearchHelper =
+			ConfigurationUtil.getIndexSearchHelper(model);
+
+		if ((indexSearchHelper == null) ||
+			!indexSearchHelper.isEntryClassPKRangeSupported() ||
+			!queryHelper.isStreamingSupported(model) ||
+			!indexSearchHelper.isStreamingSupported(model)) {
+
+			return false;
+		}
+
+		return true;
+	}
+
+	public CheckGroupAndModelTask(
+		Map<String, Map<Long, List<Data>>> queryCache, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Model model, Set<ExecutionMode> executionMode) {
+
+		this(
+			queryCache, companyId, groupIds, startModifiedDate,
+			endModifiedDate, model, executionMode, null, null, false, false,
+			-1);
+	}
+
+	/**
+	 * Checks only the rows with primary key greater or equal than
+	 * minPrimaryKey. Model must support primary key ranges.
+	 */
+	public CheckGroupAndModelTask(
+		Map<String, Map<Long, List<Data>>> queryCache, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Model model, Set<ExecutionMode> executionMode, Long minPrimaryKey) {
+
+		this(
+			queryCache, companyId, groupIds, startModifiedDate,
+			endModifiedDate, model, executionMode, minPrimaryKey, null, false,
+			false, -1);
+	}
+
+	public void setCheckJob(CheckJob checkJob) {
+		this.checkJob = checkJob;
+	}
+
+	/**
+	 * Checks the model, reporting the progress to the check job if it is
+	 * set. Tasks of a cancelled job are skipped, a running query is not
+	 * interrupted.
+	 */
+	@Override
+	protected Comparison compute() {
+		if ((checkJob != null) && checkJob.isCancelled()) {
+			return null;
+		}
+
+		Comparison comparison = computeComparison();
+
+		if ((checkJob != null) && !subtask) {
+			checkJob.addCheckedModel(comparison);
+		}
+
+		return comparison;
+	}
+
+	protected Comparison computeComparison() {
+		try {
+			if (estimatedSize == -1) {
+				estimatedSize = countRows();
+			}
+
+			if (estimatedSize > PortletPropsValues.CHECK_SPLIT_THRESHOLD) {
+				List<CheckGroupAndModelTask> subtasks = split();
+
+				if (subtasks != null) {
+					for (CheckGroupAndModelTask subtask : subtasks) {
+						subtask.checkJob = checkJob;
+						subtask.subtask = true;
+					}
+
+					return merge(subtasks);
+				}
+			}
+		}
+		catch (Throwable t) {
+			return ComparisonUtil.getError(model, t);
+		}
+
+		Long rangeMinPrimaryKey = minPrimaryKey;
+		Long rangeMaxPrimaryKey = maxPrimaryKey;
+
+		if (openLower) {
+			rangeMinPrimaryKey = null;
+		}
+
+		if (openUpper) {
+			rangeMaxPrimaryKey = null;
+		}
+
+		CallableCheckGroupAndModel callable = new CallableCheckGroupAndModel(
+			queryCache, companyId, groupIds, startModifiedDate,
+			endModifiedDate, model, executionMode, rangeMinPrimaryKey,
+			rangeMaxPrimaryKey);
+
+		/* Size of a task that is not split is the count of its rows */
+
+		if (!subtask) {
+			callable.setModelCount(estimatedSize);
+		}
+
+		callable.setSubtask(subtask);
+
+		try {
+			Comparison comparison = callable.call();
+
+			if (checkJob != null) {
+				checkJob.addRows(Math.max(estimatedSize, 0));
+			}
+
+			return comparison;
+		}
+		catch (Exception e) {
+			return ComparisonUtil.getError(model, e);
+		}
+	}
+
+	protected CheckGroupAndModelTask(
+		Map<String, Map<Long, List<Data>>> queryCache, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Model model, Set<ExecutionMode> executionMode, Long minPrimaryKey,
+		Long maxPrimaryKey, boolean openLower, boolean openUpper,
+		long estimatedSize) {
+
+		this.queryCache = queryCache;
+		this.companyId = companyId;
+		this.groupIds = groupIds;
+		this.startModifiedDate = startModifiedDate;
+		this.endModifiedDate = endModifiedDate;
+		this.model = model;
+		this.executionMode = executionMode;
+		this.minPrimaryKey = minPrimaryKey;
+		this.maxPrimaryKey = maxPrimaryKey;
+		this.openLower = openLower;
+		this.openUpper = openUpper;
+		this.estimatedSize = estimatedSize;
+	}
+
+	/**
+	 * Returns the number of rows of the groups and primary key range of the
+	 * task. Subtasks are counted again, as rows are not evenly distributed
+	 * between groups or primary key ranges.
+	 */
+	protected long countRows() throws Exception {
+		Criterion criterion = null;
+
+		if ((groupIds != null) && model.hasAttribute("groupId")) {
+			criterion = model.getAttributeCriterion("groupId", groupIds);
+		}
+
+		if ((minPrimaryKey != null) && !openLower) {
+			Property property = model.getProperty(
+				model.getPrimaryKeyAttribute());
+
+			criterion = ModelUtil.generateConjunctionCriterion(
+				criterion, property.ge(minPrimaryKey));
+		}
+
+		if ((maxPrimaryKey != null) && !openUpper) {
+			Property property = model.getProperty(
+				model.getPrimaryKeyAttribute());
+
+			criterion = ModelUtil.generateConjunctionCriterion(
+				criterion, property.lt(maxPrimaryKey));
+		}
+
+		if (criterion == null) {
+			return model.count();
+		}
+
+		return model.count(criterion);
+	}
+
+	protected Comparison merge(List<CheckGroupAndModelTask> subtasks) {
+		invokeAll(subtasks);
+
+		List<Comparison> comparisons = new ArrayList<>();
+
+		for (CheckGroupAndModelTask subtask : subtasks) {
+			Comparison comparison = subtask.join();
+
+			if (comparison != null) {
+				comparisons.add(comparison);
+			}
+		}
+
+		if (comparisons.isEmpty()) {
+			return null;
+		}
+
+		List<Comparison> merged = ComparisonUtil.mergeComparisons(comparisons);
+
+		return merged.get(0);
+	}
+
+	protected List<CheckGroupAndModelTask> split() throws Exception {
+		if ((groupIds != null) && (groupIds.size() > 1) &&
+			model.hasAttribute("groupId")) {
+
+			int half = groupIds.size() / 2;
+
+			List<CheckGroupAndModelTask> subtasks = new ArrayList<>();
+
+			subtasks.add(
+				new CheckGroupAndModelTask(
+					queryCache, companyId,
+					new ArrayList<>(groupIds.subList(0, half)),
+					startModifiedDate, endModifiedDate, model, executionMode,
+					minPrimaryKey, maxPrimaryKey, openLower, openUpper, -1));
+			subtasks.add(
+				new CheckGroupAndModelTask(
+					queryCache, companyId,
+					new ArrayList<>(groupIds.subList(half, groupIds.size())),
+					startModifiedDate, endModifiedDate, model, executionMode,
+					minPrimaryKey, maxPrimaryKey, openLower, openUpper, -1));
+
+			return subtasks;
+		}
+
+		/* Streaming comparison is not split, it already uses little memory */
+
+		if (executionMode.contains(ExecutionMode.STREAMING_COMPARISON) ||
+			!isPrimaryKeyRangeSupported(model)) {
+
+			return null;
+		}
+
+		if ((minPrimaryKey == null) || (maxPrimaryKey == null)) {
+			calculatePrimaryKeyRange();
+		}
+
+		if ((minPrimaryKey == null) || (maxPrimaryKey == null) ||
+			((maxPrimaryKey - minPrimaryKey) < 2)) {
+
+			return null;
+		}
+
+		long middle = minPrimaryKey + ((maxPrimaryKey - minPrimaryKey) / 2);
+
+		List<CheckGroupAndModelTask> subtasks = new ArrayList<>();
+
+		subtasks.add(
+			new CheckGroupAndModelTask(
+				queryCache, companyId, groupIds, startModifiedDate,
+				endModifiedDate, model, executionMode, minPrimaryKey, middle,
+				openLower, false, -1));
+		subtasks.add(
+			new CheckGroupAndModelTask(
+				queryCache, companyId, groupIds, startModifiedDate,
+				endModifiedDate, model, executionMode, middle, maxPrimaryKey,
+				false, openUpper, -1));
+
+		return subtasks;
+	}
+
+	/**
+	 * Sets the primary key range [min, max + 1) of the whole table. First and
+	 * last ranges are open ended, so index entries outside this range are also
+	 * checked. A lower bound set by the incremental check is kept.
+	 */
+	protected void calculatePrimaryKeyRange() throws Exception {
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		ProjectionList projectionList = model.getPropertyProjection(
+			new String[] {
+				"min(" + primaryKeyAttribute + ")",
+				"max(" + primaryKeyAttribute + ")"
+			});
+
+		List<?> results = model.executeDynamicQuery(null, projectionList);
+
+		if (results.isEmpty()) {
+			return;
+		}
+
+		Object[] minMax = (Object[])results.get(0);
+
+		Long min = DataUtil.castLong(minMax[0]);
+		Long max = DataUtil.castLong(minMax[1]);
+
+		if ((min == null) || (max == null)) {
+			return;
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug(
+				"Splitting " + model.getName() + " by primary key range [" +
+					min + ", " + max + "]");
+		}
+
+		if (minPrimaryKey == null) {
+			minPrimaryKey = min;
+			openLower = true;
+		}
+
+		if (maxPrimaryKey == null) {
+			maxPrimaryKey = max + 1;
+			openUpper = true;
+		}
+	}
+
+	protected CheckJob checkJob;
+	protected long companyId;
+	protected Date endModifiedDate;
+	protected long estimatedSize;
+	protected Set<ExecutionMode> executionMode;
+	protected List<Long> groupIds;
+	protected Long maxPrimaryKey;
+	protected Long minPrimaryKey;
+	protected Model model;
+	protected boolean openLower;
+	protected boolean openUpper;
+	protected Map<String, Map<Long, List<Data>>> queryCache;
+	protected Date startModifiedDate;
+	protected boolean subtask;
+
+	private static Log _log = LogFactoryUtil.getLog(
+		CheckGroupAndModelTask.class);
+
+}
\ No newline at end of file
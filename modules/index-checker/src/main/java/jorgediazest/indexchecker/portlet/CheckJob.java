@@ -0,0 +1,446 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.portlet;
+
+import com.liferay.portal.kernel.json.JSONArray;
+import com.liferay.portal.kernel.json.JSONFactoryUtil;
+import com.liferay.portal.kernel.json.JSONObject;
+import com.liferay.portal.kernel.model.Company;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jorgediazest.indexchecker.ExecutionMode;
+import jorgediazest.indexchecker.util.CheckMetrics;
+
+import jorgediazest.util.data.Comparison;
+import jorgediazest.util.data.Data;
+
+/**
+ * Parameters, progress and results of a check, reindex or remove orphans
+ * execution. Progress is updated by the check tasks, so it can be polled
+ * while the job is running in background.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckJob {
+
+	public static final String STATUS_CANCELLED = "cancelled";
+
+	public static final String STATUS_DONE = "done";
+
+	public static final String STATUS_FAILED = "failed";
+
+	public static final String STATUS_QUEUED = "queued";
+
+	public static final String STATUS_RUNNING = "running";
+
+	public CheckJob(
+		String title, long userId, Locale locale,
+		EnumSet<ExecutionMode> executionMode, String[] filterClassNameArr,
+		String[] filterGroupIdArr, long filterModifiedDate,
+		int numberOfThreads, long preferencesCompanyId, String portletId) {
+
+		this.title = title;
+		this.userId = userId;
+		this.locale = locale;
+		this.executionMode = executionMode;
+		this.filterClassNameArr = filterClassNameArr;
+		this.filterGroupIdArr = filterGroupIdArr;
+		this.filterModifiedDate = filterModifiedDate;
+		this.numberOfThreads = numberOfThreads;
+		this.preferencesCompanyId = preferencesCompanyId;
+		this.portletId = portletId;
+
+		jobId = UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Called when a model check finishes. A summary of the comparison is
+	 * kept, so partial results can be returned while the job is running.
+	 */
+	public void addCheckedModel(Comparison comparison) {
+		_checkedModels.incrementAndGet();
+
+		if (comparison == null) {
+			return;
+		}
+
+		JSONObject jsonObject = JSONFactoryUtil.createJSONObject();
+
+		jsonObject.put("error", comparison.getError());
+		jsonObject.put("model", comparison.getModelDisplayName(locale));
+
+		JSONObject countsJSONObject = JSONFactoryUtil.createJSONObject();
+
+		for (String type : comparison.getOutputTypes()) {
+			Set<Data> data = comparison.getData(type);
+
+			if (data != null) {
+				countsJSONObject.put(type, data.size());
+			}
+		}
+
+		jsonObject.put("counts", countsJSONObject);
+
+		_partialResults.add(jsonObject);
+	}
+
+	public void addModels(int count) {
+		_models.addAndGet(count);
+	}
+
+	public void addRows(long count) {
+		_rows.addAndGet(count);
+	}
+
+	/**
+	 * Stops the job: pending check tasks are discarded and the running ones
+	 * finish as soon as they check the cancelled flag.
+	 */
+	public void cancel() {
+		if (isFinished()) {
+			return;
+		}
+
+		_cancelled = true;
+
+		ForkJoinPool forkJoinPool = _forkJoinPool;
+
+		if (forkJoinPool != null) {
+			forkJoinPool.shutdownNow();
+		}
+
+		Future<?> future = _future;
+
+		if (future != null) {
+			future.cancel(true);
+		}
+
+		if (_startTime == 0) {
+			_endTime = System.currentTimeMillis();
+			_status = STATUS_CANCELLED;
+		}
+	}
+
+	/**
+	 * Removes the results of the job, deleting the temporary files of the
+	 * spilled comparisons.
+	 */
+	public void clearResults() {
+		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap =
+			_companyResultDataMap;
+
+		_companyResultDataMap = null;
+
+		if (companyResultDataMap == null) {
+			return;
+		}
+
+		for (Map<Long, List<Comparison>> resultDataMap :
+				companyResultDataMap.values()) {
+
+			for (List<Comparison> comparisons : resultDataMap.values()) {
+				for (Comparison comparison : comparisons) {
+					comparison.clear();
+				}
+			}
+		}
+	}
+
+	public int getCheckedModels() {
+		return _checkedModels.get();
+	}
+
+	public Map<Company, String> getCompanyError() {
+		return companyError;
+	}
+
+	public Map<Company, List<CheckMetrics>> getCompanyMetrics() {
+		return companyMetrics;
+	}
+
+	public Map<Company, Long> getCompanyProcessTime() {
+		return companyProcessTime;
+	}
+
+	public Map<Company, Map<Long, List<Comparison>>> getCompanyResultDataMap() {
+		return _companyResultDataMap;
+	}
+
+	public long getElapsedTime() {
+		if (_startTime == 0) {
+			return 0;
+		}
+
+		long endTime = _endTime;
+
+		if (endTime == 0) {
+			endTime = System.currentTimeMillis();
+		}
+
+		return endTime - _startTime;
+	}
+
+	public long getEndTime() {
+		return _endTime;
+	}
+
+	public String getError() {
+		return _error;
+	}
+
+	/**
+	 * Returns the estimated remaining time in milliseconds, based on the
+	 * average time of the models already checked, or -1 if it is unknown.
+	 */
+	public long getEstimatedRemainingTime() {
+		int checkedModels = _checkedModels.get();
+		int models = _models.get();
+
+		if ((checkedModels == 0) || (models == 0) || isFinished()) {
+			return -1;
+		}
+
+		long remainingModels = Math.max(models - checkedModels, 0);
+
+		return (getElapsedTime() * remainingModels) / checkedModels;
+	}
+
+	public EnumSet<ExecutionMode> getExecutionMode() {
+		return executionMode;
+	}
+
+	public String[] getFilterClassNameArr() {
+		return filterClassNameArr;
+	}
+
+	public String[] getFilterGroupIdArr() {
+		return filterGroupIdArr;
+	}
+
+	public long getFilterModifiedDate() {
+		return filterModifiedDate;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public Locale getLocale() {
+		return locale;
+	}
+
+	public int getModels() {
+		return _models.get();
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public List<JSONObject> getPartialResults() {
+		synchronized (_partialResults) {
+			return new ArrayList<>(_partialResults);
+		}
+	}
+
+	public String getPortletId() {
+		return portletId;
+	}
+
+	/**
+	 * Returns the company of the portlet preferences where the checkpoints
+	 * are stored. They are loaded again each time they are read or stored,
+	 * so a running job doesn't overwrite newer values.
+	 */
+	public long getPreferencesCompanyId() {
+		return preferencesCompanyId;
+	}
+
+	public long getRows() {
+		return _rows.get();
+	}
+
+	public long getStartTime() {
+		return _startTime;
+	}
+
+	public String getStatus() {
+		return _status;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	public boolean isCancelled() {
+		return _cancelled;
+	}
+
+	public boolean isFinished() {
+		String status = _status;
+
+		if (status.equals(STATUS_QUEUED) || status.equals(STATUS_RUNNING)) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Executes the job in the current thread. Status is updated when the
+	 * execution finishes and the exception, if any, is thrown again.
+	 */
+	public void run(Callable<?> callable) throws Exception {
+		if (_cancelled) {
+			return;
+		}
+
+		_startTime = System.currentTimeMillis();
+		_status = STATUS_RUNNING;
+
+		try {
+			callable.call();
+
+			_finish(null);
+		}
+		catch (Exception e) {
+			_finish(e);
+
+			throw e;
+		}
+		catch (Error e) {
+			_finish(e);
+
+			throw e;
+		}
+	}
+
+	public void setCompanyResultDataMap(
+		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap) {
+
+		_companyResultDataMap = companyResultDataMap;
+	}
+
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		_forkJoinPool = forkJoinPool;
+
+		if (_cancelled) {
+			forkJoinPool.shutdownNow();
+		}
+	}
+
+	public void setFuture(Future<?> future) {
+		_future = future;
+	}
+
+	public JSONObject toJSONObject() {
+		JSONObject jsonObject = JSONFactoryUtil.createJSONObject();
+
+		jsonObject.put("checkedModels", getCheckedModels());
+		jsonObject.put("elapsedTime", getElapsedTime());
+		jsonObject.put("error", getError());
+		jsonObject.put("estimatedRemainingTime", getEstimatedRemainingTime());
+		jsonObject.put("jobId", getJobId());
+		jsonObject.put("models", getModels());
+
+		JSONArray partialResultsJSONArray = JSONFactoryUtil.createJSONArray();
+
+		for (JSONObject partialResult : getPartialResults()) {
+			partialResultsJSONArray.put(partialResult);
+		}
+
+		jsonObject.put("partialResults", partialResultsJSONArray);
+
+		jsonObject.put("rows", getRows());
+		jsonObject.put("status", getStatus());
+		jsonObject.put("title", getTitle());
+
+		return jsonObject;
+	}
+
+	protected final Map<Company, String> companyError =
+		Collections.synchronizedMap(new LinkedHashMap<Company, String>());
+	protected final Map<Company, List<CheckMetrics>> companyMetrics =
+		Collections.synchronizedMap(
+			new LinkedHashMap<Company, List<CheckMetrics>>());
+	protected final Map<Company, Long> companyProcessTime =
+		Collections.synchronizedMap(new LinkedHashMap<Company, Long>());
+	protected final EnumSet<ExecutionMode> executionMode;
+	protected final String[] filterClassNameArr;
+	protected final String[] filterGroupIdArr;
+	protected final long filterModifiedDate;
+	protected final String jobId;
+	protected final Locale locale;
+	protected final int numberOfThreads;
+	protected final String portletId;
+	protected final long preferencesCompanyId;
+	protected final String title;
+	protected final long userId;
+
+	private void _finish(Throwable t) {
+		if (t != null) {
+			_error = t.toString();
+		}
+
+		_endTime = System.currentTimeMillis();
+
+		if (_cancelled) {
+			_status = STATUS_CANCELLED;
+		}
+		else if (t != null) {
+			_status = STATUS_FAILED;
+		}
+		else {
+			_status = STATUS_DONE;
+		}
+
+		_forkJoinPool = null;
+		_future = null;
+	}
+
+	private volatile boolean _cancelled;
+	private final AtomicInteger _checkedModels = new AtomicInteger();
+	private volatile Map<Company, Map<Long, List<Comparison>>>
+		_companyResultDataMap;
+	private volatile long _endTime;
+	private volatile String _error;
+	private volatile ForkJoinPool _forkJoinPool;
+	private volatile Future<?> _future;
+	private final AtomicInteger _models = new AtomicInteger();
+	private final List<JSONObject> _partialResults =
+		Collections.synchronizedList(new ArrayList<JSONObject>());
+	private final AtomicLong _rows = new AtomicLong();
+	private volatile long _startTime;
+	private volatile String _status = STATUS_QUEUED;
+
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.portlet;
+
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jorgediazest.indexchecker.util.PortletPropsValues;
+
+/**
+ * Executes check jobs in background threads, so they are not bound to the
+ * portlet request that submitted them. Finished jobs are kept until the
+ * configured number of finished jobs is exceeded, so their results can be
+ * displayed later.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckJobManager {
+
+	public static CheckJobManager getInstance() {
+		return _instance;
+	}
+
+	public void cancel(String jobId) {
+		CheckJob checkJob = _checkJobs.get(jobId);
+
+		if (checkJob != null) {
+			checkJob.cancel();
+		}
+	}
+
+	public void cancelAll() {
+		for (CheckJob checkJob : _checkJobs.values()) {
+			checkJob.cancel();
+		}
+	}
+
+	public CheckJob getJob(String jobId) {
+		return _checkJobs.get(jobId);
+	}
+
+	public void submit(final CheckJob checkJob, final Callable<?> callable) {
+		removeFinishedJobs();
+
+		_checkJobs.put(checkJob.getJobId(), checkJob);
+
+		Future<?> future = _executorService.submit(
+			new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						checkJob.run(callable);
+					}
+					catch (Throwable t) {
+						_log.error(
+							"Error executing job " + checkJob.getJobId(), t);
+					}
+				}
+
+			});
+
+		checkJob.setFuture(future);
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Submitted job " + checkJob.getJobId() + ": " +
+					checkJob.getTitle());
+		}
+	}
+
+	protected void removeFinishedJobs() {
+		List<CheckJob> finishedJobs = new ArrayList<>();
+
+		for (CheckJob checkJob : _checkJobs.values()) {
+			if (checkJob.isFinished()) {
+				finishedJobs.add(checkJob);
+			}
+		}
+
+		int maxFinishedJobs = Math.max(
+			PortletPropsValues.CHECK_JOBS_HISTORY_SIZE - 1, 0);
+
+		if (finishedJobs.size() <= maxFinishedJobs) {
+			return;
+		}
+
+		Collections.sort(
+			finishedJobs,
+			new Comparator<CheckJob>() {
+
+				@Override
+				public int compare(CheckJob checkJob1, CheckJob checkJob2) {
+					return Long.compare(
+						checkJob1.getEndTime(), checkJob2.getEndTime());
+				}
+
+			});
+
+		for (CheckJob checkJob :
+				finishedJobs.subList(
+					0, finishedJobs.size() - maxFinishedJobs)) {
+
+			_checkJobs.remove(checkJob.getJobId());
+
+			checkJob.clearResults();
+		}
+	}
+
+	private CheckJobManager() {
+		int maxConcurrentJobs = Math.max(
+			PortletPropsValues.CHECK_JOBS_MAX_CONCURRENT, 1);
+
+		/* Jobs exceeding the limit wait in the queue with queued status */
+
+		_executorService = new ThreadPoolExecutor(
+			maxConcurrentJobs, maxConcurrentJobs, 60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(
+						runnable,
+						"IndexChecker-job-" + _threadNumber.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+
+				private final AtomicInteger _threadNumber = new AtomicInteger();
+
+			});
+
+		_executorService.allowCoreThreadTimeOut(true);
+	}
+
+	private static CheckJobManager _instance = new CheckJobManager();
+
+	private static Log _log = LogFactoryUtil.getLog(CheckJobManager.class);
+
+	private final Map<String, CheckJob> _checkJobs = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor _executorService;
+
+}
\ No newline at end of file
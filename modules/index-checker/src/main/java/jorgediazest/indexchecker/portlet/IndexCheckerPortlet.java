@@ -25,11 +25,14 @@ import com.liferay.portal.kernel.dao.orm.Property;
 import com.liferay.portal.kernel.dao.orm.QueryUtil;
 import com.liferay.portal.kernel.dao.orm.RestrictionsFactoryUtil;
 import com.liferay.portal.kernel.exception.SystemException;
+import com.liferay.portal.kernel.json.JSONFactoryUtil;
+import com.liferay.portal.kernel.json.JSONObject;
 import com.liferay.portal.kernel.log.Log;
 import com.liferay.portal.kernel.log.LogFactoryUtil;
 import com.liferay.portal.kernel.model.Company;
 import com.liferay.portal.kernel.model.Group;
 import com.liferay.portal.kernel.model.GroupConstants;
+import com.liferay.portal.kernel.portlet.JSONPortletResponseUtil;
 import com.liferay.portal.kernel.portlet.bridges.mvc.MVCPortlet;
 import com.liferay.portal.kernel.repository.model.FileEntry;
 import com.liferay.portal.kernel.search.IndexerRegistryUtil;
@@ -45,6 +48,7 @@ import com.liferay.portal.kernel.util.PortalUtil;
 import com.liferay.portal.kernel.util.SetUtil;
 import com.liferay.portal.kernel.util.Validator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -57,17 +61,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 import javax.portlet.ActionRequest;
@@ -76,6 +83,7 @@ import javax.portlet.Portlet;
 import javax.portlet.PortletConfig;
 import javax.portlet.PortletException;
 import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
 import javax.portlet.RenderRequest;
 import javax.portlet.RenderResponse;
 import javax.portlet.ResourceRequest;
@@ -85,13 +93,21 @@ import javax.portlet.ResourceURL;
 import jorgediazest.indexchecker.ExecutionMode;
 import jorgediazest.indexchecker.index.IndexSearchHelper;
 import jorgediazest.indexchecker.model.IndexCheckerModelFactory;
+import jorgediazest.indexchecker.model.PermissionsContext;
 import jorgediazest.indexchecker.output.IndexCheckerOutput;
 import jorgediazest.indexchecker.portlet.constants.IndexCheckerKeys;
+import jorgediazest.indexchecker.util.CheckMetrics;
+import jorgediazest.indexchecker.util.Checkpoint;
+import jorgediazest.indexchecker.util.CheckpointUtil;
 import jorgediazest.indexchecker.util.ConfigurationUtil;
+import jorgediazest.indexchecker.util.PortletPropsValues;
+import jorgediazest.indexchecker.util.RelatedDataCache;
 
 import jorgediazest.util.data.Comparison;
 import jorgediazest.util.data.ComparisonUtil;
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataPageIterator;
+import jorgediazest.util.data.SpillableDataSet;
 import jorgediazest.util.model.Model;
 import jorgediazest.util.model.ModelFactory;
 import jorgediazest.util.model.ModelUtil;
@@ -167,11 +183,39 @@ public class IndexCheckerPortlet extends MVCPortlet {
 	}
 
 	public static List<Future<Comparison>> executeCallableCheckGroupAndModel(
-		Map<String, Map<Long, List<Data>>> queryCache, ExecutorService executor,
-		List<Model> modelList, long companyId, List<Long> groupIds,
-		Date startModifiedDate, Date endModifiedDate,
+		Map<String, Map<Long, List<Data>>> queryCache,
+		ForkJoinPool forkJoinPool, List<Model> modelList, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
 		Set<ExecutionMode> executionMode) {
 
+		return executeCallableCheckGroupAndModel(
+			queryCache, forkJoinPool, modelList, companyId, groupIds,
+			startModifiedDate, endModifiedDate, executionMode, null);
+	}
+
+	public static List<Future<Comparison>> executeCallableCheckGroupAndModel(
+		Map<String, Map<Long, List<Data>>> queryCache,
+		ForkJoinPool forkJoinPool, List<Model> modelList, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Set<ExecutionMode> executionMode, Map<String, Checkpoint> checkpoints) {
+
+		return executeCallableCheckGroupAndModel(
+			queryCache, forkJoinPool, modelList, companyId, groupIds,
+			startModifiedDate, endModifiedDate, executionMode, checkpoints,
+			null);
+	}
+
+	/**
+	 * Submits a check task per model. If checkJob is not null, tasks report
+	 * their progress to it and they are skipped if the job is cancelled.
+	 */
+	public static List<Future<Comparison>> executeCallableCheckGroupAndModel(
+		Map<String, Map<Long, List<Data>>> queryCache,
+		ForkJoinPool forkJoinPool, List<Model> modelList, long companyId,
+		List<Long> groupIds, Date startModifiedDate, Date endModifiedDate,
+		Set<ExecutionMode> executionMode, Map<String, Checkpoint> checkpoints,
+		CheckJob checkJob) {
+
 		List<Future<Comparison>> futureResultList = new ArrayList<>();
 
 		for (Model model : modelList) {
@@ -185,11 +229,42 @@ public class IndexCheckerPortlet extends MVCPortlet {
 				continue;
 			}
 
-			CallableCheckGroupAndModel c = new CallableCheckGroupAndModel(
-				queryCache, companyId, groupIds, startModifiedDate,
-				endModifiedDate, model, executionMode);
+			Checkpoint checkpoint = null;
+
+			if (checkpoints != null) {
+				checkpoint = checkpoints.get(className);
+			}
+
+			Date modelStartModifiedDate = CheckpointUtil.getStartModifiedDate(
+				model, checkpoint, startModifiedDate);
+
+			CheckGroupAndModelTask task;
+
+			/* Models without modifiedDate are incrementally checked from the
+			 * max primary key of the last check: only new rows are checked */
+
+			if ((checkpoint != null) && (checkpoint.getPrimaryKey() != null) &&
+				!model.hasAttribute("modifiedDate") &&
+				CheckGroupAndModelTask.isPrimaryKeyRangeSupported(model)) {
+
+				task = new CheckGroupAndModelTask(
+					queryCache, companyId, groupIds, modelStartModifiedDate,
+					endModifiedDate, model, executionMode,
+					checkpoint.getPrimaryKey() + 1);
+			}
+			else {
+				task = new CheckGroupAndModelTask(
+					queryCache, companyId, groupIds, modelStartModifiedDate,
+					endModifiedDate, model, executionMode);
+			}
+
+			if (checkJob != null) {
+				task.setCheckJob(checkJob);
+
+				checkJob.addModels(1);
+			}
 
-			futureResultList.add(executor.submit(c));
+			futureResultList.add(forkJoinPool.submit(task));
 		}
 
 		return futureResultList;
@@ -198,21 +273,61 @@ public class IndexCheckerPortlet extends MVCPortlet {
 	public static Map<Long, List<Comparison>> executeCheck(
 			Company company, List<Long> groupIds, List<String> classNames,
 			Date startModifiedDate, Date endModifiedDate,
-			Set<ExecutionMode> executionMode, int threadsExecutor)
+			Set<ExecutionMode> executionMode, ForkJoinPool forkJoinPool)
+		throws ExecutionException, InterruptedException {
+
+		return executeCheck(
+			company, groupIds, classNames, startModifiedDate, endModifiedDate,
+			executionMode, forkJoinPool, null);
+	}
+
+	/**
+	 * Executes an incremental check if checkpoints map is not null: models
+	 * are only checked from their checkpoint. When the check finishes, the
+	 * map is updated with the checkpoints of the models checked without
+	 * errors.
+	 */
+	public static Map<Long, List<Comparison>> executeCheck(
+			Company company, List<Long> groupIds, List<String> classNames,
+			Date startModifiedDate, Date endModifiedDate,
+			Set<ExecutionMode> executionMode, ForkJoinPool forkJoinPool,
+			Map<String, Checkpoint> checkpoints)
+		throws ExecutionException, InterruptedException {
+
+		return executeCheck(
+			company, groupIds, classNames, startModifiedDate, endModifiedDate,
+			executionMode, forkJoinPool, checkpoints, null);
+	}
+
+	/**
+	 * Executes the check reporting its progress to checkJob, if it is not
+	 * null.
+	 */
+	public static Map<Long, List<Comparison>> executeCheck(
+			Company company, List<Long> groupIds, List<String> classNames,
+			Date startModifiedDate, Date endModifiedDate,
+			Set<ExecutionMode> executionMode, ForkJoinPool forkJoinPool,
+			Map<String, Checkpoint> checkpoints, CheckJob checkJob)
 		throws ExecutionException, InterruptedException {
 
 		long companyId = company.getCompanyId();
 
+		CheckMetrics.reset(companyId);
+		PermissionsContext.reset(companyId);
+
 		Map<String, Map<Long, List<Data>>> queryCache =
 			new ConcurrentHashMap<>();
 
 		ModelFactory modelFactory = new IndexCheckerModelFactory(
-			companyId, startModifiedDate, endModifiedDate);
+			companyId, startModifiedDate, endModifiedDate, checkpoints);
 
 		List<Model> modelList = getModelList(modelFactory, classNames);
 
-		ExecutorService executor = Executors.newFixedThreadPool(
-			threadsExecutor);
+		Map<String, Checkpoint> newCheckpoints = null;
+
+		if (checkpoints != null) {
+			newCheckpoints = calculateCheckpoints(modelList, checkpoints);
+		}
 
 		Map<Long, List<Future<Comparison>>> futureResultDataMap =
 			new TreeMap<>();
@@ -221,9 +336,9 @@ public class IndexCheckerPortlet extends MVCPortlet {
 			for (long groupId : groupIds) {
 				List<Future<Comparison>> futureResultList =
 					executeCallableCheckGroupAndModel(
-						queryCache, executor, modelList, companyId,
+						queryCache, forkJoinPool, modelList, companyId,
 						ListUtil.fromArray(groupId), startModifiedDate,
-						endModifiedDate, executionMode);
+						endModifiedDate, executionMode, checkpoints, checkJob);
 
 				futureResultDataMap.put(groupId, futureResultList);
 			}
@@ -231,8 +346,9 @@ public class IndexCheckerPortlet extends MVCPortlet {
 		else {
 			List<Future<Comparison>> futureResultList =
 				executeCallableCheckGroupAndModel(
-					queryCache, executor, modelList, companyId, groupIds,
-					startModifiedDate, endModifiedDate, executionMode);
+					queryCache, forkJoinPool, modelList, companyId, groupIds,
+					startModifiedDate, endModifiedDate, executionMode,
+					checkpoints, checkJob);
 
 			futureResultDataMap.put(0L, futureResultList);
 		}
@@ -255,11 +371,31 @@ public class IndexCheckerPortlet extends MVCPortlet {
 			resultDataMap.put(entry.getKey(), resultList);
 		}
 
-		executor.shutdownNow();
+		if (checkpoints != null) {
+			updateCheckpoints(checkpoints, newCheckpoints, resultDataMap);
+		}
 
 		return resultDataMap;
 	}
 
+	public static Map<Long, List<Comparison>> executeCheck(
+			Company company, List<Long> groupIds, List<String> classNames,
+			Date startModifiedDate, Date endModifiedDate,
+			Set<ExecutionMode> executionMode, int threadsExecutor)
+		throws ExecutionException, InterruptedException {
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(threadsExecutor);
+
+		try {
+			return executeCheck(
+				company, groupIds, classNames, startModifiedDate,
+				endModifiedDate, executionMode, forkJoinPool);
+		}
+		finally {
+			forkJoinPool.shutdownNow();
+		}
+	}
+
 	public static EnumSet<ExecutionMode> getExecutionMode(
 		ActionRequest request) {
 
@@ -278,6 +414,13 @@ public class IndexCheckerPortlet extends MVCPortlet {
 			portletPreferences.getValue(
 				"dumpAllObjectsToLog", StringPool.FALSE));
 
+		boolean streamingComparison = GetterUtil.getBoolean(
+			portletPreferences.getValue(
+				"streamingComparison", StringPool.FALSE));
+
+		boolean incrementalCheck = GetterUtil.getBoolean(
+			portletPreferences.getValue("incrementalCheck", StringPool.FALSE));
+
 		EnumSet<ExecutionMode> executionMode = EnumSet.noneOf(
 			ExecutionMode.class);
 
@@ -313,6 +456,14 @@ public class IndexCheckerPortlet extends MVCPortlet {
 			executionMode.add(ExecutionMode.DUMP_ALL_OBJECTS_TO_LOG);
 		}
 
+		if (streamingComparison) {
+			executionMode.add(ExecutionMode.STREAMING_COMPARISON);
+		}
+
+		if (incrementalCheck) {
+			executionMode.add(ExecutionMode.INCREMENTAL_CHECK);
+		}
+
 		return executionMode;
 	}
 
@@ -374,35 +525,46 @@ public class IndexCheckerPortlet extends MVCPortlet {
 		return false;
 	}
 
-	public static Map<Data, String> reindex(Comparison comparison) {
+	public static Map<Data, String> reindex(final Comparison comparison) {
 		Model model = comparison.getModel();
 
 		if (model == null) {
 			return null;
 		}
 
-		Set<Data> objectsToReindex = new HashSet<>();
+		final Iterator<String> typeIterator =
+			comparison.getOutputTypes().iterator();
+
+		/* Data of the types is read while it is reindexed, it is not copied
+		 * to memory */
+
+		DataPageIterator dataIterator = new DataPageIterator() {
+
+			@Override
+			protected Collection<Data> nextPage() {
+				while (typeIterator.hasNext()) {
+					String type = typeIterator.next();
 
-		for (String type : comparison.getOutputTypes()) {
-			if (!type.endsWith("-right")) {
-				Set<Data> aux = comparison.getData(type);
+					Set<Data> data = comparison.getData(type);
 
-				if (aux != null) {
-					objectsToReindex.addAll(aux);
+					if (!type.endsWith("-right") && (data != null)) {
+						return data;
+					}
 				}
+
+				return null;
 			}
-		}
+
+		};
 
 		IndexSearchHelper indexSearchHelper =
 			ConfigurationUtil.getIndexSearchHelper(model);
 
 		if (_log.isDebugEnabled()) {
-			_log.debug(
-				"Reindexing " + objectsToReindex.size() + " objects of type " +
-					model.getClassName());
+			_log.debug("Reindexing objects of type " + model.getClassName());
 		}
 
-		return indexSearchHelper.reindex(objectsToReindex);
+		return indexSearchHelper.reindex(dataIterator);
 	}
 
 	public static Map<Data, String> removeIndexOrphans(Comparison comparison) {
@@ -427,25 +589,52 @@ public class IndexCheckerPortlet extends MVCPortlet {
 					model.getClassName());
 		}
 
-		return indexSearchHelper.deleteAndCheck(indexOnlyData);
+		return indexSearchHelper.deleteOrphans(indexOnlyData.iterator());
+	}
+
+	/**
+	 * Cancels the background jobs, they are executed using the classes of
+	 * this portlet, and unregisters the metrics MBean.
+	 */
+	@Override
+	public void destroy() {
+		CheckJobManager checkJobManager = CheckJobManager.getInstance();
+
+		checkJobManager.cancelAll();
+
+		CheckMetrics.unregisterMBean();
+
+		super.destroy();
 	}
 
 	public void doView(
 			RenderRequest renderRequest, RenderResponse renderResponse)
 		throws IOException, PortletException {
 
+		CheckJob checkJob = getCheckJob(
+			renderRequest, ParamUtil.getString(renderRequest, "jobId"));
+
+		if (checkJob != null) {
+			renderRequest.setAttribute("checkJob", checkJob);
+
+			if (checkJob.isFinished()) {
+				setResultAttributes(renderRequest, checkJob);
+			}
+		}
+
 		PortletConfig portletConfig = (PortletConfig)renderRequest.getAttribute(
 			JavaConstants.JAVAX_PORTLET_CONFIG);
 
-		List<String> outputList = IndexCheckerOutput.generateCSVOutput(
-			portletConfig, renderRequest);
+		File outputFile = IndexCheckerOutput.generateCSVOutputFile(
+			portletConfig, renderRequest,
+			PortletPropsValues.OUTPUT_CSV_COMPRESS,
+			PortletPropsValues.OUTPUT_CSV_ROW_PER_PRIMARY_KEY);
 
 		String portletId = portletConfig.getPortletName();
 
-		String outputContent = OutputUtils.listStringToString(outputList);
-
 		FileEntry exportCsvFileEntry = OutputUtils.addPortletOutputFileEntry(
-			portletId, PortalUtil.getUserId(renderRequest), outputContent);
+			portletId, PortalUtil.getUserId(renderRequest), outputFile,
+			PortletPropsValues.OUTPUT_CSV_COMPRESS);
 
 		if (exportCsvFileEntry != null) {
 			ResourceURL exportCsvResourceURL =
@@ -490,552 +679,224 @@ public class IndexCheckerPortlet extends MVCPortlet {
 	public void executeCheck(ActionRequest request, ActionResponse response)
 		throws Exception {
 
-		PortalUtil.copyRequestParameters(request, response);
+		final CheckJob checkJob = createCheckJob(
+			request, response, "Check Index");
 
-		EnumSet<ExecutionMode> executionMode = getExecutionMode(request);
+		executeJob(
+			request, response, checkJob,
+			new Callable<Void>() {
 
-		String[] filterClassNameArr = ParamUtil.getParameterValues(
-			request, "filterClassName");
+				@Override
+				public Void call() throws Exception {
+					runCheck(checkJob);
 
-		response.setRenderParameter("filterClassName", new String[0]);
+					return null;
+				}
 
-		request.setAttribute(
-			"filterClassNameSelected", SetUtil.fromArray(filterClassNameArr));
+			});
+	}
 
-		String[] filterGroupIdArr = ParamUtil.getParameterValues(
-			request, "filterGroupId");
+	public void executeReindex(ActionRequest request, ActionResponse response)
+		throws Exception {
 
-		response.setRenderParameter("filterGroupId", new String[0]);
+		final CheckJob checkJob = createCheckJob(request, response, "Reindex");
 
-		request.setAttribute(
-			"filterGroupIdSelected", SetUtil.fromArray(filterGroupIdArr));
+		executeJob(
+			request, response, checkJob,
+			new Callable<Void>() {
 
-		List<String> classNames = getClassNames(filterClassNameArr);
+				@Override
+				public Void call() throws Exception {
+					runReindex(checkJob);
 
-		Date startModifiedDate = null;
-		Date endModifiedDate = null;
+					return null;
+				}
 
-		long filterModifiedDate = ParamUtil.getLong(
-			request, "filterModifiedDate");
+			});
+	}
 
-		if (filterModifiedDate > 0) {
-			long now = System.currentTimeMillis();
+	public void executeRemoveOrphans(
+			ActionRequest request, ActionResponse response)
+		throws Exception {
 
-			startModifiedDate = getStartDate(now, filterModifiedDate);
-			endModifiedDate = getTomorrowDate(now);
-		}
+		final CheckJob checkJob = createCheckJob(
+			request, response, "Remove index orphan");
 
-		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap =
-			new LinkedHashMap<>();
+		executeJob(
+			request, response, checkJob,
+			new Callable<Void>() {
 
-		Map<Company, Long> companyProcessTime = new LinkedHashMap<>();
+				@Override
+				public Void call() throws Exception {
+					runRemoveOrphans(checkJob);
 
-		Map<Company, String> companyError = new LinkedHashMap<>();
+					return null;
+				}
 
-		for (Company company : getCompanyList()) {
-			try {
-				CompanyThreadLocal.setCompanyId(company.getCompanyId());
+			});
+	}
 
-				List<Long> groupIds = getGroupIds(
-					company, executionMode, filterGroupIdArr);
+	public List<String> getClassNames() {
+		return getClassNames(null);
+	}
 
-				if ((groupIds != null) && groupIds.isEmpty()) {
-					if (_log.isInfoEnabled()) {
-						_log.info(
-							"Skipping company " + company.getCompanyId() + " " +
-								"because groupId list is empty");
-					}
+	public List<String> getClassNames(String[] filterClassNameArr) {
+		if ((filterClassNameArr == null) || (filterClassNameArr.length == 0) ||
+			((filterClassNameArr.length == 1) &&
+			 Validator.isNull(filterClassNameArr[0]))) {
 
-					continue;
-				}
+			filterClassNameArr = null;
+		}
 
-				long startTime = System.currentTimeMillis();
+		List<String> allClassName = ModelUtil.getClassNameValues(
+			ClassNameLocalServiceUtil.getClassNames(
+				QueryUtil.ALL_POS, QueryUtil.ALL_POS));
 
-				Map<Long, List<Comparison>> resultDataMap = executeCheck(
-					company, groupIds, classNames, startModifiedDate,
-					endModifiedDate, executionMode,
-					getNumberOfThreads(request));
+		List<String> classNames = new ArrayList<>();
 
-				boolean groupBySite = executionMode.contains(
-					ExecutionMode.GROUP_BY_SITE);
+		for (String className : allClassName) {
+			if (ConfigurationUtil.ignoreClassName(className)) {
+				continue;
+			}
 
-				Set<Long> groupIdsSet = resultDataMap.keySet();
+			if (!hasIndexerEnabled(className)) {
+				continue;
+			}
 
-				long numberOfGroupIds = groupIdsSet.size();
+			if (ConfigurationUtil.modelNotIndexed(className)) {
+				continue;
+			}
 
-				if (groupBySite && (numberOfGroupIds == 1)) {
-					Collection<List<Comparison>> values =
-						resultDataMap.values();
+			if (filterClassNameArr == null) {
+				classNames.add(className);
 
-					List<Comparison> listComparison =
-						(List<Comparison>)values.toArray()[0];
+				continue;
+			}
 
-					resultDataMap = new TreeMap<>();
+			for (String filterClassName : filterClassNameArr) {
+				if (className.equals(filterClassName)) {
+					classNames.add(className);
 
-					for (Comparison c : listComparison) {
-						Map<Long, Comparison> map = c.splitByAttribute(
-							"groupId");
+					break;
+				}
+			}
+		}
 
-						for (Map.Entry<Long, Comparison> e : map.entrySet()) {
-							List<Comparison> list = resultDataMap.get(
-								e.getKey());
+		return classNames;
+	}
 
-							if (list == null) {
-								list = new ArrayList<>();
+	@SuppressWarnings("unchecked")
+	public List<Company> getCompanyList() throws Exception {
+		ModelFactory modelFactory = new ModelFactory();
 
-								resultDataMap.put(e.getKey(), list);
-							}
+		Model companyModel = modelFactory.getModelObject(Company.class);
 
-							list.add(e.getValue());
-						}
-					}
-				}
+		return (List<Company>)companyModel.executeDynamicQuery(
+			null, OrderFactoryUtil.asc("companyId"));
+	}
 
-				if (!groupBySite && (numberOfGroupIds > 1)) {
-					List<Comparison> tempComparisonList = new ArrayList<>();
+	public List<Long> getGroupIds(
+		Company company, Set<ExecutionMode> executionMode,
+		String[] filterGroupIdArr) {
 
-					for (List<Comparison> auxList : resultDataMap.values()) {
-						tempComparisonList.addAll(auxList);
-					}
+		if ((filterGroupIdArr != null) && (filterGroupIdArr.length == 1) &&
+			filterGroupIdArr[0].equals("-1000")) {
 
-					List<Comparison> resultComparisonLisn =
-						ComparisonUtil.mergeComparisons(tempComparisonList);
+			filterGroupIdArr = null;
+		}
 
-					resultDataMap = new TreeMap<>();
+		boolean queryBySite = executionMode.contains(
+			ExecutionMode.QUERY_BY_SITE);
 
-					resultDataMap.put(0L, resultComparisonLisn);
-				}
+		if (!queryBySite && (filterGroupIdArr == null)) {
+			return null;
+		}
 
-				long endTime = System.currentTimeMillis();
+		List<Group> groups = GroupLocalServiceUtil.getCompanyGroups(
+			company.getCompanyId(), QueryUtil.ALL_POS, QueryUtil.ALL_POS);
 
-				if (_log.isInfoEnabled() &&
-					executionMode.contains(
-						ExecutionMode.DUMP_ALL_OBJECTS_TO_LOG)) {
+		List<Long> groupIds = new ArrayList<>();
 
-					_log.info("COMPANY: " + company);
+		boolean allSites = false;
+		boolean userSites = false;
 
-					dumpToLog(groupBySite, resultDataMap, request.getLocale());
+		if (filterGroupIdArr != null) {
+			for (String filterGroupId : filterGroupIdArr) {
+				if (filterGroupId.equals("0")) {
+					groupIds.add(0L);
 				}
 
-				companyResultDataMap.put(company, resultDataMap);
+				if (filterGroupId.equals("-1")) {
+					allSites = true;
+				}
 
-				companyProcessTime.put(company, endTime - startTime);
+				if (filterGroupId.equals("-2")) {
+					userSites = true;
+				}
 			}
-			catch (Throwable t) {
-				StringWriter swt = new StringWriter();
-
-				PrintWriter pwt = new PrintWriter(swt);
+		}
 
-				pwt.println("Error during execution: " + t.getMessage());
+		if (filterGroupIdArr == null) {
+			groupIds.add(0L);
+		}
 
-				t.printStackTrace(pwt);
+		for (Group group : groups) {
+			if (filterGroupIdArr == null) {
+				groupIds.add(group.getGroupId());
 
-				companyError.put(company, swt.toString());
-				_log.error(t, t);
+				continue;
 			}
-		}
 
-		request.setAttribute("companyError", companyError);
-		request.setAttribute("companyProcessTime", companyProcessTime);
-		request.setAttribute("companyResultDataMap", companyResultDataMap);
-		request.setAttribute("executionMode", executionMode);
-		request.setAttribute("title", "Check Index");
-	}
+			if (allSites &&
+				(group.isSite() || group.isStagingGroup() ||
+				 group.isCompany())) {
 
-	public void executeReindex(ActionRequest request, ActionResponse response)
-		throws Exception {
+				groupIds.add(group.getGroupId());
 
-		PortalUtil.copyRequestParameters(request, response);
+				continue;
+			}
 
-		EnumSet<ExecutionMode> executionMode = getExecutionMode(request);
+			if (userSites && (group.isUser() || group.isUserGroup())) {
+				groupIds.add(group.getGroupId());
 
-		String[] filterClassNameArr = ParamUtil.getParameterValues(
-			request, "filterClassName");
+				continue;
+			}
 
-		response.setRenderParameter("filterClassName", new String[0]);
+			String groupIdStr = "" + group.getGroupId();
 
-		request.setAttribute(
-			"filterClassNameSelected", SetUtil.fromArray(filterClassNameArr));
+			for (String filterGroupId : filterGroupIdArr) {
+				if (groupIdStr.equals(filterGroupId)) {
+					groupIds.add(group.getGroupId());
 
-		String[] filterGroupIdArr = ParamUtil.getParameterValues(
-			request, "filterGroupId");
+					break;
+				}
+			}
+		}
 
-		response.setRenderParameter("filterGroupId", new String[0]);
+		return groupIds;
+	}
 
-		request.setAttribute(
-			"filterGroupIdSelected", SetUtil.fromArray(filterGroupIdArr));
+	public List<Model> getModelList() {
+		return getModelList(null);
+	}
 
+	public List<Model> getModelList(String[] filterClassNameArr) {
 		List<String> classNames = getClassNames(filterClassNameArr);
 
-		Date startModifiedDate = null;
-		Date endModifiedDate = null;
-
-		long filterModifiedDate = ParamUtil.getLong(
-			request, "filterModifiedDate");
+		ModelFactory modelFactory = new IndexCheckerModelFactory();
 
-		if (filterModifiedDate > 0) {
-			long now = System.currentTimeMillis();
+		List<Model> modelList = new ArrayList<>();
 
-			startModifiedDate = getStartDate(now, filterModifiedDate);
-			endModifiedDate = getTomorrowDate(now);
-		}
+		for (String className : classNames) {
+			if (!hasIndexerEnabled(className)) {
+				continue;
+			}
 
-		Map<Company, Long> companyProcessTime = new LinkedHashMap<>();
+			if (ConfigurationUtil.modelNotIndexed(className)) {
+				continue;
+			}
 
-		Map<Company, String> companyError = new LinkedHashMap<>();
-
-		for (Company company : getCompanyList()) {
-			StringWriter sw = new StringWriter();
-
-			PrintWriter pw = new PrintWriter(sw);
-
-			try {
-				List<Long> groupIds = getGroupIds(
-					company, executionMode, filterGroupIdArr);
-
-				if ((groupIds != null) && groupIds.isEmpty()) {
-					if (_log.isInfoEnabled()) {
-						_log.info(
-							"Skipping company " + company.getCompanyId() + " " +
-								"because groupId list is empty");
-					}
-
-					continue;
-				}
-
-				long startTime = System.currentTimeMillis();
-
-				Map<Long, List<Comparison>> resultDataMap = executeCheck(
-					company, groupIds, classNames, startModifiedDate,
-					endModifiedDate, executionMode,
-					getNumberOfThreads(request));
-
-				for (Map.Entry<Long, List<Comparison>> entry :
-						resultDataMap.entrySet()) {
-
-					List<Comparison> resultList = entry.getValue();
-
-					for (Comparison result : resultList) {
-						Map<Data, String> errors = reindex(result);
-						/* TODO Mover todo esto al JSP */
-						if (((errors != null) && !errors.isEmpty()) ||
-							(result.getError() != null)) {
-
-							pw.println();
-							pw.println("----");
-							pw.println(result.getModelName());
-							pw.println("----");
-
-							for (Map.Entry<Data, String> e :
-									errors.entrySet()) {
-
-								pw.println(
-									" * " + e.getKey() + " - Exception: " +
-										e.getValue());
-							}
-
-							pw.println(" * " + result.getError());
-						}
-					}
-				}
-
-				long endTime = System.currentTimeMillis();
-
-				companyProcessTime.put(company, endTime - startTime);
-			}
-			catch (Throwable t) {
-				StringWriter swt = new StringWriter();
-
-				PrintWriter pwt = new PrintWriter(swt);
-
-				pwt.println("Error during execution: " + t.getMessage());
-
-				t.printStackTrace(pwt);
-
-				companyError.put(company, swt.toString());
-				_log.error(t, t);
-			}
-
-			companyError.put(company, sw.toString());
-		}
-
-		request.setAttribute("companyError", companyError);
-		request.setAttribute("companyProcessTime", companyProcessTime);
-		request.setAttribute("executionMode", executionMode);
-		request.setAttribute("title", "Reindex");
-	}
-
-	public void executeRemoveOrphans(
-			ActionRequest request, ActionResponse response)
-		throws Exception {
-
-		PortalUtil.copyRequestParameters(request, response);
-
-		EnumSet<ExecutionMode> executionMode = getExecutionMode(request);
-
-		String[] filterClassNameArr = ParamUtil.getParameterValues(
-			request, "filterClassName");
-
-		response.setRenderParameter("filterClassName", new String[0]);
-
-		request.setAttribute(
-			"filterClassNameSelected", SetUtil.fromArray(filterClassNameArr));
-
-		String[] filterGroupIdArr = ParamUtil.getParameterValues(
-			request, "filterGroupId");
-
-		response.setRenderParameter("filterGroupId", new String[0]);
-
-		request.setAttribute(
-			"filterGroupIdSelected", SetUtil.fromArray(filterGroupIdArr));
-
-		List<String> classNames = getClassNames(filterClassNameArr);
-
-		Map<Company, Long> companyProcessTime = new LinkedHashMap<>();
-
-		Map<Company, String> companyError = new LinkedHashMap<>();
-
-		for (Company company : getCompanyList()) {
-			StringWriter sw = new StringWriter();
-
-			PrintWriter pw = new PrintWriter(sw);
-
-			try {
-				List<Long> groupIds = getGroupIds(
-					company, executionMode, filterGroupIdArr);
-
-				if ((groupIds != null) && groupIds.isEmpty()) {
-					if (_log.isInfoEnabled()) {
-						_log.info(
-							"Skipping company " + company.getCompanyId() + " " +
-								"because groupId list is empty");
-					}
-
-					continue;
-				}
-
-				long startTime = System.currentTimeMillis();
-
-				Map<Long, List<Comparison>> resultDataMap = executeCheck(
-					company, groupIds, classNames, null, null, executionMode,
-					getNumberOfThreads(request));
-
-				for (Map.Entry<Long, List<Comparison>> entry :
-						resultDataMap.entrySet()) {
-
-					List<Comparison> resultList = entry.getValue();
-
-					for (Comparison result : resultList) {
-						Map<Data, String> errors = removeIndexOrphans(result);
-						/* TODO Mover todo esto al JSP */
-						if (((errors != null) && !errors.isEmpty()) ||
-							(result.getError() != null)) {
-
-							pw.println();
-							pw.println("----");
-							pw.println(result.getModelName());
-							pw.println("----");
-
-							for (Map.Entry<Data, String> e :
-									errors.entrySet()) {
-
-								pw.println(
-									" * " + e.getKey() + " - Exception: " +
-										e.getValue());
-							}
-
-							pw.println(" * " + result.getError());
-						}
-					}
-				}
-
-				long endTime = System.currentTimeMillis();
-
-				companyProcessTime.put(company, endTime - startTime);
-			}
-			catch (Throwable t) {
-				StringWriter swt = new StringWriter();
-
-				PrintWriter pwt = new PrintWriter(swt);
-
-				pwt.println("Error during execution: " + t.getMessage());
-
-				t.printStackTrace(pwt);
-
-				companyError.put(company, swt.toString());
-				_log.error(t, t);
-			}
-
-			companyError.put(company, sw.toString());
-		}
-
-		request.setAttribute("companyError", companyError);
-		request.setAttribute("companyProcessTime", companyProcessTime);
-		request.setAttribute("executionMode", executionMode);
-		request.setAttribute("title", "Remove index orphan");
-	}
-
-	public List<String> getClassNames() {
-		return getClassNames(null);
-	}
-
-	public List<String> getClassNames(String[] filterClassNameArr) {
-		if ((filterClassNameArr == null) || (filterClassNameArr.length == 0) ||
-			((filterClassNameArr.length == 1) &&
-			 Validator.isNull(filterClassNameArr[0]))) {
-
-			filterClassNameArr = null;
-		}
-
-		List<String> allClassName = ModelUtil.getClassNameValues(
-			ClassNameLocalServiceUtil.getClassNames(
-				QueryUtil.ALL_POS, QueryUtil.ALL_POS));
-
-		List<String> classNames = new ArrayList<>();
-
-		for (String className : allClassName) {
-			if (ConfigurationUtil.ignoreClassName(className)) {
-				continue;
-			}
-
-			if (!hasIndexerEnabled(className)) {
-				continue;
-			}
-
-			if (ConfigurationUtil.modelNotIndexed(className)) {
-				continue;
-			}
-
-			if (filterClassNameArr == null) {
-				classNames.add(className);
-
-				continue;
-			}
-
-			for (String filterClassName : filterClassNameArr) {
-				if (className.equals(filterClassName)) {
-					classNames.add(className);
-
-					break;
-				}
-			}
-		}
-
-		return classNames;
-	}
-
-	@SuppressWarnings("unchecked")
-	public List<Company> getCompanyList() throws Exception {
-		ModelFactory modelFactory = new ModelFactory();
-
-		Model companyModel = modelFactory.getModelObject(Company.class);
-
-		return (List<Company>)companyModel.executeDynamicQuery(
-			null, OrderFactoryUtil.asc("companyId"));
-	}
-
-	public List<Long> getGroupIds(
-		Company company, Set<ExecutionMode> executionMode,
-		String[] filterGroupIdArr) {
-
-		if ((filterGroupIdArr != null) && (filterGroupIdArr.length == 1) &&
-			filterGroupIdArr[0].equals("-1000")) {
-
-			filterGroupIdArr = null;
-		}
-
-		boolean queryBySite = executionMode.contains(
-			ExecutionMode.QUERY_BY_SITE);
-
-		if (!queryBySite && (filterGroupIdArr == null)) {
-			return null;
-		}
-
-		List<Group> groups = GroupLocalServiceUtil.getCompanyGroups(
-			company.getCompanyId(), QueryUtil.ALL_POS, QueryUtil.ALL_POS);
-
-		List<Long> groupIds = new ArrayList<>();
-
-		boolean allSites = false;
-		boolean userSites = false;
-
-		if (filterGroupIdArr != null) {
-			for (String filterGroupId : filterGroupIdArr) {
-				if (filterGroupId.equals("0")) {
-					groupIds.add(0L);
-				}
-
-				if (filterGroupId.equals("-1")) {
-					allSites = true;
-				}
-
-				if (filterGroupId.equals("-2")) {
-					userSites = true;
-				}
-			}
-		}
-
-		if (filterGroupIdArr == null) {
-			groupIds.add(0L);
-		}
-
-		for (Group group : groups) {
-			if (filterGroupIdArr == null) {
-				groupIds.add(group.getGroupId());
-
-				continue;
-			}
-
-			if (allSites &&
-				(group.isSite() || group.isStagingGroup() ||
-				 group.isCompany())) {
-
-				groupIds.add(group.getGroupId());
-
-				continue;
-			}
-
-			if (userSites && (group.isUser() || group.isUserGroup())) {
-				groupIds.add(group.getGroupId());
-
-				continue;
-			}
-
-			String groupIdStr = "" + group.getGroupId();
-
-			for (String filterGroupId : filterGroupIdArr) {
-				if (groupIdStr.equals(filterGroupId)) {
-					groupIds.add(group.getGroupId());
-
-					break;
-				}
-			}
-		}
-
-		return groupIds;
-	}
-
-	public List<Model> getModelList() {
-		return getModelList(null);
-	}
-
-	public List<Model> getModelList(String[] filterClassNameArr) {
-		List<String> classNames = getClassNames(filterClassNameArr);
-
-		ModelFactory modelFactory = new IndexCheckerModelFactory();
-
-		List<Model> modelList = new ArrayList<>();
-
-		for (String className : classNames) {
-			if (!hasIndexerEnabled(className)) {
-				continue;
-			}
-
-			if (ConfigurationUtil.modelNotIndexed(className)) {
-				continue;
-			}
-
-			Model model = modelFactory.getModelObject(className);
+			Model model = modelFactory.getModelObject(className);
 
 			if (model != null) {
 				modelList.add(model);
@@ -1172,11 +1033,59 @@ public class IndexCheckerPortlet extends MVCPortlet {
 		return result;
 	}
 
-	public void serveResource(
-			ResourceRequest request, ResourceResponse response)
-		throws IOException, PortletException {
+	/**
+	 * Registers the MBean that exposes the metrics of the last check of each
+	 * model and sets the size of the results kept in memory.
+	 */
+	@Override
+	public void init() throws PortletException {
+		super.init();
 
-		PortletConfig portletConfig = (PortletConfig)request.getAttribute(
+		CheckMetrics.registerMBean();
+
+		SpillableDataSet.setDefaultSpillThreshold(
+			PortletPropsValues.COMPARISON_SPILL_THRESHOLD);
+	}
+
+	/**
+	 * Releases the results of a job executed in the request thread once they
+	 * are rendered and exported, as they are not kept by the job manager.
+	 */
+	@Override
+	public void render(
+			RenderRequest renderRequest, RenderResponse renderResponse)
+		throws IOException, PortletException {
+
+		try {
+			super.render(renderRequest, renderResponse);
+		}
+		finally {
+			CheckJob checkJob = (CheckJob)renderRequest.getAttribute(
+				"foregroundCheckJob");
+
+			if (checkJob != null) {
+				renderRequest.removeAttribute("foregroundCheckJob");
+
+				checkJob.clearResults();
+			}
+		}
+	}
+
+	public void serveResource(
+			ResourceRequest request, ResourceResponse response)
+		throws IOException, PortletException {
+
+		String resourceID = request.getResourceID();
+
+		if (Objects.equals(resourceID, "checkJobCancel") ||
+			Objects.equals(resourceID, "checkJobStatus")) {
+
+			serveCheckJob(request, response);
+
+			return;
+		}
+
+		PortletConfig portletConfig = (PortletConfig)request.getAttribute(
 			JavaConstants.JAVAX_PORTLET_CONFIG);
 
 		String portletId = portletConfig.getPortletName();
@@ -1185,6 +1094,138 @@ public class IndexCheckerPortlet extends MVCPortlet {
 			portletId, request.getResourceID(), request, response);
 	}
 
+	protected static Map<String, Checkpoint> calculateCheckpoints(
+		List<Model> modelList, Map<String, Checkpoint> checkpoints) {
+
+		Map<String, Checkpoint> newCheckpoints = new HashMap<>();
+
+		for (Model model : modelList) {
+			String className = model.getClassName();
+
+			Checkpoint checkpoint = CheckpointUtil.calculateCheckpoint(
+				model, checkpoints.get(className));
+
+			if (checkpoint != null) {
+				newCheckpoints.put(className, checkpoint);
+			}
+		}
+
+		return newCheckpoints;
+	}
+
+	/**
+	 * Updates the checkpoints of the models checked without errors. New
+	 * checkpoints were calculated before the check, so rows modified during
+	 * the check are checked again in next execution.
+	 */
+	protected static void updateCheckpoints(
+		Map<String, Checkpoint> checkpoints,
+		Map<String, Checkpoint> newCheckpoints,
+		Map<Long, List<Comparison>> resultDataMap) {
+
+		Set<String> checkedClassNames = new HashSet<>();
+		Set<String> errorClassNames = new HashSet<>();
+
+		for (List<Comparison> resultList : resultDataMap.values()) {
+			for (Comparison comparison : resultList) {
+				Model model = comparison.getModel();
+
+				if (comparison.getError() != null) {
+					errorClassNames.add(model.getClassName());
+				}
+				else {
+					checkedClassNames.add(model.getClassName());
+				}
+			}
+		}
+
+		checkedClassNames.removeAll(errorClassNames);
+
+		for (String className : checkedClassNames) {
+			Checkpoint checkpoint = newCheckpoints.get(className);
+
+			if (checkpoint != null) {
+				checkpoints.put(className, checkpoint);
+			}
+		}
+	}
+
+	protected CheckJob createCheckJob(
+			ActionRequest request, ActionResponse response, String title)
+		throws Exception {
+
+		PortalUtil.copyRequestParameters(request, response);
+
+		EnumSet<ExecutionMode> executionMode = getExecutionMode(request);
+
+		String[] filterClassNameArr = ParamUtil.getParameterValues(
+			request, "filterClassName");
+
+		response.setRenderParameter("filterClassName", new String[0]);
+
+		String[] filterGroupIdArr = ParamUtil.getParameterValues(
+			request, "filterGroupId");
+
+		response.setRenderParameter("filterGroupId", new String[0]);
+
+		long filterModifiedDate = ParamUtil.getLong(
+			request, "filterModifiedDate");
+
+		return new CheckJob(
+			title, PortalUtil.getUserId(request), request.getLocale(),
+			executionMode, filterClassNameArr, filterGroupIdArr,
+			filterModifiedDate, getNumberOfThreads(request),
+			PortalUtil.getCompanyId(request), PortalUtil.getPortletId(request));
+	}
+
+	/**
+	 * Submits the job to the background job manager if background execution
+	 * is selected, the view polls its progress using the jobId render
+	 * parameter. Otherwise the job is executed in the request thread.
+	 */
+	protected void executeJob(
+			ActionRequest request, ActionResponse response, CheckJob checkJob,
+			Callable<?> callable)
+		throws Exception {
+
+		if (ParamUtil.getBoolean(request, "background")) {
+			CheckJobManager checkJobManager = CheckJobManager.getInstance();
+
+			checkJobManager.submit(checkJob, callable);
+
+			response.setRenderParameter("jobId", checkJob.getJobId());
+
+			return;
+		}
+
+		request.setAttribute("foregroundCheckJob", checkJob);
+
+		checkJob.run(callable);
+
+		setResultAttributes(request, checkJob);
+	}
+
+	/**
+	 * Returns the job if it exists and it was submitted by the current user.
+	 */
+	protected CheckJob getCheckJob(PortletRequest request, String jobId) {
+		if (Validator.isNull(jobId)) {
+			return null;
+		}
+
+		CheckJobManager checkJobManager = CheckJobManager.getInstance();
+
+		CheckJob checkJob = checkJobManager.getJob(jobId);
+
+		if ((checkJob == null) ||
+			(checkJob.getUserId() != PortalUtil.getUserId(request))) {
+
+			return null;
+		}
+
+		return checkJob;
+	}
+
 	protected Date getStartDate(long timeInMillis, long hoursToSubstract) {
 		long start = timeInMillis - (hoursToSubstract * 60 * 60 * 1000);
 
@@ -1205,6 +1246,649 @@ public class IndexCheckerPortlet extends MVCPortlet {
 		return tomorrowCalendar.getTime();
 	}
 
+	/**
+	 * Incremental check is only done if all sites are checked and no
+	 * modified date filter is set, otherwise checkpoints would be moved
+	 * forward without checking all the modified rows.
+	 */
+	protected boolean isIncrementalCheck(
+		Set<ExecutionMode> executionMode, String[] filterGroupIdArr,
+		long filterModifiedDate) {
+
+		if (!executionMode.contains(ExecutionMode.INCREMENTAL_CHECK)) {
+			return false;
+		}
+
+		boolean allGroups = false;
+
+		if ((filterGroupIdArr == null) || (filterGroupIdArr.length == 0) ||
+			((filterGroupIdArr.length == 1) &&
+			 filterGroupIdArr[0].equals("-1000"))) {
+
+			allGroups = true;
+		}
+
+		if (allGroups && (filterModifiedDate <= 0)) {
+			return true;
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Incremental check is disabled because a site or modified " +
+					"date filter is set");
+		}
+
+		return false;
+	}
+
+	protected void logRelatedDataCache() {
+		RelatedDataCache relatedDataCache = RelatedDataCache.getInstance();
+
+		if (_log.isInfoEnabled()) {
+			_log.info("Related data cache: " + relatedDataCache);
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug(
+				"Related data cache wait times (ms): " +
+					relatedDataCache.getWaitTimes());
+		}
+
+		relatedDataCache.resetWaitTimes();
+	}
+
+	protected void runCheck(CheckJob checkJob) throws Exception {
+		EnumSet<ExecutionMode> executionMode = checkJob.getExecutionMode();
+
+		String[] filterGroupIdArr = checkJob.getFilterGroupIdArr();
+
+		List<String> classNames = getClassNames(
+			checkJob.getFilterClassNameArr());
+
+		Date startModifiedDate = null;
+		Date endModifiedDate = null;
+
+		long filterModifiedDate = checkJob.getFilterModifiedDate();
+
+		if (filterModifiedDate > 0) {
+			long now = System.currentTimeMillis();
+
+			startModifiedDate = getStartDate(now, filterModifiedDate);
+			endModifiedDate = getTomorrowDate(now);
+		}
+
+		Map<Long, Map<String, Checkpoint>> companyCheckpoints = null;
+
+		if (isIncrementalCheck(
+				executionMode, filterGroupIdArr, filterModifiedDate)) {
+
+			PortletPreferences portletPreferences =
+				CheckpointUtil.getPortletPreferences(
+					checkJob.getPreferencesCompanyId(),
+					checkJob.getPortletId());
+
+			companyCheckpoints = new HashMap<>();
+
+			for (Company company : getCompanyList()) {
+				companyCheckpoints.put(
+					company.getCompanyId(),
+					CheckpointUtil.getCheckpoints(
+						portletPreferences, company.getCompanyId()));
+			}
+		}
+
+		Map<Company, Map<Long, List<Comparison>>> companyResultDataMap =
+			new LinkedHashMap<>();
+
+		checkJob.setCompanyResultDataMap(companyResultDataMap);
+
+		Map<Company, Long> companyProcessTime =
+			checkJob.getCompanyProcessTime();
+
+		Map<Company, String> companyError = checkJob.getCompanyError();
+
+		Map<Company, List<CheckMetrics>> companyMetrics =
+			checkJob.getCompanyMetrics();
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(
+			checkJob.getNumberOfThreads());
+
+		checkJob.setForkJoinPool(forkJoinPool);
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+			Map<Company, Future<Map<Long, List<Comparison>>>> futureCompanyMap =
+				submitCheck(
+					forkJoinPool, executionMode, filterGroupIdArr, classNames,
+					startModifiedDate, endModifiedDate, companyCheckpoints,
+					checkJob);
+
+			for (Map.Entry<Company, Future<Map<Long, List<Comparison>>>> entry :
+					futureCompanyMap.entrySet()) {
+
+				if (checkJob.isCancelled()) {
+					break;
+				}
+
+				Company company = entry.getKey();
+
+				try {
+					CompanyThreadLocal.setCompanyId(company.getCompanyId());
+
+					Future<Map<Long, List<Comparison>>> future =
+						entry.getValue();
+
+					Map<Long, List<Comparison>> resultDataMap = future.get();
+
+					if (resultDataMap == null) {
+						continue;
+					}
+
+					if (companyCheckpoints != null) {
+						CheckpointUtil.storeCheckpoints(
+							checkJob.getPreferencesCompanyId(),
+							checkJob.getPortletId(), company.getCompanyId(),
+							companyCheckpoints.get(company.getCompanyId()));
+					}
+
+					boolean groupBySite = executionMode.contains(
+						ExecutionMode.GROUP_BY_SITE);
+
+					Set<Long> groupIdsSet = resultDataMap.keySet();
+
+					long numberOfGroupIds = groupIdsSet.size();
+
+					if (groupBySite && (numberOfGroupIds == 1)) {
+						Collection<List<Comparison>> values =
+							resultDataMap.values();
+
+						List<Comparison> listComparison =
+							(List<Comparison>)values.toArray()[0];
+
+						resultDataMap = new TreeMap<>();
+
+						for (Comparison c : listComparison) {
+							Map<Long, Comparison> map = c.splitByAttribute(
+								"groupId");
+
+							/* Split comparisons have their own sets, spilled
+							 * files of the original one are not needed */
+
+							if (!map.containsValue(c)) {
+								c.clear();
+							}
+
+							for (Map.Entry<Long, Comparison> e :
+									map.entrySet()) {
+
+								List<Comparison> list = resultDataMap.get(
+									e.getKey());
+
+								if (list == null) {
+									list = new ArrayList<>();
+
+									resultDataMap.put(e.getKey(), list);
+								}
+
+								list.add(e.getValue());
+							}
+						}
+					}
+
+					if (!groupBySite && (numberOfGroupIds > 1)) {
+						List<Comparison> tempComparisonList = new ArrayList<>();
+
+						for (List<Comparison> auxList :
+								resultDataMap.values()) {
+
+							tempComparisonList.addAll(auxList);
+						}
+
+						List<Comparison> resultComparisonLisn =
+							ComparisonUtil.mergeComparisons(tempComparisonList);
+
+						resultDataMap = new TreeMap<>();
+
+						resultDataMap.put(0L, resultComparisonLisn);
+					}
+
+					long endTime = System.currentTimeMillis();
+
+					if (_log.isInfoEnabled() &&
+						executionMode.contains(
+							ExecutionMode.DUMP_ALL_OBJECTS_TO_LOG)) {
+
+						_log.info("COMPANY: " + company);
+
+						dumpToLog(
+							groupBySite, resultDataMap, checkJob.getLocale());
+					}
+
+					companyResultDataMap.put(company, resultDataMap);
+
+					companyProcessTime.put(company, endTime - startTime);
+
+					List<CheckMetrics> checkMetricsList =
+						CheckMetrics.getCheckMetricsList(
+							company.getCompanyId());
+
+					if (_log.isDebugEnabled()) {
+						for (CheckMetrics checkMetrics : checkMetricsList) {
+							_log.debug(checkMetrics);
+						}
+					}
+
+					companyMetrics.put(company, checkMetricsList);
+				}
+				catch (Throwable t) {
+					if (checkJob.isCancelled()) {
+						break;
+					}
+
+					StringWriter swt = new StringWriter();
+
+					PrintWriter pwt = new PrintWriter(swt);
+
+					pwt.println("Error during execution: " + t.getMessage());
+
+					t.printStackTrace(pwt);
+
+					companyError.put(company, swt.toString());
+					_log.error(t, t);
+				}
+			}
+		}
+		finally {
+			forkJoinPool.shutdownNow();
+		}
+
+		logRelatedDataCache();
+	}
+
+	protected void runReindex(CheckJob checkJob) throws Exception {
+		EnumSet<ExecutionMode> executionMode = checkJob.getExecutionMode();
+
+		List<String> classNames = getClassNames(
+			checkJob.getFilterClassNameArr());
+
+		Date startModifiedDate = null;
+		Date endModifiedDate = null;
+
+		long filterModifiedDate = checkJob.getFilterModifiedDate();
+
+		if (filterModifiedDate > 0) {
+			long now = System.currentTimeMillis();
+
+			startModifiedDate = getStartDate(now, filterModifiedDate);
+			endModifiedDate = getTomorrowDate(now);
+		}
+
+		Map<Company, Long> companyProcessTime =
+			checkJob.getCompanyProcessTime();
+
+		Map<Company, String> companyError = checkJob.getCompanyError();
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(
+			checkJob.getNumberOfThreads());
+
+		checkJob.setForkJoinPool(forkJoinPool);
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+			Map<Company, Future<Map<Long, List<Comparison>>>> futureCompanyMap =
+				submitCheck(
+					forkJoinPool, executionMode, checkJob.getFilterGroupIdArr(),
+					classNames, startModifiedDate, endModifiedDate, null,
+					checkJob);
+
+			for (Map.Entry<Company, Future<Map<Long, List<Comparison>>>> entry :
+					futureCompanyMap.entrySet()) {
+
+				if (checkJob.isCancelled()) {
+					break;
+				}
+
+				Company company = entry.getKey();
+
+				StringWriter sw = new StringWriter();
+
+				PrintWriter pw = new PrintWriter(sw);
+
+				try {
+					Future<Map<Long, List<Comparison>>> future =
+						entry.getValue();
+
+					Map<Long, List<Comparison>> resultDataMap = future.get();
+
+					if (resultDataMap == null) {
+						continue;
+					}
+
+					for (List<Comparison> resultList : resultDataMap.values()) {
+						for (Comparison result : resultList) {
+							if (checkJob.isCancelled()) {
+								break;
+							}
+
+							Map<Data, String> errors = reindex(result);
+							/* TODO Mover todo esto al JSP */
+							if (((errors != null) && !errors.isEmpty()) ||
+								(result.getError() != null)) {
+
+								pw.println();
+								pw.println("----");
+								pw.println(result.getModelName());
+								pw.println("----");
+
+								for (Map.Entry<Data, String> e :
+										errors.entrySet()) {
+
+									pw.println(
+										" * " + e.getKey() + " - Exception: " +
+											e.getValue());
+								}
+
+								pw.println(" * " + result.getError());
+							}
+						}
+					}
+
+					long endTime = System.currentTimeMillis();
+
+					companyProcessTime.put(company, endTime - startTime);
+				}
+				catch (Throwable t) {
+					if (checkJob.isCancelled()) {
+						break;
+					}
+
+					StringWriter swt = new StringWriter();
+
+					PrintWriter pwt = new PrintWriter(swt);
+
+					pwt.println("Error during execution: " + t.getMessage());
+
+					t.printStackTrace(pwt);
+
+					companyError.put(company, swt.toString());
+					_log.error(t, t);
+				}
+
+				companyError.put(company, sw.toString());
+			}
+		}
+		finally {
+			forkJoinPool.shutdownNow();
+		}
+
+		logRelatedDataCache();
+	}
+
+	protected void runRemoveOrphans(CheckJob checkJob) throws Exception {
+		List<String> classNames = getClassNames(
+			checkJob.getFilterClassNameArr());
+
+		Map<Company, Long> companyProcessTime =
+			checkJob.getCompanyProcessTime();
+
+		Map<Company, String> companyError = checkJob.getCompanyError();
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(
+			checkJob.getNumberOfThreads());
+
+		checkJob.setForkJoinPool(forkJoinPool);
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+			Map<Company, Future<Map<Long, List<Comparison>>>> futureCompanyMap =
+				submitCheck(
+					forkJoinPool, checkJob.getExecutionMode(),
+					checkJob.getFilterGroupIdArr(), classNames, null, null,
+					null, checkJob);
+
+			for (Map.Entry<Company, Future<Map<Long, List<Comparison>>>> entry :
+					futureCompanyMap.entrySet()) {
+
+				if (checkJob.isCancelled()) {
+					break;
+				}
+
+				Company company = entry.getKey();
+
+				StringWriter sw = new StringWriter();
+
+				PrintWriter pw = new PrintWriter(sw);
+
+				try {
+					Future<Map<Long, List<Comparison>>> future =
+						entry.getValue();
+
+					Map<Long, List<Comparison>> resultDataMap = future.get();
+
+					if (resultDataMap == null) {
+						continue;
+					}
+
+					for (List<Comparison> resultList : resultDataMap.values()) {
+						for (Comparison result : resultList) {
+							if (checkJob.isCancelled()) {
+								break;
+							}
+
+							Map<Data, String> errors = removeIndexOrphans(
+								result);
+							/* TODO Mover todo esto al JSP */
+							if (((errors != null) && !errors.isEmpty()) ||
+								(result.getError() != null)) {
+
+								pw.println();
+								pw.println("----");
+								pw.println(result.getModelName());
+								pw.println("----");
+
+								for (Map.Entry<Data, String> e :
+										errors.entrySet()) {
+
+									pw.println(
+										" * " + e.getKey() + " - Exception: " +
+											e.getValue());
+								}
+
+								pw.println(" * " + result.getError());
+							}
+						}
+					}
+
+					long endTime = System.currentTimeMillis();
+
+					companyProcessTime.put(company, endTime - startTime);
+				}
+				catch (Throwable t) {
+					if (checkJob.isCancelled()) {
+						break;
+					}
+
+					StringWriter swt = new StringWriter();
+
+					PrintWriter pwt = new PrintWriter(swt);
+
+					pwt.println("Error during execution: " + t.getMessage());
+
+					t.printStackTrace(pwt);
+
+					companyError.put(company, swt.toString());
+					_log.error(t, t);
+				}
+
+				companyError.put(company, sw.toString());
+			}
+		}
+		finally {
+			forkJoinPool.shutdownNow();
+		}
+
+		logRelatedDataCache();
+	}
+
+	/**
+	 * Returns the progress and partial results of a background job as JSON,
+	 * cancelling it first if the resource is checkJobCancel.
+	 */
+	protected void serveCheckJob(
+			ResourceRequest request, ResourceResponse response)
+		throws IOException {
+
+		String jobId = ParamUtil.getString(request, "jobId");
+
+		CheckJob checkJob = getCheckJob(request, jobId);
+
+		JSONObject jsonObject;
+
+		if (checkJob == null) {
+			jsonObject = JSONFactoryUtil.createJSONObject();
+
+			jsonObject.put("jobId", jobId);
+			jsonObject.put("status", "not-found");
+		}
+		else {
+			if (Objects.equals(request.getResourceID(), "checkJobCancel")) {
+				checkJob.cancel();
+			}
+
+			jsonObject = checkJob.toJSONObject();
+		}
+
+		JSONPortletResponseUtil.writeJSON(request, response, jsonObject);
+	}
+
+	protected void setResultAttributes(
+		PortletRequest request, CheckJob checkJob) {
+
+		request.setAttribute("companyError", checkJob.getCompanyError());
+		request.setAttribute("companyMetrics", checkJob.getCompanyMetrics());
+		request.setAttribute(
+			"companyProcessTime", checkJob.getCompanyProcessTime());
+
+		if (checkJob.getCompanyResultDataMap() != null) {
+			request.setAttribute(
+				"companyResultDataMap", checkJob.getCompanyResultDataMap());
+		}
+
+		request.setAttribute("executionMode", checkJob.getExecutionMode());
+		request.setAttribute(
+			"filterClassNameSelected",
+			SetUtil.fromArray(checkJob.getFilterClassNameArr()));
+		request.setAttribute(
+			"filterGroupIdSelected",
+			SetUtil.fromArray(checkJob.getFilterGroupIdArr()));
+		request.setAttribute("title", checkJob.getTitle());
+	}
+
+	/**
+	 * Submits the check of all companies to the pool, so models of different
+	 * companies are also processed concurrently. Future result is null if
+	 * company was skipped.
+	 */
+	protected Map<Company, Future<Map<Long, List<Comparison>>>> submitCheck(
+			ForkJoinPool forkJoinPool, EnumSet<ExecutionMode> executionMode,
+			String[] filterGroupIdArr, List<String> classNames,
+			Date startModifiedDate, Date endModifiedDate)
+		throws Exception {
+
+		return submitCheck(
+			forkJoinPool, executionMode, filterGroupIdArr, classNames,
+			startModifiedDate, endModifiedDate, null);
+	}
+
+	/**
+	 * Submits the check of all companies to the pool. If companyCheckpoints
+	 * is not null, an incremental check is done and the checkpoints of each
+	 * company are updated when its check finishes.
+	 */
+	protected Map<Company, Future<Map<Long, List<Comparison>>>> submitCheck(
+			final ForkJoinPool forkJoinPool,
+			final EnumSet<ExecutionMode> executionMode,
+			final String[] filterGroupIdArr, final List<String> classNames,
+			final Date startModifiedDate, final Date endModifiedDate,
+			Map<Long, Map<String, Checkpoint>> companyCheckpoints)
+		throws Exception {
+
+		return submitCheck(
+			forkJoinPool, executionMode, filterGroupIdArr, classNames,
+			startModifiedDate, endModifiedDate, companyCheckpoints, null);
+	}
+
+	/**
+	 * Submits the check of all companies to the pool, reporting its progress
+	 * to checkJob if it is not null.
+	 */
+	protected Map<Company, Future<Map<Long, List<Comparison>>>> submitCheck(
+			final ForkJoinPool forkJoinPool,
+			final EnumSet<ExecutionMode> executionMode,
+			final String[] filterGroupIdArr, final List<String> classNames,
+			final Date startModifiedDate, final Date endModifiedDate,
+			Map<Long, Map<String, Checkpoint>> companyCheckpoints,
+			final CheckJob checkJob)
+		throws Exception {
+
+		Map<Company, Future<Map<Long, List<Comparison>>>> futureCompanyMap =
+			new LinkedHashMap<>();
+
+		for (final Company company : getCompanyList()) {
+			Map<String, Checkpoint> checkpointsMap = null;
+
+			if (companyCheckpoints != null) {
+				checkpointsMap = companyCheckpoints.get(company.getCompanyId());
+			}
+
+			final Map<String, Checkpoint> checkpoints = checkpointsMap;
+
+			Callable<Map<Long, List<Comparison>>> callable =
+				new Callable<Map<Long, List<Comparison>>>() {
+
+					@Override
+					public Map<Long, List<Comparison>> call() throws Exception {
+						long companyId = company.getCompanyId();
+						long oldCompanyId = CompanyThreadLocal.getCompanyId();
+
+						try {
+							CompanyThreadLocal.setCompanyId(companyId);
+
+							List<Long> groupIds = getGroupIds(
+								company, executionMode, filterGroupIdArr);
+
+							if ((groupIds != null) && groupIds.isEmpty()) {
+								if (_log.isInfoEnabled()) {
+									_log.info(
+										"Skipping company " + companyId +
+											" because groupId list is empty");
+								}
+
+								return null;
+							}
+
+							return executeCheck(
+								company, groupIds, classNames,
+								startModifiedDate, endModifiedDate,
+								executionMode, forkJoinPool, checkpoints,
+								checkJob);
+						}
+						finally {
+							CompanyThreadLocal.setCompanyId(oldCompanyId);
+						}
+					}
+
+				};
+
+			futureCompanyMap.put(company, forkJoinPool.submit(callable));
+		}
+
+		return futureCompanyMap;
+	}
+
 	private static Log _log = LogFactoryUtil.getLog(IndexCheckerPortlet.class);
 
 }
\ No newline at end of file
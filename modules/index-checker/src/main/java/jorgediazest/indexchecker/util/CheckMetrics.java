@@ -0,0 +1,593 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.lang.reflect.Method;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Execution metrics of the check of a model: time and allocated bytes of
+ * each phase, rows read from database and documents and pages read from
+ * index. Metrics of all the tasks that check the same model are added.
+ *
+ * Phases are measured per thread. A phase started while another one is
+ * running in the same thread pauses the outer phase until it ends. Phases
+ * executed concurrently by several threads, like index partitions, add the
+ * time of each thread. Allocated bytes are only measured if the JVM supports
+ * thread allocation counters.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckMetrics {
+
+	public static void endPhase(PhaseTimer previousPhaseTimer) {
+		PhaseTimer phaseTimer = _phaseTimer.get();
+
+		long now = System.nanoTime();
+		long allocatedBytes = getThreadAllocatedBytes();
+
+		if (phaseTimer != null) {
+			phaseTimer.stop(now, allocatedBytes);
+		}
+
+		if (previousPhaseTimer == null) {
+			_phaseTimer.remove();
+
+			return;
+		}
+
+		previousPhaseTimer.restart(now, allocatedBytes);
+
+		_phaseTimer.set(previousPhaseTimer);
+	}
+
+	public static CheckMetrics getCheckMetrics(
+		long companyId, String className) {
+
+		String key = companyId + "_" + className;
+
+		CheckMetrics checkMetrics = _checkMetricsMap.get(key);
+
+		if (checkMetrics != null) {
+			return checkMetrics;
+		}
+
+		checkMetrics = new CheckMetrics(companyId, className);
+
+		CheckMetrics previousCheckMetrics = _checkMetricsMap.putIfAbsent(
+			key, checkMetrics);
+
+		if (previousCheckMetrics != null) {
+			return previousCheckMetrics;
+		}
+
+		return checkMetrics;
+	}
+
+	public static List<CheckMetrics> getCheckMetricsList() {
+		List<CheckMetrics> checkMetricsList = new ArrayList<>(
+			_checkMetricsMap.values());
+
+		Collections.sort(checkMetricsList, _comparator);
+
+		return checkMetricsList;
+	}
+
+	public static List<CheckMetrics> getCheckMetricsList(long companyId) {
+		List<CheckMetrics> checkMetricsList = new ArrayList<>();
+
+		for (CheckMetrics checkMetrics : getCheckMetricsList()) {
+			if (checkMetrics.getCompanyId() == companyId) {
+				checkMetricsList.add(checkMetrics);
+			}
+		}
+
+		return checkMetricsList;
+	}
+
+	/**
+	 * Returns the metrics of the phase running in the current thread, or
+	 * null if no phase is running.
+	 */
+	public static CheckMetrics getCurrent() {
+		PhaseTimer phaseTimer = _phaseTimer.get();
+
+		if (phaseTimer == null) {
+			return null;
+		}
+
+		return phaseTimer.checkMetrics;
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread since it was started,
+	 * or -1 if the JVM doesn't support thread allocation counters.
+	 */
+	public static long getThreadAllocatedBytes() {
+		if (_threadAllocatedBytesMethod == null) {
+			return -1;
+		}
+
+		try {
+			Thread thread = Thread.currentThread();
+
+			return (Long)_threadAllocatedBytesMethod.invoke(
+				_threadMXBean, thread.getId());
+		}
+		catch (Exception e) {
+			return -1;
+		}
+	}
+
+	public static void registerMBean() {
+		try {
+			MBeanServer mBeanServer =
+				ManagementFactory.getPlatformMBeanServer();
+
+			ObjectName objectName = new ObjectName(_OBJECT_NAME);
+
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+
+			CheckMetricsMXBean checkMetricsMXBean = new CheckMetricsMXBean() {
+
+				@Override
+				public List<CheckMetricsSnapshot> getCheckMetrics() {
+					List<CheckMetricsSnapshot> snapshots = new ArrayList<>();
+
+					for (CheckMetrics checkMetrics : getCheckMetricsList()) {
+						snapshots.add(checkMetrics.createSnapshot());
+					}
+
+					return snapshots;
+				}
+
+				@Override
+				public void reset() {
+					_checkMetricsMap.clear();
+				}
+
+			};
+
+			mBeanServer.registerMBean(
+				new StandardMBean(
+					checkMetricsMXBean, CheckMetricsMXBean.class, true),
+				objectName);
+		}
+		catch (Exception e) {
+			_log.warn("Unable to register metrics MBean: " + e.getMessage());
+
+			if (_log.isDebugEnabled()) {
+				_log.debug(e, e);
+			}
+		}
+	}
+
+	/**
+	 * Removes the metrics of the company, so a new check starts from zero.
+	 */
+	public static void reset(long companyId) {
+		for (Map.Entry<String, CheckMetrics> entry :
+				_checkMetricsMap.entrySet()) {
+
+			CheckMetrics checkMetrics = entry.getValue();
+
+			if (checkMetrics.getCompanyId() == companyId) {
+				_checkMetricsMap.remove(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Starts a phase in the current thread, pausing the running phase. The
+	 * returned timer must be passed to endPhase to restart the paused phase.
+	 * Phase is not measured if checkMetrics is null.
+	 */
+	public static PhaseTimer startPhase(
+		CheckMetrics checkMetrics, Phase phase) {
+
+		PhaseTimer previousPhaseTimer = _phaseTimer.get();
+
+		long now = System.nanoTime();
+		long allocatedBytes = getThreadAllocatedBytes();
+
+		if (previousPhaseTimer != null) {
+			previousPhaseTimer.stop(now, allocatedBytes);
+		}
+
+		_phaseTimer.set(
+			new PhaseTimer(checkMetrics, phase, now, allocatedBytes));
+
+		return previousPhaseTimer;
+	}
+
+	/**
+	 * Starts a phase of the metrics of the phase running in the current
+	 * thread.
+	 */
+	public static PhaseTimer startPhase(Phase phase) {
+		return startPhase(getCurrent(), phase);
+	}
+
+	/**
+	 * Ends the phase running in the current thread and starts another phase
+	 * of the same metrics.
+	 */
+	public static void switchPhase(Phase phase) {
+		PhaseTimer phaseTimer = _phaseTimer.get();
+
+		if (phaseTimer == null) {
+			return;
+		}
+
+		long now = System.nanoTime();
+		long allocatedBytes = getThreadAllocatedBytes();
+
+		phaseTimer.stop(now, allocatedBytes);
+
+		phaseTimer.phase = phase;
+
+		phaseTimer.restart(now, allocatedBytes);
+	}
+
+	public static void unregisterMBean() {
+		try {
+			MBeanServer mBeanServer =
+				ManagementFactory.getPlatformMBeanServer();
+
+			ObjectName objectName = new ObjectName(_OBJECT_NAME);
+
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+		}
+		catch (Exception e) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(e, e);
+			}
+		}
+	}
+
+	public void addAllocatedBytes(Phase phase, long bytes) {
+		_allocatedBytes.addAndGet(phase.ordinal(), bytes);
+	}
+
+	public void addIndexPage(int documents) {
+		_documents.addAndGet(documents);
+		_indexPages.incrementAndGet();
+	}
+
+	public void addRows(long rows) {
+		_rows.addAndGet(rows);
+	}
+
+	public void addTime(Phase phase, long nanos) {
+		_times.addAndGet(phase.ordinal(), nanos);
+	}
+
+	/**
+	 * Called when a task of the model finishes, the elapsed time is measured
+	 * from the start of the first task to the end of the last one.
+	 */
+	/**
+	 * Returns an immutable copy of the current metrics, exposed through JMX
+	 * instead of this class because its static methods can't be mapped to
+	 * open data types.
+	 */
+	public CheckMetricsSnapshot createSnapshot() {
+		return new CheckMetricsSnapshot(
+			className, companyId, getElapsedTime(), getRows(),
+			getRowsPerSecond(), getDocuments(), getIndexPages(),
+			getTimeByPhase(), getAllocatedBytesByPhase());
+	}
+
+	public void finish() {
+		long now = System.currentTimeMillis();
+
+		long endTime = _endTime.get();
+
+		while ((endTime < now) && !_endTime.compareAndSet(endTime, now)) {
+			endTime = _endTime.get();
+		}
+	}
+
+	public long getAllocatedBytes(Phase phase) {
+		return _allocatedBytes.get(phase.ordinal());
+	}
+
+	/**
+	 * Returns the allocated bytes of each phase, or an empty map if the JVM
+	 * doesn't support thread allocation counters.
+	 */
+	public Map<String, Long> getAllocatedBytesByPhase() {
+		Map<String, Long> allocatedBytesByPhase = new LinkedHashMap<>();
+
+		if (_threadAllocatedBytesMethod == null) {
+			return allocatedBytesByPhase;
+		}
+
+		for (Phase phase : Phase.values()) {
+			allocatedBytesByPhase.put(
+				phase.getName(), getAllocatedBytes(phase));
+		}
+
+		return allocatedBytesByPhase;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public long getCompanyId() {
+		return companyId;
+	}
+
+	public long getDocuments() {
+		return _documents.get();
+	}
+
+	/**
+	 * Returns the elapsed time in milliseconds.
+	 */
+	public long getElapsedTime() {
+		long startTime = _startTime.get();
+
+		if (startTime == Long.MAX_VALUE) {
+			return 0;
+		}
+
+		long endTime = _endTime.get();
+
+		if (endTime < startTime) {
+			endTime = System.currentTimeMillis();
+		}
+
+		return endTime - startTime;
+	}
+
+	public long getIndexPages() {
+		return _indexPages.get();
+	}
+
+	public long getRows() {
+		return _rows.get();
+	}
+
+	public long getRowsPerSecond() {
+		long elapsedTime = getElapsedTime();
+
+		if (elapsedTime == 0) {
+			return 0;
+		}
+
+		return (getRows() * 1000) / elapsedTime;
+	}
+
+	/**
+	 * Returns the time of the phase in milliseconds.
+	 */
+	public long getTime(Phase phase) {
+		return TimeUnit.NANOSECONDS.toMillis(_times.get(phase.ordinal()));
+	}
+
+	/**
+	 * Returns the time of each phase in milliseconds.
+	 */
+	public Map<String, Long> getTimeByPhase() {
+		Map<String, Long> timeByPhase = new LinkedHashMap<>();
+
+		for (Phase phase : Phase.values()) {
+			timeByPhase.put(phase.getName(), getTime(phase));
+		}
+
+		return timeByPhase;
+	}
+
+	/**
+	 * Called when a task of the model starts.
+	 */
+	public void start() {
+		long now = System.currentTimeMillis();
+
+		long startTime = _startTime.get();
+
+		while ((startTime > now) && !_startTime.compareAndSet(startTime, now)) {
+			startTime = _startTime.get();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "{className=" + className + ", companyId=" + companyId +
+			", elapsedTime=" + getElapsedTime() + ", rows=" + getRows() +
+				", rowsPerSecond=" + getRowsPerSecond() + ", documents=" +
+					getDocuments() + ", indexPages=" + getIndexPages() +
+						", timeByPhase=" + getTimeByPhase() +
+							", allocatedBytesByPhase=" +
+								getAllocatedBytesByPhase() + "}";
+	}
+
+	protected CheckMetrics(long companyId, String className) {
+		this.companyId = companyId;
+		this.className = className;
+	}
+
+	protected final String className;
+	protected final long companyId;
+
+	private static Method _getThreadAllocatedBytesMethod() {
+		/* The method is defined in com.sun.management.ThreadMXBean, it is
+		 * looked up in the interfaces of the bean to avoid a dependency on
+		 * that package */
+
+		for (Class<?> clazz : _threadMXBean.getClass().getInterfaces()) {
+			try {
+				Method method = clazz.getMethod(
+					"getThreadAllocatedBytes", long.class);
+
+				Method isSupportedMethod = clazz.getMethod(
+					"isThreadAllocatedMemorySupported");
+
+				if (!(Boolean)isSupportedMethod.invoke(_threadMXBean)) {
+					return null;
+				}
+
+				Method setEnabledMethod = clazz.getMethod(
+					"setThreadAllocatedMemoryEnabled", boolean.class);
+
+				setEnabledMethod.invoke(_threadMXBean, true);
+
+				return method;
+			}
+			catch (NoSuchMethodException nsme) {
+				continue;
+			}
+			catch (Exception e) {
+				if (_log.isDebugEnabled()) {
+					_log.debug(e, e);
+				}
+
+				return null;
+			}
+		}
+
+		return null;
+	}
+
+	private static final String _OBJECT_NAME =
+		"jorgediazest.indexchecker:type=CheckMetrics";
+
+	private static Map<String, CheckMetrics> _checkMetricsMap =
+		new ConcurrentHashMap<>();
+	private static Comparator<CheckMetrics> _comparator =
+		new Comparator<CheckMetrics>() {
+
+			@Override
+			public int compare(
+				CheckMetrics checkMetrics1, CheckMetrics checkMetrics2) {
+
+				int result = Long.compare(
+					checkMetrics1.getCompanyId(), checkMetrics2.getCompanyId());
+
+				if (result != 0) {
+					return result;
+				}
+
+				String className1 = checkMetrics1.getClassName();
+
+				return className1.compareTo(checkMetrics2.getClassName());
+			}
+
+		};
+	private static Log _log = LogFactoryUtil.getLog(CheckMetrics.class);
+	private static ThreadLocal<PhaseTimer> _phaseTimer = new ThreadLocal<>();
+	private static final Method _threadAllocatedBytesMethod;
+	private static final ThreadMXBean _threadMXBean;
+
+	static {
+		_threadMXBean = ManagementFactory.getThreadMXBean();
+
+		_threadAllocatedBytesMethod = _getThreadAllocatedBytesMethod();
+	}
+
+	private final AtomicLongArray _allocatedBytes = new AtomicLongArray(
+		Phase.values().length);
+	private final AtomicLong _documents = new AtomicLong();
+	private final AtomicLong _endTime = new AtomicLong(0);
+	private final AtomicLong _indexPages = new AtomicLong();
+	private final AtomicLong _rows = new AtomicLong();
+	private final AtomicLong _startTime = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLongArray _times = new AtomicLongArray(
+		Phase.values().length);
+
+	public enum Phase {
+
+		COMPARISON("comparison"), DATABASE("database"), INDEX("index"),
+		PERMISSIONS("permissions"), RELATED_DATA("related-data");
+
+		public String getName() {
+			return _name;
+		}
+
+		private Phase(String name) {
+			_name = name;
+		}
+
+		private final String _name;
+
+	}
+
+	/**
+	 * Time and allocated bytes of a phase running in a thread.
+	 */
+	public static class PhaseTimer {
+
+		protected PhaseTimer(
+			CheckMetrics checkMetrics, Phase phase, long startTime,
+			long startAllocatedBytes) {
+
+			this.checkMetrics = checkMetrics;
+			this.phase = phase;
+			this.startTime = startTime;
+			this.startAllocatedBytes = startAllocatedBytes;
+		}
+
+		protected void restart(long now, long allocatedBytes) {
+			startTime = now;
+			startAllocatedBytes = allocatedBytes;
+		}
+
+		protected void stop(long now, long allocatedBytes) {
+			if (checkMetrics == null) {
+				return;
+			}
+
+			checkMetrics.addTime(phase, now - startTime);
+
+			if ((allocatedBytes >= 0) && (startAllocatedBytes >= 0)) {
+				checkMetrics.addAllocatedBytes(
+					phase, allocatedBytes - startAllocatedBytes);
+			}
+		}
+
+		protected final CheckMetrics checkMetrics;
+		protected Phase phase;
+		protected long startAllocatedBytes;
+		protected long startTime;
+
+	}
+
+}
\ No newline at end of file
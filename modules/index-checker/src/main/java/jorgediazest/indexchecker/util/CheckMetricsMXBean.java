@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import java.util.List;
+
+/**
+ * Exposes the metrics of the last check of each model through JMX.
+ *
+ * @author Jorge Díaz
+ */
+public interface CheckMetricsMXBean {
+
+	public List<CheckMetricsSnapshot> getCheckMetrics();
+
+	public void reset();
+
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import java.beans.ConstructorProperties;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the metrics of a model exposed through JMX. It only
+ * contains instance getters, so it can be mapped to open data types by the
+ * MXBean framework.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckMetricsSnapshot {
+
+	@ConstructorProperties(
+		{
+			"className", "companyId", "elapsedTime", "rows", "rowsPerSecond",
+			"documents", "indexPages", "timeByPhase", "allocatedBytesByPhase"
+		}
+	)
+	public CheckMetricsSnapshot(
+		String className, long companyId, long elapsedTime, long rows,
+		long rowsPerSecond, long documents, long indexPages,
+		Map<String, Long> timeByPhase,
+		Map<String, Long> allocatedBytesByPhase) {
+
+		_className = className;
+		_companyId = companyId;
+		_elapsedTime = elapsedTime;
+		_rows = rows;
+		_rowsPerSecond = rowsPerSecond;
+		_documents = documents;
+		_indexPages = indexPages;
+		_timeByPhase = Collections.unmodifiableMap(
+			new LinkedHashMap<>(timeByPhase));
+		_allocatedBytesByPhase = Collections.unmodifiableMap(
+			new LinkedHashMap<>(allocatedBytesByPhase));
+	}
+
+	public Map<String, Long> getAllocatedBytesByPhase() {
+		return _allocatedBytesByPhase;
+	}
+
+	public String getClassName() {
+		return _className;
+	}
+
+	public long getCompanyId() {
+		return _companyId;
+	}
+
+	public long getDocuments() {
+		return _documents;
+	}
+
+	/**
+	 * Returns the elapsed time in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return _elapsedTime;
+	}
+
+	public long getIndexPages() {
+		return _indexPages;
+	}
+
+	public long getRows() {
+		return _rows;
+	}
+
+	public long getRowsPerSecond() {
+		return _rowsPerSecond;
+	}
+
+	/**
+	 * Returns the time of each phase in milliseconds.
+	 */
+	public Map<String, Long> getTimeByPhase() {
+		return _timeByPhase;
+	}
+
+	private final Map<String, Long> _allocatedBytesByPhase;
+	private final String _className;
+	private final long _companyId;
+	private final long _documents;
+	private final long _elapsedTime;
+	private final long _indexPages;
+	private final long _rows;
+	private final long _rowsPerSecond;
+	private final Map<String, Long> _timeByPhase;
+
+}
\ No newline at end of file
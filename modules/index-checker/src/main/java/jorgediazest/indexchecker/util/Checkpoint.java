@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import java.util.Date;
+
+/**
+ * High-water mark of the last successful check of a model: max modifiedDate
+ * and max primary key seen.
+ *
+ * @author Jorge Díaz
+ */
+public class Checkpoint {
+
+	public Checkpoint(Date modifiedDate, Long primaryKey) {
+		this.modifiedDate = modifiedDate;
+		this.primaryKey = primaryKey;
+	}
+
+	public Date getModifiedDate() {
+		return modifiedDate;
+	}
+
+	public Long getPrimaryKey() {
+		return primaryKey;
+	}
+
+	public Checkpoint merge(Checkpoint checkpoint) {
+		if (checkpoint == null) {
+			return this;
+		}
+
+		Date maxModifiedDate = modifiedDate;
+
+		if ((maxModifiedDate == null) ||
+			((checkpoint.modifiedDate != null) &&
+			 checkpoint.modifiedDate.after(maxModifiedDate))) {
+
+			maxModifiedDate = checkpoint.modifiedDate;
+		}
+
+		Long maxPrimaryKey = primaryKey;
+
+		if ((maxPrimaryKey == null) ||
+			((checkpoint.primaryKey != null) &&
+			 (checkpoint.primaryKey > maxPrimaryKey))) {
+
+			maxPrimaryKey = checkpoint.primaryKey;
+		}
+
+		return new Checkpoint(maxModifiedDate, maxPrimaryKey);
+	}
+
+	@Override
+	public String toString() {
+		return "modifiedDate=" + modifiedDate + ", primaryKey=" + primaryKey;
+	}
+
+	protected Date modifiedDate;
+	protected Long primaryKey;
+
+}
\ No newline at end of file
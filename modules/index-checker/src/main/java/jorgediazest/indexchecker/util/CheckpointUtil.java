@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import com.liferay.petra.string.StringPool;
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+import com.liferay.portal.kernel.service.PortletPreferencesLocalServiceUtil;
+import com.liferay.portal.kernel.util.GetterUtil;
+import com.liferay.portal.kernel.util.PortletKeys;
+import com.liferay.portal.kernel.util.Validator;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+import javax.portlet.ValidatorException;
+
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+
+/**
+ * Calculates and persists the checkpoints of the incremental check. They are
+ * stored in the portlet preferences, one value "modifiedDate,primaryKey" per
+ * company and model.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckpointUtil {
+
+	/**
+	 * Returns the checkpoint of the current model rows merged with the
+	 * previous one. If model is filtered by a previous checkpoint, max
+	 * primary key is only calculated from the modified rows.
+	 */
+	public static Checkpoint calculateCheckpoint(
+		Model model, Checkpoint previousCheckpoint) {
+
+		List<String> attributes = new ArrayList<>();
+
+		boolean hasModifiedDate = model.hasAttribute("modifiedDate");
+
+		if (hasModifiedDate) {
+			attributes.add("max(modifiedDate)");
+		}
+
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		boolean hasPrimaryKey =
+			Validator.isNotNull(primaryKeyAttribute) &&
+			Long.class.equals(model.getAttributeClass(primaryKeyAttribute));
+
+		if (hasPrimaryKey) {
+			attributes.add("max(" + primaryKeyAttribute + ")");
+		}
+
+		if (attributes.isEmpty()) {
+			return previousCheckpoint;
+		}
+
+		Object[] maxValues;
+
+		try {
+			ProjectionList projectionList = model.getPropertyProjection(
+				attributes.toArray(new String[0]));
+
+			List<?> results = model.executeDynamicQuery(null, projectionList);
+
+			if (results.isEmpty()) {
+				return previousCheckpoint;
+			}
+
+			Object result = results.get(0);
+
+			if (result instanceof Object[]) {
+				maxValues = (Object[])result;
+			}
+			else {
+				maxValues = new Object[] {result};
+			}
+		}
+		catch (Exception e) {
+			_log.error(
+				"Error calculating checkpoint of " + model.getName() + ": " +
+					e.toString(),
+				e);
+
+			return previousCheckpoint;
+		}
+
+		Date modifiedDate = null;
+		Long primaryKey = null;
+
+		int pos = 0;
+
+		if (hasModifiedDate) {
+			Object value = maxValues[pos++];
+
+			if (value instanceof Date) {
+				modifiedDate = new Date(((Date)value).getTime());
+			}
+		}
+
+		if (hasPrimaryKey) {
+			primaryKey = DataUtil.castLong(maxValues[pos]);
+		}
+
+		Checkpoint checkpoint = new Checkpoint(modifiedDate, primaryKey);
+
+		return checkpoint.merge(previousCheckpoint);
+	}
+
+	public static Map<String, Checkpoint> getCheckpoints(
+		PortletPreferences portletPreferences, long companyId) {
+
+		String prefix = _PREFERENCE_PREFIX + companyId + StringPool.UNDERLINE;
+
+		Map<String, Checkpoint> checkpoints = new HashMap<>();
+
+		Enumeration<String> names = portletPreferences.getNames();
+
+		while (names.hasMoreElements()) {
+			String name = names.nextElement();
+
+			if (!name.startsWith(prefix)) {
+				continue;
+			}
+
+			Checkpoint checkpoint = parseCheckpoint(
+				portletPreferences.getValue(name, null));
+
+			if (checkpoint != null) {
+				checkpoints.put(name.substring(prefix.length()), checkpoint);
+			}
+		}
+
+		return checkpoints;
+	}
+
+	/**
+	 * Returns the current company wide preferences of the portlet, read from
+	 * database instead of the request snapshot.
+	 */
+	public static PortletPreferences getPortletPreferences(
+		long preferencesCompanyId, String portletId) {
+
+		return PortletPreferencesLocalServiceUtil.getPreferences(
+			preferencesCompanyId, preferencesCompanyId,
+			PortletKeys.PREFS_OWNER_TYPE_COMPANY, PortletKeys.PREFS_PLID_SHARED,
+			portletId);
+	}
+
+	/**
+	 * Returns the modifiedDate of the checkpoint if model rows can be filtered
+	 * by it, otherwise the default start date.
+	 */
+	public static Date getStartModifiedDate(
+		Model model, Checkpoint checkpoint, Date defaultStartModifiedDate) {
+
+		if ((checkpoint == null) || (checkpoint.getModifiedDate() == null) ||
+			!model.hasAttribute("modifiedDate")) {
+
+			return defaultStartModifiedDate;
+		}
+
+		return checkpoint.getModifiedDate();
+	}
+
+	/**
+	 * Stores the checkpoints of the company. Preferences are loaded again
+	 * before setting the values, so other preferences and checkpoints stored
+	 * after the job was created are not reverted.
+	 */
+	public static void storeCheckpoints(
+			long preferencesCompanyId, String portletId, long companyId,
+			Map<String, Checkpoint> checkpoints)
+		throws IOException, ReadOnlyException, ValidatorException {
+
+		synchronized (_lock) {
+			PortletPreferences portletPreferences = getPortletPreferences(
+				preferencesCompanyId, portletId);
+
+			for (Map.Entry<String, Checkpoint> entry :
+					checkpoints.entrySet()) {
+
+				portletPreferences.setValue(
+					_PREFERENCE_PREFIX + companyId + StringPool.UNDERLINE +
+						entry.getKey(),
+					formatCheckpoint(entry.getValue()));
+			}
+
+			portletPreferences.store();
+		}
+	}
+
+	protected static String formatCheckpoint(Checkpoint checkpoint) {
+		String modifiedDate = StringPool.BLANK;
+
+		if (checkpoint.getModifiedDate() != null) {
+			Date date = checkpoint.getModifiedDate();
+
+			modifiedDate = String.valueOf(date.getTime());
+		}
+
+		String primaryKey = StringPool.BLANK;
+
+		if (checkpoint.getPrimaryKey() != null) {
+			primaryKey = String.valueOf(checkpoint.getPrimaryKey());
+		}
+
+		return modifiedDate + StringPool.COMMA + primaryKey;
+	}
+
+	protected static Checkpoint parseCheckpoint(String value) {
+		if (Validator.isNull(value)) {
+			return null;
+		}
+
+		String[] parts = value.split(StringPool.COMMA, -1);
+
+		if (parts.length != 2) {
+			return null;
+		}
+
+		Date modifiedDate = null;
+
+		if (Validator.isNotNull(parts[0])) {
+			modifiedDate = new Date(GetterUtil.getLong(parts[0]));
+		}
+
+		Long primaryKey = null;
+
+		if (Validator.isNotNull(parts[1])) {
+			primaryKey = GetterUtil.getLong(parts[1]);
+		}
+
+		if ((modifiedDate == null) && (primaryKey == null)) {
+			return null;
+		}
+
+		return new Checkpoint(modifiedDate, primaryKey);
+	}
+
+	private static final String _PREFERENCE_PREFIX = "checkpoint_";
+
+	private static Log _log = LogFactoryUtil.getLog(CheckpointUtil.class);
+	private static final Object _lock = new Object();
+
+}
\ No newline at end of file
@@ -19,8 +19,54 @@ package jorgediazest.indexchecker.util;
  */
 public interface PortletPropsKeys {
 
+	public static final String CHECK_JOBS_HISTORY_SIZE =
+		"check.jobs.history.size";
+
+	public static final String CHECK_JOBS_MAX_CONCURRENT =
+		"check.jobs.max.concurrent";
+
+	public static final String CHECK_SPLIT_THRESHOLD = "check.split.threshold";
+
+	public static final String COMPARISON_SPILL_THRESHOLD =
+		"comparison.spill.threshold";
+
 	public static final String INDEX_SEARCH_LIMIT = "index.search.limit";
 
+	public static final String INDEX_SEARCH_PAGE_SIZE_MIN =
+		"index.search.page.size.min";
+
+	public static final String INDEX_SEARCH_PAGE_TARGET_SIZE =
+		"index.search.page.target.size";
+
+	public static final String INDEX_SEARCH_PAGE_TARGET_TIME =
+		"index.search.page.target.time";
+
+	public static final String INDEX_SEARCH_PARTITIONS =
+		"index.search.partitions";
+
+	public static final String INDEX_WRITE_RATE_LIMIT =
+		"index.write.rate.limit";
+
 	public static final String NUMBER_THREADS = "number.threads";
 
+	public static final String OUTPUT_CSV_COMPRESS = "output.csv.compress";
+
+	public static final String OUTPUT_CSV_ROW_PER_PRIMARY_KEY =
+		"output.csv.row.per.primary.key";
+
+	public static final String QUERY_PAGE_SIZE = "query.page.size";
+
+	public static final String REINDEX_BATCH_SIZE = "reindex.batch.size";
+
+	public static final String REINDEX_THREADS = "reindex.threads";
+
+	public static final String RELATED_DATA_CACHE_MAX_SIZE =
+		"related.data.cache.max.size";
+
+	public static final String RELATED_DATA_CACHE_TIME_TO_LIVE =
+		"related.data.cache.time.to.live";
+
+	public static final String RELATED_DATA_PUSHDOWN_MAX_KEYS =
+		"related.data.pushdown.max.keys";
+
 }
\ No newline at end of file
@@ -23,23 +23,117 @@ import com.liferay.portal.kernel.util.GetterUtil;
  */
 public class PortletPropsValues {
 
+	public static final int CHECK_JOBS_HISTORY_SIZE;
+
+	public static final int CHECK_JOBS_MAX_CONCURRENT;
+
+	public static final int CHECK_SPLIT_THRESHOLD;
+
+	public static final int COMPARISON_SPILL_THRESHOLD;
+
 	public static final int INDEX_SEARCH_LIMIT;
 
+	public static final int INDEX_SEARCH_PAGE_SIZE_MIN;
+
+	public static final int INDEX_SEARCH_PAGE_TARGET_SIZE;
+
+	public static final int INDEX_SEARCH_PAGE_TARGET_TIME;
+
+	public static final int INDEX_SEARCH_PARTITIONS;
+
+	public static final int INDEX_WRITE_RATE_LIMIT;
+
 	public static final int NUMBER_THREADS;
 
+	public static final boolean OUTPUT_CSV_COMPRESS;
+
+	public static final boolean OUTPUT_CSV_ROW_PER_PRIMARY_KEY;
+
+	public static final int QUERY_PAGE_SIZE;
+
+	public static final int REINDEX_BATCH_SIZE;
+
+	public static final int REINDEX_THREADS;
+
+	public static final int RELATED_DATA_CACHE_MAX_SIZE;
+
+	public static final int RELATED_DATA_CACHE_TIME_TO_LIVE;
+
+	public static final int RELATED_DATA_PUSHDOWN_MAX_KEYS;
+
 	private static final Configuration _configuration;
 
 	static {
 		_configuration = ConfigurationFactoryUtil.getConfiguration(
 			PortletPropsValues.class.getClassLoader(), "portlet");
 
+		CHECK_JOBS_HISTORY_SIZE = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.CHECK_JOBS_HISTORY_SIZE), 10);
+
+		CHECK_JOBS_MAX_CONCURRENT = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.CHECK_JOBS_MAX_CONCURRENT), 2);
+
+		CHECK_SPLIT_THRESHOLD = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.CHECK_SPLIT_THRESHOLD), 100000);
+
+		COMPARISON_SPILL_THRESHOLD = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.COMPARISON_SPILL_THRESHOLD),
+			100000);
+
 		INDEX_SEARCH_LIMIT = GetterUtil.getInteger(
 			_configuration.get(PortletPropsKeys.INDEX_SEARCH_LIMIT), 10000);
 
+		INDEX_SEARCH_PAGE_SIZE_MIN = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.INDEX_SEARCH_PAGE_SIZE_MIN),
+			500);
+
+		INDEX_SEARCH_PAGE_TARGET_SIZE = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.INDEX_SEARCH_PAGE_TARGET_SIZE),
+			20000000);
+
+		INDEX_SEARCH_PAGE_TARGET_TIME = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.INDEX_SEARCH_PAGE_TARGET_TIME),
+			2000);
+
+		INDEX_SEARCH_PARTITIONS = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.INDEX_SEARCH_PARTITIONS), 4);
+
+		INDEX_WRITE_RATE_LIMIT = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.INDEX_WRITE_RATE_LIMIT), 0);
+
 		NUMBER_THREADS = GetterUtil.getInteger(
 			PortletPropsValues._configuration.get(
 				PortletPropsKeys.NUMBER_THREADS),
 			1);
+
+		OUTPUT_CSV_COMPRESS = GetterUtil.getBoolean(
+			_configuration.get(PortletPropsKeys.OUTPUT_CSV_COMPRESS));
+
+		OUTPUT_CSV_ROW_PER_PRIMARY_KEY = GetterUtil.getBoolean(
+			_configuration.get(
+				PortletPropsKeys.OUTPUT_CSV_ROW_PER_PRIMARY_KEY));
+
+		QUERY_PAGE_SIZE = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.QUERY_PAGE_SIZE), 10000);
+
+		REINDEX_BATCH_SIZE = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.REINDEX_BATCH_SIZE), 500);
+
+		REINDEX_THREADS = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.REINDEX_THREADS), 2);
+
+		RELATED_DATA_CACHE_MAX_SIZE = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.RELATED_DATA_CACHE_MAX_SIZE),
+			256);
+
+		RELATED_DATA_CACHE_TIME_TO_LIVE = GetterUtil.getInteger(
+			_configuration.get(
+				PortletPropsKeys.RELATED_DATA_CACHE_TIME_TO_LIVE),
+			600);
+
+		RELATED_DATA_PUSHDOWN_MAX_KEYS = GetterUtil.getInteger(
+			_configuration.get(PortletPropsKeys.RELATED_DATA_PUSHDOWN_MAX_KEYS),
+			5000);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,551 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.indexchecker.util;
+
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jorgediazest.util.data.Data;
+import jorgediazest.util.model.Model;
+
+/**
+ * Cache of related model data shared by consecutive executions. Entries are
+ * evicted in least recently used order when the estimated size of the cached
+ * data exceeds the configured size, and they expire after the configured
+ * time to live. An entry is also discarded if the number of rows or the max
+ * modifiedDate of its model changed since it was loaded. Data of models
+ * without modifiedDate is not cached, as changes that don't modify the number
+ * of rows, like the actions of a resource permission, can't be detected.
+ *
+ * @author Jorge Díaz
+ */
+public class RelatedDataCache {
+
+	public static RelatedDataCache getInstance() {
+		return _instance;
+	}
+
+	public RelatedDataCache(long maxSize, long timeToLive) {
+		_maxSize = maxSize;
+		_timeToLive = timeToLive;
+	}
+
+	public void clear() {
+		synchronized (_entries) {
+			_entries.clear();
+
+			_size = 0;
+		}
+
+		_waitTimes.clear();
+	}
+
+	/**
+	 * Returns the cached data of the key, or loads it with the loader if it is
+	 * not cached or it is not valid anymore. Concurrent calls with the same
+	 * key wait for the first one and share its result, calls with different
+	 * keys are not blocked.
+	 */
+	public Map<Long, List<Data>> get(
+			final String key, final Model model,
+			final Callable<Map<Long, List<Data>>> loader)
+		throws Exception {
+
+		FutureTask<Map<Long, List<Data>>> futureTask = new FutureTask<>(
+			new Callable<Map<Long, List<Data>>>() {
+
+				@Override
+				public Map<Long, List<Data>> call() throws Exception {
+					return getOrLoad(key, model, loader);
+				}
+
+			});
+
+		FutureTask<Map<Long, List<Data>>> loadingTask =
+			_loadingTasks.putIfAbsent(key, futureTask);
+
+		if (loadingTask == null) {
+			try {
+				futureTask.run();
+			}
+			finally {
+				_loadingTasks.remove(key, futureTask);
+			}
+
+			return _getResult(futureTask);
+		}
+
+		long startTime = System.nanoTime();
+
+		try {
+			return _getResult(loadingTask);
+		}
+		finally {
+			long waitTime = System.nanoTime() - startTime;
+
+			AtomicLong keyWaitTime = _waitTimes.get(key);
+
+			if (keyWaitTime == null) {
+				_waitTimes.putIfAbsent(key, new AtomicLong());
+
+				keyWaitTime = _waitTimes.get(key);
+			}
+
+			keyWaitTime.addAndGet(waitTime);
+		}
+	}
+
+	public long getEvictionCount() {
+		return _evictionCount.get();
+	}
+
+	public long getExpirationCount() {
+		return _expirationCount.get();
+	}
+
+	public long getHitCount() {
+		return _hitCount.get();
+	}
+
+	/**
+	 * Returns the cached data of the key if it is still valid, without
+	 * loading it. The model version is only queried if the key is cached.
+	 */
+	public Map<Long, List<Data>> getIfPresent(String key, Model model) {
+		if (!isEnabled()) {
+			return null;
+		}
+
+		synchronized (_entries) {
+			if (!_entries.containsKey(key)) {
+				return null;
+			}
+		}
+
+		String modelVersion = getModelVersion(model);
+
+		CacheEntry cacheEntry;
+
+		synchronized (_entries) {
+			cacheEntry = _getValidEntry(key, modelVersion);
+		}
+
+		if (cacheEntry == null) {
+			return null;
+		}
+
+		_hitCount.incrementAndGet();
+
+		return cacheEntry._dataMap;
+	}
+
+	public long getInvalidationCount() {
+		return _invalidationCount.get();
+	}
+
+	public long getMissCount() {
+		return _missCount.get();
+	}
+
+	public long getSize() {
+		synchronized (_entries) {
+			return _size;
+		}
+	}
+
+	/**
+	 * Returns the total time in milliseconds that threads waited for the
+	 * loading of each key since the last reset.
+	 */
+	public Map<String, Long> getWaitTimes() {
+		Map<String, Long> waitTimes = new TreeMap<>();
+
+		for (Map.Entry<String, AtomicLong> entry : _waitTimes.entrySet()) {
+			AtomicLong waitTime = entry.getValue();
+
+			waitTimes.put(entry.getKey(), waitTime.get() / 1000000L);
+		}
+
+		return waitTimes;
+	}
+
+	public boolean isEnabled() {
+		if ((_maxSize > 0) && (_timeToLive > 0)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes the wait times, so they are measured again for the next
+	 * execution.
+	 */
+	public void resetWaitTimes() {
+		_waitTimes.clear();
+	}
+
+	@Override
+	public String toString() {
+		int entries;
+		long size;
+
+		synchronized (_entries) {
+			entries = _entries.size();
+			size = _size;
+		}
+
+		return "entries=" + entries + ", size=" + size + ", hits=" +
+			_hitCount.get() + ", misses=" + _missCount.get() + ", evictions=" +
+				_evictionCount.get() + ", expirations=" +
+					_expirationCount.get() + ", invalidations=" +
+						_invalidationCount.get() + ", waitTime=" +
+							_getTotalWaitTime() + "ms";
+	}
+
+	protected static long estimateSize(Data data) {
+		Map<String, Object> map = data.getMap();
+
+		long size = 64 + (map.size() * 16L);
+
+		for (Object value : map.values()) {
+			size += estimateSize(value);
+		}
+
+		return size;
+	}
+
+	protected static long estimateSize(Map<Long, List<Data>> dataMap) {
+		long size = 64 + (dataMap.size() * 48L);
+
+		for (List<Data> dataList : dataMap.values()) {
+			size += dataList.size() * 8L;
+
+			for (Data data : dataList) {
+				size += estimateSize(data);
+			}
+		}
+
+		return size;
+	}
+
+	protected static long estimateSize(Object value) {
+		if (value == null) {
+			return 0;
+		}
+
+		if (value instanceof String) {
+			return 40 + (((String)value).length() * 2L);
+		}
+
+		if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>)value;
+
+			long size = 48 + (collection.size() * 16L);
+
+			for (Object element : collection) {
+				size += estimateSize(element);
+			}
+
+			return size;
+		}
+
+		if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>)value;
+
+			long size = 48 + (map.size() * 32L);
+
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				size += estimateSize(entry.getKey());
+				size += estimateSize(entry.getValue());
+			}
+
+			return size;
+		}
+
+		return 24;
+	}
+
+	/**
+	 * Returns the number of rows and the max modifiedDate of the model, or
+	 * null if they cannot be calculated or the model doesn't have a
+	 * modifiedDate attribute, so its data must not be cached.
+	 */
+	protected static String getModelVersion(Model model) {
+		if (!model.hasAttribute("modifiedDate")) {
+			return null;
+		}
+
+		try {
+			String modelVersion = String.valueOf(model.count());
+
+			ProjectionList projectionList = model.getPropertyProjection(
+				new String[] {"max(modifiedDate)"});
+
+			List<?> results = model.executeDynamicQuery(null, projectionList);
+
+			if (results.isEmpty()) {
+				return modelVersion;
+			}
+
+			Object result = results.get(0);
+
+			if (result instanceof Object[]) {
+				result = ((Object[])result)[0];
+			}
+
+			if (result instanceof Date) {
+				modelVersion += "_" + ((Date)result).getTime();
+			}
+
+			return modelVersion;
+		}
+		catch (Exception e) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Error calculating version of " + model.getName() + ": " +
+						e.toString(),
+					e);
+			}
+
+			return null;
+		}
+	}
+
+	protected Map<Long, List<Data>> getOrLoad(
+			String key, Model model, Callable<Map<Long, List<Data>>> loader)
+		throws Exception {
+
+		if (!isEnabled()) {
+			return loader.call();
+		}
+
+		String modelVersion = getModelVersion(model);
+
+		CacheEntry cacheEntry;
+
+		synchronized (_entries) {
+			cacheEntry = _getValidEntry(key, modelVersion);
+		}
+
+		if (cacheEntry != null) {
+			_hitCount.incrementAndGet();
+
+			return cacheEntry._dataMap;
+		}
+
+		_missCount.incrementAndGet();
+
+		Map<Long, List<Data>> dataMap = loader.call();
+
+		if (modelVersion != null) {
+			put(key, dataMap, modelVersion);
+		}
+
+		return dataMap;
+	}
+
+	protected void put(
+		String key, Map<Long, List<Data>> dataMap, String modelVersion) {
+
+		long size = estimateSize(dataMap);
+
+		if (size > _maxSize) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Data of " + key + " is not cached, its estimated size " +
+						size + " exceeds the cache size");
+			}
+
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		CacheEntry cacheEntry = new CacheEntry(
+			dataMap, modelVersion, now + _timeToLive, size);
+
+		synchronized (_entries) {
+			_removeEntry(key);
+
+			_removeExpiredEntries(now);
+
+			_entries.put(key, cacheEntry);
+
+			_size += size;
+
+			Iterator<Map.Entry<String, CacheEntry>> iterator =
+				_entries.entrySet().iterator();
+
+			while ((_size > _maxSize) && iterator.hasNext()) {
+				Map.Entry<String, CacheEntry> entry = iterator.next();
+
+				if (entry.getValue() == cacheEntry) {
+					continue;
+				}
+
+				_size -= entry.getValue()._size;
+
+				iterator.remove();
+
+				_evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	private Map<Long, List<Data>> _getResult(
+			FutureTask<Map<Long, List<Data>>> futureTask)
+		throws Exception {
+
+		try {
+			return futureTask.get();
+		}
+		catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+
+			if (cause instanceof Exception) {
+				throw (Exception)cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+
+			throw ee;
+		}
+	}
+
+	/**
+	 * Returns the entry of the key, removing it if it expired or if the
+	 * version of its model changed. Must be called holding the entries lock.
+	 */
+	private CacheEntry _getValidEntry(String key, String modelVersion) {
+		CacheEntry cacheEntry = _entries.get(key);
+
+		if (cacheEntry == null) {
+			return null;
+		}
+
+		if (cacheEntry._expirationTime <= System.currentTimeMillis()) {
+			_removeEntry(key);
+
+			_expirationCount.incrementAndGet();
+
+			return null;
+		}
+
+		if (!cacheEntry._modelVersion.equals(modelVersion)) {
+			_removeEntry(key);
+
+			_invalidationCount.incrementAndGet();
+
+			return null;
+		}
+
+		return cacheEntry;
+	}
+
+	private long _getTotalWaitTime() {
+		long totalWaitTime = 0;
+
+		for (AtomicLong waitTime : _waitTimes.values()) {
+			totalWaitTime += waitTime.get();
+		}
+
+		return totalWaitTime / 1000000L;
+	}
+
+	private void _removeEntry(String key) {
+		CacheEntry cacheEntry = _entries.remove(key);
+
+		if (cacheEntry != null) {
+			_size -= cacheEntry._size;
+		}
+	}
+
+	private void _removeExpiredEntries(long now) {
+		Iterator<CacheEntry> iterator = _entries.values().iterator();
+
+		while (iterator.hasNext()) {
+			CacheEntry cacheEntry = iterator.next();
+
+			if (cacheEntry._expirationTime <= now) {
+				_size -= cacheEntry._size;
+
+				iterator.remove();
+
+				_expirationCount.incrementAndGet();
+			}
+		}
+	}
+
+	private static Log _log = LogFactoryUtil.getLog(RelatedDataCache.class);
+
+	private static final RelatedDataCache _instance = new RelatedDataCache(
+		PortletPropsValues.RELATED_DATA_CACHE_MAX_SIZE * 1024L * 1024L,
+		PortletPropsValues.RELATED_DATA_CACHE_TIME_TO_LIVE * 1000L);
+
+	/* Entries are sorted by access order, eldest entries are evicted first */
+
+	private final LinkedHashMap<String, CacheEntry> _entries =
+		new LinkedHashMap<>(16, 0.75F, true);
+	private final AtomicLong _evictionCount = new AtomicLong();
+	private final AtomicLong _expirationCount = new AtomicLong();
+	private final AtomicLong _hitCount = new AtomicLong();
+	private final AtomicLong _invalidationCount = new AtomicLong();
+	private final ConcurrentMap<String, FutureTask<Map<Long, List<Data>>>>
+		_loadingTasks = new ConcurrentHashMap<>();
+	private final long _maxSize;
+	private final AtomicLong _missCount = new AtomicLong();
+	private long _size;
+	private final long _timeToLive;
+	private final ConcurrentMap<String, AtomicLong> _waitTimes =
+		new ConcurrentHashMap<>();
+
+	private static class CacheEntry {
+
+		private CacheEntry(
+			Map<Long, List<Data>> dataMap, String modelVersion,
+			long expirationTime, long size) {
+
+			_dataMap = dataMap;
+			_modelVersion = modelVersion;
+			_expirationTime = expirationTime;
+			_size = size;
+		}
+
+		private final Map<Long, List<Data>> _dataMap;
+		private final long _expirationTime;
+		private final String _modelVersion;
+		private final long _size;
+
+	}
+
+}
\ No newline at end of file
@@ -46,6 +46,8 @@ boolean checkRelatedData_cfg = GetterUtil.getBoolean(portletPreferences.getValue
 boolean queryBySite_cfg = GetterUtil.getBoolean(portletPreferences.getValue("queryBySite", StringPool.FALSE));
 boolean outputGroupBySite_cfg = GetterUtil.getBoolean(portletPreferences.getValue("outputGroupBySite", StringPool.FALSE));
 boolean dumpAllObjectsToLog_cfg = GetterUtil.getBoolean(portletPreferences.getValue("dumpAllObjectsToLog", StringPool.FALSE));
+boolean streamingComparison_cfg = GetterUtil.getBoolean(portletPreferences.getValue("streamingComparison", StringPool.FALSE));
+boolean incrementalCheck_cfg = GetterUtil.getBoolean(portletPreferences.getValue("incrementalCheck", StringPool.FALSE));
 int numberOfThreads_cfg = GetterUtil.getInteger(portletPreferences.getValue("numberOfThreads", StringPool.BLANK));
 if (numberOfThreads_cfg == 0) {
 	numberOfThreads_cfg = ConfigurationUtil.getDefaultNumberThreads();
@@ -62,6 +64,8 @@ if (numberOfThreads_cfg == 0) {
 	<aui:input name="preferences--queryBySite--" type="checkbox" value="<%= queryBySite_cfg %>" />
 	<aui:input name="preferences--outputGroupBySite--" type="checkbox" value="<%= outputGroupBySite_cfg %>" />
 	<aui:input name="preferences--dumpAllObjectsToLog--" type="checkbox" value="<%= dumpAllObjectsToLog_cfg %>" />
+	<aui:input helpMessage="streaming-comparison-help" name="preferences--streamingComparison--" type="checkbox" value="<%= streamingComparison_cfg %>" />
+	<aui:input helpMessage="incremental-check-help" name="preferences--incrementalCheck--" type="checkbox" value="<%= incrementalCheck_cfg %>" />
 	<aui:input helpMessage="number-of-threads-help" name="preferences--numberOfThreads--" type="text" value="<%= numberOfThreads_cfg %>" />
 
 	</div></div></div></div>
@@ -54,6 +54,7 @@
 
 <%@ page import="jorgediazest.indexchecker.ExecutionMode" %>
 <%@ page import="jorgediazest.indexchecker.output.IndexCheckerOutput" %>
+<%@ page import="jorgediazest.indexchecker.portlet.CheckJob" %>
 <%@ page import="jorgediazest.indexchecker.portlet.IndexCheckerPortlet" %>
 
 <%@ page import="jorgediazest.util.data.Comparison" %>
@@ -113,6 +114,7 @@
 		filterGroupIdSelected = new HashSet<String>();
 	}
 	Long filterModifiedDate = GetterUtil.getLong(request.getAttribute("filterModifiedDate"));
+	CheckJob checkJob = (CheckJob) request.getAttribute("checkJob");
 	Locale locale = renderRequest.getLocale();
 %>
 
@@ -123,6 +125,7 @@
 			<aui:input helpMessage="output-both-not-exact-help" name="outputBothNotExact" onClick='<%= renderResponse.getNamespace() + "disableReindexAndRemoveOrphansButtons(this);" %>' type="checkbox" value="true" />
 			<aui:input helpMessage="output-liferay-help" name="outputLiferay" onClick='<%= renderResponse.getNamespace() + "disableReindexAndRemoveOrphansButtons(this);" %>' type="checkbox" value="true" />
 			<aui:input disabled="<%= (filterModifiedDate > 0) %>" helpMessage="output-index-help" name="outputIndex" onClick='<%= renderResponse.getNamespace() + "disableReindexAndRemoveOrphansButtons(this);" %>' type="checkbox" value="false" />
+			<aui:input helpMessage="background-execution-help" label="background-execution" name="background" type="checkbox" value="false" />
 			<aui:fieldset>
 				<aui:select helpMessage="filter-modified-date-help"  inlineLabel="left" name="filterModifiedDate" onClick='<%= renderResponse.getNamespace() + "disableReindexAndRemoveOrphansButtons(this);" + renderResponse.getNamespace() + "disableOutputOnlyInIndex(this);" %>' >
 					<aui:option selected="true" value="0"><liferay-ui:message key="filter-group-id-no-filter" /></aui:option>
@@ -273,6 +276,114 @@ if (filterGroupIdSelected.contains("-2")) {
 	</aui:button-row>
 </aui:form>
 
+<%
+	if ((checkJob != null) && !checkJob.isFinished()) {
+%>
+
+<portlet:resourceURL id="checkJobCancel" var="checkJobCancelURL">
+	<portlet:param name="jobId" value="<%= checkJob.getJobId() %>" />
+</portlet:resourceURL>
+
+<portlet:resourceURL id="checkJobStatus" var="checkJobStatusURL">
+	<portlet:param name="jobId" value="<%= checkJob.getJobId() %>" />
+</portlet:resourceURL>
+
+<portlet:renderURL var="checkJobResultURL">
+	<portlet:param name="jobId" value="<%= checkJob.getJobId() %>" />
+</portlet:renderURL>
+
+<h2><b><%= checkJob.getTitle() %></b></h2>
+
+<div id="<portlet:namespace />checkJobProgress"><liferay-ui:message key="job-status" />: <%= checkJob.getStatus() %></div>
+
+<table class="table table-condensed" id="<portlet:namespace />checkJobResults"></table>
+
+<aui:button onClick='<%= renderResponse.getNamespace() + "cancelCheckJob();" %>' value="cancel-job" />
+
+<aui:script use="aui-io-request,escape">
+	var progressNode = A.one('#<portlet:namespace />checkJobProgress');
+	var resultsNode = A.one('#<portlet:namespace />checkJobResults');
+
+	var formatTime = function(time) {
+		if (time < 0) {
+			return '-';
+		}
+
+		return Math.round(time / 1000) + ' s';
+	};
+
+	var showCheckJob = function(checkJob) {
+		if ((checkJob.status != '<%= CheckJob.STATUS_QUEUED %>') && (checkJob.status != '<%= CheckJob.STATUS_RUNNING %>')) {
+			window.location.href = '<%= checkJobResultURL %>';
+
+			return;
+		}
+
+		var progress = '<liferay-ui:message key="job-status" />: ' + checkJob.status + '<br />';
+
+		progress += '<liferay-ui:message key="job-checked-entities" />: ' + checkJob.checkedModels + ' / ' + checkJob.models + '<br />';
+		progress += '<liferay-ui:message key="job-read-rows" />: ' + checkJob.rows + '<br />';
+		progress += '<liferay-ui:message key="job-elapsed-time" />: ' + formatTime(checkJob.elapsedTime) + '<br />';
+		progress += '<liferay-ui:message key="job-remaining-time" />: ' + formatTime(checkJob.estimatedRemainingTime);
+
+		progressNode.setHTML(progress);
+
+		var results = '';
+
+		for (var i = 0; i < checkJob.partialResults.length; i++) {
+			var partialResult = checkJob.partialResults[i];
+
+			var counts = [];
+
+			for (var type in partialResult.counts) {
+				counts.push(type + ': ' + partialResult.counts[type]);
+			}
+
+			if (partialResult.error) {
+				counts.push('error: ' + partialResult.error);
+			}
+
+			results += '<tr><td>' + A.Escape.html(partialResult.model) + '</td><td>' + A.Escape.html(counts.join(', ')) + '</td></tr>';
+		}
+
+		resultsNode.setHTML(results);
+
+		setTimeout(pollCheckJob, 5000);
+	};
+
+	var pollCheckJob = function() {
+		A.io.request(
+			'<%= checkJobStatusURL %>',
+			{
+				dataType: 'JSON',
+				on: {
+					failure: function() {
+						setTimeout(pollCheckJob, 5000);
+					},
+					success: function() {
+						showCheckJob(this.get('responseData'));
+					}
+				}
+			}
+		);
+	};
+
+	window['<portlet:namespace />cancelCheckJob'] = function() {
+		A.io.request(
+			'<%= checkJobCancelURL %>',
+			{
+				dataType: 'JSON'
+			}
+		);
+	};
+
+	pollCheckJob();
+</aui:script>
+
+<%
+	}
+%>
+
 <%
 	if ((companyProcessTime != null) && (companyError != null)) {
 %>
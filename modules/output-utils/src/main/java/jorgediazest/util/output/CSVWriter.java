@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.output;
+
+import com.liferay.petra.string.StringPool;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes CSV rows to a writer as they are generated, so the whole output is
+ * never kept in memory. Cells are quoted with the same rules as
+ * OutputUtils.getCSVRow.
+ *
+ * @author Jorge Díaz
+ */
+public class CSVWriter implements Closeable {
+
+	/**
+	 * Creates a writer of the file, buffered and encoded in UTF-8. If compress
+	 * is true, the file is written with gzip.
+	 */
+	public static CSVWriter create(File file, boolean compress)
+		throws IOException {
+
+		OutputStream outputStream = new FileOutputStream(file);
+
+		try {
+			if (compress) {
+				outputStream = new GZIPOutputStream(
+					new BufferedOutputStream(outputStream));
+			}
+
+			return new CSVWriter(
+				new BufferedWriter(
+					new OutputStreamWriter(outputStream, StringPool.UTF8)));
+		}
+		catch (IOException ioe) {
+			outputStream.close();
+
+			throw ioe;
+		}
+	}
+
+	public CSVWriter(Writer writer) {
+		this(writer, StringPool.COMMA);
+	}
+
+	public CSVWriter(Writer writer, String sep) {
+		_writer = writer;
+		_sep = sep;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_writer.close();
+	}
+
+	public void flush() throws IOException {
+		_writer.flush();
+	}
+
+	public void writeLine(String line) throws IOException {
+		if (line != null) {
+			_writer.write(line);
+		}
+
+		_writer.write(StringPool.NEW_LINE);
+	}
+
+	public void writeRow(List<String> row) throws IOException {
+		_writeCells(row);
+
+		_writer.write(StringPool.NEW_LINE);
+	}
+
+	/**
+	 * Writes the row with an additional last cell that joins the values, as
+	 * OutputUtils.stringArrayToString does. Values are read from the iterator
+	 * while they are written, so they don't have to be joined in memory.
+	 */
+	public void writeRow(List<String> row, Iterator<String> lastCellValues)
+		throws IOException {
+
+		_writeCells(row);
+
+		if (!row.isEmpty()) {
+			_writer.write(_sep);
+		}
+
+		if (!lastCellValues.hasNext()) {
+			_writer.write(StringPool.NEW_LINE);
+
+			return;
+		}
+
+		String value = lastCellValues.next();
+
+		boolean quote = false;
+
+		if (lastCellValues.hasNext() || _isQuoteNeeded(value)) {
+			quote = true;
+		}
+
+		if (quote) {
+			_writer.write(StringPool.QUOTE);
+		}
+
+		_writer.write(value);
+
+		while (lastCellValues.hasNext()) {
+			_writer.write(StringPool.COMMA_AND_SPACE);
+			_writer.write(lastCellValues.next());
+		}
+
+		if (quote) {
+			_writer.write(StringPool.QUOTE);
+		}
+
+		_writer.write(StringPool.NEW_LINE);
+	}
+
+	private boolean _isQuoteNeeded(String cell) {
+		if (cell.contains(StringPool.SPACE) || cell.contains(_sep)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	private void _writeCells(List<String> row) throws IOException {
+		boolean first = true;
+
+		for (String cell : row) {
+			if (!first) {
+				_writer.write(_sep);
+			}
+
+			if (_isQuoteNeeded(cell)) {
+				cell = StringPool.QUOTE + cell + StringPool.QUOTE;
+			}
+
+			_writer.write(cell);
+
+			first = false;
+		}
+	}
+
+	private final String _sep;
+	private final Writer _writer;
+
+}
\ No newline at end of file
@@ -14,9 +14,16 @@
 
 package jorgediazest.util.output;
 
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import jorgediazest.util.data.Data;
@@ -26,6 +33,24 @@ import jorgediazest.util.data.Data;
  */
 public class DataUtil {
 
+	/**
+	 * Returns the value of the attribute, or the values of the attributes
+	 * formatted as an array if there are several attributes.
+	 */
+	public static String getAttr(Data data, List<String> attrList) {
+		if (attrList.size() == 1) {
+			return _getString(data, attrList.get(0));
+		}
+
+		String[] auxArr = new String[attrList.size()];
+
+		for (int j = 0; j < attrList.size(); j++) {
+			auxArr[j] = _getString(data, attrList.get(j));
+		}
+
+		return Arrays.toString(auxArr);
+	}
+
 	public static String[] getListAttr(
 		Collection<Data> dataCollection, List<String> attrList) {
 
@@ -47,26 +72,27 @@ public class DataUtil {
 
 		int i = 0;
 
-		for (Data data : dataCollection) {
-			String value;
+		Iterator<Data> iterator = dataCollection.iterator();
 
-			if (attrList.size() == 1) {
-				value = _getString(data, attrList.get(0));
-			}
-			else {
-				String[] auxArr = new String[attrList.size()];
-
-				for (int j = 0; j < attrList.size(); j++) {
-					auxArr[j] = _getString(data, attrList.get(j));
-				}
-
-				value = Arrays.toString(auxArr);
+		try {
+			while ((i < size) && iterator.hasNext()) {
+				values[i++] = getAttr(iterator.next(), attrList);
 			}
+		}
+		finally {
 
-			values[i++] = value;
+			/* Iteration may stop before the end, release the iterator
+			 * resources, like the run files of spilled data sets */
 
-			if (i >= size) {
-				break;
+			if (iterator instanceof Closeable) {
+				try {
+					((Closeable)iterator).close();
+				}
+				catch (IOException ioe) {
+					if (_log.isDebugEnabled()) {
+						_log.debug(ioe, ioe);
+					}
+				}
 			}
 		}
 
@@ -92,4 +118,6 @@ public class DataUtil {
 		return obj.toString();
 	}
 
+	private static Log _log = LogFactoryUtil.getLog(DataUtil.class);
+
 }
\ No newline at end of file
@@ -35,6 +35,7 @@ import com.liferay.portal.kernel.util.StringBundler;
 import com.liferay.portal.kernel.util.StringUtil;
 import com.liferay.portal.kernel.util.Validator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -42,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -72,6 +74,57 @@ public class OutputUtils {
 			mimeType, true);
 	}
 
+	public static FileEntry addPortletFileEntry(
+			Repository repository, File file, long userId, String title,
+			String mimeType)
+		throws PortalException {
+
+		return PortletFileRepositoryUtil.addPortletFileEntry(
+			repository.getGroupId(), userId, StringPool.BLANK, 0,
+			repository.getPortletId(), repository.getDlFolderId(), file, title,
+			mimeType, true);
+	}
+
+	/**
+	 * Adds the output file to the portlet repository, reading it from disk,
+	 * and deletes it. If compressed is true, the file is stored as a gzip
+	 * file.
+	 */
+	public static FileEntry addPortletOutputFileEntry(
+		String portletId, long userId, File outputFile, boolean compressed) {
+
+		if (outputFile == null) {
+			return null;
+		}
+
+		try {
+			Repository repository = getPortletRepository(portletId);
+
+			cleanupPortletFileEntries(repository, 8 * 60);
+
+			if (compressed) {
+				return addPortletFileEntry(
+					repository, outputFile, userId,
+					getOutputFileName(portletId, userId, ".csv.gz"),
+					"application/gzip");
+			}
+
+			return addPortletFileEntry(
+				repository, outputFile, userId,
+				getOutputFileName(portletId, userId, ".csv"), "text/plain");
+		}
+		catch (Exception e) {
+			_log.error(e, e);
+
+			return null;
+		}
+		finally {
+			if (!outputFile.delete()) {
+				outputFile.deleteOnExit();
+			}
+		}
+	}
+
 	public static FileEntry addPortletOutputFileEntry(
 		String portletId, long userId, String outputContent) {
 
@@ -84,13 +137,9 @@ public class OutputUtils {
 
 			cleanupPortletFileEntries(repository, 8 * 60);
 
-			String fileName =
-				portletId + "_output_" + userId + "_" +
-					System.currentTimeMillis() + ".csv";
-
 			return addPortletFileEntry(
 				repository, outputContent.getBytes(StringPool.UTF8), userId,
-				fileName, "text/plain");
+				getOutputFileName(portletId, userId, ".csv"), "text/plain");
 		}
 		catch (Exception e) {
 			_log.error(e, e);
@@ -154,25 +203,9 @@ public class OutputUtils {
 			return null;
 		}
 
-		List<String> line = new ArrayList<>();
-
-		line.add(companyOutput);
-
-		if (groupIdOutput != null) {
-			line.add(groupIdOutput);
-			line.add(groupNameOutput);
-		}
-
-		line.add(comp.getModelName());
-		line.add(comp.getModelDisplayName(locale));
-		line.add(LanguageUtil.get(resourceBundle, "output." + type));
-
-		if (outputSize < 0) {
-			line.add(StringPool.BLANK);
-		}
-		else {
-			line.add(StringPool.BLANK + outputSize);
-		}
+		List<String> line = getCSVRowCells(
+			resourceBundle, comp, companyOutput, groupIdOutput, groupNameOutput,
+			type, locale, outputSize);
 
 		line.add(output);
 
@@ -424,6 +457,67 @@ public class OutputUtils {
 		return string.substring(1, string.length() - 1);
 	}
 
+	/**
+	 * Writes the CSV rows of the output type. All the values are written in a
+	 * single row, or in a row for each value if rowPerValue is true. Values
+	 * are read from the comparison while they are written, so they are not
+	 * joined in memory. Returns the number of written rows.
+	 */
+	public static int writeCSVRows(
+			CSVWriter csvWriter, ResourceBundle resourceBundle, Comparison comp,
+			String companyOutput, String groupIdOutput, String groupNameOutput,
+			String type, List<String> attributeList, Locale locale,
+			boolean rowPerValue)
+		throws IOException {
+
+		Set<Data> data = comp.getData(type);
+
+		if ((data == null) || data.isEmpty()) {
+			return 0;
+		}
+
+		if (!rowPerValue) {
+			List<String> line = getCSVRowCells(
+				resourceBundle, comp, companyOutput, groupIdOutput,
+				groupNameOutput, type, locale, data.size());
+
+			csvWriter.writeRow(
+				line, new AttributeIterator(data.iterator(), attributeList));
+
+			return 1;
+		}
+
+		List<String> line = getCSVRowCells(
+			resourceBundle, comp, companyOutput, groupIdOutput, groupNameOutput,
+			type, locale, 1);
+
+		int rows = 0;
+
+		for (Data value : data) {
+			line.add(DataUtil.getAttr(value, attributeList));
+
+			csvWriter.writeRow(line);
+
+			line.remove(line.size() - 1);
+
+			rows++;
+		}
+
+		return rows;
+	}
+
+	public static int writeCSVRows(
+			CSVWriter csvWriter, ResourceBundle resourceBundle, Comparison comp,
+			String companyOutput, String groupIdOutput, String groupNameOutput,
+			String type, String attribute, Locale locale, boolean rowPerValue)
+		throws IOException {
+
+		return writeCSVRows(
+			csvWriter, resourceBundle, comp, companyOutput, groupIdOutput,
+			groupNameOutput, type, Collections.singletonList(attribute), locale,
+			rowPerValue);
+	}
+
 	protected static String addCell(String line, String cell, String sep) {
 		if (cell.contains(StringPool.SPACE) || cell.contains(sep)) {
 			cell = StringPool.QUOTE + cell + StringPool.QUOTE;
@@ -439,6 +533,72 @@ public class OutputUtils {
 		return line;
 	}
 
+	/**
+	 * Returns the cells of a CSV row of the comparison, except the output
+	 * cell. If outputSize is negative, the count cell is blank.
+	 */
+	protected static List<String> getCSVRowCells(
+		ResourceBundle resourceBundle, Comparison comp, String companyOutput,
+		String groupIdOutput, String groupNameOutput, String type,
+		Locale locale, int outputSize) {
+
+		List<String> line = new ArrayList<>();
+
+		line.add(companyOutput);
+
+		if (groupIdOutput != null) {
+			line.add(groupIdOutput);
+			line.add(groupNameOutput);
+		}
+
+		line.add(comp.getModelName());
+		line.add(comp.getModelDisplayName(locale));
+		line.add(LanguageUtil.get(resourceBundle, "output." + type));
+
+		if (outputSize < 0) {
+			line.add(StringPool.BLANK);
+		}
+		else {
+			line.add(StringPool.BLANK + outputSize);
+		}
+
+		return line;
+	}
+
+	protected static String getOutputFileName(
+		String portletId, long userId, String extension) {
+
+		return portletId + "_output_" + userId + "_" +
+			System.currentTimeMillis() + extension;
+	}
+
 	private static Log _log = LogFactoryUtil.getLog(OutputUtils.class);
 
+	/**
+	 * Iterates the values of the attributes of the data.
+	 */
+	private static class AttributeIterator implements Iterator<String> {
+
+		@Override
+		public boolean hasNext() {
+			return _iterator.hasNext();
+		}
+
+		@Override
+		public String next() {
+			return DataUtil.getAttr(_iterator.next(), _attributeList);
+		}
+
+		private AttributeIterator(
+			Iterator<Data> iterator, List<String> attributeList) {
+
+			_iterator = iterator;
+			_attributeList = attributeList;
+		}
+
+		private final List<String> _attributeList;
+		private final Iterator<Data> _iterator;
+
+	}
+
 }
\ No newline at end of file
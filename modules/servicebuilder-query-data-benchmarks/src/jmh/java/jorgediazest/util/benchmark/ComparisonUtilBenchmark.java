@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.benchmark;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jorgediazest.util.comparator.DataComparator;
+import jorgediazest.util.comparator.DataModelComparator;
+import jorgediazest.util.data.Comparison;
+import jorgediazest.util.data.ComparisonUtil;
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full comparison of database and index data sets, with all the outputs
+ * enabled. Index data has 90% of the database rows, one of each ten common
+ * rows is modified and 5% of the rows are only in the index.
+ *
+ * @author Jorge Díaz
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class ComparisonUtilBenchmark {
+
+	@Benchmark
+	public Comparison getComparison() {
+		return ComparisonUtil.getComparison(
+			_model, _exactComparator, _leftSet, _rightSet, true, true, true,
+			true);
+	}
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		_model = SyntheticModel.createModel();
+
+		_exactComparator = new DataModelComparator(
+			Arrays.asList(SyntheticModel.ATTRIBUTES));
+
+		Object[][] leftRows = SyntheticModel.createRows(rows, 1L);
+		Object[][] rightRows = SyntheticModel.createRows(
+			rows + (rows / 20), 1L);
+
+		int titlePos = Arrays.asList(
+			SyntheticModel.ATTRIBUTES
+		).indexOf(
+			"title"
+		);
+
+		_left = new Data[rows];
+
+		for (int i = 0; i < rows; i++) {
+			_left[i] = DataUtil.createDataObject(
+				_model, SyntheticModel.ATTRIBUTES, leftRows[i]);
+		}
+
+		_right = new Data[rightRows.length - (rows / 10)];
+
+		int count = 0;
+
+		for (int i = 0; i < rightRows.length; i++) {
+			if ((i < rows) && ((i % 10) == 5)) {
+				continue;
+			}
+
+			if ((i % 10) == 0) {
+				rightRows[i][titlePos] = "modified " + i;
+			}
+
+			_right[count++] = DataUtil.createDataObject(
+				_model, SyntheticModel.ATTRIBUTES, rightRows[i]);
+		}
+
+		_leftSet = new HashSet<>(Arrays.asList(_left));
+		_rightSet = new HashSet<>(Arrays.asList(_right));
+	}
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private DataComparator _exactComparator;
+	private Data[] _left;
+	private Set<Data> _leftSet;
+	private Model _model;
+	private Data[] _right;
+	private Set<Data> _rightSet;
+
+}
\ No newline at end of file
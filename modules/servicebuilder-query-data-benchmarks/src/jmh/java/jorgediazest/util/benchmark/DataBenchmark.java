@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation of Data objects from query rows and attribute access.
+ *
+ * @author Jorge Díaz
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class DataBenchmark {
+
+	@Benchmark
+	public Data createDataObject() {
+		Object[] row = _rows[_next()];
+
+		return DataUtil.createDataObject(
+			_model, SyntheticModel.ATTRIBUTES, row);
+	}
+
+	@Benchmark
+	public Object get() {
+		Data data = _data[_next()];
+
+		return data.get(SyntheticModel.ATTRIBUTES[_position % _attributes]);
+	}
+
+	@Benchmark
+	public long getPrimaryKey() {
+		Data data = _data[_next()];
+
+		return data.getPrimaryKey();
+	}
+
+	@Benchmark
+	public Data set() {
+		int position = _next();
+
+		Data data = _data[position];
+
+		int attribute = position % _attributes;
+
+		data.set(
+			SyntheticModel.ATTRIBUTES[attribute], _rows[position][attribute]);
+
+		return data;
+	}
+
+	@Setup
+	public void setUp() {
+		_model = SyntheticModel.createModel();
+
+		_rows = SyntheticModel.createRows(rows, 1L);
+
+		_data = new Data[rows];
+
+		for (int i = 0; i < rows; i++) {
+			_data[i] = DataUtil.createDataObject(
+				_model, SyntheticModel.ATTRIBUTES, _rows[i]);
+		}
+
+		_attributes = SyntheticModel.ATTRIBUTES.length;
+	}
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private int _next() {
+		_position++;
+
+		if (_position >= rows) {
+			_position = 0;
+		}
+
+		return _position;
+	}
+
+	private int _attributes;
+	private Data[] _data;
+	private Model _model;
+	private int _position;
+	private Object[][] _rows;
+
+}
\ No newline at end of file
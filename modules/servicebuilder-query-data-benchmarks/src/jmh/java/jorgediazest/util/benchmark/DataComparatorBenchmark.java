@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import jorgediazest.util.comparator.DataComparator;
+import jorgediazest.util.comparator.DataModelComparator;
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparators used to match database and index data: the key comparator of
+ * the model and an exact comparator of all the attributes, as used by the
+ * "both-exact" and "both-notexact" outputs.
+ *
+ * @author Jorge Díaz
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class DataComparatorBenchmark {
+
+	@Benchmark
+	public int compareExact() {
+		int position = _next();
+
+		return _exactComparator.compare(_left[position], _right[position]);
+	}
+
+	@Benchmark
+	public int compareKey() {
+		int position = _next();
+
+		return _keyComparator.compare(_left[position], _right[position]);
+	}
+
+	@Benchmark
+	public boolean equalsExact() {
+		int position = _next();
+
+		return _exactComparator.equals(_left[position], _right[position]);
+	}
+
+	@Benchmark
+	public boolean equalsKey() {
+		int position = _next();
+
+		return _keyComparator.equals(_left[position], _right[position]);
+	}
+
+	@Benchmark
+	public Integer hashCodeExact() {
+		return _exactComparator.hashCode(_left[_next()]);
+	}
+
+	@Benchmark
+	public Integer hashCodeKey() {
+		return _keyComparator.hashCode(_left[_next()]);
+	}
+
+	/**
+	 * Right data has the same keys as left data, one of each ten rows has a
+	 * different value in a not key attribute.
+	 */
+	@Setup
+	public void setUp() {
+		Model model = SyntheticModel.createModel();
+
+		Object[][] leftRows = SyntheticModel.createRows(rows, 1L);
+		Object[][] rightRows = SyntheticModel.createRows(rows, 1L);
+
+		int titlePos = Arrays.asList(
+			SyntheticModel.ATTRIBUTES
+		).indexOf(
+			"title"
+		);
+
+		_left = new Data[rows];
+		_right = new Data[rows];
+
+		for (int i = 0; i < rows; i++) {
+			if ((i % 10) == 0) {
+				rightRows[i][titlePos] = "modified " + i;
+			}
+
+			_left[i] = DataUtil.createDataObject(
+				model, SyntheticModel.ATTRIBUTES, leftRows[i]);
+			_right[i] = DataUtil.createDataObject(
+				model, SyntheticModel.ATTRIBUTES, rightRows[i]);
+		}
+
+		_keyComparator = DataUtil.getDataComparator(model);
+		_exactComparator = new DataModelComparator(
+			Arrays.asList(SyntheticModel.ATTRIBUTES));
+	}
+
+	@Param({"10000", "100000"})
+	public int rows;
+
+	private int _next() {
+		_position++;
+
+		if (_position >= rows) {
+			_position = 0;
+		}
+
+		return _position;
+	}
+
+	private DataComparator _exactComparator;
+	private DataComparator _keyComparator;
+	private Data[] _left;
+	private int _position;
+	private Data[] _right;
+
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of query values to the attribute classes, with the attribute
+ * mix of SyntheticModel. Values are converted from the classes returned by
+ * the database and from strings, as they are read from the index.
+ *
+ * @author Jorge Díaz
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class DataUtilBenchmark {
+
+	@Benchmark
+	public Object castObject() {
+		int position = _next();
+
+		return DataUtil.castObject(_types[position], _values[position]);
+	}
+
+	@Benchmark
+	public Object castObjectFromString() {
+		int position = _next();
+
+		return DataUtil.castObject(_types[position], _stringValues[position]);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		SyntheticModel.initDateFormatFactory();
+
+		Model model = SyntheticModel.createModel();
+
+		Object[][] rows = SyntheticModel.createRows(_ROWS, 1L);
+
+		int attributes = SyntheticModel.ATTRIBUTES.length;
+
+		_types = new Class<?>[_ROWS * attributes];
+		_values = new Object[_ROWS * attributes];
+		_stringValues = new Object[_ROWS * attributes];
+
+		for (int i = 0; i < _ROWS; i++) {
+			for (int j = 0; j < attributes; j++) {
+				int position = (i * attributes) + j;
+
+				Object value = rows[i][j];
+
+				_types[position] = model.getAttributeClass(
+					SyntheticModel.ATTRIBUTES[j]);
+				_values[position] = value;
+
+				if (value instanceof Date) {
+					_stringValues[position] = DataUtil.dateToString(
+						(Date)value);
+				}
+				else {
+					_stringValues[position] = String.valueOf(value);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public Object transformObject() {
+		int position = _next();
+
+		return DataUtil.transformObject(_types[position], _values[position]);
+	}
+
+	@Benchmark
+	public Object transformObjectFromString() {
+		int position = _next();
+
+		return DataUtil.transformObject(
+			_types[position], _stringValues[position]);
+	}
+
+	private int _next() {
+		_position++;
+
+		if (_position >= _values.length) {
+			_position = 0;
+		}
+
+		return _position;
+	}
+
+	private static final int _ROWS = 10000;
+
+	private int _position;
+	private Object[] _stringValues;
+	private Class<?>[] _types;
+	private Object[] _values;
+
+}
\ No newline at end of file
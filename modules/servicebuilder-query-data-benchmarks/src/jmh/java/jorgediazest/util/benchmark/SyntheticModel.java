@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.benchmark;
+
+import com.liferay.portal.kernel.util.DateFormatFactory;
+import com.liferay.portal.kernel.util.DateFormatFactoryUtil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import java.text.SimpleDateFormat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import jorgediazest.util.model.Model;
+import jorgediazest.util.table.TableInfo;
+
+/**
+ * Model stand-in for benchmarks, it doesn't need a running portal. Table
+ * columns are a usual mix of an asset model: ids, dates, strings and
+ * numbers. Only the methods used by Data and the comparators are
+ * implemented.
+ *
+ * @author Jorge Díaz
+ */
+public class SyntheticModel implements InvocationHandler {
+
+	public static final String[] ATTRIBUTES = {
+		"uuid", "entryId", "companyId", "groupId", "userId", "userName",
+		"createDate", "modifiedDate", "classNameId", "classPK", "title",
+		"description", "status", "priority", "visible"
+	};
+
+	public static final String CLASS_NAME =
+		"jorgediazest.util.benchmark.SyntheticEntry";
+
+	public static final String TABLE_NAME = "SyntheticEntry";
+
+	public static Model createModel() {
+		return createModel(Arrays.asList("entryId", "companyId"));
+	}
+
+	public static Model createModel(List<String> keyAttributes) {
+		Object[][] attributesArr = {
+			{"uuid", Types.VARCHAR}, {"entryId", Types.BIGINT},
+			{"companyId", Types.BIGINT}, {"groupId", Types.BIGINT},
+			{"userId", Types.BIGINT}, {"userName", Types.VARCHAR},
+			{"createDate", Types.TIMESTAMP}, {"modifiedDate", Types.TIMESTAMP},
+			{"classNameId", Types.BIGINT}, {"classPK", Types.BIGINT},
+			{"title", Types.VARCHAR}, {"description", Types.CLOB},
+			{"status", Types.INTEGER}, {"priority", Types.DOUBLE},
+			{"visible", Types.BOOLEAN}
+		};
+
+		String sqlCreate =
+			"create table " + TABLE_NAME + " (uuid_ VARCHAR(75) null," +
+				"entryId LONG not null primary key,companyId LONG," +
+					"groupId LONG,userId LONG,userName VARCHAR(75) null," +
+						"createDate DATE null,modifiedDate DATE null," +
+							"classNameId LONG,classPK LONG," +
+								"title VARCHAR(255) null,description TEXT " +
+									"null,status INTEGER,priority DOUBLE," +
+										"visible BOOLEAN)";
+
+		TableInfo tableInfo = new TableInfo(
+			TABLE_NAME, attributesArr, sqlCreate, null);
+
+		return (Model)Proxy.newProxyInstance(
+			Model.class.getClassLoader(), new Class<?>[] {Model.class},
+			new SyntheticModel(tableInfo, keyAttributes));
+	}
+
+	/**
+	 * Sets a DateFormatFactory that creates SimpleDateFormat objects, as the
+	 * portal one is not available outside the portal. It is needed to convert
+	 * strings to dates.
+	 */
+	public static void initDateFormatFactory() throws Exception {
+		Object dateFormatFactory = Proxy.newProxyInstance(
+			DateFormatFactory.class.getClassLoader(),
+			new Class<?>[] {DateFormatFactory.class},
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (!method.getName().equals("getSimpleDateFormat")) {
+						throw new UnsupportedOperationException(
+							method.getName());
+					}
+
+					SimpleDateFormat simpleDateFormat;
+
+					if ((args.length > 1) && (args[1] != null)) {
+						simpleDateFormat = new SimpleDateFormat(
+							(String)args[0], (Locale)args[1]);
+					}
+					else {
+						simpleDateFormat = new SimpleDateFormat(
+							(String)args[0]);
+					}
+
+					if ((args.length > 2) && (args[2] != null)) {
+						simpleDateFormat.setTimeZone((TimeZone)args[2]);
+					}
+
+					return simpleDateFormat;
+				}
+
+			});
+
+		for (Field field : DateFormatFactoryUtil.class.getDeclaredFields()) {
+			if (DateFormatFactory.class.equals(field.getType()) &&
+				Modifier.isStatic(field.getModifiers())) {
+
+				field.setAccessible(true);
+
+				field.set(null, dateFormatFactory);
+			}
+		}
+	}
+
+	/**
+	 * Returns rows with the values of ATTRIBUTES, as they are returned by a
+	 * database query. The same seed always returns the same rows.
+	 */
+	public static Object[][] createRows(int count, long seed) {
+		Random random = new Random(seed);
+
+		Object[][] rows = new Object[count][];
+
+		for (int i = 0; i < count; i++) {
+			long entryId = 30000L + i;
+
+			rows[i] = new Object[] {
+				"4f3c2a1b-0000-4000-8000-" + String.format("%012d", entryId),
+				entryId, 20116L, 20120L + random.nextInt(50),
+				20156L + random.nextInt(200), "User " + random.nextInt(200),
+				new Timestamp(_BASE_TIME - (random.nextInt(1000000) * 1000L)),
+				new Timestamp(_BASE_TIME - (random.nextInt(100000) * 1000L)),
+				20011L, entryId, "Title of entry " + entryId,
+				_createDescription(random), random.nextInt(3),
+				random.nextDouble(), random.nextBoolean()
+			};
+		}
+
+		return rows;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		String name = method.getName();
+
+		if (name.equals("equals")) {
+			return proxy == args[0];
+		}
+
+		if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+
+		if (name.equals("compareTo")) {
+			Model model = (Model)args[0];
+
+			return CLASS_NAME.compareTo(model.getClassName());
+		}
+
+		if (name.equals("toString") || name.equals("getClassName")) {
+			return CLASS_NAME;
+		}
+
+		if (name.equals("getClassSimpleName") || name.equals("getName") ||
+			name.equals("getDisplayName")) {
+
+			return TABLE_NAME;
+		}
+
+		if (name.equals("getAttributeClass")) {
+			return _tableInfo.getAttributeClass((String)args[0]);
+		}
+
+		if (name.equals("getAttributeNames")) {
+			return _tableInfo.getAttributeNames();
+		}
+
+		if (name.equals("getAttributePos")) {
+			return _tableInfo.getAttributePos((String)args[0]);
+		}
+
+		if (name.equals("getClassNameId")) {
+			return 20011L;
+		}
+
+		if (name.equals("getKeyAttributes")) {
+			return _keyAttributes;
+		}
+
+		if (name.equals("getPrimaryKeyAttribute")) {
+			return _tableInfo.getPrimaryKeyAttribute();
+		}
+
+		if (name.equals("getPrimaryKeyMultiAttribute")) {
+			return new String[0];
+		}
+
+		if (name.equals("getTableInfo")) {
+			return _tableInfo;
+		}
+
+		if (name.equals("getTableInfoMappings")) {
+			return Collections.emptyMap();
+		}
+
+		if (name.equals("hasAttribute")) {
+			if (_tableInfo.getAttributePos((String)args[0]) != -1) {
+				return true;
+			}
+
+			return false;
+		}
+
+		if (name.startsWith("is")) {
+			return false;
+		}
+
+		throw new UnsupportedOperationException(name);
+	}
+
+	private static String _createDescription(Random random) {
+		StringBuilder sb = new StringBuilder();
+
+		int words = 5 + random.nextInt(40);
+
+		for (int i = 0; i < words; i++) {
+			sb.append("word");
+			sb.append(random.nextInt(1000));
+			sb.append(' ');
+		}
+
+		return sb.toString();
+	}
+
+	private SyntheticModel(TableInfo tableInfo, List<String> keyAttributes) {
+		_tableInfo = tableInfo;
+		_keyAttributes = keyAttributes;
+	}
+
+	private static final long _BASE_TIME = 1600000000000L;
+
+	private final List<String> _keyAttributes;
+	private final TableInfo _tableInfo;
+
+}
\ No newline at end of file
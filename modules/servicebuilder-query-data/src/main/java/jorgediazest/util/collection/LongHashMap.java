@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map with primitive long keys stored in an open addressing table, so keys
+ * are not boxed and no entry object is created per mapping. Null values are
+ * allowed. Iterators don't support remove.
+ *
+ * @author Jorge Díaz
+ */
+public class LongHashMap<V> extends AbstractMap<Long, V> {
+
+	public LongHashMap() {
+		this(16);
+	}
+
+	public LongHashMap(int expectedSize) {
+		_allocate(LongHashUtil.getCapacity(expectedSize));
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(_values, null);
+
+		_size = 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (_findSlot(key) >= 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof Long)) {
+			return false;
+		}
+
+		return containsKey(((Long)key).longValue());
+	}
+
+	@Override
+	public Set<Map.Entry<Long, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	public V get(long key) {
+		int slot = _findSlot(key);
+
+		if (slot < 0) {
+			return null;
+		}
+
+		return _unmaskNull(_values[slot]);
+	}
+
+	@Override
+	public V get(Object key) {
+		if (!(key instanceof Long)) {
+			return null;
+		}
+
+		return get(((Long)key).longValue());
+	}
+
+	public V put(long key, V value) {
+		int slot = _findSlot(key);
+
+		if (slot >= 0) {
+			V oldValue = _unmaskNull(_values[slot]);
+
+			_values[slot] = _maskNull(value);
+
+			return oldValue;
+		}
+
+		slot = -(slot + 1);
+
+		_keys[slot] = key;
+		_values[slot] = _maskNull(value);
+
+		_size++;
+
+		if (_size > _threshold) {
+			_rehash(_keys.length * 2);
+		}
+
+		return null;
+	}
+
+	@Override
+	public V put(Long key, V value) {
+		return put(key.longValue(), value);
+	}
+
+	public V remove(long key) {
+		int slot = _findSlot(key);
+
+		if (slot < 0) {
+			return null;
+		}
+
+		V oldValue = _unmaskNull(_values[slot]);
+
+		_size--;
+
+		/* Backward shift deletion: following entries of the same probe
+		 * sequence are moved to the gap, so no tombstones are needed */
+
+		int gap = slot;
+
+		int i = (slot + 1) & _mask;
+
+		while (_values[i] != null) {
+			int home = LongHashUtil.hash(_keys[i], _shift);
+
+			if (((i - home) & _mask) >= ((i - gap) & _mask)) {
+				_keys[gap] = _keys[i];
+				_values[gap] = _values[i];
+
+				gap = i;
+			}
+
+			i = (i + 1) & _mask;
+		}
+
+		_values[gap] = null;
+
+		return oldValue;
+	}
+
+	@Override
+	public V remove(Object key) {
+		if (!(key instanceof Long)) {
+			return null;
+		}
+
+		return remove(((Long)key).longValue());
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	private static Object _maskNull(Object value) {
+		if (value == null) {
+			return _NULL;
+		}
+
+		return value;
+	}
+
+	private void _allocate(int capacity) {
+		_keys = new long[capacity];
+		_values = new Object[capacity];
+
+		_mask = capacity - 1;
+		_shift = LongHashUtil.getShift(capacity);
+		_threshold = LongHashUtil.getThreshold(capacity);
+	}
+
+	/**
+	 * Returns the slot of the key, or -(insertion slot + 1) if the key is not
+	 * in the map.
+	 */
+	private int _findSlot(long key) {
+		int slot = LongHashUtil.hash(key, _shift);
+
+		while (_values[slot] != null) {
+			if (_keys[slot] == key) {
+				return slot;
+			}
+
+			slot = (slot + 1) & _mask;
+		}
+
+		return -(slot + 1);
+	}
+
+	private void _rehash(int capacity) {
+		long[] oldKeys = _keys;
+		Object[] oldValues = _values;
+
+		_allocate(capacity);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] == null) {
+				continue;
+			}
+
+			int slot = LongHashUtil.hash(oldKeys[i], _shift);
+
+			while (_values[slot] != null) {
+				slot = (slot + 1) & _mask;
+			}
+
+			_keys[slot] = oldKeys[i];
+			_values[slot] = oldValues[i];
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V _unmaskNull(Object value) {
+		if (value == _NULL) {
+			return null;
+		}
+
+		return (V)value;
+	}
+
+	private static final Object _NULL = new Object();
+
+	private long[] _keys;
+	private int _mask;
+	private int _shift;
+	private int _size;
+	private int _threshold;
+	private Object[] _values;
+
+	private class Entry implements Map.Entry<Long, V> {
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+
+			if (Objects.equals(getKey(), entry.getKey()) &&
+				Objects.equals(getValue(), entry.getValue())) {
+
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Long getKey() {
+			return _keys[_slot];
+		}
+
+		@Override
+		public V getValue() {
+			return _unmaskNull(_values[_slot]);
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public V setValue(V value) {
+			V oldValue = getValue();
+
+			_values[_slot] = _maskNull(value);
+
+			return oldValue;
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+
+		private Entry(int slot) {
+			_slot = slot;
+		}
+
+		private final int _slot;
+
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<Long, V>> {
+
+		@Override
+		public boolean hasNext() {
+			while ((_nextSlot < _values.length) &&
+				   (_values[_nextSlot] == null)) {
+
+				_nextSlot++;
+			}
+
+			if (_nextSlot < _values.length) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Map.Entry<Long, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			return new Entry(_nextSlot++);
+		}
+
+		private int _nextSlot;
+
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<Long, V>> {
+
+		@Override
+		public void clear() {
+			LongHashMap.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<Long, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return _size;
+		}
+
+	}
+
+}
\ No newline at end of file
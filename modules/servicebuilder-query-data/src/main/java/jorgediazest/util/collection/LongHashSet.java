@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.collection;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of primitive longs stored in an open addressing table of a single long
+ * array. Zero marks an empty slot, so the zero key is kept in a flag. Remove
+ * is not supported.
+ *
+ * @author Jorge Díaz
+ */
+public class LongHashSet extends AbstractSet<Long> {
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(int expectedSize) {
+		_allocate(LongHashUtil.getCapacity(expectedSize));
+	}
+
+	public boolean add(long key) {
+		if (key == 0) {
+			if (_containsZero) {
+				return false;
+			}
+
+			_containsZero = true;
+
+			_size++;
+
+			return true;
+		}
+
+		int slot = _findSlot(key);
+
+		if (slot >= 0) {
+			return false;
+		}
+
+		_keys[-(slot + 1)] = key;
+
+		_size++;
+
+		if (_size > _threshold) {
+			_rehash(_keys.length * 2);
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean add(Long key) {
+		return add(key.longValue());
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(_keys, 0L);
+
+		_containsZero = false;
+		_size = 0;
+	}
+
+	public boolean contains(long key) {
+		if (key == 0) {
+			return _containsZero;
+		}
+
+		if (_findSlot(key) >= 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object key) {
+		if (!(key instanceof Long)) {
+			return false;
+		}
+
+		return contains(((Long)key).longValue());
+	}
+
+	@Override
+	public Iterator<Long> iterator() {
+		return new KeyIterator();
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	private void _allocate(int capacity) {
+		_keys = new long[capacity];
+
+		_mask = capacity - 1;
+		_shift = LongHashUtil.getShift(capacity);
+		_threshold = LongHashUtil.getThreshold(capacity);
+	}
+
+	/**
+	 * Returns the slot of the key, or -(insertion slot + 1) if the key is not
+	 * in the set. Key must not be zero.
+	 */
+	private int _findSlot(long key) {
+		int slot = LongHashUtil.hash(key, _shift);
+
+		while (_keys[slot] != 0) {
+			if (_keys[slot] == key) {
+				return slot;
+			}
+
+			slot = (slot + 1) & _mask;
+		}
+
+		return -(slot + 1);
+	}
+
+	private void _rehash(int capacity) {
+		long[] oldKeys = _keys;
+
+		_allocate(capacity);
+
+		for (long key : oldKeys) {
+			if (key == 0) {
+				continue;
+			}
+
+			int slot = LongHashUtil.hash(key, _shift);
+
+			while (_keys[slot] != 0) {
+				slot = (slot + 1) & _mask;
+			}
+
+			_keys[slot] = key;
+		}
+	}
+
+	private boolean _containsZero;
+	private long[] _keys;
+	private int _mask;
+	private int _shift;
+	private int _size;
+	private int _threshold;
+
+	private class KeyIterator implements Iterator<Long> {
+
+		@Override
+		public boolean hasNext() {
+			if (!_zeroReturned && _containsZero) {
+				return true;
+			}
+
+			while ((_nextSlot < _keys.length) && (_keys[_nextSlot] == 0)) {
+				_nextSlot++;
+			}
+
+			if (_nextSlot < _keys.length) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Long next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (!_zeroReturned && _containsZero) {
+				_zeroReturned = true;
+
+				return 0L;
+			}
+
+			return _keys[_nextSlot++];
+		}
+
+		private int _nextSlot;
+		private boolean _zeroReturned;
+
+	}
+
+}
\ No newline at end of file
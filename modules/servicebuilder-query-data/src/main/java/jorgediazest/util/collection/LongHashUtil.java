@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.collection;
+
+/**
+ * Sizing and hashing of the open addressing tables with long keys. Table
+ * capacity is always a power of two.
+ *
+ * @author Jorge Díaz
+ */
+class LongHashUtil {
+
+	static int getCapacity(int expectedSize) {
+		int capacity = _MIN_CAPACITY;
+
+		while ((capacity < _MAX_CAPACITY) &&
+			   (getThreshold(capacity) < expectedSize)) {
+
+			capacity <<= 1;
+		}
+
+		return capacity;
+	}
+
+	static int getShift(int capacity) {
+		return 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	static int getThreshold(int capacity) {
+		return (int)(capacity * _LOAD_FACTOR);
+	}
+
+	/**
+	 * Fibonacci hashing: sequential primary keys are spread over the whole
+	 * table, instead of filling consecutive slots.
+	 */
+	static int hash(long key, int shift) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	private static final float _LOAD_FACTOR = 0.75F;
+
+	private static final int _MAX_CAPACITY = 1 << 30;
+
+	private static final int _MIN_CAPACITY = 4;
+
+}
\ No newline at end of file
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.collection;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with primitive long keys and several values per key. Keys are stored in
+ * an open addressing table and all values in a single array, linked by int
+ * offsets, so no list is created per key.
+ *
+ * Values can only be added. Returned lists are read only views of the values
+ * that the key had when the list was returned.
+ *
+ * @author Jorge Díaz
+ */
+public class LongMultiValueMap<V> extends AbstractMap<Long, List<V>> {
+
+	public LongMultiValueMap() {
+		this(16);
+	}
+
+	public LongMultiValueMap(int expectedSize) {
+		_allocate(LongHashUtil.getCapacity(expectedSize));
+
+		_values = new Object[Math.max(expectedSize, 16)];
+		_next = new int[_values.length];
+	}
+
+	public void add(long key, V value) {
+		int index = _appendValue(value);
+
+		int slot = _findSlot(key);
+
+		if (slot >= 0) {
+			_next[_last[slot]] = index;
+			_last[slot] = index;
+			_sizes[slot]++;
+
+			return;
+		}
+
+		slot = -(slot + 1);
+
+		_keys[slot] = key;
+		_first[slot] = index;
+		_last[slot] = index;
+		_sizes[slot] = 1;
+
+		_size++;
+
+		if (_size > _threshold) {
+			_rehash(_keys.length * 2);
+		}
+	}
+
+	public void addAll(long key, Collection<? extends V> values) {
+		for (V value : values) {
+			add(key, value);
+		}
+	}
+
+	public boolean containsKey(long key) {
+		if (_findSlot(key) >= 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof Long)) {
+			return false;
+		}
+
+		return containsKey(((Long)key).longValue());
+	}
+
+	@Override
+	public Set<Map.Entry<Long, List<V>>> entrySet() {
+		return new EntrySet();
+	}
+
+	public List<V> get(long key) {
+		int slot = _findSlot(key);
+
+		if (slot < 0) {
+			return null;
+		}
+
+		return new ValueList(_first[slot], _sizes[slot]);
+	}
+
+	@Override
+	public List<V> get(Object key) {
+		if (!(key instanceof Long)) {
+			return null;
+		}
+
+		return get(((Long)key).longValue());
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	private void _allocate(int capacity) {
+		_keys = new long[capacity];
+		_first = new int[capacity];
+		_last = new int[capacity];
+		_sizes = new int[capacity];
+
+		_mask = capacity - 1;
+		_shift = LongHashUtil.getShift(capacity);
+		_threshold = LongHashUtil.getThreshold(capacity);
+	}
+
+	private int _appendValue(V value) {
+		if (_valuesCount == _values.length) {
+			int length = _values.length + (_values.length >> 1);
+
+			_values = Arrays.copyOf(_values, length);
+			_next = Arrays.copyOf(_next, length);
+		}
+
+		_values[_valuesCount] = value;
+		_next[_valuesCount] = -1;
+
+		return _valuesCount++;
+	}
+
+	/**
+	 * Returns the slot of the key, or -(insertion slot + 1) if the key is not
+	 * in the map.
+	 */
+	private int _findSlot(long key) {
+		int slot = LongHashUtil.hash(key, _shift);
+
+		while (_sizes[slot] != 0) {
+			if (_keys[slot] == key) {
+				return slot;
+			}
+
+			slot = (slot + 1) & _mask;
+		}
+
+		return -(slot + 1);
+	}
+
+	private void _rehash(int capacity) {
+		long[] oldKeys = _keys;
+		int[] oldFirst = _first;
+		int[] oldLast = _last;
+		int[] oldSizes = _sizes;
+
+		_allocate(capacity);
+
+		for (int i = 0; i < oldSizes.length; i++) {
+			if (oldSizes[i] == 0) {
+				continue;
+			}
+
+			int slot = LongHashUtil.hash(oldKeys[i], _shift);
+
+			while (_sizes[slot] != 0) {
+				slot = (slot + 1) & _mask;
+			}
+
+			_keys[slot] = oldKeys[i];
+			_first[slot] = oldFirst[i];
+			_last[slot] = oldLast[i];
+			_sizes[slot] = oldSizes[i];
+		}
+	}
+
+	private int[] _first;
+	private long[] _keys;
+	private int[] _last;
+	private int _mask;
+	private int[] _next;
+	private int _shift;
+	private int _size;
+	private int[] _sizes;
+	private int _threshold;
+	private Object[] _values;
+	private int _valuesCount;
+
+	private class EntryIterator implements Iterator<Map.Entry<Long, List<V>>> {
+
+		@Override
+		public boolean hasNext() {
+			while ((_nextSlot < _sizes.length) && (_sizes[_nextSlot] == 0)) {
+				_nextSlot++;
+			}
+
+			if (_nextSlot < _sizes.length) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Map.Entry<Long, List<V>> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			int slot = _nextSlot++;
+
+			return new AbstractMap.SimpleImmutableEntry<Long, List<V>>(
+				_keys[slot], new ValueList(_first[slot], _sizes[slot]));
+		}
+
+		private int _nextSlot;
+
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<Long, List<V>>> {
+
+		@Override
+		public Iterator<Map.Entry<Long, List<V>>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return _size;
+		}
+
+	}
+
+	private class ValueIterator implements Iterator<V> {
+
+		@Override
+		public boolean hasNext() {
+			if (_remaining > 0) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (_remaining <= 0) {
+				throw new NoSuchElementException();
+			}
+
+			V value = (V)_values[_index];
+
+			_index = _next[_index];
+			_remaining--;
+
+			return value;
+		}
+
+		private ValueIterator(int first, int size) {
+			_index = first;
+			_remaining = size;
+		}
+
+		private int _index;
+		private int _remaining;
+
+	}
+
+	private class ValueList extends AbstractList<V> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(int index) {
+			if ((index < 0) || (index >= _listSize)) {
+				throw new IndexOutOfBoundsException(
+					"Index: " + index + ", Size: " + _listSize);
+			}
+
+			int valueIndex = _listFirst;
+
+			for (int i = 0; i < index; i++) {
+				valueIndex = _next[valueIndex];
+			}
+
+			return (V)_values[valueIndex];
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValueIterator(_listFirst, _listSize);
+		}
+
+		@Override
+		public int size() {
+			return _listSize;
+		}
+
+		private ValueList(int first, int size) {
+			_listFirst = first;
+			_listSize = size;
+		}
+
+		private final int _listFirst;
+		private final int _listSize;
+
+	}
+
+}
\ No newline at end of file
@@ -20,8 +20,10 @@ import com.liferay.portal.kernel.log.LogFactoryUtil;
 import java.util.Map;
 import java.util.Objects;
 
+import jorgediazest.util.data.AttributeDescriptor;
 import jorgediazest.util.data.Data;
 import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.data.FingerprintUtil;
 
 /**
  * @author Jorge Díaz
@@ -61,17 +63,26 @@ public abstract class DataBaseComparator implements DataComparator {
 	}
 
 	public int compareAttributes(
-		Data data1, Data data2, String attr1, String attr2) {
+		Data data1, Data data2, AttributeDescriptor attributeDescriptor1,
+		AttributeDescriptor attributeDescriptor2) {
 
-		Class<?> type1 = data1.getAttributeClass(attr1);
-		Class<?> type2 = data2.getAttributeClass(attr2);
+		Class<?> type1 = data1.getAttributeClass(attributeDescriptor1);
+		Class<?> type2 = data2.getAttributeClass(attributeDescriptor2);
 
-		Object o1 = data1.get(attr1);
-		Object o2 = data2.get(attr2);
+		Object o1 = data1.get(attributeDescriptor1);
+		Object o2 = data2.get(attributeDescriptor2);
 
 		return compareAttributes(type1, type2, o1, o2);
 	}
 
+	public int compareAttributes(
+		Data data1, Data data2, String attr1, String attr2) {
+
+		return compareAttributes(
+			data1, data2, data1.getAttributeDescriptor(attr1),
+			data2.getAttributeDescriptor(attr2));
+	}
+
 	public boolean equalsAttributes(
 		Class<?> type1, Class<?> type2, Object o1, Object o2) {
 
@@ -105,30 +116,48 @@ public abstract class DataBaseComparator implements DataComparator {
 	}
 
 	public boolean equalsAttributes(
-		Data data1, Data data2, String attr1, String attr2) {
+		Data data1, Data data2, AttributeDescriptor attributeDescriptor1,
+		AttributeDescriptor attributeDescriptor2) {
 
-		Class<?> type1 = data1.getAttributeClass(attr1);
-		Class<?> type2 = data2.getAttributeClass(attr2);
+		Class<?> type1 = data1.getAttributeClass(attributeDescriptor1);
+		Class<?> type2 = data2.getAttributeClass(attributeDescriptor2);
 
-		Object o1 = data1.get(attr1);
-		Object o2 = data2.get(attr2);
+		Object o1 = data1.get(attributeDescriptor1);
+		Object o2 = data2.get(attributeDescriptor2);
 
 		boolean equalsAttribute = equalsAttributes(type1, type2, o1, o2);
 
 		if (_log.isDebugEnabled() && !equalsAttribute) {
 			_log.debug(
-				"data1=" + data1 + " data2=" + data2 + " attr1=" + attr1 +
-					" attr2=" + attr2 + " o1=" + o1 + " o2=" + o2 +
-						" are not equal");
+				"data1=" + data1 + " data2=" + data2 + " attr1=" +
+					attributeDescriptor1.getName() + " attr2=" +
+						attributeDescriptor2.getName() + " o1=" + o1 +
+							" o2=" + o2 + " are not equal");
 		}
 
 		return equalsAttribute;
 	}
 
+	public boolean equalsAttributes(
+		Data data1, Data data2, String attr1, String attr2) {
+
+		return equalsAttributes(
+			data1, data2, data1.getAttributeDescriptor(attr1),
+			data2.getAttributeDescriptor(attr2));
+	}
+
+	public long getFingerprint(Data data) {
+		return FingerprintUtil.NO_FINGERPRINT;
+	}
+
 	public boolean getIgnoreNulls() {
 		return _ignoreNulls;
 	}
 
+	public boolean getUseFingerprints() {
+		return _useFingerprints;
+	}
+
 	public Integer hashCode(Data data) {
 		Map<String, Object> map = data.getMap();
 
@@ -139,8 +168,39 @@ public abstract class DataBaseComparator implements DataComparator {
 		_ignoreNulls = ignoreNulls;
 	}
 
+	public void setUseFingerprints(boolean useFingerprints) {
+		_useFingerprints = useFingerprints;
+	}
+
 	private static Log _log = LogFactoryUtil.getLog(DataBaseComparator.class);
 
+	/**
+	 * Returns false if both data have a fingerprint and they are different,
+	 * so the data is not equal.
+	 */
+	protected boolean equalsFingerprints(Data data1, Data data2) {
+		if (!_useFingerprints) {
+			return true;
+		}
+
+		long fingerprint1 = data1.getFingerprint(this);
+
+		if (fingerprint1 == FingerprintUtil.NO_FINGERPRINT) {
+			return true;
+		}
+
+		long fingerprint2 = data2.getFingerprint(this);
+
+		if ((fingerprint2 == FingerprintUtil.NO_FINGERPRINT) ||
+			(fingerprint1 == fingerprint2)) {
+
+			return true;
+		}
+
+		return false;
+	}
+
 	private boolean _ignoreNulls = false;
+	private boolean _useFingerprints = false;
 
 }
\ No newline at end of file
@@ -33,10 +33,25 @@ public interface DataComparator extends Comparator<Data> {
 	public boolean equalsAttributes(
 		Data data1, Data data2, String attr1, String attr2);
 
+	/**
+	 * Returns the 64-bit fingerprint of the compared attributes, or
+	 * FingerprintUtil.NO_FINGERPRINT if it can't be calculated. Data with
+	 * different fingerprints is not equal.
+	 */
+	public long getFingerprint(Data data);
+
 	public boolean getIgnoreNulls();
 
+	public boolean getUseFingerprints();
+
 	public Integer hashCode(Data data);
 
 	public void setIgnoreNulls(boolean ignoreNulls);
 
+	/**
+	 * If it is set, equals compares the fingerprints of the data, cached by
+	 * Data.getFingerprint, before comparing the attributes.
+	 */
+	public void setUseFingerprints(boolean useFingerprints);
+
 }
\ No newline at end of file
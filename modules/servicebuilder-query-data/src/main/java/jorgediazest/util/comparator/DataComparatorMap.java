@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.FingerprintUtil;
 
 /**
  * @author Jorge Díaz
@@ -64,6 +65,12 @@ public class DataComparatorMap extends DataBaseComparator {
 
 	@Override
 	public boolean equals(Data data1, Data data2) {
+		if ((data1.hashCode() != data2.hashCode()) ||
+			!equalsFingerprints(data1, data2)) {
+
+			return false;
+		}
+
 		Map<String, Object> map1 = data1.getMap();
 		Map<String, Object> map2 = data2.getMap();
 
@@ -74,10 +81,6 @@ public class DataComparatorMap extends DataBaseComparator {
 			return false;
 		}
 
-		if (data1.hashCode() != data2.hashCode()) {
-			return false;
-		}
-
 		Iterator<String> it1 = k1.iterator();
 		Iterator<String> it2 = k2.iterator();
 
@@ -90,6 +93,24 @@ public class DataComparatorMap extends DataBaseComparator {
 		return true;
 	}
 
+	/**
+	 * Returns the fingerprint of the attribute values, in the order they are
+	 * compared by equals.
+	 */
+	@Override
+	public long getFingerprint(Data data) {
+		Map<String, Object> map = data.getMap();
+
+		long fingerprint = FingerprintUtil.getFingerprint(map.size());
+
+		for (Object value : map.values()) {
+			fingerprint = FingerprintUtil.combine(
+				fingerprint, FingerprintUtil.getFingerprint(value));
+		}
+
+		return fingerprint;
+	}
+
 	@Override
 	public Integer hashCode(Data data) {
 		int hashCode = 1;
@@ -18,7 +18,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import jorgediazest.util.data.AttributeDescriptor;
 import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataSchema;
+import jorgediazest.util.data.FingerprintUtil;
 
 /**
  * @author Jorge Díaz
@@ -54,10 +57,17 @@ public class DataModelComparator extends DataBaseComparator {
 			throw new IllegalArgumentException();
 		}
 
+		AttributeDescriptor[] attributeDescriptors1 = getAttributeDescriptors(
+			data1);
+		AttributeDescriptor[] attributeDescriptors2 = getAttributeDescriptors(
+			data2);
+
 		int compare = 0;
 
-		for (String attribute : attributes) {
-			compare = compareAttributes(data1, data2, attribute, attribute);
+		for (int i = 0; i < attributes.length; i++) {
+			compare = compareAttributes(
+				data1, data2, attributeDescriptors1[i],
+				attributeDescriptors2[i]);
 
 			if (compare != 0) {
 				break;
@@ -69,23 +79,34 @@ public class DataModelComparator extends DataBaseComparator {
 
 	@Override
 	public boolean equals(Data data1, Data data2) {
-		if (data1.getModel() != data2.getModel()) {
+		if ((data1.getModel() != data2.getModel()) ||
+			!equalsFingerprints(data1, data2)) {
+
 			return false;
 		}
 
+		AttributeDescriptor[] attributeDescriptors1 = getAttributeDescriptors(
+			data1);
+		AttributeDescriptor[] attributeDescriptors2 = getAttributeDescriptors(
+			data2);
+
 		for (int i = 0; i < attributes.length; i++) {
-			String attribute = attributes[i];
 			String operation = operations[i];
 
 			if (operation == null) {
-				if (!equalsAttributes(data1, data2, attribute, attribute)) {
+				if (!equalsAttributes(
+						data1, data2, attributeDescriptors1[i],
+						attributeDescriptors2[i])) {
+
 					return false;
 				}
 
 				continue;
 			}
 
-			int compare = compareAttributes(data1, data2, attribute, attribute);
+			int compare = compareAttributes(
+				data1, data2, attributeDescriptors1[i],
+				attributeDescriptors2[i]);
 
 			if (!_equalAttributeWithOperation(compare, operation)) {
 				return false;
@@ -95,27 +116,104 @@ public class DataModelComparator extends DataBaseComparator {
 		return true;
 	}
 
+	/**
+	 * Returns the fingerprint of the attributes compared by equality, the
+	 * attributes compared with >= or <= are not included.
+	 */
+	@Override
+	public long getFingerprint(Data data) {
+		AttributeDescriptor[] attributeDescriptors = getAttributeDescriptors(
+			data);
+
+		long fingerprint = FingerprintUtil.NO_FINGERPRINT;
+
+		for (int i = 0; i < attributes.length; i++) {
+			if (operations[i] != null) {
+				continue;
+			}
+
+			long valueFingerprint = data.getFingerprint(
+				attributeDescriptors[i]);
+
+			if (valueFingerprint == FingerprintUtil.NO_FINGERPRINT) {
+				return FingerprintUtil.NO_FINGERPRINT;
+			}
+
+			if (fingerprint == FingerprintUtil.NO_FINGERPRINT) {
+				fingerprint = valueFingerprint;
+			}
+			else {
+				fingerprint = FingerprintUtil.combine(
+					fingerprint, valueFingerprint);
+			}
+		}
+
+		return fingerprint;
+	}
+
 	public List<String> getAttributes() {
 		return Collections.unmodifiableList(Arrays.asList(attributes));
 	}
 
+	/**
+	 * Returns the hash code of the attributes compared by equality, combined
+	 * as List.hashCode does, so zero values or swapped values don't collide.
+	 * Attributes compared with >= or <= are not included, as equal data can
+	 * have different values.
+	 */
 	@Override
 	public Integer hashCode(Data data) {
-		int hashCode = 1;
+		AttributeDescriptor[] attributeDescriptors = getAttributeDescriptors(
+			data);
 
-		for (String attribute : attributes) {
-			Object o = data.get(attribute);
+		String str = data.getEntryClassName();
+
+		int hashCode = str.hashCode();
+
+		for (int i = 0; i < attributes.length; i++) {
+			Object o = data.get(attributeDescriptors[i]);
 
 			if (o == null) {
 				return null;
 			}
 
-			hashCode *= o.hashCode();
+			if (operations[i] == null) {
+				hashCode = (31 * hashCode) + o.hashCode();
+			}
 		}
 
-		String str = data.getEntryClassName();
+		return hashCode;
+	}
+
+	/**
+	 * Returns the descriptors of the comparator attributes in the schema of
+	 * the data. The descriptors of the last schema are kept, as all the data
+	 * of a model share the same schema.
+	 */
+	protected AttributeDescriptor[] getAttributeDescriptors(Data data) {
+		DataSchema schema = data.getSchema();
+
+		SchemaAttributeDescriptors schemaAttributeDescriptors =
+			_schemaAttributeDescriptors;
+
+		if ((schemaAttributeDescriptors != null) &&
+			(schemaAttributeDescriptors._schema == schema)) {
+
+			return schemaAttributeDescriptors._attributeDescriptors;
+		}
+
+		AttributeDescriptor[] attributeDescriptors =
+			new AttributeDescriptor[attributes.length];
 
-		return str.hashCode() * hashCode;
+		for (int i = 0; i < attributes.length; i++) {
+			attributeDescriptors[i] = schema.getAttributeDescriptor(
+				attributes[i]);
+		}
+
+		_schemaAttributeDescriptors = new SchemaAttributeDescriptors(
+			schema, attributeDescriptors);
+
+		return attributeDescriptors;
 	}
 
 	protected String[] attributes;
@@ -141,4 +239,20 @@ public class DataModelComparator extends DataBaseComparator {
 		return true;
 	}
 
+	private volatile SchemaAttributeDescriptors _schemaAttributeDescriptors;
+
+	private static class SchemaAttributeDescriptors {
+
+		private SchemaAttributeDescriptors(
+			DataSchema schema, AttributeDescriptor[] attributeDescriptors) {
+
+			_schema = schema;
+			_attributeDescriptors = attributeDescriptors;
+		}
+
+		private final AttributeDescriptor[] _attributeDescriptors;
+		private final DataSchema _schema;
+
+	}
+
 }
\ No newline at end of file
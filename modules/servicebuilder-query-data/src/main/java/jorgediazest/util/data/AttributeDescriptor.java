@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.data;
+
+import java.util.UUID;
+
+import jorgediazest.util.table.TableInfo;
+
+/**
+ * Resolved information of an attribute of a DataSchema: class, table that
+ * defines it, slot of the Data value array and long column. It is created
+ * once per schema and attribute, so Data and the comparators don't have to
+ * look up the attribute in the table infos again.
+ *
+ * @author Jorge Díaz
+ */
+public class AttributeDescriptor {
+
+	public AttributeDescriptor(
+		String name, Class<?> type, TableInfo tableInfo) {
+
+		this.name = name;
+		this.type = type;
+		this.tableInfo = tableInfo;
+
+		uuid = UUID.class.equals(type);
+	}
+
+	public int getLongColumn() {
+		return longColumn;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the slot of the attribute, or -1 if no Data of the schema has
+	 * set it yet.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Returns the table that defines the attribute, or null if it is not
+	 * defined in the schema tables.
+	 */
+	public TableInfo getTableInfo() {
+		return tableInfo;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public boolean isUuid() {
+		return uuid;
+	}
+
+	public String toString() {
+		return name + " (" + type.getName() + ", slot " + slot + ")";
+	}
+
+	/**
+	 * Returns the candidate slots calculated for the schema version, or null
+	 * if slots were added to the schema after they were calculated.
+	 */
+	protected int[] getCandidateSlots(int version) {
+		CandidateSlots candidateSlots = _candidateSlots;
+
+		if ((candidateSlots == null) || (candidateSlots._version != version)) {
+			return null;
+		}
+
+		return candidateSlots._slots;
+	}
+
+	protected void setCandidateSlots(int version, int[] slots) {
+		_candidateSlots = new CandidateSlots(version, slots);
+	}
+
+	protected void setSlot(int slot, int longColumn) {
+		this.longColumn = longColumn;
+		this.slot = slot;
+	}
+
+	protected volatile int longColumn = -1;
+	protected final String name;
+	protected volatile int slot = -1;
+	protected final TableInfo tableInfo;
+	protected final Class<?> type;
+	protected final boolean uuid;
+
+	private volatile CandidateSlots _candidateSlots;
+
+	private static class CandidateSlots {
+
+		private CandidateSlots(int version, int[] slots) {
+			_version = version;
+			_slots = slots;
+		}
+
+		private final int[] _slots;
+		private final int _version;
+
+	}
+
+}
\ No newline at end of file
@@ -71,13 +71,18 @@ public class Comparison {
 				Set<Data> dataSet = merged.data.get(e.getKey());
 
 				if (dataSet == null) {
-					dataSet = new TreeSet<>();
+					dataSet = new SpillableDataSet();
 
 					merged.data.put(e.getKey(), dataSet);
 				}
 
 				dataSet.addAll(e.getValue());
 			}
+
+			/* Data was copied to the merged sets, spilled files of the
+			 * comparison are not needed */
+
+			c.clear();
 		}
 
 		if (!errors.isEmpty()) {
@@ -89,6 +94,18 @@ public class Comparison {
 		return result;
 	}
 
+	/**
+	 * Removes the result data, deleting the temporary files of the spilled
+	 * sets.
+	 */
+	public void clear() {
+		for (Set<Data> dataSet : data.values()) {
+			dataSet.clear();
+		}
+
+		data.clear();
+	}
+
 	public void dumpToLog() {
 		if (!_log.isInfoEnabled()) {
 			return;
@@ -188,7 +205,7 @@ public class Comparison {
 				Set<Data> set = c.data.get(key);
 
 				if (set == null) {
-					set = new TreeSet<>();
+					set = new SpillableDataSet();
 
 					c.data.put(key, set);
 				}
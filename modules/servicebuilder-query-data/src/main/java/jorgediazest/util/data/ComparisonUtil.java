@@ -19,14 +19,16 @@ import com.liferay.portal.kernel.log.LogFactoryUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
+import jorgediazest.util.collection.LongMultiValueMap;
 import jorgediazest.util.comparator.DataComparator;
 import jorgediazest.util.model.Model;
 
@@ -35,76 +37,195 @@ import jorgediazest.util.model.Model;
  */
 public class ComparisonUtil {
 
+	/**
+	 * Compares two sets of data with a hash join. Right data is grouped by its
+	 * key fingerprint, so each left data is only compared with the right data
+	 * of its bucket. Data is only sorted when the output sets are created.
+	 */
 	public static Comparison getComparison(
 		Model model, DataComparator exactDataComparator, Set<Data> leftData,
 		Set<Data> rightData, boolean showBothExact, boolean showBothNotExact,
 		boolean showOnlyLeft, boolean showOnlyRight) {
 
+		LongMultiValueMap<Data> rightDataMap = new LongMultiValueMap<>(
+			rightData.size());
+
+		for (Data data : rightData) {
+			rightDataMap.add(_getJoinKey(data), data);
+		}
+
+		List<Data> bothExactLeftList = new ArrayList<>();
+		List<Data> bothExactRightList = new ArrayList<>();
+		List<Data> bothNotExactLeftList = new ArrayList<>();
+		List<Data> bothNotExactRightList = new ArrayList<>();
+		List<Data> leftOnlyList = new ArrayList<>();
+
+		Set<Data> matchedRightData = Collections.newSetFromMap(
+			new IdentityHashMap<Data, Boolean>());
+
+		for (Data dataLeft : leftData) {
+			Data dataRight = _getEqualData(
+				rightDataMap.get(_getJoinKey(dataLeft)), dataLeft);
+
+			if (dataRight == null) {
+				if (showOnlyLeft) {
+					leftOnlyList.add(dataLeft);
+				}
+
+				continue;
+			}
+
+			if (showOnlyRight) {
+				matchedRightData.add(dataRight);
+			}
+
+			if (!showBothExact && !showBothNotExact) {
+				continue;
+			}
+
+			boolean exact = exactDataComparator.equals(dataLeft, dataRight);
+
+			if (exact && showBothExact) {
+				bothExactLeftList.add(dataLeft);
+				bothExactRightList.add(dataRight);
+			}
+
+			if (!exact && showBothNotExact) {
+				bothNotExactLeftList.add(dataLeft);
+				bothNotExactRightList.add(dataRight);
+			}
+		}
+
 		Map<String, Set<Data>> dataSetMap = new TreeMap<>();
 
 		if (showBothExact) {
-			dataSetMap.put("both-exact-left", new TreeSet<Data>());
-			dataSetMap.put("both-exact-right", new TreeSet<Data>());
+			dataSetMap.put(
+				"both-exact-left", new SpillableDataSet(bothExactLeftList));
+			dataSetMap.put(
+				"both-exact-right", new SpillableDataSet(bothExactRightList));
 		}
 
 		if (showBothNotExact) {
-			dataSetMap.put("both-notexact-left", new TreeSet<Data>());
-			dataSetMap.put("both-notexact-right", new TreeSet<Data>());
+			dataSetMap.put(
+				"both-notexact-left",
+				new SpillableDataSet(bothNotExactLeftList));
+			dataSetMap.put(
+				"both-notexact-right",
+				new SpillableDataSet(bothNotExactRightList));
 		}
 
-		Data[] bothArrSetLeft = DataUtil.getArrayCommonData(
-			leftData, rightData);
-		Data[] bothArrSetRight = DataUtil.getArrayCommonData(
-			rightData, leftData);
-
-		if (showBothExact || showBothNotExact) {
-			Set<Data> bothExactLeftSet = dataSetMap.get("both-exact-left");
-			Set<Data> bothExactRightSet = dataSetMap.get("both-exact-right");
-			Set<Data> bothNotExactLeftSet = dataSetMap.get(
-				"both-notexact-left");
-			Set<Data> bothNotExactRightSet = dataSetMap.get(
-				"both-notexact-right");
+		if (showOnlyLeft) {
+			dataSetMap.put("only-left", new SpillableDataSet(leftOnlyList));
+		}
 
-			for (int i = 0; i < bothArrSetRight.length; i++) {
-				Data dataLeft = bothArrSetLeft[i];
-				Data dataRight = bothArrSetRight[i];
+		if (showOnlyRight) {
+			Set<Data> rightOnlySet = new SpillableDataSet();
 
-				if (!dataLeft.equals(dataRight)) {
-					throw new RuntimeException("Inconsistent data");
+			for (Data data : rightData) {
+				if (!matchedRightData.contains(data)) {
+					rightOnlySet.add(data);
 				}
+			}
 
-				boolean exact = exactDataComparator.equals(dataLeft, dataRight);
+			dataSetMap.put("only-right", rightOnlySet);
+		}
 
-				if (exact && showBothExact) {
-					bothExactLeftSet.add(dataLeft);
-					bothExactRightSet.add(dataRight);
-				}
+		return new Comparison(model, dataSetMap);
+	}
+
+	/**
+	 * Compares two iterators that return their data sorted by the model
+	 * comparator, so only the differences have to be kept in memory.
+	 */
+	public static Comparison getComparison(
+		Model model, DataComparator exactDataComparator,
+		Iterator<Data> leftIterator, Iterator<Data> rightIterator,
+		boolean showBothExact, boolean showBothNotExact, boolean showOnlyLeft,
+		boolean showOnlyRight) {
+
+		Map<String, Set<Data>> dataSetMap = new TreeMap<>();
 
-				if (!exact && showBothNotExact) {
-					bothNotExactLeftSet.add(dataLeft);
-					bothNotExactRightSet.add(dataRight);
+		if (showBothExact) {
+			dataSetMap.put("both-exact-left", new SpillableDataSet());
+			dataSetMap.put("both-exact-right", new SpillableDataSet());
+		}
+
+		if (showBothNotExact) {
+			dataSetMap.put("both-notexact-left", new SpillableDataSet());
+			dataSetMap.put("both-notexact-right", new SpillableDataSet());
+		}
+
+		if (showOnlyLeft) {
+			dataSetMap.put("only-left", new SpillableDataSet());
+		}
+
+		if (showOnlyRight) {
+			dataSetMap.put("only-right", new SpillableDataSet());
+		}
+
+		Data dataLeft = _nextSorted(leftIterator, null);
+		Data dataRight = _nextSorted(rightIterator, null);
+
+		while ((dataLeft != null) || (dataRight != null)) {
+			int compare;
+
+			if (dataLeft == null) {
+				compare = 1;
+			}
+			else if (dataRight == null) {
+				compare = -1;
+			}
+			else {
+				compare = dataLeft.compareTo(dataRight);
+			}
+
+			if (compare < 0) {
+				if (showOnlyLeft) {
+					Set<Data> leftOnlySet = dataSetMap.get("only-left");
+
+					leftOnlySet.add(dataLeft);
 				}
+
+				dataLeft = _nextSorted(leftIterator, dataLeft);
+
+				continue;
 			}
-		}
 
-		Set<Data> bothDataSet = new HashSet<>(rightData);
+			if (compare > 0) {
+				if (showOnlyRight) {
+					Set<Data> rightOnlySet = dataSetMap.get("only-right");
 
-		bothDataSet.retainAll(leftData);
+					rightOnlySet.add(dataRight);
+				}
 
-		if (showOnlyLeft) {
-			Set<Data> leftOnlyData = leftData;
+				dataRight = _nextSorted(rightIterator, dataRight);
 
-			leftOnlyData.removeAll(bothDataSet);
+				continue;
+			}
 
-			dataSetMap.put("only-left", new TreeSet<Data>(leftOnlyData));
-		}
+			boolean exact = exactDataComparator.equals(dataLeft, dataRight);
 
-		if (showOnlyRight) {
-			Set<Data> rightOnlyData = rightData;
+			if (exact && showBothExact) {
+				Set<Data> bothExactLeftSet = dataSetMap.get("both-exact-left");
+				Set<Data> bothExactRightSet = dataSetMap.get(
+					"both-exact-right");
 
-			rightOnlyData.removeAll(bothDataSet);
+				bothExactLeftSet.add(dataLeft);
+				bothExactRightSet.add(dataRight);
+			}
 
-			dataSetMap.put("only-right", new TreeSet<Data>(rightOnlyData));
+			if (!exact && showBothNotExact) {
+				Set<Data> bothNotExactLeftSet = dataSetMap.get(
+					"both-notexact-left");
+				Set<Data> bothNotExactRightSet = dataSetMap.get(
+					"both-notexact-right");
+
+				bothNotExactLeftSet.add(dataLeft);
+				bothNotExactRightSet.add(dataRight);
+			}
+
+			dataLeft = _nextSorted(leftIterator, dataLeft);
+			dataRight = _nextSorted(rightIterator, dataRight);
 		}
 
 		return new Comparison(model, dataSetMap);
@@ -152,6 +273,58 @@ public class ComparisonUtil {
 		return resultComparison;
 	}
 
+	private static Data _getEqualData(List<Data> bucket, Data data) {
+		if (bucket == null) {
+			return null;
+		}
+
+		for (Data bucketData : bucket) {
+			if (data.equals(bucketData)) {
+				return bucketData;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the key fingerprint of the data, or its hash code if the key
+	 * attributes have no fingerprint. Equal data has the same join key.
+	 */
+	private static long _getJoinKey(Data data) {
+		long keyFingerprint = data.getFingerprint(data.getComparator());
+
+		if (keyFingerprint != FingerprintUtil.NO_FINGERPRINT) {
+			return keyFingerprint;
+		}
+
+		return data.hashCode();
+	}
+
+	private static Data _nextSorted(Iterator<Data> iterator, Data previous) {
+		while (iterator.hasNext()) {
+			Data data = iterator.next();
+
+			if (previous == null) {
+				return data;
+			}
+
+			int compare = previous.compareTo(data);
+
+			if (compare < 0) {
+				return data;
+			}
+
+			if (compare > 0) {
+				throw new IllegalStateException(
+					"Data is not sorted: " + data.getMap() + " is after " +
+						previous.getMap());
+			}
+		}
+
+		return null;
+	}
+
 	private static Log _log = LogFactoryUtil.getLog(ComparisonUtil.class);
 
 }
\ No newline at end of file
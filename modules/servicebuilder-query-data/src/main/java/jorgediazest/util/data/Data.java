@@ -22,21 +22,24 @@ import com.liferay.portal.kernel.log.LogFactoryUtil;
 import com.liferay.portal.kernel.model.BaseModel;
 import com.liferay.portal.kernel.util.Validator;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.UUID;
 
 import jorgediazest.util.comparator.DataComparator;
 import jorgediazest.util.model.Model;
-import jorgediazest.util.model.ModelUtil;
 import jorgediazest.util.service.Service;
 import jorgediazest.util.table.TableInfo;
 
@@ -46,15 +49,20 @@ import jorgediazest.util.table.TableInfo;
 public class Data implements Comparable<Data> {
 
 	public Data() {
+		schema = new DataSchema((TableInfo)null);
 	}
 
 	public Data(Model model) {
 		this.model = model;
 
+		schema = DataUtil.getDataSchema(model);
+
 		addModelTableInfo(model);
 	}
 
 	public Data(TableInfo tableInfo) {
+		schema = DataUtil.getDataSchema(tableInfo);
+
 		addTableInfo(tableInfo);
 	}
 
@@ -70,10 +78,14 @@ public class Data implements Comparable<Data> {
 		}
 
 		if ((this.model == null) || !this.model.equals(model)) {
+			if (relatedModelsSet == null) {
+				relatedModelsSet = new LinkedHashSet<>();
+			}
+
 			relatedModelsSet.add(model);
 		}
 
-		tableInfoSet.add(model.getTableInfo());
+		addTableInfo(model.getTableInfo());
 
 		Map<String, TableInfo> map = model.getTableInfoMappings();
 
@@ -81,10 +93,22 @@ public class Data implements Comparable<Data> {
 	}
 
 	public void addTableInfo(Collection<TableInfo> tableInfoCol) {
-		tableInfoSet.addAll(tableInfoCol);
+		for (TableInfo tableInfo : tableInfoCol) {
+			addTableInfo(tableInfo);
+		}
 	}
 
 	public void addTableInfo(TableInfo tableInfo) {
+		List<TableInfo> schemaTableInfos = schema.getTableInfos();
+
+		if (schemaTableInfos.contains(tableInfo)) {
+			return;
+		}
+
+		if (tableInfoSet == null) {
+			tableInfoSet = new LinkedHashSet<>();
+		}
+
 		tableInfoSet.add(tableInfo);
 	}
 
@@ -111,34 +135,28 @@ public class Data implements Comparable<Data> {
 		return comparator.equals(this, data);
 	}
 
-	public Object get(String attribute) {
-		if (Validator.isNull(attribute)) {
-			return null;
-		}
-
-		String primaryKeyAttribute = getPrimaryKeyAttribute();
-
-		if (Objects.equals("pk", attribute) &&
-			!Objects.equals("pk", primaryKeyAttribute)) {
-
-			return get(primaryKeyAttribute);
-		}
+	/**
+	 * Returns the value of the attribute, the descriptor must be one of the
+	 * schema of this data.
+	 */
+	public Object get(AttributeDescriptor attributeDescriptor) {
+		for (int slot : schema.getCandidateSlots(attributeDescriptor)) {
+			Object value = getValue(slot);
 
-		if ((model != null) && !map.containsKey(attribute)) {
-			String newAttribute = model.getClassSimpleName() + "." + attribute;
-
-			if (!map.containsKey(newAttribute)) {
-				newAttribute = model.getClassName() + "." + attribute;
+			if (value != null) {
+				return value;
 			}
+		}
 
-			if (!map.containsKey(newAttribute)) {
-				return null;
-			}
+		return null;
+	}
 
-			attribute = newAttribute;
+	public Object get(String attribute) {
+		if (Validator.isNull(attribute)) {
+			return null;
 		}
 
-		return map.get(attribute);
+		return get(schema.getAttributeDescriptor(attribute));
 	}
 
 	public <T> T get(String attribute, T defaultValue) {
@@ -152,42 +170,28 @@ public class Data implements Comparable<Data> {
 		return defaultValue;
 	}
 
-	public Class<?> getAttributeClass(String attribute) {
-		String prefix = null;
-		int pos = attribute.indexOf(".");
-
-		if (pos != -1) {
-			prefix = attribute.substring(0, pos);
-			attribute = attribute.substring(pos + 1);
-		}
-
-		Class<?> attributeClass = Object.class;
+	public Class<?> getAttributeClass(AttributeDescriptor attributeDescriptor) {
+		Class<?> attributeClass = attributeDescriptor.getType();
 
-		for (TableInfo tableInfo : tableInfoSet) {
-			if ((prefix != null) &&
-				!Objects.equals(tableInfo.getName(), prefix)) {
-
-				continue;
-			}
-
-			attributeClass = tableInfo.getAttributeClass(attribute);
-
-			if (!Object.class.equals(attributeClass)) {
-				break;
-			}
+		if (!Object.class.equals(attributeClass) || (tableInfoSet == null)) {
+			return attributeClass;
 		}
 
-		if (String.class.equals(attributeClass) &&
-			(attribute.equals("uuid") || attribute.equals("uuid_") ||
-			 attribute.endsWith("Uuid"))) {
+		return DataSchema.getAttributeClass(
+			tableInfoSet, attributeDescriptor.getName());
+	}
 
-			attributeClass = UUID.class;
-		}
+	public Class<?> getAttributeClass(String attribute) {
+		return getAttributeClass(schema.getAttributeDescriptor(attribute));
+	}
 
-		return attributeClass;
+	public AttributeDescriptor getAttributeDescriptor(String attribute) {
+		return schema.getAttributeDescriptor(attribute);
 	}
 
 	public Set<String> getAttributes() {
+		Map<String, Object> map = getMap();
+
 		return map.keySet();
 	}
 
@@ -207,12 +211,70 @@ public class Data implements Comparable<Data> {
 		return model.getClassName();
 	}
 
+	/**
+	 * Returns the fingerprint of the value of the attribute, without boxing
+	 * it if it is stored in a long column.
+	 *
+	 * @see FingerprintUtil
+	 */
+	public long getFingerprint(AttributeDescriptor attributeDescriptor) {
+		for (int slot : schema.getCandidateSlots(attributeDescriptor)) {
+			if (slot >= values.length) {
+				continue;
+			}
+
+			Object value = values[slot];
+
+			if ((value == _LONG_VALUE) || (value == _INTEGER_VALUE)) {
+				return FingerprintUtil.getFingerprint(
+					longValues[schema.getLongColumn(slot)]);
+			}
+
+			if (value != null) {
+				return FingerprintUtil.getFingerprint(value);
+			}
+		}
+
+		return FingerprintUtil.NO_FINGERPRINT;
+	}
+
+	/**
+	 * Returns the fingerprint of the attributes compared by the comparator.
+	 * The key fingerprint, the one of the comparator of the model, and the
+	 * fingerprint of the last other comparator are cached until an attribute
+	 * is set. Cache fields are volatile, as data is compared from several
+	 * threads, and the key fingerprint is written before its flag.
+	 */
+	public long getFingerprint(DataComparator dataComparator) {
+		if (dataComparator == getComparator()) {
+			if (!_keyFingerprintCalculated) {
+				_keyFingerprint = dataComparator.getFingerprint(this);
+				_keyFingerprintCalculated = true;
+			}
+
+			return _keyFingerprint;
+		}
+
+		ContentFingerprint contentFingerprint = _contentFingerprint;
+
+		if ((contentFingerprint == null) ||
+			(contentFingerprint._dataComparator != dataComparator)) {
+
+			contentFingerprint = new ContentFingerprint(
+				dataComparator, dataComparator.getFingerprint(this));
+
+			_contentFingerprint = contentFingerprint;
+		}
+
+		return contentFingerprint._fingerprint;
+	}
+
 	public Long getGroupId() {
 		return (Long)get("groupId");
 	}
 
 	public Map<String, Object> getMap() {
-		return Collections.unmodifiableMap(map);
+		return new AttributeMap();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -342,21 +404,40 @@ public class Data implements Comparable<Data> {
 	}
 
 	public long getPrimaryKey() {
-		return get("pk", -1L);
+		return getLong("pk", -1L);
 	}
 
 	public Set<Model> getRelatedModels() {
+		if (relatedModelsSet == null) {
+			return Collections.emptySet();
+		}
+
 		return Collections.unmodifiableSet(relatedModelsSet);
 	}
 
 	public long getResourcePrimKey() {
-		return get("resourcePrimKey", -1L);
+		return getLong("resourcePrimKey", -1L);
+	}
+
+	public DataSchema getSchema() {
+		return schema;
 	}
 
 	public Set<TableInfo> getTableInfoSet() {
-		return Collections.unmodifiableSet(tableInfoSet);
+		Set<TableInfo> allTableInfoSet = new LinkedHashSet<>(
+			schema.getTableInfos());
+
+		if (tableInfoSet != null) {
+			allTableInfoSet.addAll(tableInfoSet);
+		}
+
+		return Collections.unmodifiableSet(allTableInfoSet);
 	}
 
+	/**
+	 * Returns the hash code of the key fingerprint. If the key attributes
+	 * have no fingerprint, the hash code of the comparator is used.
+	 */
 	public int hashCode() {
 		if (hashCode != null) {
 			return hashCode;
@@ -364,6 +445,14 @@ public class Data implements Comparable<Data> {
 
 		DataComparator comparator = getComparator();
 
+		long keyFingerprint = getFingerprint(comparator);
+
+		if (keyFingerprint != FingerprintUtil.NO_FINGERPRINT) {
+			hashCode = (int)(keyFingerprint ^ (keyFingerprint >>> 32));
+
+			return hashCode;
+		}
+
 		hashCode = comparator.hashCode(this);
 
 		if (hashCode == null) {
@@ -379,7 +468,10 @@ public class Data implements Comparable<Data> {
 			attribute = getPrimaryKeyAttribute();
 		}
 
-		Class<?> type = getAttributeClass(attribute);
+		AttributeDescriptor attributeDescriptor =
+			schema.getAttributeDescriptor(attribute);
+
+		Class<?> type = getAttributeClass(attributeDescriptor);
 
 		if (!isValid(attribute, type, value)) {
 			return;
@@ -402,9 +494,7 @@ public class Data implements Comparable<Data> {
 		}
 
 		if (transformedObject != null) {
-			attribute = ModelUtil.getCachedAttributeName(attribute);
-
-			map.put(attribute, transformedObject);
+			setValue(attributeDescriptor, transformedObject);
 		}
 	}
 
@@ -413,7 +503,10 @@ public class Data implements Comparable<Data> {
 			attribute = getPrimaryKeyAttribute();
 		}
 
-		Class<?> type = getAttributeClass(attribute);
+		AttributeDescriptor attributeDescriptor =
+			schema.getAttributeDescriptor(attribute);
+
+		Class<?> type = getAttributeClass(attributeDescriptor);
 
 		if (!isValid(attribute, type, values)) {
 			return;
@@ -422,9 +515,7 @@ public class Data implements Comparable<Data> {
 		Object transformedObject = DataUtil.transformArray(type, values);
 
 		if (transformedObject != null) {
-			attribute = ModelUtil.getCachedAttributeName(attribute);
-
-			map.put(attribute, transformedObject);
+			setValue(attributeDescriptor, transformedObject);
 		}
 	}
 
@@ -433,7 +524,10 @@ public class Data implements Comparable<Data> {
 			attribute = getPrimaryKeyAttribute();
 		}
 
-		Class<?> type = getAttributeClass(attribute);
+		AttributeDescriptor attributeDescriptor =
+			schema.getAttributeDescriptor(attribute);
+
+		Class<?> type = getAttributeClass(attributeDescriptor);
 
 		if (!isValid(attribute, type, values)) {
 			return;
@@ -443,9 +537,7 @@ public class Data implements Comparable<Data> {
 			type, values.toArray());
 
 		if (transformedObject != null) {
-			attribute = ModelUtil.getCachedAttributeName(attribute);
-
-			map.put(attribute, transformedObject);
+			setValue(attributeDescriptor, transformedObject);
 		}
 	}
 
@@ -465,6 +557,47 @@ public class Data implements Comparable<Data> {
 		}
 	}
 
+	/**
+	 * Sets a localized attribute from its locale maps, one map per value, so
+	 * values don't have to be converted to localization xml and parsed back.
+	 */
+	public void setLocalizedValues(
+		String attribute, List<Map<Locale, String>> localizedValues) {
+
+		AttributeDescriptor attributeDescriptor =
+			schema.getAttributeDescriptor(attribute);
+
+		Class<?> type = getAttributeClass(attributeDescriptor);
+
+		if (!isValid(attribute, type, localizedValues)) {
+			return;
+		}
+
+		Set<Object> transformObjects = new HashSet<>(localizedValues.size());
+
+		for (Map<Locale, String> localizedMap : localizedValues) {
+			Object transformObject = DataUtil.transformLocalizedMap(
+				localizedMap);
+
+			if (transformObject != null) {
+				transformObjects.add(transformObject);
+			}
+		}
+
+		if (transformObjects.isEmpty()) {
+			return;
+		}
+
+		if (transformObjects.size() == 1) {
+			Iterator<Object> iterator = transformObjects.iterator();
+
+			setValue(attributeDescriptor, iterator.next());
+		}
+		else {
+			setValue(attributeDescriptor, transformObjects);
+		}
+	}
+
 	public void setObject(BaseModel<?> object) {
 		this.object = object;
 
@@ -487,7 +620,9 @@ public class Data implements Comparable<Data> {
 		String name = getEntryClassName();
 
 		if (Validator.isNull(name)) {
-			Iterator<TableInfo> iterator = tableInfoSet.iterator();
+			Set<TableInfo> allTableInfoSet = getTableInfoSet();
+
+			Iterator<TableInfo> iterator = allTableInfoSet.iterator();
 
 			if (iterator.hasNext()) {
 				TableInfo tableInfo = iterator.next();
@@ -497,6 +632,8 @@ public class Data implements Comparable<Data> {
 		}
 
 		if ((pk == -1) && (rpk == -1)) {
+			Map<String, Object> map = getMap();
+
 			return name + " " + map.toString();
 		}
 
@@ -507,18 +644,50 @@ public class Data implements Comparable<Data> {
 		return DataUtil.getDataComparator(model);
 	}
 
+	/**
+	 * Returns the value as a primitive, without boxing it if it is stored in
+	 * a long column.
+	 */
+	protected long getLong(String attribute, long defaultValue) {
+		for (int slot : schema.getCandidateSlots(attribute)) {
+			if (slot >= values.length) {
+				continue;
+			}
+
+			Object value = values[slot];
+
+			if ((value == _LONG_VALUE) || (value == _INTEGER_VALUE)) {
+				return longValues[schema.getLongColumn(slot)];
+			}
+
+			if (value != null) {
+				return (Long)value;
+			}
+		}
+
+		return defaultValue;
+	}
+
 	protected String getPrimaryKeyAttribute() {
-		String pkAttribute = null;
+		return schema.getPrimaryKeyAttribute();
+	}
 
-		if (model != null) {
-			pkAttribute = model.getPrimaryKeyAttribute();
+	protected Object getValue(int slot) {
+		if (slot >= values.length) {
+			return null;
 		}
 
-		if (Validator.isNull(pkAttribute)) {
-			return "pk";
+		Object value = values[slot];
+
+		if (value == _LONG_VALUE) {
+			return longValues[schema.getLongColumn(slot)];
 		}
 
-		return pkAttribute;
+		if (value == _INTEGER_VALUE) {
+			return (int)longValues[schema.getLongColumn(slot)];
+		}
+
+		return value;
 	}
 
 	protected boolean isValid(String attribute, Class<?> type, Object value) {
@@ -542,13 +711,179 @@ public class Data implements Comparable<Data> {
 		return false;
 	}
 
+	/**
+	 * Stores ids, integers and dates in the primitive long column of the
+	 * slot, other values are stored in the slot itself.
+	 */
+	protected void setValue(
+		AttributeDescriptor attributeDescriptor, Object value) {
+
+		_contentFingerprint = null;
+		_keyFingerprintCalculated = false;
+
+		int slot = attributeDescriptor.getSlot();
+
+		if (slot == -1) {
+			slot = schema.addSlot(attributeDescriptor.getName());
+		}
+
+		if (slot >= values.length) {
+			values = Arrays.copyOf(values, Math.max(slot + 1, schema.size()));
+		}
+
+		int longColumn = attributeDescriptor.getLongColumn();
+
+		if ((longColumn == -1) ||
+			!((value instanceof Long) || (value instanceof Integer))) {
+
+			values[slot] = value;
+
+			return;
+		}
+
+		if (longValues == null) {
+			longValues = new long[schema.getLongColumnCount()];
+		}
+
+		Number number = (Number)value;
+
+		longValues[longColumn] = number.longValue();
+
+		if (value instanceof Long) {
+			values[slot] = _LONG_VALUE;
+		}
+		else {
+			values[slot] = _INTEGER_VALUE;
+		}
+	}
+
 	protected Integer hashCode = null;
-	protected Map<String, Object> map = new LinkedHashMap<>();
+	protected long[] longValues = null;
 	protected Model model = null;
 	protected BaseModel<?> object = null;
-	protected Set<Model> relatedModelsSet = new LinkedHashSet<>();
-	protected Set<TableInfo> tableInfoSet = new LinkedHashSet<>();
+	protected Set<Model> relatedModelsSet = null;
+	protected DataSchema schema;
+
+	/**
+	 * Table info not included in the schema, like the ones of related models
+	 */
+	protected Set<TableInfo> tableInfoSet = null;
+
+	protected Object[] values = _EMPTY_VALUES;
+
+	private static final Object[] _EMPTY_VALUES = new Object[0];
+
+	private static final Object _INTEGER_VALUE = new Object();
+
+	private static final Object _LONG_VALUE = new Object();
 
 	private static Log _log = LogFactoryUtil.getLog(Data.class);
 
+	private volatile ContentFingerprint _contentFingerprint;
+	private volatile long _keyFingerprint;
+	private volatile boolean _keyFingerprintCalculated;
+
+	private class AttributeIterator
+		implements Iterator<Map.Entry<String, Object>> {
+
+		@Override
+		public boolean hasNext() {
+			while ((_nextSlot < values.length) && (values[_nextSlot] == null)) {
+				_nextSlot++;
+			}
+
+			if (_nextSlot < values.length) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Map.Entry<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			int slot = _nextSlot++;
+
+			return new AbstractMap.SimpleImmutableEntry<>(
+				schema.getAttributeName(slot), getValue(slot));
+		}
+
+		private int _nextSlot;
+
+	}
+
+	private class AttributeMap extends AbstractMap<String, Object> {
+
+		@Override
+		public boolean containsKey(Object key) {
+			if (get(key) != null) {
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Set<Map.Entry<String, Object>> entrySet() {
+			return new AbstractSet<Map.Entry<String, Object>>() {
+
+				@Override
+				public Iterator<Map.Entry<String, Object>> iterator() {
+					return new AttributeIterator();
+				}
+
+				@Override
+				public int size() {
+					int size = 0;
+
+					for (Object value : values) {
+						if (value != null) {
+							size++;
+						}
+					}
+
+					return size;
+				}
+
+			};
+		}
+
+		@Override
+		public Object get(Object key) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+
+			int slot = schema.getSlot((String)key);
+
+			if (slot == -1) {
+				return null;
+			}
+
+			return getValue(slot);
+		}
+
+	}
+
+	/**
+	 * Fingerprint of a comparator, immutable so it can be read by other
+	 * threads without synchronization.
+	 */
+	private static class ContentFingerprint {
+
+		private ContentFingerprint(
+			DataComparator dataComparator, long fingerprint) {
+
+			_dataComparator = dataComparator;
+			_fingerprint = fingerprint;
+		}
+
+		private final DataComparator _dataComparator;
+		private final long _fingerprint;
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator that loads data page by page, so only one page is kept in memory.
+ * Pages can be iterated lazily, like spilled data sets, so the iterator must
+ * be closed if the iteration stops before the end.
+ *
+ * @author Jorge Díaz
+ */
+public abstract class DataPageIterator implements Closeable, Iterator<Data> {
+
+	/**
+	 * Closes the iterator of the current page, no more pages are loaded.
+	 */
+	@Override
+	public void close() throws IOException {
+		Iterator<Data> iterator = pageIterator;
+
+		finished = true;
+		pageIterator = Collections.emptyIterator();
+
+		if (iterator instanceof Closeable) {
+			((Closeable)iterator).close();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!finished && !pageIterator.hasNext()) {
+			Collection<Data> page;
+
+			try {
+				page = nextPage();
+			}
+			catch (RuntimeException re) {
+				throw re;
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+
+			if (page == null) {
+				finished = true;
+				pageIterator = Collections.emptyIterator();
+			}
+			else {
+				pageIterator = page.iterator();
+			}
+		}
+
+		return pageIterator.hasNext();
+	}
+
+	@Override
+	public Data next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		return pageIterator.next();
+	}
+
+	/**
+	 * Returns next page of data, or null if there is no more data.
+	 */
+	protected abstract Collection<Data> nextPage() throws Exception;
+
+	protected boolean finished = false;
+	protected Iterator<Data> pageIterator = Collections.emptyIterator();
+
+}
\ No newline at end of file
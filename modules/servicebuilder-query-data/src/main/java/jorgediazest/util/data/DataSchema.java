@@ -0,0 +1,416 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.data;
+
+import com.liferay.portal.kernel.util.Validator;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jorgediazest.util.model.Model;
+import jorgediazest.util.table.TableInfo;
+
+/**
+ * Attribute layout shared by all the Data objects of a model or table. Each
+ * attribute name is resolved once to an AttributeDescriptor with its class
+ * and its slot of the Data value array. Model attributes use the slot of
+ * TableInfo.getAttributePos, other attributes (related data, mapping
+ * tables...) are appended when they are first set.
+ *
+ * @author Jorge Díaz
+ */
+public class DataSchema {
+
+	public DataSchema(Model model) {
+		this.model = model;
+
+		List<TableInfo> tableInfos = new ArrayList<>();
+
+		tableInfos.add(model.getTableInfo());
+
+		Map<String, TableInfo> tableInfoMappings =
+			model.getTableInfoMappings();
+
+		for (TableInfo tableInfo : tableInfoMappings.values()) {
+			if (!tableInfos.contains(tableInfo)) {
+				tableInfos.add(tableInfo);
+			}
+		}
+
+		this.tableInfos = Collections.unmodifiableList(tableInfos);
+
+		_addSlots(model.getAttributeNames());
+
+		_longColumns = _calculateLongColumns();
+
+		_longColumnCount = _countLongColumns(_longColumns);
+	}
+
+	public DataSchema(TableInfo tableInfo) {
+		model = null;
+
+		if (tableInfo == null) {
+			tableInfos = Collections.emptyList();
+		}
+		else {
+			tableInfos = Collections.singletonList(tableInfo);
+
+			_addSlots(tableInfo.getAttributeNames());
+		}
+
+		_longColumns = _calculateLongColumns();
+
+		_longColumnCount = _countLongColumns(_longColumns);
+	}
+
+	public int addSlot(String attribute) {
+		Integer slot = _slots.get(attribute);
+
+		if (slot != null) {
+			return slot;
+		}
+
+		synchronized (this) {
+			slot = _slots.get(attribute);
+
+			if (slot != null) {
+				return slot;
+			}
+
+			return _addSlot(attribute);
+		}
+	}
+
+	/**
+	 * Returns attribute class if it is defined in the model tables, or
+	 * Object.class if the attribute must be looked up in related tables.
+	 */
+	public Class<?> getAttributeClass(String attribute) {
+		AttributeDescriptor attributeDescriptor = getAttributeDescriptor(
+			attribute);
+
+		return attributeDescriptor.getType();
+	}
+
+	public AttributeDescriptor getAttributeDescriptor(String attribute) {
+		AttributeDescriptor attributeDescriptor = _attributeDescriptors.get(
+			attribute);
+
+		if (attributeDescriptor != null) {
+			return attributeDescriptor;
+		}
+
+		synchronized (this) {
+			attributeDescriptor = _attributeDescriptors.get(attribute);
+
+			if (attributeDescriptor != null) {
+				return attributeDescriptor;
+			}
+
+			attributeDescriptor = _createAttributeDescriptor(attribute);
+
+			int slot = getSlot(attribute);
+
+			if (slot != -1) {
+				attributeDescriptor.setSlot(slot, getLongColumn(slot));
+			}
+
+			_attributeDescriptors.put(attribute, attributeDescriptor);
+
+			return attributeDescriptor;
+		}
+	}
+
+	public String getAttributeName(int slot) {
+		return _attributeNames[slot];
+	}
+
+	/**
+	 * Returns the slots where the attribute can be stored, in lookup order:
+	 * the attribute itself and the attribute prefixed with the model name.
+	 * "pk" is resolved to the primary key attribute.
+	 */
+	public int[] getCandidateSlots(AttributeDescriptor attributeDescriptor) {
+		int version = _version;
+
+		int[] slots = attributeDescriptor.getCandidateSlots(version);
+
+		if (slots != null) {
+			return slots;
+		}
+
+		slots = _calculateCandidateSlots(attributeDescriptor.getName());
+
+		attributeDescriptor.setCandidateSlots(version, slots);
+
+		return slots;
+	}
+
+	public int[] getCandidateSlots(String attribute) {
+		return getCandidateSlots(getAttributeDescriptor(attribute));
+	}
+
+	/**
+	 * Returns the position in the primitive long array where the numeric
+	 * value of the slot is stored, or -1 if the slot value must be boxed. Only
+	 * model ids, integers and dates have a long column.
+	 */
+	public int getLongColumn(int slot) {
+		if (slot >= _longColumns.length) {
+			return -1;
+		}
+
+		return _longColumns[slot];
+	}
+
+	public int getLongColumnCount() {
+		return _longColumnCount;
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	public String getPrimaryKeyAttribute() {
+		String primaryKeyAttribute = null;
+
+		if (model != null) {
+			primaryKeyAttribute = model.getPrimaryKeyAttribute();
+		}
+
+		if (Validator.isNull(primaryKeyAttribute)) {
+			return "pk";
+		}
+
+		return primaryKeyAttribute;
+	}
+
+	public int getSlot(String attribute) {
+		Integer slot = _slots.get(attribute);
+
+		if (slot == null) {
+			return -1;
+		}
+
+		return slot;
+	}
+
+	public List<TableInfo> getTableInfos() {
+		return tableInfos;
+	}
+
+	public int size() {
+		return _attributeNames.length;
+	}
+
+	protected static Class<?> getAttributeClass(
+		Collection<TableInfo> tableInfos, String attribute) {
+
+		TableInfo tableInfo = getTableInfo(tableInfos, attribute);
+
+		if (tableInfo == null) {
+			return Object.class;
+		}
+
+		int pos = attribute.indexOf(".");
+
+		if (pos != -1) {
+			attribute = attribute.substring(pos + 1);
+		}
+
+		Class<?> attributeClass = tableInfo.getAttributeClass(attribute);
+
+		if (String.class.equals(attributeClass) &&
+			(attribute.equals("uuid") || attribute.equals("uuid_") ||
+			 attribute.endsWith("Uuid"))) {
+
+			attributeClass = UUID.class;
+		}
+
+		return attributeClass;
+	}
+
+	/**
+	 * Returns the first table that defines the attribute. If the attribute
+	 * has a table name prefix, only that table is checked.
+	 */
+	protected static TableInfo getTableInfo(
+		Collection<TableInfo> tableInfos, String attribute) {
+
+		String prefix = null;
+		int pos = attribute.indexOf(".");
+
+		if (pos != -1) {
+			prefix = attribute.substring(0, pos);
+			attribute = attribute.substring(pos + 1);
+		}
+
+		for (TableInfo tableInfo : tableInfos) {
+			if ((prefix != null) &&
+				!Objects.equals(tableInfo.getName(), prefix)) {
+
+				continue;
+			}
+
+			Class<?> attributeClass = tableInfo.getAttributeClass(attribute);
+
+			if (!Object.class.equals(attributeClass)) {
+				return tableInfo;
+			}
+		}
+
+		return null;
+	}
+
+	protected final Model model;
+	protected final List<TableInfo> tableInfos;
+
+	private static int _countLongColumns(int[] longColumns) {
+		int count = 0;
+
+		for (int longColumn : longColumns) {
+			if (longColumn != -1) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private int _addSlot(String attribute) {
+		int slot = _attributeNames.length;
+
+		String[] attributeNames = Arrays.copyOf(_attributeNames, slot + 1);
+
+		attributeNames[slot] = attribute;
+
+		_attributeNames = attributeNames;
+
+		_slots.put(attribute, slot);
+
+		AttributeDescriptor attributeDescriptor = _attributeDescriptors.get(
+			attribute);
+
+		if (attributeDescriptor != null) {
+			attributeDescriptor.setSlot(slot, getLongColumn(slot));
+		}
+
+		_version++;
+
+		return slot;
+	}
+
+	private synchronized void _addSlots(String[] attributes) {
+		for (String attribute : attributes) {
+			if (!_slots.containsKey(attribute)) {
+				_addSlot(attribute);
+			}
+		}
+	}
+
+	private int[] _calculateCandidateSlots(String attribute) {
+		String primaryKeyAttribute = getPrimaryKeyAttribute();
+
+		if (Objects.equals("pk", attribute) &&
+			!Objects.equals("pk", primaryKeyAttribute)) {
+
+			attribute = primaryKeyAttribute;
+		}
+
+		List<String> candidates = new ArrayList<>(3);
+
+		candidates.add(attribute);
+
+		if (model != null) {
+			candidates.add(model.getClassSimpleName() + "." + attribute);
+			candidates.add(model.getClassName() + "." + attribute);
+		}
+
+		int[] slots = new int[candidates.size()];
+
+		int count = 0;
+
+		for (String candidate : candidates) {
+			Integer slot = _slots.get(candidate);
+
+			if (slot != null) {
+				slots[count++] = slot;
+			}
+		}
+
+		return Arrays.copyOf(slots, count);
+	}
+
+	/**
+	 * Creates the descriptors of the schema table attributes, assigning a long
+	 * column to the ones with a numeric class.
+	 */
+	private int[] _calculateLongColumns() {
+		int[] longColumns = new int[_attributeNames.length];
+
+		int count = 0;
+
+		for (int slot = 0; slot < _attributeNames.length; slot++) {
+			AttributeDescriptor attributeDescriptor =
+				_createAttributeDescriptor(_attributeNames[slot]);
+
+			Class<?> attributeClass = attributeDescriptor.getType();
+
+			if (Long.class.equals(attributeClass) ||
+				Integer.class.equals(attributeClass) ||
+				java.sql.Date.class.equals(attributeClass) ||
+				Time.class.equals(attributeClass) ||
+				Timestamp.class.equals(attributeClass)) {
+
+				longColumns[slot] = count++;
+			}
+			else {
+				longColumns[slot] = -1;
+			}
+
+			attributeDescriptor.setSlot(slot, longColumns[slot]);
+
+			_attributeDescriptors.put(
+				_attributeNames[slot], attributeDescriptor);
+		}
+
+		return longColumns;
+	}
+
+	private AttributeDescriptor _createAttributeDescriptor(String attribute) {
+		return new AttributeDescriptor(
+			attribute, getAttributeClass(tableInfos, attribute),
+			getTableInfo(tableInfos, attribute));
+	}
+
+	private final Map<String, AttributeDescriptor> _attributeDescriptors =
+		new ConcurrentHashMap<>();
+	private volatile String[] _attributeNames = new String[0];
+	private final int _longColumnCount;
+	private final int[] _longColumns;
+	private final Map<String, Integer> _slots = new ConcurrentHashMap<>();
+	private volatile int _version;
+
+}
\ No newline at end of file
@@ -30,7 +30,6 @@ import java.sql.Timestamp;
 
 import java.text.DateFormat;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -43,6 +42,7 @@ import java.util.TreeSet;
 import java.util.UUID;
 import java.util.WeakHashMap;
 
+import jorgediazest.util.collection.LongMultiValueMap;
 import jorgediazest.util.comparator.DataComparator;
 import jorgediazest.util.comparator.DataComparatorMap;
 import jorgediazest.util.comparator.DataModelComparator;
@@ -464,6 +464,8 @@ public class DataUtil {
 			}
 			else {
 				dataComparator = new DataModelComparator(keyAttributes);
+
+				dataComparator.setUseFingerprints(true);
 			}
 
 			_modelDataComparatorCache.put(
@@ -473,6 +475,64 @@ public class DataUtil {
 		return dataComparator;
 	}
 
+	public static DataSchema getDataSchema(Model model) {
+		if (model == null) {
+			return new DataSchema((TableInfo)null);
+		}
+
+		/* Schema is created while holding the lock, so all the data of the
+		 * same model share the same schema and slots */
+
+		synchronized (_modelDataSchemaCache) {
+			DataSchema dataSchema = null;
+
+			WeakReference<DataSchema> weakReference = _modelDataSchemaCache.get(
+				model);
+
+			if (weakReference != null) {
+				dataSchema = weakReference.get();
+			}
+
+			if (dataSchema == null) {
+				dataSchema = new DataSchema(model);
+
+				_modelDataSchemaCache.put(
+					model, new WeakReference<DataSchema>(dataSchema));
+			}
+
+			return dataSchema;
+		}
+	}
+
+	public static DataSchema getDataSchema(TableInfo tableInfo) {
+		if (tableInfo == null) {
+			return new DataSchema((TableInfo)null);
+		}
+
+		/* Schema is created while holding the lock, so all the data of the
+		 * same table share the same schema and slots */
+
+		synchronized (_tableInfoDataSchemaCache) {
+			DataSchema dataSchema = null;
+
+			WeakReference<DataSchema> weakReference =
+				_tableInfoDataSchemaCache.get(tableInfo);
+
+			if (weakReference != null) {
+				dataSchema = weakReference.get();
+			}
+
+			if (dataSchema == null) {
+				dataSchema = new DataSchema(tableInfo);
+
+				_tableInfoDataSchemaCache.put(
+					tableInfo, new WeakReference<DataSchema>(dataSchema));
+			}
+
+			return dataSchema;
+		}
+	}
+
 	public static ThreadLocal<Boolean> getIgnorecase() {
 		return _ignoreCase;
 	}
@@ -484,7 +544,8 @@ public class DataUtil {
 	public static Map<Long, List<Data>> getMapFromSetData(
 		Set<Data> dataSet, String keyAttribute) {
 
-		Map<Long, List<Data>> dataMap = new HashMap<>();
+		LongMultiValueMap<Data> dataMap = new LongMultiValueMap<>(
+			dataSet.size());
 
 		for (Data data : dataSet) {
 			Long key = (Long)data.get(keyAttribute);
@@ -493,15 +554,7 @@ public class DataUtil {
 				continue;
 			}
 
-			List<Data> list = dataMap.get(key);
-
-			if (list == null) {
-				list = new ArrayList<>();
-
-				dataMap.put(key, list);
-			}
-
-			list.add(data);
+			dataMap.add(key, data);
 		}
 
 		return dataMap;
@@ -632,24 +685,15 @@ public class DataUtil {
 		return transformObjects;
 	}
 
-	public static Object transformObject(Class<?> type, Object o) {
-		if (o instanceof Map) {
-			return o;
-		}
-
-		Object transformObject = castObject(type, o);
+	/**
+	 * Returns the value of a localized attribute: null if it has no values,
+	 * the value if all the locales have the same one, or the map of values of
+	 * the available locales.
+	 */
+	public static Object transformLocalizedMap(
+		Map<Locale, String> localizedMap) {
 
-		if (!(transformObject instanceof String)) {
-			return transformObject;
-		}
-
-		String str = (String)transformObject.toString();
-
-		if (!Validator.isXml(str)) {
-			return transformObject;
-		}
-
-		Map<Locale, String> map = transformXmlToMap(str);
+		Map<Locale, String> map = cleanLocalizedMap(localizedMap);
 
 		Set<String> valuesSet = new HashSet<>(map.values());
 
@@ -664,24 +708,33 @@ public class DataUtil {
 		return map;
 	}
 
-	protected static Set<Object> transformArrayToSet(
-		Class<?> type, Object[] values) {
+	public static Object transformObject(Class<?> type, Object o) {
+		if (o instanceof Map) {
+			return o;
+		}
 
-		Set<Object> transformObjects = new HashSet<>(values.length);
+		Object transformObject = castObject(type, o);
 
-		for (Object o : values) {
-			Object transformObject = transformObject(type, o);
+		if (!(transformObject instanceof String)) {
+			return transformObject;
+		}
 
-			if (transformObject != null) {
-				transformObjects.add(transformObject);
-			}
+		String str = (String)transformObject.toString();
+
+		if (!Validator.isXml(str)) {
+			return transformObject;
 		}
 
-		return transformObjects;
+		return transformLocalizedMap(
+			LocalizationUtil.getLocalizationMap(str));
 	}
 
-	protected static Map<Locale, String> transformXmlToMap(String xml) {
-		Map<Locale, String> map = LocalizationUtil.getLocalizationMap(xml);
+	/**
+	 * Returns the not null values of the available locales, in lower case if
+	 * case is ignored.
+	 */
+	protected static Map<Locale, String> cleanLocalizedMap(
+		Map<Locale, String> map) {
 
 		Map<Locale, String> cleanMap = new HashMap<>();
 
@@ -704,6 +757,26 @@ public class DataUtil {
 		return cleanMap;
 	}
 
+	protected static Set<Object> transformArrayToSet(
+		Class<?> type, Object[] values) {
+
+		Set<Object> transformObjects = new HashSet<>(values.length);
+
+		for (Object o : values) {
+			Object transformObject = transformObject(type, o);
+
+			if (transformObject != null) {
+				transformObjects.add(transformObject);
+			}
+		}
+
+		return transformObjects;
+	}
+
+	protected static Map<Locale, String> transformXmlToMap(String xml) {
+		return cleanLocalizedMap(LocalizationUtil.getLocalizationMap(xml));
+	}
+
 	private static Integer _parseInt(String value) {
 		int length = value.length();
 
@@ -876,5 +949,11 @@ public class DataUtil {
 	private static Map<Model, WeakReference<DataComparator>>
 		_modelDataComparatorCache = Collections.synchronizedMap(
 			new WeakHashMap<Model, WeakReference<DataComparator>>());
+	private static Map<Model, WeakReference<DataSchema>> _modelDataSchemaCache =
+		Collections.synchronizedMap(
+			new WeakHashMap<Model, WeakReference<DataSchema>>());
+	private static Map<TableInfo, WeakReference<DataSchema>>
+		_tableInfoDataSchemaCache = Collections.synchronizedMap(
+			new WeakHashMap<TableInfo, WeakReference<DataSchema>>());
 
 }
\ No newline at end of file
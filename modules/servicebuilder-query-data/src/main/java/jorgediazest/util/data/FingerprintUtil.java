@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.data;
+
+import com.liferay.portal.kernel.util.StringUtil;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 64-bit fingerprints of attribute values. Values that are equal for the
+ * data comparators have the same fingerprint: numbers are hashed by their
+ * value, so a number and its string representation have the same
+ * fingerprint, and strings are hashed ignoring case. Null values,
+ * collections and maps have no fingerprint, as comparators can consider them
+ * equal to different values.
+ *
+ * @author Jorge Díaz
+ */
+public class FingerprintUtil {
+
+	public static final long NO_FINGERPRINT = 0;
+
+	/**
+	 * Adds the fingerprint of a value to a fingerprint. The result has no
+	 * fingerprint if any of them has no fingerprint.
+	 */
+	public static long combine(long fingerprint, long valueFingerprint) {
+		if ((fingerprint == NO_FINGERPRINT) ||
+			(valueFingerprint == NO_FINGERPRINT)) {
+
+			return NO_FINGERPRINT;
+		}
+
+		return _mix((fingerprint * _GOLDEN_RATIO) + valueFingerprint);
+	}
+
+	/**
+	 * Returns the fingerprint of an id or integer value. 0 is a null value.
+	 */
+	public static long getFingerprint(long value) {
+		if (value == 0) {
+			return NO_FINGERPRINT;
+		}
+
+		return _mix(value);
+	}
+
+	public static long getFingerprint(Object value) {
+		if ((value instanceof Collection) || (value instanceof Map) ||
+			(value instanceof Object[]) || DataUtil.isNull(value)) {
+
+			return NO_FINGERPRINT;
+		}
+
+		if ((value instanceof Long) || (value instanceof Integer) ||
+			(value instanceof Short) || (value instanceof Byte)) {
+
+			Number number = (Number)value;
+
+			return getFingerprint(number.longValue());
+		}
+
+		String str = StringUtil.toLowerCase(DataUtil.castString(value));
+
+		if (_isLong(str)) {
+			return getFingerprint(Long.parseLong(str));
+		}
+
+		long fingerprint = _FNV_OFFSET_BASIS;
+
+		for (int i = 0; i < str.length(); i++) {
+			fingerprint = (fingerprint ^ str.charAt(i)) * _FNV_PRIME;
+		}
+
+		return _mix(fingerprint);
+	}
+
+	/**
+	 * Returns true if the string is the decimal representation of a long, the
+	 * one returned by Long.toString.
+	 */
+	private static boolean _isLong(String str) {
+		int length = str.length();
+
+		int start = 0;
+
+		if ((length > 0) && (str.charAt(0) == '-')) {
+			start = 1;
+		}
+
+		int digits = length - start;
+
+		if ((digits == 0) || (digits > 19) ||
+			((digits > 1) && (str.charAt(start) == '0'))) {
+
+			return false;
+		}
+
+		for (int i = start; i < length; i++) {
+			char c = str.charAt(i);
+
+			if ((c < '0') || (c > '9')) {
+				return false;
+			}
+		}
+
+		if (digits < 19) {
+			return true;
+		}
+
+		try {
+			Long.parseLong(str);
+
+			return true;
+		}
+		catch (NumberFormatException nfe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Murmur3 finalizer, the result is never NO_FINGERPRINT.
+	 */
+	private static long _mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+
+		if (value == NO_FINGERPRINT) {
+			return 1;
+		}
+
+		return value;
+	}
+
+	private static final long _FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+	private static final long _FNV_PRIME = 0x100000001B3L;
+
+	private static final long _GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+}
\ No newline at end of file
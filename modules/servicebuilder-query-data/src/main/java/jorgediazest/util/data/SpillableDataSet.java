@@ -0,0 +1,553 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.data;
+
+import com.liferay.portal.kernel.log.Log;
+import com.liferay.portal.kernel.log.LogFactoryUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jorgediazest.util.model.Model;
+
+/**
+ * Sorted set of data that keeps its elements in memory until they reach the
+ * spill threshold. Then they are written to a compressed temporary run file
+ * and the memory is released. Iteration merges the run files and the data in
+ * memory, so elements are returned in the same order as a TreeSet, reading
+ * them back one by one.
+ *
+ * Models of the data are kept in memory, only the serializable attribute
+ * values are written to the run files. Data without a model are never
+ * spilled. Elements are not removed by the iterator.
+ *
+ * The size is counted when the elements are spilled, so it is known without
+ * reading the run files. A duplicate of a spilled element added later is
+ * counted until the set is iterated to the end.
+ *
+ * Iterators of a spilled set keep the run files open until they are
+ * exhausted. Callers that stop iterating before the end should close the
+ * iterator, it is Closeable. Iterators left open are closed by clear().
+ *
+ * @author Jorge Díaz
+ */
+public class SpillableDataSet extends AbstractSet<Data> {
+
+	public static int getDefaultSpillThreshold() {
+		return _defaultSpillThreshold;
+	}
+
+	/**
+	 * Sets the number of elements kept in memory by the new sets. Zero or a
+	 * negative value disables spilling.
+	 */
+	public static void setDefaultSpillThreshold(int defaultSpillThreshold) {
+		_defaultSpillThreshold = defaultSpillThreshold;
+	}
+
+	public SpillableDataSet() {
+		this(_defaultSpillThreshold);
+	}
+
+	public SpillableDataSet(Collection<Data> collection) {
+		this(_defaultSpillThreshold);
+
+		addAll(collection);
+	}
+
+	public SpillableDataSet(int spillThreshold) {
+		_spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * Adds the data. Duplicates of spilled elements are not detected when
+	 * they are added, they are skipped when the set is iterated.
+	 */
+	@Override
+	public boolean add(Data data) {
+		if (!_memoryData.add(data)) {
+			return false;
+		}
+
+		_modCount++;
+
+		if (data.getModel() == null) {
+			_spillable = false;
+		}
+
+		if (_spillable && (_spillThreshold > 0) &&
+			(_memoryData.size() >= _spillThreshold)) {
+
+			spill();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes all the elements, deleting the run files.
+	 */
+	@Override
+	public void clear() {
+		List<MergeIterator> openMergeIterators;
+
+		synchronized (_openMergeIterators) {
+			openMergeIterators = new ArrayList<>(_openMergeIterators);
+		}
+
+		for (MergeIterator mergeIterator : openMergeIterators) {
+			mergeIterator.close();
+		}
+
+		_memoryData.clear();
+
+		for (File runFile : _runFiles) {
+			if (!runFile.delete()) {
+				runFile.deleteOnExit();
+			}
+		}
+
+		_runFiles.clear();
+		_modCount++;
+		_spilledSize = 0;
+	}
+
+	/**
+	 * Returns true if the set contains the object. The data in memory is
+	 * checked first, then the run files are read in order until the object
+	 * is found or a greater element is reached.
+	 */
+	@Override
+	public boolean contains(Object object) {
+		if (!(object instanceof Data)) {
+			return false;
+		}
+
+		if (_memoryData.contains(object)) {
+			return true;
+		}
+
+		if (_runFiles.isEmpty()) {
+			return false;
+		}
+
+		Data data = (Data)object;
+
+		MergeIterator mergeIterator = new MergeIterator();
+
+		try {
+			while (mergeIterator.hasNext()) {
+				int compare = data.compareTo(mergeIterator.next());
+
+				if (compare <= 0) {
+					return compare == 0;
+				}
+			}
+
+			return false;
+		}
+		finally {
+			mergeIterator.close();
+		}
+	}
+
+	public int getRunFilesCount() {
+		return _runFiles.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		if (_memoryData.isEmpty() && _runFiles.isEmpty()) {
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public Iterator<Data> iterator() {
+		if (_runFiles.isEmpty()) {
+			return _memoryData.iterator();
+		}
+
+		return new MergeIterator();
+	}
+
+	/**
+	 * Returns the number of elements, adding the elements written to the run
+	 * files and the elements in memory. The run files are not read.
+	 */
+	@Override
+	public int size() {
+		return _spilledSize + _memoryData.size();
+	}
+
+	/**
+	 * Returns the position of the object in the list, adding it if it is not
+	 * found. Lists are small, there are only a few models in a set.
+	 */
+	protected int getIndex(List<Object> list, Object object) {
+		int index = list.indexOf(object);
+
+		if (index >= 0) {
+			return index;
+		}
+
+		list.add(object);
+
+		return list.size() - 1;
+	}
+
+	protected Data readData(ObjectInputStream objectInputStream)
+		throws ClassNotFoundException, IOException {
+
+		Model model = (Model)_models.get(objectInputStream.readInt());
+
+		@SuppressWarnings("unchecked")
+		Set<Model> relatedModels = (Set<Model>)_relatedModelsList.get(
+			objectInputStream.readInt());
+
+		Data data = new Data(model);
+
+		data.addModelTableInfo(relatedModels);
+
+		int count = objectInputStream.readInt();
+
+		for (int i = 0; i < count; i++) {
+			String attribute = objectInputStream.readUTF();
+
+			data.set(attribute, objectInputStream.readObject());
+		}
+
+		return data;
+	}
+
+	/**
+	 * Writes the data in memory to a new run file, in the order of the set.
+	 * If the file can't be written, data is kept in memory.
+	 */
+	protected void spill() {
+		File runFile = null;
+
+		try {
+			runFile = File.createTempFile("spillable-data-", ".run");
+
+			runFile.deleteOnExit();
+
+			ObjectOutputStream objectOutputStream = new ObjectOutputStream(
+				new BufferedOutputStream(
+					new GZIPOutputStream(new FileOutputStream(runFile))));
+
+			try {
+				int count = 0;
+
+				for (Data data : _memoryData) {
+					writeData(objectOutputStream, data);
+
+					/* Avoid keeping a reference to every written value */
+
+					if ((++count % _RESET_INTERVAL) == 0) {
+						objectOutputStream.reset();
+					}
+				}
+			}
+			finally {
+				objectOutputStream.close();
+			}
+
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Spilled " + _memoryData.size() + " elements to " +
+						runFile.getAbsolutePath());
+			}
+
+			_runFiles.add(runFile);
+			_spilledSize += _memoryData.size();
+			_memoryData.clear();
+		}
+		catch (IOException ioe) {
+			_log.error(
+				"Unable to spill data to a temporary file, it is kept in " +
+					"memory: " + ioe.getMessage());
+
+			if (runFile != null) {
+				runFile.delete();
+			}
+
+			_spillable = false;
+		}
+	}
+
+	protected void writeData(
+			ObjectOutputStream objectOutputStream, Data data)
+		throws IOException {
+
+		objectOutputStream.writeInt(getIndex(_models, data.getModel()));
+		objectOutputStream.writeInt(
+			getIndex(_relatedModelsList, data.getRelatedModels()));
+
+		List<Map.Entry<String, Object>> entries = new ArrayList<>();
+
+		Map<String, Object> map = data.getMap();
+
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			if (entry.getValue() instanceof Serializable) {
+				entries.add(entry);
+			}
+		}
+
+		objectOutputStream.writeInt(entries.size());
+
+		for (Map.Entry<String, Object> entry : entries) {
+			objectOutputStream.writeUTF(entry.getKey());
+			objectOutputStream.writeObject(entry.getValue());
+		}
+	}
+
+	private static final int _RESET_INTERVAL = 1000;
+
+	private static int _defaultSpillThreshold = 0;
+	private static Log _log = LogFactoryUtil.getLog(SpillableDataSet.class);
+
+	private final TreeSet<Data> _memoryData = new TreeSet<>();
+	private final List<Object> _models = new ArrayList<>();
+	private final List<MergeIterator> _openMergeIterators =
+		Collections.synchronizedList(new ArrayList<MergeIterator>());
+	private final List<Object> _relatedModelsList = new ArrayList<>();
+	private int _modCount;
+	private final List<File> _runFiles = new ArrayList<>();
+	private boolean _spillable = true;
+	private int _spilledSize;
+	private final int _spillThreshold;
+
+	/**
+	 * Current element of a run file or of the data in memory.
+	 */
+	private class MergeHead implements Comparable<MergeHead> {
+
+		@Override
+		public int compareTo(MergeHead mergeHead) {
+			return _data.compareTo(mergeHead._data);
+		}
+
+		private MergeHead(Iterator<Data> iterator) {
+			_iterator = iterator;
+			_objectInputStream = null;
+		}
+
+		private MergeHead(ObjectInputStream objectInputStream) {
+			_iterator = null;
+			_objectInputStream = objectInputStream;
+		}
+
+		private void _close() {
+			if (_objectInputStream == null) {
+				return;
+			}
+
+			try {
+				_objectInputStream.close();
+			}
+			catch (IOException ioe) {
+				if (_log.isDebugEnabled()) {
+					_log.debug(ioe, ioe);
+				}
+			}
+		}
+
+		/**
+		 * Reads the next element, returns false and closes the run file if
+		 * there are no more elements.
+		 */
+		private boolean _next() {
+			if (_iterator != null) {
+				if (!_iterator.hasNext()) {
+					return false;
+				}
+
+				_data = _iterator.next();
+
+				return true;
+			}
+
+			try {
+				_data = readData(_objectInputStream);
+
+				return true;
+			}
+			catch (EOFException eofe) {
+				_close();
+
+				return false;
+			}
+			catch (ClassNotFoundException cnfe) {
+				_close();
+
+				throw new IllegalStateException(
+					"Unable to read spilled data: " + cnfe.getMessage(), cnfe);
+			}
+			catch (IOException ioe) {
+				_close();
+
+				throw new IllegalStateException(
+					"Unable to read spilled data: " + ioe.getMessage(), ioe);
+			}
+		}
+
+		private Data _data;
+		private final Iterator<Data> _iterator;
+		private final ObjectInputStream _objectInputStream;
+
+	}
+
+	private class MergeIterator implements Closeable, Iterator<Data> {
+
+		/**
+		 * Closes the run files that were not completely read.
+		 */
+		@Override
+		public void close() {
+			_openMergeIterators.remove(this);
+
+			for (MergeHead mergeHead : _mergeHeads) {
+				mergeHead._close();
+			}
+
+			_mergeHeads.clear();
+
+			_closed = true;
+			_next = null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (_next != null) {
+				return true;
+			}
+
+			while (!_mergeHeads.isEmpty()) {
+				MergeHead mergeHead = _mergeHeads.poll();
+
+				Data data = mergeHead._data;
+
+				if (mergeHead._next()) {
+					_mergeHeads.add(mergeHead);
+				}
+
+				/* Equal elements are consecutive, only the first one is
+				 * returned */
+
+				if ((_last == null) || (_last.compareTo(data) != 0)) {
+					_next = data;
+					_returnedCount++;
+
+					return true;
+				}
+			}
+
+			_openMergeIterators.remove(this);
+
+			/* All the elements were read, duplicates of spilled elements are
+			 * not counted any more */
+
+			if ((_expectedModCount == _modCount) && !_closed) {
+				_spilledSize = _returnedCount - _memoryData.size();
+			}
+
+			return false;
+		}
+
+		@Override
+		public Data next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			_last = _next;
+			_next = null;
+
+			return _last;
+		}
+
+		private MergeIterator() {
+			_addMergeHead(new MergeHead(_memoryData.iterator()));
+
+			for (File runFile : _runFiles) {
+				try {
+					_addMergeHead(
+						new MergeHead(
+							new ObjectInputStream(
+								new BufferedInputStream(
+									new GZIPInputStream(
+										new FileInputStream(runFile))))));
+				}
+				catch (IOException ioe) {
+					for (MergeHead mergeHead : _mergeHeads) {
+						mergeHead._close();
+					}
+
+					throw new IllegalStateException(
+						"Unable to read spilled data from " +
+							runFile.getAbsolutePath() + ": " +
+								ioe.getMessage(),
+						ioe);
+				}
+			}
+
+			_expectedModCount = _modCount;
+
+			_openMergeIterators.add(this);
+		}
+
+		private void _addMergeHead(MergeHead mergeHead) {
+			if (mergeHead._next()) {
+				_mergeHeads.add(mergeHead);
+			}
+		}
+
+		private boolean _closed;
+		private int _expectedModCount;
+		private Data _last;
+		private final PriorityQueue<MergeHead> _mergeHeads =
+			new PriorityQueue<>();
+		private Data _next;
+		private int _returnedCount;
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2015-present Jorge Díaz All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package jorgediazest.util.query;
+
+import com.liferay.portal.kernel.dao.orm.Criterion;
+import com.liferay.portal.kernel.dao.orm.Order;
+import com.liferay.portal.kernel.dao.orm.OrderFactoryUtil;
+import com.liferay.portal.kernel.dao.orm.ProjectionList;
+import com.liferay.portal.kernel.dao.orm.Property;
+import com.liferay.portal.kernel.util.ArrayUtil;
+import com.liferay.portal.kernel.util.Validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import jorgediazest.util.collection.LongHashMap;
+import jorgediazest.util.data.Data;
+import jorgediazest.util.data.DataPageIterator;
+import jorgediazest.util.data.DataUtil;
+import jorgediazest.util.model.Model;
+import jorgediazest.util.model.ModelUtil;
+
+/**
+ * Reads model data sorted by primary key, page by page, using a "pk >
+ * lastPrimaryKey" condition instead of an offset.
+ *
+ * @author Jorge Díaz
+ */
+public class KeysetPageIterator extends DataPageIterator {
+
+	public static boolean isSupported(Model model, String[] attributes) {
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		if (Validator.isNull(primaryKeyAttribute) ||
+			!Long.class.equals(model.getAttributeClass(primaryKeyAttribute))) {
+
+			return false;
+		}
+
+		if (attributes == null) {
+			return true;
+		}
+
+		for (String attribute : attributes) {
+			if (attribute.indexOf("(") > 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public KeysetPageIterator(
+		Model model, String[] attributes, Criterion criterion, int pageSize) {
+
+		this.model = model;
+		this.criterion = criterion;
+		this.pageSize = pageSize;
+
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		if (attributes == null) {
+			attributes = model.getAttributeNames();
+		}
+
+		if (!ArrayUtil.contains(attributes, primaryKeyAttribute) &&
+			!ArrayUtil.contains(attributes, "pk")) {
+
+			attributes = ArrayUtil.append(attributes, primaryKeyAttribute);
+		}
+
+		List<String> validAttributes = new ArrayList<>();
+
+		projectionList = model.getPropertyProjection(
+			attributes, validAttributes, notValidAttributes);
+
+		validAttributesArr = validAttributes.toArray(new String[0]);
+
+		primaryKeyPos = validAttributes.indexOf(primaryKeyAttribute);
+
+		if (primaryKeyPos == -1) {
+			primaryKeyPos = validAttributes.indexOf("pk");
+		}
+
+		orders = Collections.singletonList(
+			OrderFactoryUtil.asc(primaryKeyAttribute));
+	}
+
+	@Override
+	protected Collection<Data> nextPage() throws Exception {
+		Criterion pageCriterion = criterion;
+
+		if (lastPrimaryKey != null) {
+			Property property = model.getProperty(
+				model.getPrimaryKeyAttribute());
+
+			pageCriterion = ModelUtil.generateConjunctionCriterion(
+				criterion, property.gt(lastPrimaryKey));
+		}
+
+		@SuppressWarnings("unchecked")
+		List<Object[]> results = (List<Object[]>)model.executeDynamicQuery(
+			pageCriterion, projectionList, orders, 0, pageSize);
+
+		if (results.isEmpty()) {
+			return null;
+		}
+
+		if (results.size() < pageSize) {
+			finished = true;
+		}
+
+		Object[] lastResult = results.get(results.size() - 1);
+
+		lastPrimaryKey = DataUtil.castLong(lastResult[primaryKeyPos]);
+
+		List<Data> page = new ArrayList<>(results.size());
+
+		for (Object[] result : results) {
+			page.add(
+				DataUtil.createDataObject(model, validAttributesArr, result));
+		}
+
+		addMappingTablesData(page);
+
+		return page;
+	}
+
+	/**
+	 * Adds the values of the attributes stored in mapping tables. Only the
+	 * mapping rows of the primary key range of the page are read, so memory
+	 * is bounded by the page size instead of by the mapping table size.
+	 */
+	protected void addMappingTablesData(List<Data> page) throws Exception {
+		if (notValidAttributes.isEmpty() || page.isEmpty()) {
+			return;
+		}
+
+		LongHashMap<Data> pageMapByPK = new LongHashMap<>(page.size());
+
+		for (Data data : page) {
+			pageMapByPK.put(data.getPrimaryKey(), data);
+		}
+
+		Data firstData = page.get(0);
+		Data lastData = page.get(page.size() - 1);
+
+		for (String notValidAttribute : notValidAttributes) {
+			Map<Long, List<Data>> relatedDataMap =
+				Query.getRelatedDataFromMappingTable(
+					model, notValidAttribute, firstData.getPrimaryKey(),
+					lastData.getPrimaryKey());
+
+			if (relatedDataMap == null) {
+				continue;
+			}
+
+			QueryUtil.addRelatedModelData(
+				pageMapByPK, relatedDataMap, new String[] {notValidAttribute});
+		}
+	}
+
+	protected Criterion criterion;
+	protected Long lastPrimaryKey = null;
+	protected Model model;
+	protected List<String> notValidAttributes = new ArrayList<>();
+	protected List<Order> orders;
+	protected int pageSize;
+	protected int primaryKeyPos;
+	protected ProjectionList projectionList;
+	protected String[] validAttributesArr;
+
+}
\ No newline at end of file
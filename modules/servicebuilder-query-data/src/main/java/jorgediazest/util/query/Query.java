@@ -30,12 +30,14 @@ import java.sql.SQLException;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import jorgediazest.util.collection.LongHashMap;
+import jorgediazest.util.collection.LongMultiValueMap;
 import jorgediazest.util.data.Data;
 import jorgediazest.util.data.DataUtil;
 import jorgediazest.util.model.Model;
@@ -46,6 +48,8 @@ import jorgediazest.util.table.TableInfo;
  */
 public class Query {
 
+	public static final int DEFAULT_PAGE_SIZE = 10000;
+
 	public static Map<Long, Data> getData(
 			Model model, String[] attributes, Criterion criterion)
 		throws Exception {
@@ -59,7 +63,16 @@ public class Query {
 			Criterion criterion)
 		throws Exception {
 
-		Map<Long, Data> dataMapByPK = new HashMap<>();
+		return getData(
+			model, attributes, mapKeyAttribute, criterion, DEFAULT_PAGE_SIZE);
+	}
+
+	public static Map<Long, Data> getData(
+			Model model, String[] attributes, String mapKeyAttribute,
+			Criterion criterion, int pageSize)
+		throws Exception {
+
+		LongHashMap<Data> dataMapByPK = new LongHashMap<>();
 
 		if (mapKeyAttribute.equals(model.getPrimaryKeyAttribute())) {
 			dataMapByPK = null;
@@ -76,7 +89,20 @@ public class Query {
 				model, notValidAttributes, mapKeyAttribute);
 		}
 
-		Map<Long, Data> dataMap = new HashMap<>();
+		LongHashMap<Data> dataMap = new LongHashMap<>();
+
+		if (KeysetPageIterator.isSupported(model, attributes)) {
+			Iterator<Data> iterator = new KeysetPageIterator(
+				model, attributes, criterion, pageSize);
+
+			long i = -1;
+
+			while (iterator.hasNext()) {
+				addDataToMap(dataMap, mapKeyAttribute, iterator.next(), i--);
+			}
+
+			return dataMap;
+		}
 
 		@SuppressWarnings("unchecked")
 		List<Object[]> results = (List<Object[]>)model.executeDynamicQuery(
@@ -119,14 +145,41 @@ public class Query {
 		return dataMap;
 	}
 
+	/**
+	 * Returns an iterator that reads the data sorted by primary key, page by
+	 * page, so the whole table is never loaded in memory.
+	 *
+	 * @throws IllegalArgumentException if the model or the attributes are not
+	 *         supported by KeysetPageIterator
+	 */
+	public static Iterator<Data> getDataIterator(
+		Model model, String[] attributes, Criterion criterion, int pageSize) {
+
+		if (!KeysetPageIterator.isSupported(model, attributes)) {
+			throw new IllegalArgumentException(
+				"Paged query is not supported for " + model.getName());
+		}
+
+		return new KeysetPageIterator(model, attributes, criterion, pageSize);
+	}
+
 	public static Map<Long, List<Data>> getDataWithDuplicates(
 			Model model, String[] attributes, String mapKeyAttribute,
 			Criterion criterion)
 		throws Exception {
 
-		Map<Long, List<Data>> dataMap = new HashMap<>();
+		return getDataWithDuplicates(
+			model, attributes, mapKeyAttribute, criterion, DEFAULT_PAGE_SIZE);
+	}
+
+	public static Map<Long, List<Data>> getDataWithDuplicates(
+			Model model, String[] attributes, String mapKeyAttribute,
+			Criterion criterion, int pageSize)
+		throws Exception {
 
-		Map<Long, List<Data>> dataMapByPK = new HashMap<>();
+		LongMultiValueMap<Data> dataMap = new LongMultiValueMap<>();
+
+		LongMultiValueMap<Data> dataMapByPK = new LongMultiValueMap<>();
 
 		if (mapKeyAttribute.equals(model.getPrimaryKeyAttribute())) {
 			dataMapByPK = null;
@@ -136,6 +189,20 @@ public class Query {
 			attributes = model.getAttributeNames();
 		}
 
+		if (KeysetPageIterator.isSupported(model, attributes)) {
+			Iterator<Data> iterator = new KeysetPageIterator(
+				model, attributes, criterion, pageSize);
+
+			long i = -1;
+
+			while (iterator.hasNext()) {
+				addDataToMapValueList(
+					dataMap, mapKeyAttribute, iterator.next(), i--);
+			}
+
+			return dataMap;
+		}
+
 		List<String> validAttributes = new ArrayList<>();
 		List<String> notValidAttributes = new ArrayList<>();
 
@@ -193,6 +260,19 @@ public class Query {
 			Model model, TableInfo tableInfo, String[] attributesName)
 		throws SQLException {
 
+		return queryTable(model, tableInfo, attributesName, null, 0, 0);
+	}
+
+	/**
+	 * Returns the rows of the table whose rangeAttribute is between
+	 * minValue and maxValue, both included. If rangeAttribute is null, all
+	 * the rows are returned.
+	 */
+	public static Set<Data> queryTable(
+			Model model, TableInfo tableInfo, String[] attributesName,
+			String rangeAttribute, long minValue, long maxValue)
+		throws SQLException {
+
 		Set<Data> dataSet = new HashSet<>();
 
 		Connection con = null;
@@ -215,6 +295,14 @@ public class Query {
 			String sql =
 				"SELECT " + attributes + " FROM " + tableInfo.getName();
 
+			if (rangeAttribute != null) {
+				String attribute = cleanAttributeName(
+					tableInfo.getName(), rangeAttribute);
+
+				sql += " WHERE " + attribute + " >= ? AND " + attribute +
+					" <= ?";
+			}
+
 			sql = PortalUtil.transformSQL(sql);
 
 			if (_log.isDebugEnabled()) {
@@ -223,6 +311,11 @@ public class Query {
 
 			ps = con.prepareStatement(sql);
 
+			if (rangeAttribute != null) {
+				ps.setLong(1, minValue);
+				ps.setLong(2, maxValue);
+			}
+
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
@@ -246,7 +339,7 @@ public class Query {
 	}
 
 	protected static void addDataToMap(
-		Map<Long, Data> dataMap, String mapKeyAttribute, Data data,
+		LongHashMap<Data> dataMap, String mapKeyAttribute, Data data,
 		Long defaultValue) {
 
 		if ((dataMap == null) || (data == null)) {
@@ -264,13 +357,15 @@ public class Query {
 			mappingAttributeValue = defaultValue;
 		}
 
-		if (!dataMap.containsKey(mappingAttributeValue)) {
-			dataMap.put(mappingAttributeValue, data);
+		long key = mappingAttributeValue;
+
+		if (!dataMap.containsKey(key)) {
+			dataMap.put(key, data);
 		}
 	}
 
 	protected static void addDataToMapValueList(
-		Map<Long, List<Data>> dataMap, String mapKeyAttribute, Data data,
+		LongMultiValueMap<Data> dataMap, String mapKeyAttribute, Data data,
 		Long defaultValue) {
 
 		if ((dataMap == null) || (data == null)) {
@@ -288,15 +383,7 @@ public class Query {
 			mappingAttributeValue = defaultValue;
 		}
 
-		List<Data> list = dataMap.get(mappingAttributeValue);
-
-		if (list == null) {
-			list = new ArrayList<>();
-
-			dataMap.put(mappingAttributeValue, list);
-		}
-
-		list.add(data);
+		dataMap.add(mappingAttributeValue, data);
 	}
 
 	protected static String cleanAttributeName(
@@ -326,7 +413,7 @@ public class Query {
 			String mapKeyAttribute)
 		throws Exception {
 
-		Map<Long, Data> dataMap = new HashMap<>();
+		LongHashMap<Data> dataMap = new LongHashMap<>();
 
 		long i = -1;
 
@@ -366,6 +453,31 @@ public class Query {
 			relateDataSet, model.getPrimaryKeyAttribute());
 	}
 
+	/**
+	 * Returns the rows of the mapping table of the attribute whose primary
+	 * key of the model is between minPrimaryKey and maxPrimaryKey, so only
+	 * the rows of a page of data are loaded.
+	 */
+	protected static Map<Long, List<Data>> getRelatedDataFromMappingTable(
+			Model model, String attribute, long minPrimaryKey,
+			long maxPrimaryKey)
+		throws Exception {
+
+		TableInfo tableInfo = model.getTableInfo(attribute);
+
+		if (tableInfo == null) {
+			return null;
+		}
+
+		String primaryKeyAttribute = model.getPrimaryKeyAttribute();
+
+		Set<Data> relateDataSet = queryTable(
+			model, tableInfo, new String[] {primaryKeyAttribute, attribute},
+			primaryKeyAttribute, minPrimaryKey, maxPrimaryKey);
+
+		return DataUtil.getMapFromSetData(relateDataSet, primaryKeyAttribute);
+	}
+
 	private static Log _log = LogFactoryUtil.getLog(Query.class);
 
 }
\ No newline at end of file
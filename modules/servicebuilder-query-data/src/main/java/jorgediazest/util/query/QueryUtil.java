@@ -19,12 +19,12 @@ import com.liferay.portal.kernel.util.Validator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import jorgediazest.util.collection.LongMultiValueMap;
 import jorgediazest.util.data.Data;
 import jorgediazest.util.model.Model;
 
@@ -108,7 +108,8 @@ public class QueryUtil {
 			return Collections.emptyMap();
 		}
 
-		Map<Long, List<Data>> matchedMap = new HashMap<>();
+		LongMultiValueMap<Data> matchedMap = new LongMultiValueMap<>(
+			dataMap.size());
 
 		for (Map.Entry<Long, Data> entry : dataMap.entrySet()) {
 			Data data = entry.getValue();
@@ -117,7 +118,7 @@ public class QueryUtil {
 				relatedMap, mappingsSource, mappingsDest);
 
 			if (!matched.isEmpty()) {
-				matchedMap.put(entry.getKey(), matched);
+				matchedMap.addAll(entry.getKey(), matched);
 			}
 		}
 
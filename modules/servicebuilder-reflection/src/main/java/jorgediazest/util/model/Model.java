@@ -52,6 +52,11 @@ public interface Model extends Comparable<Model> {
 			Criterion criterion, Projection projection, List<Order> order)
 		throws Exception;
 
+	public List<?> executeDynamicQuery(
+			Criterion criterion, Projection projection, List<Order> order,
+			int start, int end)
+		throws Exception;
+
 	public Class<?> getAttributeClass(String name);
 
 	public <T> Criterion getAttributeCriterion(String attribute, List<T> list);
@@ -21,6 +21,7 @@ import com.liferay.portal.kernel.dao.orm.Disjunction;
 import com.liferay.portal.kernel.dao.orm.DynamicQuery;
 import com.liferay.portal.kernel.dao.orm.Order;
 import com.liferay.portal.kernel.dao.orm.Projection;
+import com.liferay.portal.kernel.dao.orm.QueryUtil;
 import com.liferay.portal.kernel.dao.orm.RestrictionsFactoryUtil;
 import com.liferay.portal.kernel.model.ClassName;
 import com.liferay.portal.kernel.security.permission.ResourceActionsUtil;
@@ -46,6 +47,16 @@ public class ModelUtil {
 			List<Order> orders)
 		throws Exception {
 
+		return executeDynamicQuery(
+			service, criterion, projection, orders, QueryUtil.ALL_POS,
+			QueryUtil.ALL_POS);
+	}
+
+	public static List<?> executeDynamicQuery(
+			Service service, Criterion criterion, Projection projection,
+			List<Order> orders, int start, int end)
+		throws Exception {
+
 		DynamicQuery query = service.newDynamicQuery();
 
 		if (projection != null) {
@@ -62,6 +73,10 @@ public class ModelUtil {
 			query.add(criterion);
 		}
 
+		if ((start != QueryUtil.ALL_POS) || (end != QueryUtil.ALL_POS)) {
+			query.setLimit(start, end);
+		}
+
 		return service.executeDynamicQuery(query);
 	}
 
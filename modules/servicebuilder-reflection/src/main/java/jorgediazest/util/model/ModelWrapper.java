@@ -130,6 +130,16 @@ public class ModelWrapper implements Cloneable, Model {
 			getService(), criterion, projection, orders);
 	}
 
+	@Override
+	public List<?> executeDynamicQuery(
+			Criterion criterion, Projection projection, List<Order> orders,
+			int start, int end)
+		throws Exception {
+
+		return ModelUtil.executeDynamicQuery(
+			getService(), criterion, projection, orders, start, end);
+	}
+
 	@Override
 	public Class<?> getAttributeClass(String name) {
 		return model.getAttributeClass(name);